@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The harness's benchmarks (BenchmarkRunner.all) run under JMH, one trial per benchmark name and roster size
+ * Setup and tearDown are per trial, as in BenchmarkRunner, and the operation's result goes to JMH's blackhole.
+ * JmhRunner fills in the parameters; org.openjdk.jmh.Main takes them as -p benchmark=... -p rosterSize=...
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JmhBenchmarks
+{
+    // Defaults for a bare org.openjdk.jmh.Main run; JmhRunner passes every name and size
+    @Param("store.lookup")
+    public String benchmark;
+
+    @Param("10000")
+    public int rosterSize;
+
+    private Benchmark target;
+    private long i = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        for (Benchmark candidate : BenchmarkRunner.all())
+        {
+            if (candidate.name().equals(benchmark))
+            {
+                target = candidate;
+            }
+        }
+
+        if (target == null)
+        {
+            throw new IllegalArgumentException("No benchmark named " + benchmark);
+        }
+
+        target.setup(rosterSize);
+    }
+
+    @org.openjdk.jmh.annotations.Benchmark
+    public Object run() throws Exception
+    {
+        return target.run(i++);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        target.tearDown();
+    }
+}
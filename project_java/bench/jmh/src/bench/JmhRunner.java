@@ -0,0 +1,99 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Runs JmhBenchmarks with the same options as BenchmarkRunner, in one forked JVM per trial
+ * Adds JMH's gc profiler (allocated bytes per op, GC count and time) and writes JMH's JSON report.
+ *
+ * Usage: gradle :bench:jmh [-Pargs="--sizes=1000,10000 --filter=store --warmup=2 --iterations=5
+ *                          --iteration-ms=1000 --out=bench/results/name.json"]
+ */
+public class JmhRunner
+{
+    public static void main(String[] args) throws Exception
+    {
+        String[] sizes = {"1000", "10000", "100000", "1000000"};
+        String filter = "";
+        int warmup = 2;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        Path out = Paths.get("bench", "results",
+                "jmh-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+
+        for (String arg : args)
+        {
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            if (arg.startsWith("--sizes="))
+            {
+                sizes = Arrays.stream(value.split(",")).map(String::trim).toArray(String[]::new);
+            }
+            else if (arg.startsWith("--filter="))
+            {
+                filter = value;
+            }
+            else if (arg.startsWith("--warmup="))
+            {
+                warmup = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--iterations="))
+            {
+                iterations = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--iteration-ms="))
+            {
+                iterationMillis = Long.parseLong(value);
+            }
+            else if (arg.startsWith("--out="))
+            {
+                out = Paths.get(value);
+            }
+            else
+            {
+                System.err.println("Unknown option: " + arg);
+                return;
+            }
+        }
+
+        String match = filter;
+        String[] names = BenchmarkRunner.all().stream().map(Benchmark::name).filter(name -> name.contains(match))
+                .toArray(String[]::new);
+
+        if (names.length == 0)
+        {
+            System.err.println("No benchmark matches " + filter);
+            return;
+        }
+
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(JmhBenchmarks.class.getName())
+                .param("benchmark", names)
+                .param("rosterSize", sizes)
+                .warmupIterations(warmup)
+                .warmupTime(TimeValue.milliseconds(iterationMillis))
+                .measurementIterations(iterations)
+                .measurementTime(TimeValue.milliseconds(iterationMillis))
+                .forks(1)
+                .jvmArgsAppend("-Xms4g", "-Xmx4g")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(out.toString());
+
+        new Runner(options.build()).run();
+        System.out.println("Results written to " + out);
+    }
+}
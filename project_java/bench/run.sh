@@ -0,0 +1,51 @@
+#!/bin/sh
+# Compile the application and the benchmarks with plain javac (no build tool or network needed) and run them
+# Fallback for the Gradle build (bench/build.gradle), which also runs the same benchmarks under JMH
+# Usage: bench/run.sh [BenchmarkRunner options], run from project_java/
+#        bench/run.sh http-load [HttpLoadGenerator options]
+#        bench/run.sh footprint [IndexFootprint options]
+#        bench/run.sh store-footprint [StoreFootprint options]
+#        bench/run.sh shards [ShardLoad options]           (starts one extra JVM per shard)
+#        bench/run.sh snapshot-check [SnapshotRoundTrip options]
+#        bench/run.sh store-stress [StoreStress options]
+# JAVA_HOME must point to a JDK 21; JAVA_OPTS overrides the default heap settings
+set -e
+cd "$(dirname "$0")/.."
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+rm -rf bench/out
+mkdir -p bench/out
+"$JAVAC" -d bench/out $(find src bench/src -name '*.java')
+MAIN=bench.BenchmarkRunner
+
+if [ "$1" = "http-load" ]; then
+    MAIN=bench.HttpLoadGenerator
+    shift
+fi
+
+if [ "$1" = "footprint" ]; then
+    MAIN=bench.IndexFootprint
+    shift
+fi
+
+if [ "$1" = "store-footprint" ]; then
+    MAIN=bench.StoreFootprint
+    shift
+fi
+
+if [ "$1" = "shards" ]; then
+    MAIN=bench.ShardLoad
+    shift
+fi
+
+if [ "$1" = "snapshot-check" ]; then
+    MAIN=bench.SnapshotRoundTrip
+    shift
+fi
+
+if [ "$1" = "store-stress" ]; then
+    MAIN=bench.StoreStress
+    shift
+fi
+
+exec "$JAVA" ${JAVA_OPTS:--Xms4g -Xmx4g} -cp bench/out "$MAIN" "$@"
@@ -0,0 +1,21 @@
+package bench;
+
+/**
+ * One measured operation, run by BenchmarkRunner for every roster size
+ */
+public interface Benchmark
+{
+    // Name used in the report and by --filter, e.g. "store.lookup"
+    String name();
+
+    // Build the state for a roster of the given size (not measured)
+    void setup(int rosterSize) throws Exception;
+
+    // One operation; i counts up from 0 across the whole run. The result is consumed so it cannot be optimized away
+    Object run(long i) throws Exception;
+
+    // Release files or threads created by setup
+    default void tearDown() throws Exception
+    {
+    }
+}
@@ -0,0 +1,240 @@
+package bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Small self-contained benchmark harness (no external dependencies, runs offline)
+ * For every benchmark and roster size: setup, warmup iterations, then measured iterations of a fixed wall-clock
+ * length. Reports ns/op, ops/s, bytes allocated per op (thread allocation counter, like JMH's gc profiler)
+ * and GC count/time, and writes everything as JSON so two versions can be diffed.
+ *
+ * Usage: bench/run.sh [--sizes=1000,10000,100000,1000000] [--filter=store] [--warmup=2] [--iterations=5]
+ *                     [--iteration-ms=1000] [--out=bench/results/name.json]
+ */
+public class BenchmarkRunner
+{
+    // Result of one benchmark at one roster size
+    record Result(String benchmark, int rosterSize, long operations, double nsPerOp, double opsPerSecond,
+                  double allocatedBytesPerOp, long gcCount, long gcMillis)
+    {
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Every result is folded into this static field so the JIT cannot drop the work
+    private static int sink;
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000};
+        String filter = "";
+        int warmup = 2;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        Path out = Paths.get("bench", "results",
+                "results-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+
+        for (String arg : args)
+        {
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            if (arg.startsWith("--sizes="))
+            {
+                sizes = Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+            }
+            else if (arg.startsWith("--filter="))
+            {
+                filter = value;
+            }
+            else if (arg.startsWith("--warmup="))
+            {
+                warmup = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--iterations="))
+            {
+                iterations = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--iteration-ms="))
+            {
+                iterationMillis = Long.parseLong(value);
+            }
+            else if (arg.startsWith("--out="))
+            {
+                out = Paths.get(value);
+            }
+            else
+            {
+                System.err.println("Unknown option: " + arg);
+                return;
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+
+        for (Benchmark benchmark : all())
+        {
+            if (!benchmark.name().contains(filter))
+            {
+                continue;
+            }
+
+            for (int size : sizes)
+            {
+                Result result = measure(benchmark, size, warmup, iterations, iterationMillis);
+                results.add(result);
+                System.out.printf("%-28s %9d  %14.1f ns/op  %12.0f ops/s  %12.1f B/op  gc %d (%d ms)%n",
+                        result.benchmark(), result.rosterSize(), result.nsPerOp(), result.opsPerSecond(),
+                        result.allocatedBytesPerOp(), result.gcCount(), result.gcMillis());
+            }
+        }
+
+        writeJson(out, results);
+        System.out.println("Results written to " + out);
+    }
+
+    // Every benchmark, in report order; also what the JMH module (bench/build.gradle) runs
+    static List<Benchmark> all()
+    {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(StoreBenchmarks.all());
+        benchmarks.addAll(ListingBenchmarks.all());
+        benchmarks.addAll(PersistenceBenchmarks.all());
+        benchmarks.addAll(ReportBenchmarks.all());
+        benchmarks.addAll(EnrollmentBenchmarks.all());
+        benchmarks.addAll(NameSearchBenchmarks.all());
+        benchmarks.addAll(HistoryBenchmarks.all());
+        return benchmarks;
+    }
+
+    private static Result measure(Benchmark benchmark, int size, int warmup, int iterations, long iterationMillis)
+            throws Exception
+    {
+        benchmark.setup(size);
+
+        try
+        {
+            long i = 0;
+
+            for (int w = 0; w < warmup; w++)
+            {
+                i = runFor(benchmark, i, iterationMillis);
+            }
+
+            System.gc();
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long first = i;
+
+            for (int m = 0; m < iterations; m++)
+            {
+                i = runFor(benchmark, i, iterationMillis);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            long operations = i - first;
+
+            return new Result(benchmark.name(), size, operations, (double) elapsed / operations,
+                    operations * 1e9 / elapsed, (double) allocated / operations, gcCount() - gcCountBefore,
+                    gcMillis() - gcMillisBefore);
+        }
+        finally
+        {
+            benchmark.tearDown();
+        }
+    }
+
+    // Run operations until the iteration time is used up (time is checked every batch of ops)
+    private static long runFor(Benchmark benchmark, long i, long millis) throws Exception
+    {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        int batch = 1;
+
+        do
+        {
+            long batchStart = System.nanoTime();
+
+            for (int b = 0; b < batch; b++)
+            {
+                Object result = benchmark.run(i++);
+                sink += result == null ? 0 : System.identityHashCode(result);
+            }
+
+            // Grow the batch while one batch takes under 1 ms, so the clock is not read per op
+            if (System.nanoTime() - batchStart < 1_000_000 && batch < (1 << 20))
+            {
+                batch = batch * 2;
+            }
+        }
+        while (System.nanoTime() < deadline);
+
+        return i;
+    }
+
+    private static long gcCount()
+    {
+        long total = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+
+        return total;
+    }
+
+    private static long gcMillis()
+    {
+        long total = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+
+        return total;
+    }
+
+    private static void writeJson(Path out, List<Result> results) throws IOException
+    {
+        if (out.getParent() != null)
+        {
+            Files.createDirectories(out.getParent());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8))
+        {
+            writer.write("{\"jvm\":\"" + System.getProperty("java.vm.version") + "\",\"cpus\":" +
+                    Runtime.getRuntime().availableProcessors() + ",\"results\":[\n");
+
+            for (int r = 0; r < results.size(); r++)
+            {
+                Result result = results.get(r);
+                writer.write(String.format(Locale.ROOT,
+                        "  {\"benchmark\":\"%s\",\"rosterSize\":%d,\"operations\":%d,\"nsPerOp\":%.2f," +
+                                "\"opsPerSecond\":%.2f,\"allocatedBytesPerOp\":%.2f,\"gcCount\":%d,\"gcMillis\":%d}%s%n",
+                        result.benchmark(), result.rosterSize(), result.operations(), result.nsPerOp(),
+                        result.opsPerSecond(), result.allocatedBytesPerOp(), result.gcCount(), result.gcMillis(),
+                        r + 1 < results.size() ? "," : ""));
+            }
+
+            writer.write("]}\n");
+        }
+    }
+}
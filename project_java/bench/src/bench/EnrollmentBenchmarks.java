@@ -0,0 +1,74 @@
+package bench;
+
+import enrollment.Enrollments;
+import models.Course;
+import store.StudentStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Enroll and drop through the enrollment log in a temp directory, spread over a catalog of 100 courses
+ */
+final class EnrollmentBenchmarks
+{
+    private static final int COURSES = 100;
+
+    private EnrollmentBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        return List.of(new EnrollDrop());
+    }
+
+    // One enrollment and the matching drop: two log records, both roster and schedule updates
+    static final class EnrollDrop implements Benchmark
+    {
+        private Path dir;
+        private Enrollments enrollments;
+        private int size;
+
+        @Override
+        public String name()
+        {
+            return "enrollment.enrollDrop";
+        }
+
+        @Override
+        public void setup(int rosterSize) throws IOException
+        {
+            dir = Files.createTempDirectory("sems-bench");
+            StudentStore store = Rosters.store(rosterSize);
+            enrollments = Enrollments.open(dir, store);
+            store.addListener(enrollments);
+
+            for (int n = 0; n < COURSES; n++)
+            {
+                enrollments.putCourse(new Course("C" + n, "Course " + n, Course.MAX_CAPACITY));
+            }
+
+            size = rosterSize;
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            long id = 1 + (i % size);
+            String code = "C" + (i % COURSES);
+            Enrollments.Outcome outcome = enrollments.enroll(id, code);
+            enrollments.drop(id, code);
+            return outcome;
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            enrollments.close();
+            PersistenceBenchmarks.deleteTree(dir);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package bench;
+
+import history.RosterHistory;
+import history.RosterSnapshot;
+import models.Student;
+import store.StudentStore;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Roster history: what a versioned change costs, and a diff between two versions 100 changes apart
+ */
+final class HistoryBenchmarks
+{
+    private static final int CHANGES = 100;
+
+    private HistoryBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        return List.of(new Commit(), new Diff());
+    }
+
+    private abstract static class HistoryBenchmark implements Benchmark
+    {
+        protected StudentStore store;
+        protected RosterHistory history;
+        protected int size;
+        protected final Random random = new Random(13);
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize);
+            history = new RosterHistory();
+            store.attach(history);
+            size = rosterSize;
+        }
+
+        // Re-save a random student with a different GPA
+        protected void change(long i)
+        {
+            long id = 1 + random.nextInt(size);
+            Student student = store.get(id);
+            store.put(id, student.withGpaPrev((i % 40) / 10.0));
+        }
+    }
+
+    // A re-save through the store with the history attached (copies the path to the record)
+    static final class Commit extends HistoryBenchmark
+    {
+        @Override
+        public String name()
+        {
+            return "history.commit";
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            change(i);
+            return history.current();
+        }
+    }
+
+    static final class Diff extends HistoryBenchmark
+    {
+        private RosterSnapshot before;
+        private RosterSnapshot after;
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            super.setup(rosterSize);
+            before = history.current();
+
+            for (int i = 0; i < CHANGES; i++)
+            {
+                change(i);
+            }
+
+            after = history.current();
+        }
+
+        @Override
+        public String name()
+        {
+            return "history.diff" + CHANGES;
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            return before.diff(after);
+        }
+    }
+}
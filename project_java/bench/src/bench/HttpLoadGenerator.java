@@ -0,0 +1,335 @@
+package bench;
+
+import api.StudentHttpServer;
+import auth.AccountStore;
+import auth.Authenticator;
+import auth.LoginThrottle;
+import auth.PasswordHasher;
+import enrollment.Enrollments;
+import models.StudentId;
+import store.NameSearch;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for the HTTP API
+ * Each client is a virtual thread sending one request at a time over a shared keep-alive client; latencies
+ * measured after the warmup are merged and reported as p50/p90/p99/p99.9/max, with throughput and errors.
+ * Without --url an in-process server is started on a loopback port over a synthetic roster (no persistence),
+ * so the numbers cover the HTTP layer, JSON and the store but not fsync. Clients share one session token from
+ * /login (against --url, log in as --user with the password in SEMS_PASSWORD).
+ *
+ * The mix is --reads percent GET /students/{id}, --lists percent GET /students?limit=50 and the rest PATCH.
+ * Exits with status 1 if any request failed (other than a 404) or none completed, so gradle check can run it.
+ *
+ * Usage: bench/run.sh http-load [--clients=1000] [--seconds=10] [--warmup-seconds=3] [--size=100000]
+ *                               [--reads=90] [--lists=5] [--url=http://host:port] [--user=name]
+ *                               [--out=bench/results/name.json]
+ */
+public class HttpLoadGenerator
+{
+    // Latencies in nanoseconds recorded by one client
+    private static final class Recorder
+    {
+        long[] latencies = new long[1024];
+        int count = 0;
+
+        void record(long nanos)
+        {
+            if (count == latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+
+            latencies[count++] = nanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int clients = 1000;
+        int seconds = 10;
+        int warmupSeconds = 3;
+        int size = 100_000;
+        int reads = 90;
+        int lists = 5;
+        String url = null;
+        String user = "bench";
+        String password = System.getenv("SEMS_PASSWORD");
+        Path out = Paths.get("bench", "results",
+                "http-load-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+
+        for (String arg : args)
+        {
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            if (arg.startsWith("--clients="))
+            {
+                clients = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--seconds="))
+            {
+                seconds = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--warmup-seconds="))
+            {
+                warmupSeconds = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--size="))
+            {
+                size = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--reads="))
+            {
+                reads = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--lists="))
+            {
+                lists = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--url="))
+            {
+                url = value;
+            }
+            else if (arg.startsWith("--user="))
+            {
+                user = value;
+            }
+            else if (arg.startsWith("--out="))
+            {
+                out = Paths.get(value);
+            }
+            else
+            {
+                System.err.println("Unknown option: " + arg);
+                System.exit(2);
+            }
+        }
+
+        StudentHttpServer server = null;
+
+        if (url == null)
+        {
+            StudentStore store = new StudentStore();
+            StudentIndexes indexes = new StudentIndexes();
+            store.addListener(indexes);
+            Random random = new Random(42);
+
+            for (int n = 0; n < size; n++)
+            {
+                store.putIfAbsent(store.newId(), Rosters.student(random, n));
+            }
+
+            password = "bench-password";
+            Authenticator authenticator = new Authenticator(AccountStore.inMemory(List.of(
+                    PasswordHasher.newAccount(user, password, PasswordHasher.DEFAULT_ITERATIONS))), new LoginThrottle());
+            server = new StudentHttpServer(store, indexes, new NameSearch(), Enrollments.inMemory(store),
+                    authenticator, new InetSocketAddress("127.0.0.1", 0), 4096);
+            server.start();
+            url = "http://127.0.0.1:" + server.port();
+        }
+
+        boolean passed;
+
+        try
+        {
+            passed = run(url, user, password, clients, seconds, warmupSeconds, size, reads, lists, out);
+        }
+        finally
+        {
+            if (server != null)
+            {
+                server.close();
+            }
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Returns whether the run completed requests without errors
+    private static boolean run(String url, String user, String password, int clients, int seconds, int warmupSeconds,
+                            int size, int reads, int lists, Path out) throws Exception
+    {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String token = login(http, url, user, password);
+        AtomicLong errors = new AtomicLong();
+        List<Recorder> recorders = new ArrayList<>();
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSeconds * 1_000_000_000L;
+        long deadline = measureFrom + seconds * 1_000_000_000L;
+
+        System.out.printf("%d clients against %s for %d s (+%d s warmup), %d%% reads, %d%% lists%n",
+                clients, url, seconds, warmupSeconds, reads, lists);
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (int c = 0; c < clients; c++)
+            {
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                Random random = new Random(c);
+
+                threads.submit(() ->
+                {
+                    while (true)
+                    {
+                        HttpRequest request = request(url, token, random, size, reads, lists);
+                        long sent = System.nanoTime();
+
+                        if (sent >= deadline)
+                        {
+                            return null;
+                        }
+
+                        try
+                        {
+                            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+
+                            // 404 is expected now and then: IDs are random and other clients never delete
+                            if (response.statusCode() >= 400 && response.statusCode() != 404)
+                            {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            errors.incrementAndGet();
+                        }
+
+                        if (sent >= measureFrom)
+                        {
+                            recorder.record(System.nanoTime() - sent);
+                        }
+                    }
+                });
+            }
+        }
+
+        int total = 0;
+
+        for (Recorder recorder : recorders)
+        {
+            total += recorder.count;
+        }
+
+        long[] latencies = new long[total];
+        int offset = 0;
+
+        for (Recorder recorder : recorders)
+        {
+            System.arraycopy(recorder.latencies, 0, latencies, offset, recorder.count);
+            offset += recorder.count;
+        }
+
+        Arrays.sort(latencies);
+        double throughput = total / (double) seconds;
+        String summary = String.format(Locale.ROOT,
+                "{\"url\":\"%s\",\"clients\":%d,\"seconds\":%d,\"requests\":%d,\"errors\":%d,\"requestsPerSecond\":%.1f," +
+                        "\"p50Micros\":%.1f,\"p90Micros\":%.1f,\"p99Micros\":%.1f,\"p999Micros\":%.1f,\"maxMicros\":%.1f}",
+                url, clients, seconds, total, errors.get(), throughput, percentile(latencies, 50),
+                percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 99.9),
+                percentile(latencies, 100));
+
+        System.out.printf(Locale.ROOT, "%d requests, %.0f req/s, %d errors%n", total, throughput, errors.get());
+        System.out.printf(Locale.ROOT, "latency p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  p99.9 %.2f ms  max %.2f ms%n",
+                percentile(latencies, 50) / 1000, percentile(latencies, 90) / 1000, percentile(latencies, 99) / 1000,
+                percentile(latencies, 99.9) / 1000, percentile(latencies, 100) / 1000);
+
+        if (out.getParent() != null)
+        {
+            Files.createDirectories(out.getParent());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8))
+        {
+            writer.write(summary);
+            writer.write('\n');
+        }
+
+        System.out.println("Results written to " + out);
+        boolean passed = total > 0 && errors.get() == 0;
+        System.out.printf("check no request errors %s (%d requests, %d errors)%n", passed ? "ok" : "FAILED", total,
+                errors.get());
+        return passed;
+    }
+
+    private static String login(HttpClient http, String url, String user, String password) throws Exception
+    {
+        String body = "{\"username\":\"" + user + "\",\"password\":\"" + (password == null ? "" : password) + "\"}";
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(url + "/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() != 200)
+        {
+            throw new IOException("login failed (" + response.statusCode() + "): " + response.body().trim());
+        }
+
+        String json = response.body();
+        int start = json.indexOf(':') + 2;
+        return json.substring(start, json.indexOf('"', start));
+    }
+
+    private static HttpRequest request(String url, String token, Random random, int size, int reads, int lists)
+    {
+        int roll = random.nextInt(100);
+        String id = StudentId.format(1 + random.nextInt(Math.max(1, size)));
+        HttpRequest.Builder request;
+
+        if (roll < reads)
+        {
+            request = HttpRequest.newBuilder(URI.create(url + "/students/" + id)).GET();
+        }
+        else if (roll < reads + lists)
+        {
+            request = HttpRequest.newBuilder(URI.create(url + "/students?limit=50&after=" + random.nextInt(Math.max(1, size))))
+                    .GET();
+        }
+        else
+        {
+            String body = "{\"gpaPrev\":" + random.nextInt(401) / 100.0 + "}";
+            request = HttpRequest.newBuilder(URI.create(url + "/students/" + id))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body));
+        }
+
+        return request.header("Authorization", "Bearer " + token).build();
+    }
+
+    // Nearest-rank percentile of sorted nanosecond latencies, in microseconds
+    private static double percentile(long[] sorted, double percent)
+    {
+        if (sorted.length == 0)
+        {
+            return 0;
+        }
+
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1000.0;
+    }
+}
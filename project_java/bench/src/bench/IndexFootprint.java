@@ -0,0 +1,72 @@
+package bench;
+
+import store.NameSearch;
+import store.StoreListener;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Heap retained by the name search index, next to the other secondary indexes for comparison
+ * For every roster size: build the synthetic store, then attach one index at a time and measure the used heap
+ * after full GCs before and after. Numbers are approximate (a few KB of noise) but stable at the larger sizes.
+ *
+ * Usage: bench/run.sh footprint [--sizes=10000,100000,1000000]
+ */
+public class IndexFootprint
+{
+    public static void main(String[] args)
+    {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--sizes="))
+            {
+                sizes = Arrays.stream(arg.substring("--sizes=".length()).split(","))
+                        .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+            }
+        }
+
+        System.out.printf("%-16s %9s  %12s  %10s  %s%n", "index", "students", "retained", "B/student", "detail");
+
+        for (int size : sizes)
+        {
+            measure("name search", size, NameSearch::new);
+            measure("student indexes", size, StudentIndexes::new);
+        }
+    }
+
+    private static void measure(String label, int size, Supplier<StoreListener> index)
+    {
+        StudentStore store = Rosters.store(size);
+        long before = usedAfterGc();
+        StoreListener listener = index.get();
+        store.attach(listener);
+        long retained = usedAfterGc() - before;
+        String detail = listener instanceof NameSearch names ? names.wordCount() + " distinct words" : "";
+
+        System.out.printf("%-16s %9d  %9.1f MB  %10.1f  %s%n", label, size, retained / 1048576.0,
+                (double) retained / size, detail);
+
+        // Keep both reachable until measured
+        if (store.size() < 0)
+        {
+            System.out.println(listener);
+        }
+    }
+
+    static long usedAfterGc()
+    {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++)
+        {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,122 @@
+package bench;
+
+import exporter.StudentExporter;
+import models.Student;
+import store.StudentStore;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formatting cost of the console listing row and Student.toString
+ */
+final class ListingBenchmarks
+{
+    private ListingBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        return List.of(new ListingRow(), new ToString(), new ListAll());
+    }
+
+    private static List<Map.Entry<Long, Student>> rows(int size)
+    {
+        StudentStore store = Rosters.store(size);
+        List<Map.Entry<Long, Student>> rows = new ArrayList<>(size);
+
+        for (Map.Entry<Long, Student> entry : store.entries())
+        {
+            rows.add(entry);
+        }
+
+        return rows;
+    }
+
+    // One listStudents row written through the exporter
+    static final class ListingRow implements Benchmark
+    {
+        private List<Map.Entry<Long, Student>> rows;
+        private StudentExporter exporter;
+
+        @Override
+        public String name()
+        {
+            return "listing.row";
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            rows = rows(rosterSize);
+            exporter = new StudentExporter(Writer.nullWriter(), StudentExporter.Format.LISTING);
+        }
+
+        @Override
+        public Object run(long i) throws Exception
+        {
+            Map.Entry<Long, Student> row = rows.get((int) (i % rows.size()));
+            exporter.write(row.getKey(), row.getValue());
+            return row;
+        }
+    }
+
+    static final class ToString implements Benchmark
+    {
+        private List<Map.Entry<Long, Student>> rows;
+
+        @Override
+        public String name()
+        {
+            return "student.toString";
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            rows = rows(rosterSize);
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            return rows.get((int) (i % rows.size())).getValue().toString();
+        }
+    }
+
+    // The whole listing (iteration in insertion order + formatting); one op = the full roster
+    static final class ListAll implements Benchmark
+    {
+        private StudentStore store;
+
+        @Override
+        public String name()
+        {
+            return "listing.all";
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize);
+        }
+
+        @Override
+        public Object run(long i) throws Exception
+        {
+            StudentExporter exporter = new StudentExporter(Writer.nullWriter(), StudentExporter.Format.LISTING);
+            long rows = 0;
+
+            for (Map.Entry<Long, Student> entry : store.entries())
+            {
+                exporter.write(entry.getKey(), entry.getValue());
+                rows++;
+            }
+
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import store.NameSearch;
+import store.StudentStore;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Typo-tolerant name search over the synthetic roster (every first name distinct, 5000 last names)
+ */
+final class NameSearchBenchmarks
+{
+    private NameSearchBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        return List.of(new FuzzyFullName(), new FuzzyLastName());
+    }
+
+    private abstract static class SearchBenchmark implements Benchmark
+    {
+        protected StudentStore store;
+        protected NameSearch names;
+        protected int size;
+        protected final Random random = new Random(11);
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize);
+            names = new NameSearch();
+            store.attach(names);
+            size = rosterSize;
+        }
+    }
+
+    // "Frist<n> Lsat<m>": two swapped letters, one per word, of an existing student's name
+    static final class FuzzyFullName extends SearchBenchmark
+    {
+        @Override
+        public String name()
+        {
+            return "search.fuzzyFullName";
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            int n = random.nextInt(size);
+            return names.search("Frist" + n + " Lsat" + (n % 5000), 20, store);
+        }
+    }
+
+    // "Lsat<m>": one last name with a typo, the 20 best of its few hundred students
+    static final class FuzzyLastName extends SearchBenchmark
+    {
+        @Override
+        public String name()
+        {
+            return "search.fuzzyLastName";
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            return names.search("Lsat" + random.nextInt(Math.min(size, 5000)), 20, store);
+        }
+    }
+}
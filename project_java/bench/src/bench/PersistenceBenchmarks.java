@@ -0,0 +1,196 @@
+package bench;
+
+import exporter.StudentExporter;
+import importer.BulkImporter;
+import models.Student;
+import persistence.MappedSnapshot;
+import persistence.SnapshotFile;
+import persistence.StorageEngine;
+import store.StudentStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log appends, snapshot write/load and bulk import, all in a temp directory
+ */
+final class PersistenceBenchmarks
+{
+    private PersistenceBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        return List.of(new WalAppend(), new SnapshotWrite(), new SnapshotLoad(), new CsvImport());
+    }
+
+    static void deleteTree(Path dir) throws IOException
+    {
+        if (dir == null || !Files.exists(dir))
+        {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(dir))
+        {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(path);
+            }
+        }
+    }
+
+    // Re-save one student: one WAL record (fsync batched as in production)
+    static final class WalAppend implements Benchmark
+    {
+        private Path dir;
+        private StudentStore store;
+        private StorageEngine engine;
+        private int size;
+
+        @Override
+        public String name()
+        {
+            return "persistence.walAppend";
+        }
+
+        @Override
+        public void setup(int rosterSize) throws IOException
+        {
+            dir = Files.createTempDirectory("sems-bench");
+            store = Rosters.store(rosterSize);
+            engine = new StorageEngine(dir);
+            engine.open(store);
+            size = rosterSize;
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            long id = 1 + (i % size);
+            Student student = store.get(id);
+            store.put(id, student);
+            return student;
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            engine.close();
+            deleteTree(dir);
+        }
+    }
+
+    // Full columnar snapshot of the roster; one op = one snapshot file
+    static final class SnapshotWrite implements Benchmark
+    {
+        private Path dir;
+        private StudentStore store;
+
+        @Override
+        public String name()
+        {
+            return "persistence.snapshotWrite";
+        }
+
+        @Override
+        public void setup(int rosterSize) throws IOException
+        {
+            dir = Files.createTempDirectory("sems-bench");
+            store = Rosters.store(rosterSize);
+        }
+
+        @Override
+        public Object run(long i) throws IOException
+        {
+            SnapshotFile.write(dir.resolve("students.snapshot"), i, store);
+            return dir;
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            deleteTree(dir);
+        }
+    }
+
+    // Map a snapshot and build every Student from it; one op = the whole roster
+    static final class SnapshotLoad implements Benchmark
+    {
+        private Path dir;
+        private Path snapshot;
+
+        @Override
+        public String name()
+        {
+            return "persistence.snapshotLoad";
+        }
+
+        @Override
+        public void setup(int rosterSize) throws IOException
+        {
+            dir = Files.createTempDirectory("sems-bench");
+            snapshot = dir.resolve("students.snapshot");
+            SnapshotFile.write(snapshot, 0, Rosters.store(rosterSize));
+        }
+
+        @Override
+        public Object run(long i) throws IOException
+        {
+            MappedSnapshot mapped = MappedSnapshot.open(snapshot);
+            double sum = 0;
+
+            for (int row = 0; row < mapped.rowCount(); row++)
+            {
+                sum += mapped.student(row).gpaPrev();
+            }
+
+            return sum;
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            deleteTree(dir);
+        }
+    }
+
+    // Import a CSV of the roster into an empty store; one op = the whole file
+    static final class CsvImport implements Benchmark
+    {
+        private Path dir;
+        private Path csv;
+
+        @Override
+        public String name()
+        {
+            return "import.csv";
+        }
+
+        @Override
+        public void setup(int rosterSize) throws IOException
+        {
+            dir = Files.createTempDirectory("sems-bench");
+            csv = dir.resolve("roster.csv");
+            StudentStore store = Rosters.store(rosterSize);
+            StudentExporter.exportTo(csv, StudentExporter.Format.CSV, store.entries());
+        }
+
+        @Override
+        public Object run(long i) throws IOException
+        {
+            return new BulkImporter(new StudentStore()).importFile(csv);
+        }
+
+        @Override
+        public void tearDown() throws IOException
+        {
+            deleteTree(dir);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package bench;
+
+import analytics.RosterColumns;
+import analytics.RosterReports;
+import models.Student;
+import store.StudentStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Whole-roster reports, run sequentially and split across a fork-join pool, to see how they scale with cores
+ */
+final class ReportBenchmarks
+{
+    private ReportBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        int cores = Math.max(2, Runtime.getRuntime().availableProcessors());
+        return List.of(new GpaByProgram(1), new GpaByProgram(cores), new Probation(1), new Probation(cores));
+    }
+
+    private static RosterColumns columns(int size)
+    {
+        StudentStore store = Rosters.store(size);
+        RosterColumns columns = new RosterColumns();
+
+        for (Map.Entry<Long, Student> entry : store.entries())
+        {
+            columns.onPut(entry.getKey(), null, entry.getValue());
+        }
+
+        return columns;
+    }
+
+    // One thread means the sequential loop; more means a dedicated pool of that many workers, split at any size
+    private abstract static class ReportBenchmark implements Benchmark
+    {
+        private final int threads;
+        private ForkJoinPool pool;
+        protected RosterReports reports;
+
+        ReportBenchmark(int threads)
+        {
+            this.threads = threads;
+        }
+
+        protected String suffix()
+        {
+            return threads == 1 ? ".sequential" : ".parallel" + threads;
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            pool = new ForkJoinPool(threads);
+            reports = new RosterReports(columns(rosterSize), pool, threads == 1 ? Integer.MAX_VALUE : 0);
+        }
+
+        @Override
+        public void tearDown()
+        {
+            pool.shutdown();
+        }
+    }
+
+    static final class GpaByProgram extends ReportBenchmark
+    {
+        GpaByProgram(int threads)
+        {
+            super(threads);
+        }
+
+        @Override
+        public String name()
+        {
+            return "report.gpaByProgram" + suffix();
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            return reports.gpaBy(RosterColumns.GroupBy.PROGRAM).result();
+        }
+    }
+
+    static final class Probation extends ReportBenchmark
+    {
+        Probation(int threads)
+        {
+            super(threads);
+        }
+
+        @Override
+        public String name()
+        {
+            return "report.probation" + suffix();
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            return reports.probation(RosterReports.PROBATION_GPA).result();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import models.Gender;
+import models.Student;
+import store.StudentArena;
+import store.StudentStore;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic rosters shared by the benchmarks
+ */
+final class Rosters
+{
+    private static final String[] PROGRAMS = {"Software Development", "Information Technology", "Business Administration",
+            "Nursing", "Electrical Engineering", "Graphic Design", "Accounting", "Culinary Arts"};
+    private static final Gender[] GENDERS = {Gender.FEMALE, Gender.MALE, Gender.OTHER};
+
+    private Rosters()
+    {
+    }
+
+    static Student student(Random random, int n)
+    {
+        return Student.builder()
+                .firstName("First" + n)
+                .lastName("Last" + (n % 5000))
+                .dateOfBirth(LocalDate.of(1990 + random.nextInt(15), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                .gender(GENDERS[random.nextInt(GENDERS.length)])
+                .gpaPrev(Math.round(random.nextDouble() * 400) / 100.0)
+                .currentSemester(1 + random.nextInt(8))
+                .program(PROGRAMS[random.nextInt(PROGRAMS.length)])
+                .numCourses(random.nextInt(13))
+                .build();
+    }
+
+    // A store holding size students with IDs 1..size
+    static StudentStore store(int size)
+    {
+        return store(size, null);
+    }
+
+    // The same roster with the records in the given arena (null: on the heap)
+    static StudentStore store(int size, StudentArena arena)
+    {
+        Random random = new Random(42);
+        StudentStore store = new StudentStore(arena);
+
+        for (int n = 0; n < size; n++)
+        {
+            store.putIfAbsent(store.newId(), student(random, n));
+        }
+
+        return store;
+    }
+}
@@ -0,0 +1,352 @@
+package bench;
+
+import analytics.GpaSummary;
+import analytics.RosterColumns;
+import models.Student;
+import shard.ShardClient;
+import shard.ShardRouter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end run of a sharded roster on one machine: every shard is a separate JVM on a loopback port
+ * - starts --shards ShardServer processes (data in a temp directory, deleted afterwards) and a ShardRouter here
+ * - adds --size synthetic students from --clients threads, then times gets, list pages, searches and the
+ *   GPA report, each fanned out or routed by the router
+ * - checks that the count is right and that paging through the whole roster returns every ID once, in order
+ * - starts one more shard, adds it, times the rebalance and checks that every student sits on its owner and
+ *   that about 1/(n+1) of them moved, and that a router opened while the rebalance marker is present treats the
+ *   shards as rebalancing until rebalance() completes
+ * Fails with a non-zero exit code if a check does not hold.
+ *
+ * Usage: bench/run.sh shards [--shards=3] [--size=100000] [--clients=16] [--shard-heap=512m]
+ */
+public class ShardLoad
+{
+    private static final int PAGE = 1000;
+
+    private final List<Process> processes = new ArrayList<>();
+    private final Path root;
+    private final String secret = UUID.randomUUID().toString();
+    private final String heap;
+
+    private ShardLoad(Path root, String heap)
+    {
+        this.root = root;
+        this.heap = heap;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int shards = 3;
+        int size = 100_000;
+        int clients = 16;
+        String heap = "512m";
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--shards="))
+            {
+                shards = Integer.parseInt(arg.substring("--shards=".length()));
+            }
+            else if (arg.startsWith("--size="))
+            {
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            }
+            else if (arg.startsWith("--clients="))
+            {
+                clients = Integer.parseInt(arg.substring("--clients=".length()));
+            }
+            else if (arg.startsWith("--shard-heap="))
+            {
+                heap = arg.substring("--shard-heap=".length());
+            }
+            else
+            {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        ShardLoad load = new ShardLoad(Files.createTempDirectory("sems-shards"), heap);
+        boolean passed;
+
+        try
+        {
+            passed = load.run(shards, size, clients);
+        }
+        finally
+        {
+            load.stop();
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run(int shardCount, int size, int clients) throws Exception
+    {
+        StringBuilder config = new StringBuilder();
+
+        for (int i = 0; i < shardCount; i++)
+        {
+            config.append("shard").append(i).append(' ').append(start("shard" + i)).append('\n');
+        }
+
+        Path configFile = root.resolve("shards.conf");
+        Files.writeString(configFile, config, StandardCharsets.UTF_8);
+        boolean passed = true;
+
+        try (ShardRouter router = ShardRouter.open(configFile, secret))
+        {
+            System.out.printf("%d shards, %d students, %d clients%n", shardCount, size, clients);
+            long[] ids = new long[size];
+            Random random = new Random(42);
+            List<Student> students = new ArrayList<>(size);
+
+            for (int n = 0; n < size; n++)
+            {
+                students.add(Rosters.student(random, n));
+            }
+
+            time("add", size, clients, n -> ids[n] = router.add(students.get(n)));
+            passed &= check("count after load", router.size() == size, router.sizes().toString());
+            passed &= checkListing(router, size);
+
+            time("get", 20_000, clients, n -> router.get(ids[Math.floorMod(n * 7919, size)]));
+            time("list page of 50", 2_000, clients, n -> router.list(ids[Math.floorMod(n * 7919, size)], 50));
+            time("search program, page of 50", 2_000, clients,
+                    n -> router.search(ShardClient.Field.PROGRAM, "Nursing", ids[Math.floorMod(n * 7919, size)], 50));
+            time("gpa by program", 50, 1, n -> router.gpaBy(RosterColumns.GroupBy.PROGRAM));
+            long graded = router.gpaBy(RosterColumns.GroupBy.PROGRAM).values().stream()
+                    .mapToLong(GpaSummary::count).sum();
+            passed &= check("gpa count", graded == size, graded + " graded");
+
+            String name = "shard" + shardCount;
+            String address = start(name);
+            long began = System.nanoTime();
+            long moved = router.addShard(name, address);
+            double seconds = (System.nanoTime() - began) / 1e9;
+            System.out.printf("%-28s %10d moved in %.1f s (%.0f/s), %.1f%% of the roster (1/(n+1) = %.1f%%)%n",
+                    "rebalance to " + (shardCount + 1), moved, seconds, moved / seconds, 100.0 * moved / size,
+                    100.0 / (shardCount + 1));
+            passed &= check("count after rebalance", router.size() == size, router.sizes().toString());
+            passed &= check("moved fraction", Math.abs((double) moved / size - 1.0 / (shardCount + 1)) < 0.1,
+                    moved + " of " + size);
+            passed &= checkPlacement(router, configFile);
+            passed &= checkListing(router, size);
+            passed &= checkResume(router, configFile);
+        }
+
+        System.out.println(passed ? "All checks passed." : "Some checks FAILED.");
+        return passed;
+    }
+
+    // Start a shard JVM on a free loopback port and wait until it accepts connections; returns host:port
+    private String start(String name) throws IOException, InterruptedException
+    {
+        int port;
+
+        try (ServerSocket probe = new ServerSocket(0))
+        {
+            port = probe.getLocalPort();
+        }
+
+        Path dir = root.resolve(name);
+        Files.createDirectories(dir);
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + heap, "-cp", System.getProperty("java.class.path"),
+                "shard.ShardServer", "--port=" + port, "--dir=" + dir);
+        builder.environment().put("SEMS_SHARD_SECRET", secret);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(root.resolve(name + ".log").toFile());
+        Process process = builder.start();
+        processes.add(process);
+        long deadline = System.currentTimeMillis() + 60_000;
+
+        while (true)
+        {
+            try (Socket socket = new Socket())
+            {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+                return "127.0.0.1:" + port;
+            }
+            catch (IOException e)
+            {
+                if (!process.isAlive() || System.currentTimeMillis() > deadline)
+                {
+                    throw new IOException("Shard " + name + " did not start, see " + root.resolve(name + ".log"));
+                }
+
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private interface Operation
+    {
+        void run(int n) throws IOException;
+    }
+
+    // Run count operations spread over the clients; prints throughput and latency percentiles
+    private static void time(String label, int count, int clients, Operation operation) throws Exception
+    {
+        long[] latencies = new long[count];
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<?>> futures = new ArrayList<>();
+        long began = System.nanoTime();
+
+        for (int c = 0; c < clients; c++)
+        {
+            int client = c;
+            futures.add(executor.submit(() ->
+            {
+                for (int n = client; n < count; n += clients)
+                {
+                    long start = System.nanoTime();
+                    operation.run(n);
+                    latencies[n] = System.nanoTime() - start;
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures)
+        {
+            future.get();
+        }
+
+        double seconds = (System.nanoTime() - began) / 1e9;
+        executor.shutdown();
+        Arrays.sort(latencies);
+        System.out.printf("%-28s %10d ops %10.0f ops/s   p50 %8.3f ms   p99 %8.3f ms%n", label, count,
+                count / seconds, latencies[count / 2] / 1e6, latencies[(int) (count * 0.99)] / 1e6);
+    }
+
+    // Page through everything: each ID once, ascending, size in all
+    private static boolean checkListing(ShardRouter router, int size) throws IOException
+    {
+        long after = 0;
+        long seen = 0;
+        long previous = 0;
+        boolean ordered = true;
+
+        while (after >= 0)
+        {
+            ShardRouter.Page page = router.list(after, PAGE);
+
+            for (ShardClient.Row row : page.rows())
+            {
+                ordered &= row.id() > previous;
+                previous = row.id();
+                seen = seen + 1;
+            }
+
+            after = page.next();
+        }
+
+        return check("full listing", ordered && seen == size, seen + " rows, " + (ordered ? "ordered" : "NOT ordered"));
+    }
+
+    // Every student on every shard must be one the ring assigns to that shard
+    // A router that finds the marker of an unfinished rebalance must not serve as if every student were in place
+    private boolean checkResume(ShardRouter router, Path configFile) throws IOException
+    {
+        Path marker = configFile.resolveSibling(configFile.getFileName() + ".rebalancing");
+        boolean cleared = !router.isRebalancing() && !Files.exists(marker);
+        Files.writeString(marker, "", StandardCharsets.UTF_8);
+
+        try (ShardRouter restarted = ShardRouter.open(configFile, secret))
+        {
+            boolean resumed = restarted.isRebalancing();
+            long moved = restarted.rebalance();
+            return check("rebalance marker", cleared && resumed && moved == 0 && !restarted.isRebalancing()
+                    && !Files.exists(marker), (cleared ? "cleared" : "NOT cleared") + " after addShard, "
+                    + (resumed ? "resumed" : "NOT resumed") + " on open, " + moved + " moved");
+        }
+    }
+
+    private boolean checkPlacement(ShardRouter router, Path configFile) throws IOException
+    {
+        long misplaced = 0;
+
+        for (String line : Files.readAllLines(configFile, StandardCharsets.UTF_8))
+        {
+            if (line.isBlank() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            String[] parts = line.trim().split("\\s+");
+
+            try (ShardClient shard = new ShardClient(parts[0], ShardRouter.address(parts[1]), secret))
+            {
+                long after = 0;
+                List<ShardClient.Row> rows;
+
+                while (!(rows = shard.scan(after, PAGE)).isEmpty())
+                {
+                    for (ShardClient.Row row : rows)
+                    {
+                        misplaced += router.ownerOf(row.id()).equals(parts[0]) ? 0 : 1;
+                    }
+
+                    after = rows.get(rows.size() - 1).id();
+                }
+            }
+        }
+
+        return check("placement", misplaced == 0, misplaced + " misplaced");
+    }
+
+    private static boolean check(String label, boolean holds, String detail)
+    {
+        System.out.printf("%-28s %s (%s)%n", "check " + label, holds ? "ok" : "FAILED", detail);
+        return holds;
+    }
+
+    private void stop() throws IOException
+    {
+        for (Process process : processes)
+        {
+            process.destroy();
+        }
+
+        for (Process process : processes)
+        {
+            try
+            {
+                process.waitFor();
+            }
+            catch (InterruptedException e)
+            {
+                process.destroyForcibly();
+            }
+        }
+
+        try (Stream<Path> files = Files.walk(root))
+        {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package bench;
+
+import models.Gender;
+import models.Student;
+import persistence.MappedSnapshot;
+import persistence.SnapshotFile;
+import persistence.StorageEngine;
+import store.StudentStore;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Round trip of the snapshot converter: every row written must read back unchanged
+ * - SnapshotFile.write of a synthetic store (plus names with accents, a blank name, an unknown date of birth and
+ *   every gender), then MappedSnapshot.open: header fields and every row against the source map
+ * - the same rows written in the older formats (version 1 rows, versions 2 and 3 columnar with text fields) by
+ *   an encoder here that follows the documented layouts: MappedSnapshot reads versions 2 and 3 directly, and a
+ *   StorageEngine opened on each must load the source map and rewrite the snapshot in the current version
+ * Fails with a non-zero exit code if a check does not hold; files go to a temp directory deleted afterwards.
+ *
+ * Usage: bench/run.sh snapshot-check [--size=100000]
+ */
+public class SnapshotRoundTrip
+{
+    private static final int MAGIC = 0x53454D53;
+    private static final int CURRENT_VERSION = 4;
+    private static final long LAST_SEQ = 4242;
+
+    public static void main(String[] args) throws IOException
+    {
+        int size = 100_000;
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--size="))
+            {
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            }
+            else
+            {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        Path root = Files.createTempDirectory("sems-snapshots");
+        boolean passed;
+
+        try
+        {
+            passed = run(root, size);
+        }
+        finally
+        {
+            delete(root);
+        }
+
+        System.out.println(passed ? "All checks passed." : "Some checks FAILED.");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(Path root, int size) throws IOException
+    {
+        StudentStore store = Rosters.store(size);
+        Random random = new Random(7);
+        store.putIfAbsent(store.newId(), Rosters.student(random, size).withFirstName("Zo\u00eb")
+                .withLastName("\u00d1\u00fa\u00f1ez-\u00d8sterg\u00e5rd"));
+        store.putIfAbsent(store.newId(), Rosters.student(random, size + 1).withLastName(""));
+        store.putIfAbsent(store.newId(), Rosters.student(random, size + 2).toBuilder()
+                .birthDay(Student.UNKNOWN_BIRTH_DAY).gender(Gender.UNSPECIFIED).build());
+        // A gap in the IDs, as left by removed students
+        store.remove(size / 2L);
+
+        Map<Long, Student> source = new LinkedHashMap<>();
+
+        for (Map.Entry<Long, Student> entry : store.entries())
+        {
+            source.put(entry.getKey(), entry.getValue());
+        }
+
+        System.out.printf("%d students%n", source.size());
+        boolean passed = true;
+
+        Path current = Files.createDirectories(root.resolve("v" + CURRENT_VERSION)).resolve("students.snapshot");
+        SnapshotFile.write(current, LAST_SEQ, store);
+        passed &= checkMapped("version 4 written", current, CURRENT_VERSION, store.getStudentCounter(), source);
+        passed &= checkEngine("version 4 loaded", current.getParent(), source);
+
+        for (int version = 1; version <= 3; version++)
+        {
+            Path dir = Files.createDirectories(root.resolve("v" + version));
+            Path legacy = dir.resolve("students.snapshot");
+
+            if (version == 1)
+            {
+                writeRows(legacy, store.getStudentCounter(), source);
+            }
+            else
+            {
+                writeColumnar(legacy, version, store.getStudentCounter(), source);
+                passed &= checkMapped("version " + version + " mapped", legacy, version, store.getStudentCounter(),
+                        source);
+            }
+
+            passed &= checkEngine("version " + version + " migrated", dir, source);
+            passed &= checkMapped("version " + version + " rewritten", legacy, CURRENT_VERSION,
+                    store.getStudentCounter(), source);
+        }
+
+        return passed;
+    }
+
+    // Header and every row of the mapped file against the source
+    private static boolean checkMapped(String label, Path path, int version, long counter, Map<Long, Student> source)
+            throws IOException
+    {
+        MappedSnapshot snapshot = MappedSnapshot.open(path);
+        String header = "version " + snapshot.version() + ", seq " + snapshot.lastSeq() + ", counter "
+                + snapshot.studentCounter() + ", " + snapshot.rowCount() + " rows";
+
+        if (snapshot.version() != version || snapshot.lastSeq() != LAST_SEQ || snapshot.studentCounter() != counter
+                || snapshot.rowCount() != source.size())
+        {
+            return check(label, false, header);
+        }
+
+        long mismatched = 0;
+        String first = "";
+
+        for (int row = 0; row < snapshot.rowCount(); row++)
+        {
+            long id = snapshot.id(row);
+            Student student = snapshot.student(row);
+
+            if (!student.equals(source.get(id)))
+            {
+                first = mismatched == 0 ? ", first " + id + ": " + student + " != " + source.get(id) : first;
+                mismatched = mismatched + 1;
+            }
+        }
+
+        return check(label, mismatched == 0, header + ", " + mismatched + " rows differ" + first);
+    }
+
+    // Load a data directory the way the application does and compare the store with the source
+    private static boolean checkEngine(String label, Path dir, Map<Long, Student> source) throws IOException
+    {
+        StudentStore loaded = new StudentStore();
+
+        try (StorageEngine engine = new StorageEngine(dir))
+        {
+            engine.open(loaded);
+        }
+
+        long mismatched = 0;
+
+        for (Map.Entry<Long, Student> entry : source.entrySet())
+        {
+            mismatched += entry.getValue().equals(loaded.get(entry.getKey())) ? 0 : 1;
+        }
+
+        return check(label, mismatched == 0 && loaded.size() == source.size(),
+                loaded.size() + " students, " + mismatched + " differ");
+    }
+
+    // Version 1: magic, version, lastSeq, int counter, row count, then (string ID, text-field student) rows
+    private static void writeRows(Path path, long counter, Map<Long, Student> source) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(1);
+            out.writeLong(LAST_SEQ);
+            out.writeInt((int) counter);
+            out.writeInt(source.size());
+
+            for (Map.Entry<Long, Student> entry : source.entrySet())
+            {
+                Student student = entry.getValue();
+                out.writeUTF(legacyId(entry.getKey(), student));
+                out.writeUTF(student.firstName());
+                out.writeUTF(student.lastName());
+                out.writeUTF(legacyDateOfBirth(student));
+                out.writeUTF(legacyGender(student));
+                out.writeDouble(student.gpaPrev());
+                out.writeInt(student.currentSemester());
+                out.writeUTF(student.program());
+                out.writeInt(student.numCourses());
+            }
+        }
+    }
+
+    // Versions 2 and 3 (see MappedSnapshot): program and gender text share one dictionary, the date of birth is a
+    // third string slot; version 2 has an int counter, no id column and the string ID in a leading slot
+    private static void writeColumnar(Path path, int version, long counter, Map<Long, Student> source)
+            throws IOException
+    {
+        boolean numericIds = version == 3;
+        int rows = source.size();
+        int slots = numericIds ? 3 : 4;
+        int[] strings = new int[rows * slots];
+        int[] program = new int[rows];
+        int[] gender = new int[rows];
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream();
+        DataOutputStream heap = new DataOutputStream(heapBytes);
+        Map<String, Integer> dictionary = new HashMap<>();
+        ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+        DataOutputStream dict = new DataOutputStream(dictBytes);
+        int row = 0;
+
+        for (Map.Entry<Long, Student> entry : source.entrySet())
+        {
+            Student student = entry.getValue();
+            int slot = row * slots;
+
+            if (!numericIds)
+            {
+                strings[slot] = heapString(heap, legacyId(entry.getKey(), student));
+                slot = slot + 1;
+            }
+
+            strings[slot] = heapString(heap, student.firstName());
+            strings[slot + 1] = heapString(heap, student.lastName());
+            strings[slot + 2] = heapString(heap, legacyDateOfBirth(student));
+
+            program[row] = dictionaryCode(dictionary, dict, heap, student.program());
+            gender[row] = dictionaryCode(dictionary, dict, heap, legacyGender(student));
+            row = row + 1;
+        }
+
+        int headerSize = numericIds ? 4 + 4 + 8 + 8 + 4 + 4 + 9 * 8 : 4 + 4 + 8 + 4 + 4 + 4 + 8 * 8;
+        long idOffset = headerSize;
+        long gpaOffset = idOffset + (numericIds ? rows * 8L : 0);
+        long semesterOffset = gpaOffset + rows * 8L;
+        long coursesOffset = semesterOffset + rows * 4L;
+        long programOffset = coursesOffset + rows * 4L;
+        long genderOffset = programOffset + rows * 4L;
+        long stringsOffset = genderOffset + rows * 4L;
+        long dictOffset = stringsOffset + strings.length * 4L;
+        long heapOffset = dictOffset + dictBytes.size();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(version);
+            out.writeLong(LAST_SEQ);
+
+            if (numericIds)
+            {
+                out.writeLong(counter);
+            }
+            else
+            {
+                out.writeInt((int) counter);
+            }
+
+            out.writeInt(rows);
+            out.writeInt(dictionary.size());
+
+            if (numericIds)
+            {
+                out.writeLong(idOffset);
+            }
+
+            for (long offset : new long[] {gpaOffset, semesterOffset, coursesOffset, programOffset, genderOffset,
+                    stringsOffset, dictOffset, heapOffset})
+            {
+                out.writeLong(offset);
+            }
+
+            if (numericIds)
+            {
+                for (long id : source.keySet())
+                {
+                    out.writeLong(id);
+                }
+            }
+
+            for (Student student : source.values())
+            {
+                out.writeDouble(student.gpaPrev());
+            }
+
+            for (Student student : source.values())
+            {
+                out.writeInt(student.currentSemester());
+            }
+
+            for (Student student : source.values())
+            {
+                out.writeInt(student.numCourses());
+            }
+
+            writeInts(out, program);
+            writeInts(out, gender);
+            writeInts(out, strings);
+            dictBytes.writeTo(out);
+            heapBytes.writeTo(out);
+        }
+    }
+
+    // The old "First_Last_counter" form; only the number after the last underscore is kept on migration
+    private static String legacyId(long id, Student student)
+    {
+        return student.firstName() + "_" + student.lastName() + "_" + id;
+    }
+
+    private static String legacyDateOfBirth(Student student)
+    {
+        return student.dateOfBirth() == null ? "" : student.dateOfBirth().toString();
+    }
+
+    private static String legacyGender(Student student)
+    {
+        return student.gender() == Gender.UNSPECIFIED ? "" : student.gender().name().toLowerCase(Locale.ROOT);
+    }
+
+    // Code of the value in the shared dictionary, adding it (and its heap entry) the first time
+    private static int dictionaryCode(Map<String, Integer> dictionary, DataOutputStream dict, DataOutputStream heap,
+            String value) throws IOException
+    {
+        Integer code = dictionary.get(value);
+
+        if (code == null)
+        {
+            code = dictionary.size();
+            dictionary.put(value, code);
+            dict.writeInt(heapString(heap, value));
+        }
+
+        return code;
+    }
+
+    // [u16 length][UTF-8 bytes], returns the entry's offset in the heap
+    private static int heapString(DataOutputStream heap, String value) throws IOException
+    {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int offset = heap.size();
+        heap.writeShort(utf8.length);
+        heap.write(utf8);
+        return offset;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException
+    {
+        for (int value : values)
+        {
+            out.writeInt(value);
+        }
+    }
+
+    private static boolean check(String label, boolean holds, String detail)
+    {
+        System.out.printf("%-28s %s (%s)%n", "check " + label, holds ? "ok" : "FAILED", detail);
+        return holds;
+    }
+
+    private static void delete(Path root) throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root))
+        {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(file);
+            }
+        }
+    }
+}
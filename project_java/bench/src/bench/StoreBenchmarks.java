@@ -0,0 +1,174 @@
+package bench;
+
+import models.AgeRange;
+import models.Student;
+import store.StudentArena;
+import store.StudentStore;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Add / lookup / remove on the student store, and a full age-filter scan
+ */
+final class StoreBenchmarks
+{
+    private StoreBenchmarks()
+    {
+    }
+
+    static List<Benchmark> all()
+    {
+        return List.of(new Lookup(false), new Lookup(true), new AddRemove(), new RemoveReadd(),
+                new AgeScan(true, false), new AgeScan(true, true), new AgeScan(false, true));
+    }
+
+    // One pass over the whole roster counting students aged 20-25, either through entries() (a Student per row)
+    // or through the scan() flyweight that reads only the birth day
+    static final class AgeScan implements Benchmark
+    {
+        private final boolean offHeap;
+        private final boolean flyweight;
+        private final AgeRange ages = AgeRange.of(20, 25, LocalDate.now());
+        private StudentStore store;
+
+        AgeScan(boolean offHeap, boolean flyweight)
+        {
+            this.offHeap = offHeap;
+            this.flyweight = flyweight;
+        }
+
+        @Override
+        public String name()
+        {
+            return "store.ageScan" + (flyweight ? ".view" : ".entries") + (offHeap ? ".offHeap" : "");
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize, offHeap ? new StudentArena() : null);
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            int[] matches = new int[1];
+
+            if (flyweight)
+            {
+                store.scan(view ->
+                {
+                    if (ages.contains(view.birthDay()))
+                    {
+                        matches[0]++;
+                    }
+                });
+            }
+            else
+            {
+                for (Map.Entry<Long, Student> entry : store.entries())
+                {
+                    if (ages.contains(entry.getValue()))
+                    {
+                        matches[0]++;
+                    }
+                }
+            }
+
+            return matches[0];
+        }
+    }
+
+    // get() of a random existing ID, with the records on the heap or in a StudentArena (decoded on every get)
+    static final class Lookup implements Benchmark
+    {
+        private final boolean offHeap;
+        private StudentStore store;
+        private int size;
+        private final Random random = new Random(7);
+
+        Lookup(boolean offHeap)
+        {
+            this.offHeap = offHeap;
+        }
+
+        @Override
+        public String name()
+        {
+            return offHeap ? "store.lookup.offHeap" : "store.lookup";
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize, offHeap ? new StudentArena() : null);
+            size = rosterSize;
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            return store.get(1 + random.nextInt(size));
+        }
+    }
+
+    // Add a new student then remove it again, so the roster size stays fixed
+    static final class AddRemove implements Benchmark
+    {
+        private StudentStore store;
+        private Student student;
+
+        @Override
+        public String name()
+        {
+            return "store.addRemove";
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize);
+            student = Rosters.student(new Random(1), rosterSize);
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            long id = store.newId();
+            store.putIfAbsent(id, student);
+            return store.remove(id);
+        }
+    }
+
+    // Remove an existing student and add it back under the same ID
+    static final class RemoveReadd implements Benchmark
+    {
+        private StudentStore store;
+        private int size;
+
+        @Override
+        public String name()
+        {
+            return "store.removeReadd";
+        }
+
+        @Override
+        public void setup(int rosterSize)
+        {
+            store = Rosters.store(rosterSize);
+            size = rosterSize;
+        }
+
+        @Override
+        public Object run(long i)
+        {
+            long id = 1 + (i % size);
+            Student removed = store.remove(id);
+            store.putIfAbsent(id, removed);
+            return removed;
+        }
+    }
+}
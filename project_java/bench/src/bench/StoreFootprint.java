@@ -0,0 +1,117 @@
+package bench;
+
+import metrics.LatencyHistogram;
+import models.Student;
+import store.StudentArena;
+import store.StudentStore;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * On-heap against off-heap (StudentArena) student store: heap retained, off-heap bytes and GC pauses under load
+ * For every roster size and mode: build the synthetic store, measure the used heap after full GCs, then run
+ * --seconds of a 90% get / 10% re-save mix on one thread and report throughput, the latency tail (a GC pause
+ * shows up as a slow operation) and the collections the JVM made meanwhile. Run it with the heap the roster
+ * would get in production (JAVA_OPTS); the same heap is used for both modes.
+ *
+ * Usage: bench/run.sh store-footprint [--sizes=1000000,3000000] [--seconds=20]
+ */
+public class StoreFootprint
+{
+    public static void main(String[] args)
+    {
+        int[] sizes = {1_000_000, 3_000_000};
+        int seconds = 20;
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--sizes="))
+            {
+                sizes = Arrays.stream(arg.substring("--sizes=".length()).split(","))
+                        .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+            }
+            else if (arg.startsWith("--seconds="))
+            {
+                seconds = Integer.parseInt(arg.substring("--seconds=".length()));
+            }
+        }
+
+        System.out.printf("%-9s %9s %11s %10s %11s %12s %9s %9s %9s %6s %10s%n", "mode", "students", "heap",
+                "B/student", "off-heap", "ops/s", "p99 us", "p99.9 us", "max ms", "GCs", "GC ms");
+
+        for (int size : sizes)
+        {
+            measure("heap", size, null, seconds);
+            measure("off-heap", size, new StudentArena(), seconds);
+        }
+    }
+
+    private static void measure(String mode, int size, StudentArena arena, int seconds)
+    {
+        long before = IndexFootprint.usedAfterGc();
+        StudentStore store = Rosters.store(size, arena);
+        long retained = IndexFootprint.usedAfterGc() - before;
+        long offHeap = arena == null ? 0 : store.arenaStats().reservedBytes();
+
+        Random random = new Random(11);
+        Student update = Rosters.student(random, size);
+        LatencyHistogram latency = new LatencyHistogram();
+        long[] gcBefore = gcTotals();
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long now = start;
+
+        while (now < end)
+        {
+            long id = 1 + random.nextInt(size);
+
+            if (random.nextInt(10) == 0)
+            {
+                store.put(id, update.withGpaPrev(random.nextInt(401) / 100.0));
+            }
+            else if (store.get(id) == null)
+            {
+                throw new IllegalStateException("Lost student " + id);
+            }
+
+            long done = System.nanoTime();
+            latency.record(done - now);
+            now = done;
+        }
+
+        long[] gcAfter = gcTotals();
+        LatencyHistogram.Snapshot sample = latency.snapshot();
+
+        System.out.printf("%-9s %9d %8.1f MB %10.1f %8.1f MB %12.0f %9.2f %9.2f %9.2f %6d %10d%n", mode, size,
+                retained / 1048576.0, (double) retained / size, offHeap / 1048576.0,
+                sample.count() / ((now - start) / 1e9), sample.percentileNanos(99) / 1e3,
+                sample.percentileNanos(99.9) / 1e3, sample.maxNanos() / 1e6, gcAfter[0] - gcBefore[0],
+                gcAfter[1] - gcBefore[1]);
+
+        // Keep the store reachable until measured
+        if (store.size() < 0)
+        {
+            System.out.println(store);
+        }
+    }
+
+    // {collections, milliseconds spent in them} over all collectors
+    private static long[] gcTotals()
+    {
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long count = 0;
+        long millis = 0;
+
+        for (GarbageCollectorMXBean collector : collectors)
+        {
+            count = count + Math.max(0, collector.getCollectionCount());
+            millis = millis + Math.max(0, collector.getCollectionTime());
+        }
+
+        return new long[] {count, millis};
+    }
+}
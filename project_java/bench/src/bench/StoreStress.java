@@ -0,0 +1,324 @@
+package bench;
+
+import models.Student;
+import store.StoreListener;
+import store.StudentArena;
+import store.StudentStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent writers against one StudentStore: no update may be lost, on the heap and off it (StudentArena)
+ * - compare-and-swap writers add one to a random hot record's course count with get + replace, retrying on conflict
+ * - edit-session writers hold the record's edit lock (lockFor) and add one to its semester the same way, as a
+ *   console edit session commits
+ * - add/remove writers add students with newId + putIfAbsent and remove every other one again
+ * All of them run at once on a few hot records, then the final course counts and semesters must equal the
+ * number of successful increments per record, the size must match the adds and removes, and a listener must
+ * have seen every change exactly once, in order (each put replaces the version the listener saw last).
+ * Then a group that re-saves a record, removes it and adds another fails in a listener: the store, the listeners
+ * and (off-heap) the arena's record count must be back where they were.
+ * Fails with a non-zero exit code if a check does not hold.
+ *
+ * Usage: bench/run.sh store-stress [--writers=12] [--records=16] [--ops=20000]
+ */
+public class StoreStress
+{
+    public static void main(String[] args) throws InterruptedException
+    {
+        int writers = 12;
+        int records = 16;
+        int ops = 20_000;
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--writers="))
+            {
+                writers = Integer.parseInt(arg.substring("--writers=".length()));
+            }
+            else if (arg.startsWith("--records="))
+            {
+                records = Integer.parseInt(arg.substring("--records=".length()));
+            }
+            else if (arg.startsWith("--ops="))
+            {
+                ops = Integer.parseInt(arg.substring("--ops=".length()));
+            }
+            else
+            {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        System.out.printf("%d writers, %d hot records, %d operations each%n", writers, records, ops);
+        boolean passed = run("heap", null, writers, records, ops);
+        passed &= run("off-heap", new StudentArena(), writers, records, ops);
+        System.out.println(passed ? "All checks passed." : "Some checks FAILED.");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(String mode, StudentArena arena, int writers, int records, int ops)
+            throws InterruptedException
+    {
+        StudentStore store = new StudentStore(arena);
+        Random random = new Random(3);
+        long[] ids = new long[records];
+
+        for (int r = 0; r < records; r++)
+        {
+            ids[r] = store.newId();
+            store.putIfAbsent(ids[r], Rosters.student(random, r).toBuilder().numCourses(0).currentSemester(0).build());
+        }
+
+        OrderCheck listener = new OrderCheck();
+        store.attach(listener);
+
+        AtomicLongArray courses = new AtomicLongArray(records);
+        AtomicLongArray semesters = new AtomicLongArray(records);
+        AtomicLong conflicts = new AtomicLong();
+        AtomicLong added = new AtomicLong();
+        AtomicLong removed = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++)
+        {
+            int role = w % 3;
+            Random own = new Random(w);
+            threads.add(new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+
+                for (int n = 0; n < ops; n++)
+                {
+                    int r = own.nextInt(records);
+
+                    switch (role)
+                    {
+                        case 0 ->
+                        {
+                            conflicts.addAndGet(increment(store, ids[r], false));
+                            courses.incrementAndGet(r);
+                        }
+                        case 1 ->
+                        {
+                            ReentrantLock lock = store.lockFor(ids[r]);
+                            lock.lock();
+
+                            try
+                            {
+                                conflicts.addAndGet(increment(store, ids[r], true));
+                                semesters.incrementAndGet(r);
+                            }
+                            finally
+                            {
+                                lock.unlock();
+                            }
+                        }
+                        default ->
+                        {
+                            long id = store.newId();
+
+                            if (!store.putIfAbsent(id, Rosters.student(own, n)))
+                            {
+                                failures.incrementAndGet();
+                            }
+
+                            added.incrementAndGet();
+
+                            if (n % 2 == 0)
+                            {
+                                removed.addAndGet(store.remove(id) != null ? 1 : 0);
+                            }
+                        }
+                    }
+                }
+            }, "writer-" + w));
+        }
+
+        long began = System.nanoTime();
+        threads.forEach(Thread::start);
+        start.countDown();
+
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        double seconds = (System.nanoTime() - began) / 1e9;
+        long lostCourses = 0;
+        long lostSemesters = 0;
+        long increments = 0;
+
+        for (int r = 0; r < records; r++)
+        {
+            Student student = store.get(ids[r]);
+            lostCourses += Math.abs(courses.get(r) - student.numCourses());
+            lostSemesters += Math.abs(semesters.get(r) - student.currentSemester());
+            increments += courses.get(r) + semesters.get(r);
+        }
+
+        int distinct = distinctIds(store);
+        long expectedSize = records + added.get() - removed.get();
+        System.out.printf("%-9s %.1f s, %d increments, %d CAS retries, %d added, %d removed%n", mode, seconds,
+                increments, conflicts.get(), added.get(), removed.get());
+
+        boolean passed = check(mode + " course counts", lostCourses == 0, lostCourses + " lost");
+        passed &= check(mode + " semesters", lostSemesters == 0, lostSemesters + " lost");
+        passed &= check(mode + " adds", failures.get() == 0, failures.get() + " new IDs already taken");
+        passed &= check(mode + " size", store.size() == expectedSize && distinct == expectedSize,
+                store.size() + " stored, " + distinct + " iterated, " + expectedSize + " expected");
+        passed &= check(mode + " listener", listener.disorder.get() == 0
+                        && listener.puts.get() == increments + added.get() && listener.removes.get() == removed.get(),
+                listener.puts.get() + " puts, " + listener.removes.get() + " removes, " + listener.disorder.get()
+                        + " out of order");
+        passed &= failedGroup(mode, store, arena);
+        return passed;
+    }
+
+    // Re-save a record, remove it and add another in one group, and fail on the add: every change is reverted
+    private static boolean failedGroup(String mode, StudentStore store, StudentArena arena)
+    {
+        String tripwire = "Fails-The-Group";
+        long id = store.newId();
+        Student original = Rosters.student(new Random(5), 0);
+        store.putIfAbsent(id, original);
+        OrderCheck listener = new OrderCheck();
+        store.attach(listener);
+        store.addListener(new StoreListener()
+        {
+            @Override
+            public void onPut(long changed, Student previous, Student student)
+            {
+                if (student.lastName().equals(tripwire))
+                {
+                    throw new IllegalStateException("tripwire");
+                }
+            }
+
+            @Override
+            public void onRemove(long changed, Student removed)
+            {
+            }
+        });
+
+        long size = store.size();
+        int arenaRecords = arena == null ? 0 : arena.stats().records();
+        boolean failed = false;
+
+        try
+        {
+            store.group(() ->
+            {
+                store.put(id, original.withNumCourses(original.numCourses() + 1));
+                store.remove(id);
+                store.putIfAbsent(store.newId(), original.withLastName(tripwire));
+            });
+        }
+        catch (IllegalStateException e)
+        {
+            failed = true;
+        }
+
+        Student stored = store.get(id);
+        int leaked = arena == null ? 0 : arena.stats().records() - arenaRecords;
+        return check(mode + " failed group", failed && original.equals(stored) && store.size() == size
+                        && original.equals(listener.last.get(id)) && listener.disorder.get() == 0 && leaked == 0,
+                (failed ? "reverted" : "did NOT fail") + ", record "
+                        + (original.equals(stored) ? "restored" : "differs") + ", listener " + (original.equals(listener.last.get(id)) ? "restored" : "differs") + ", "
+                        + (store.size() - size) + " size change, " + leaked + " arena records leaked");
+    }
+
+    // Add one to the course count (or the semester) with compare-and-swap; returns the number of retries
+    private static long increment(StudentStore store, long id, boolean semester)
+    {
+        long retries = 0;
+
+        while (true)
+        {
+            Student current = store.get(id);
+            Student updated = semester ? current.withCurrentSemester(current.currentSemester() + 1)
+                    : current.withNumCourses(current.numCourses() + 1);
+
+            if (store.replace(id, current, updated))
+            {
+                return retries;
+            }
+
+            retries = retries + 1;
+        }
+    }
+
+    private static int distinctIds(StudentStore store)
+    {
+        Set<Long> seen = new HashSet<>();
+
+        for (Map.Entry<Long, Student> entry : store.entries())
+        {
+            seen.add(entry.getKey());
+        }
+
+        return seen.size();
+    }
+
+    private static boolean check(String label, boolean holds, String detail)
+    {
+        System.out.printf("%-28s %s (%s)%n", "check " + label, holds ? "ok" : "FAILED", detail);
+        return holds;
+    }
+
+    // Every re-save must replace the version this listener saw last for the ID; called one change at a time
+    private static final class OrderCheck implements StoreListener
+    {
+        private final Map<Long, Student> last = new HashMap<>();
+        private final AtomicLong puts = new AtomicLong();
+        private final AtomicLong removes = new AtomicLong();
+        private final AtomicLong disorder = new AtomicLong();
+        private boolean attached = false;
+
+        @Override
+        public void onPut(long id, Student previous, Student student)
+        {
+            if (attached)
+            {
+                puts.incrementAndGet();
+                disorder.addAndGet(previous == null ? (last.containsKey(id) ? 1 : 0)
+                        : (previous.equals(last.get(id)) ? 0 : 1));
+            }
+
+            last.put(id, student);
+        }
+
+        @Override
+        public void onRemove(long id, Student removed)
+        {
+            removes.incrementAndGet();
+            disorder.addAndGet(removed.equals(last.remove(id)) ? 0 : 1);
+        }
+
+        @Override
+        public void onAttached()
+        {
+            attached = true;
+        }
+    }
+}
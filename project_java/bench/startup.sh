@@ -0,0 +1,24 @@
+#!/bin/sh
+# Package the application as a jar, record an AppCDS archive of the classes it loads on its way to the login
+# prompt (Main, models, store, persistence, ...), then check the time to the first prompt with and without the
+# archive against the budget (-Dsems.startup.budgetMs, see Main --startup-check)
+# Usage: bench/startup.sh [java options, e.g. -Dsems.dataDir=/srv/sems/data], run from project_java/
+# Afterwards start the console with: java -XX:SharedArchiveFile=out/sems.jsa -jar out/sems.jar
+# JAVA_HOME must point to a JDK 21; an archive only works with the JDK and the jar it was recorded with
+set -e
+cd "$(dirname "$0")/.."
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+JAR="${JAVA_HOME:+$JAVA_HOME/bin/}jar"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+rm -rf out/classes out/sems.jar out/sems.jsa
+mkdir -p out/classes
+"$JAVAC" -d out/classes $(find src -name '*.java')
+"$JAR" --create --file out/sems.jar --main-class Main -C out/classes .
+
+# Training run: the startup path plus the background index build, so those classes are archived as well
+"$JAVA" -XX:ArchiveClassesAtExit=out/sems.jsa "$@" -jar out/sems.jar --startup-check || true
+
+echo "Without the archive:"
+"$JAVA" "$@" -jar out/sems.jar --startup-check || true
+echo "With the archive:"
+exec "$JAVA" -XX:SharedArchiveFile=out/sems.jsa "$@" -jar out/sems.jar --startup-check
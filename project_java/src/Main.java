@@ -1,23 +1,110 @@
+import analytics.GpaSummary;
+import analytics.RosterColumns;
+import analytics.RosterReports;
+import api.StudentHttpServer;
+import auth.AccountStore;
+import auth.Authenticator;
+import auth.LoginThrottle;
+import batch.BatchRunner;
+import cdc.ChangeFeed;
+import enrollment.Enrollments;
+import exporter.StudentExporter;
+import history.RosterHistory;
+import history.RosterSnapshot;
+import importer.BulkImporter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import models.AgeRange;
+import models.Course;
+import models.Gender;
+import models.Programs;
 import models.Student;
-
+import models.StudentId;
+import models.StudentRules;
+import persistence.StorageEngine;
+import query.QueryEngine;
+import store.EditSession;
+import store.NameSearch;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Console-based Student Enrollment Management System
  * Based off of the provided pseudocode: admin login (3 attempts), CRUD methods
- * Uses LinkedHashMap to preserve insertion order when listing students
+ * Students live in a thread-safe StudentStore that preserves insertion order when listing students
  */
 public class Main
 {
     // Data structures/utilities/variables
-    // In-memory store of students keyed by generated ID: "First_Last_counter"
-    private static final Map<String, Student> students = new LinkedHashMap<>();
-    // Counter used to make unique IDs when adding students
-    private static int studentCounter = 1;
+    // Store of students keyed by numeric ID (shown in base-32, see StudentId; the store owns the ID counter)
+    // Records are kept off the heap when started with -Dsems.store.offHeap=true (see StudentArena)
+    private static final StudentStore students = new StudentStore();
+    // Write-ahead log + snapshots behind the store, opened in main()
+    private static final StorageEngine storage = new StorageEngine();
+    // Lookups by program / semester / last name / name prefix, kept current by the store
+    private static final StudentIndexes indexes = new StudentIndexes();
+    // Typo-tolerant name lookups (trigram index), kept current by the store
+    private static final NameSearch names = new NameSearch();
+    // Primitive column copy of the roster for aggregations, kept current by the store
+    private static final RosterColumns columns = new RosterColumns();
+    // GPA / course load / probation reports over the columns, split across the common fork-join pool when large
+    private static final RosterReports reports = new RosterReports(columns);
+    // Ad hoc filters over the store, using the indexes and columns above
+    private static final QueryEngine queries = new QueryEngine(students, indexes, columns);
+    // Every recent version of the roster (structurally shared), for point-in-time reads and diffs; not in off-heap mode
+    private static final RosterHistory history = new RosterHistory();
+    // Admin accounts (hashed passwords) and login throttling, opened in main()
+    private static Authenticator authenticator;
+    // HTTP API, only when started with --http
+    private static StudentHttpServer server;
+    // Course catalog and who is enrolled where, opened in main()
+    private static Enrollments enrollments;
+    // Change-data-capture stream of the store, only with -Dsems.cdc=true
+    private static ChangeFeed changes;
+    // Prometheus text dump of the metrics; rewritten every sems.metrics.dumpSeconds when that is set
+    private static final Path METRICS_FILE = Paths.get(System.getProperty("sems.metrics.file",
+            Paths.get(System.getProperty("sems.dataDir", "data"), "metrics.prom").toString()));
+    private static ScheduledExecutorService metricsDumper;
+    // Build indexes in the background while the console shows the login prompt (-Dsems.fastStart=false to wait)
+    private static final boolean FAST_START = !"false".equalsIgnoreCase(System.getProperty("sems.fastStart"));
+    // Time from launch to the login prompt that --startup-check accepts and the console stays quiet about
+    private static final long STARTUP_BUDGET_MILLIS = Long.getLong("sems.startup.budgetMs", 1000);
+    private static Thread indexBuild;
+    private static volatile long firstPromptMillis = -1;
     // Scanner input for the entire app
     private static final Scanner input = new Scanner(System.in);
+    // Buffered console writer for listings (flushed after each listing, never closed)
+    private static final Writer console = StudentExporter.consoleWriter();
+    // Rows per page when browsing
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    // resolveStudentId result when it listed candidates instead: a name several students share, or suggestions
+    private static final long CANDIDATES_LISTED = -2;
+    // "Did you mean" suggestions shown when an ID or name matches nobody
+    private static final int SUGGESTIONS = 5;
+    // Commit times in the history menu, local time
+    private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     // Prompt helper - prompts for a line and return the trimmed user input
     // Use this for required inputs where blank is not meaningful
@@ -74,26 +161,31 @@ public class Main
 
     // Edit helpers
     // Generic field editor - shows the current value and lets the user enter a new value or leave blank to skip
-    private static void editFieldString(String fieldPrompt, Supplier<String> getter, Consumer<String> setter)
+    // Returns the edited record, or the same record if nothing changed
+    private static Student editFieldString(Student student, String fieldPrompt, Function<Student, String> getter,
+                                           BiFunction<Student, String, Student> wither)
     {
-        String current = getter.get();
+        String current = getter.apply(student);
         String newVal = promptLineAllowBlank(fieldPrompt + " (current: " + current + "): ");
 
         if (!newVal.isBlank())
         {
-            setter.accept(newVal.trim());
             System.out.println("Field updated.");
+            return wither.apply(student, newVal.trim());
         }
         else
         {
             System.out.println("No changes made.");
+            return student;
         }
     }
 
     // Generic int editor - shows the current value and lets the user enter a new value or leave blank to skip
-    private static void editFieldInt(String fieldPrompt, Supplier<Integer> getter, Consumer<Integer> setter)
+    // Returns the edited record, or the same record if nothing changed
+    private static Student editFieldInt(Student student, String fieldPrompt, Function<Student, Integer> getter,
+                                       BiFunction<Student, Integer, Student> wither)
     {
-        String current = String.valueOf(getter.get());
+        String current = String.valueOf(getter.apply(student));
         String line = promptLineAllowBlank(fieldPrompt + " (current: " + current + "): ");
 
         if (!line.isBlank())
@@ -101,8 +193,8 @@ public class Main
             try
             {
                 int val = Integer.parseInt(line.trim());
-                setter.accept(val);
                 System.out.println("Field updated.");
+                return wither.apply(student, val);
             }
             catch (NumberFormatException e)
             {
@@ -113,12 +205,15 @@ public class Main
         {
             System.out.println("No changes made.");
         }
+
+        return student;
     }
 
     // Specialized GPA editor with range validation and "blank to skip" behavior
-    private static void editGPA(Student student)
+    // Returns the edited record, or the same record if the GPA was not changed
+    private static Student editGPA(Student student)
     {
-        System.out.println("Enter GPA (0.0 - 4.0), leave blank to skip. Current GPA: " + student.getGpaPrev());
+        System.out.println("Enter GPA (0.0 - 4.0), leave blank to skip. Current GPA: " + student.gpaPrev());
         String newGpa = promptLineAllowBlank("> ");
 
         if (!newGpa.isBlank())
@@ -127,10 +222,10 @@ public class Main
             {
                 double number = Double.parseDouble(newGpa.trim());
 
-                if (number >= 0.0 && number <= 4.0)
+                if (StudentRules.isValidGpa(number))
                 {
-                    student.setGpaPrev(number);
                     System.out.println("GPA updated.");
+                    return student.withGpaPrev(number);
                 }
                 else
                 {
@@ -148,15 +243,102 @@ public class Main
         {
             System.out.println("No changes made.");
         }
+
+        return student;
+    }
+
+    // Date of birth editor: the new value must be a real YYYY-MM-DD date
+    // Returns the edited record, or the same record if the date was not changed
+    private static Student editDateOfBirth(Student student)
+    {
+        LocalDate current = student.dateOfBirth();
+        String line = promptLineAllowBlank("Enter new date of birth (YYYY-MM-DD) (current: " +
+                (current == null ? "unknown" : current) + "): ");
+
+        if (line.isBlank())
+        {
+            System.out.println("No changes made.");
+            return student;
+        }
+
+        LocalDate dateOfBirth = StudentRules.parseDateOfBirth(line.trim());
+
+        if (dateOfBirth == null)
+        {
+            System.out.println("Invalid date. Use YYYY-MM-DD. No changes made.");
+            return student;
+        }
+
+        System.out.println("Field updated.");
+        return student.withDateOfBirth(dateOfBirth);
+    }
+
+    // Gender editor: F, M, X or U
+    // Returns the edited record, or the same record if the gender was not changed
+    private static Student editGender(Student student)
+    {
+        String line = promptLineAllowBlank("Enter gender (F, M, X or U) (current: " + student.gender().code() + "): ");
+
+        if (line.isBlank())
+        {
+            System.out.println("No changes made.");
+            return student;
+        }
+
+        try
+        {
+            Gender gender = Gender.parse(line);
+            System.out.println("Field updated.");
+            return student.withGender(gender);
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("Invalid gender. No changes made.");
+            return student;
+        }
+    }
+
+    // Course count editor with range validation (0 - 12), similar to Add Student
+    // Returns the edited record, or the same record if the count was not changed
+    private static Student editNumCourses(Student student)
+    {
+        String current = String.valueOf(student.numCourses());
+        String line = promptLineAllowBlank("Enter new number of courses (0 - 12) (current: " + current + "): ");
+
+        if (!line.isBlank())
+        {
+            try
+            {
+                int val = Integer.parseInt(line.trim());
+
+                if (StudentRules.isValidNumCourses(val))
+                {
+                    System.out.println("Field updated.");
+                    return student.withNumCourses(val);
+                }
+                else
+                {
+                    System.out.println("Invalid range (0 - 12). No change made.");
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                System.out.println("Invalid integer. No changes made.");
+            }
+        }
+        else
+        {
+            System.out.println("No changes made.");
+        }
+
+        return student;
     }
 
     // Admin login - login up to 3 attempts
-    // Usernames and passwords are parallel arrays
+    // Credentials are checked by the Authenticator (hashed accounts file, throttled per source)
     // Returns true on success, false after 3 failures
     private static boolean adminLogin()
     {
-        String[] usernames = {"Mark", "Daniel", "Ethan", "Donald"};
-        String[] passwords = {"mark123", "daniel678", "ethan999", "donald345"};
         boolean loggedIn = false;
         int attempt = 0;
 
@@ -167,14 +349,20 @@ public class Main
             String username = promptLine("Enter username: ");
             String password = promptLine("Enter password: ");
 
-            // Validate credentials (index-matched)
-            for (int i = 0; i < usernames.length; i++)
+            try
+            {
+                authenticator.authenticate(username, password, "console");
+
+                // Logged in successful
+                System.out.println("Logged in successfully. Welcome " + username);
+                return true;
+            }
+            catch (Authenticator.AuthenticationException e)
             {
-                if (username.equals(usernames[i]) && password.equals(passwords[i]))
+                if (e.throttled())
                 {
-                    // Logged in successful
-                    System.out.println("Logged in successfully. Welcome " + username);
-                    return true;
+                    System.out.println(e.getMessage());
+                    return false;
                 }
             }
 
@@ -224,68 +412,54 @@ public class Main
         // Shadow the previous method by redefining with the correct storing prompt
     }
 
-    /*private static boolean adminLoginExact()
+    // Add student
+    private static void addStudent()
     {
-        String[] usernames = {"Mark", "Daniel", "Ethan", "Donald"};
-        String[] passwords = {"mark123", "daniel678", "ethan999", "donald345"};
-        boolean loggedIn = false;
-        int attempt = 0;
+        System.out.println("=== Add New Student ===");
+        Student.Builder student = Student.builder();
 
-        System.out.println("=== SAIT Enrollment System Login ===");
+        // Read required fields
+        student.firstName(promptLine("Enter first name: "));
+        student.lastName(promptLine("Enter last name: "));
 
-        while (attempt < 3 && !loggedIn)
+        // Date of birth must be a real date in YYYY-MM-DD format
+        while (true)
         {
-            String username = promptLine("Enter username: ", true);
-            String password = promptLine("Enter password: ");
+            LocalDate dateOfBirth = StudentRules.parseDateOfBirth(promptLine("Enter date of birth (YYYY-MM-DD): "));
 
-            for (int i = 0; i < usernames.length; i++)
+            if (dateOfBirth != null)
             {
-                if (username.equals(usernames[i]) && password.equals(passwords[i]))
-                {
-                    loggedIn = true;
-                    break;
-                }
+                student.dateOfBirth(dateOfBirth);
+                break;
             }
-
-            if (!loggedIn)
+            else
             {
-                System.out.println("Invalid login credentials. Please try again (Attempt " + (attempt + 1) + " of 3 ).");
-                attempt = attempt + 1;
+                System.out.println("Invalid date. Use YYYY-MM-DD.");
             }
         }
 
-        if (loggedIn)
-        {
-            System.out.println("Login successful. Welcome " + lastEnteredUsername);
-            return true;
-        }
-        else
+        // Gender is one of the fixed codes
+        while (true)
         {
-            System.out.println("Too many failed attempts. Access denied.");
-            return false;
+            try
+            {
+                student.gender(Gender.parse(promptLine("Enter gender (F, M, X or U): ")));
+                break;
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.out.println("Invalid gender. Use F, M, X or U.");
+            }
         }
-    }*/
-
-    // Add student
-    private static void addStudent()
-    {
-        System.out.println("=== Add New Student ===");
-        Student student = new Student();
-
-        // Read required fields
-        student.setFirstName(promptLine("Enter first name: "));
-        student.setLastName(promptLine("Enter last name: "));
-        student.setDateOfBirth(promptLine("Enter date of birth (YYYY-MM-DD): "));
-        student.setGender(promptLine("Enter gender: "));
 
         // GPA with range validation (0.0 - 4.0)
         while (true)
         {
             double gpa = promptDouble("Enter GPA (0.0 - 4.0): ");
 
-            if (gpa >= 0.0 && gpa <= 4.0)
+            if (StudentRules.isValidGpa(gpa))
             {
-                student.setGpaPrev(gpa);
+                student.gpaPrev(gpa);
                 break;
             }
             else
@@ -295,17 +469,17 @@ public class Main
         }
 
         // Current semester: free-form integer per pseudocode
-        student.setCurrentSemester(promptInt("Enter current semester number: "));
-        student.setProgram(promptLine("Enter program name: "));
+        student.currentSemester(promptInt("Enter current semester number: "));
+        student.program(promptLine("Enter program name: "));
 
         // Course count with range validation (0 - 12)
         while (true)
         {
             int number = promptInt("Enter number of courses (0 - 12): ");
 
-            if (number >= 0 && number <= 12)
+            if (StudentRules.isValidNumCourses(number))
             {
-                student.setNumCourses(number);
+                student.numCourses(number);
                 break;
             }
             else
@@ -314,48 +488,139 @@ public class Main
             }
         }
 
-        // Generate unique ID: First_Last_counter
-        String id = student.getFirstName() + "_" + student.getLastName() + "_" + studentCounter;
-        studentCounter = studentCounter + 1;
+        // Generate unique ID from the counter; IDs are never reused, so this cannot collide
+        long id = students.newId();
 
-        // Prevent accidental overwrite if same ID already exists
-        if (students.containsKey(id))
+        // Save and confirm
+        students.putIfAbsent(id, student.build());
+        System.out.println("Student added successfully with ID: " + StudentId.format(id));
+    }
+
+    // Resolve what the admin typed to a student ID
+    // Accepts an ID (base-32, or the old First_Last_counter form) or an exact "First Last" name. Words such as
+    // "Bob" are valid base-32 too, so unless the text looks like an ID (StudentId.looksLikeId) names come first.
+    // Returns StudentId.INVALID if nothing matches, or CANDIDATES_LISTED after listing the students sharing the name
+    // or, when nothing matched exactly, the closest names
+    private static long resolveStudentId(String text)
+    {
+        long id = StudentId.parse(text);
+        boolean knownId = id != StudentId.INVALID && students.containsKey(id);
+
+        if (knownId && StudentId.looksLikeId(text))
         {
-            System.out.println("Error: A student with this name already exists. Try again.");
-            return;
+            return id;
         }
 
-        // Save and confirm
-        students.put(id, student);
-        System.out.println("Student added successfully with ID: " + id);
+        List<Long> matches = indexes.findByFullName(text);
+
+        if (matches.size() == 1)
+        {
+            return matches.get(0);
+        }
+
+        if (matches.size() > 1)
+        {
+            System.out.println("Several students have this name. Please use one of these IDs:");
+
+            for (long match : matches)
+            {
+                printStudent(match, students.get(match));
+            }
+
+            return CANDIDATES_LISTED;
+        }
+
+        // No such name: an all-letter ID after all
+        if (knownId)
+        {
+            return id;
+        }
+
+        // Did you mean: a mistyped name, or an old-style First_Last_counter ID whose name part is close
+        List<NameSearch.Match> suggestions = names.search(text.replaceFirst("_\\d+$", ""), SUGGESTIONS, students);
+
+        if (suggestions.isEmpty())
+        {
+            return StudentId.INVALID;
+        }
+
+        System.out.println("No student matches \"" + text.trim() + "\". Did you mean:");
+
+        for (NameSearch.Match match : suggestions)
+        {
+            printStudent(match.id(), students.get(match.id()));
+        }
+
+        return CANDIDATES_LISTED;
     }
 
     // Modify student
     private static void modifyStudent()
     {
         System.out.println("=== Modify Student ===");
-        String id = promptLine("Enter student ID: ");
+        long id = resolveStudentId(promptLine("Enter student ID or full name: "));
+
+        if (id == CANDIDATES_LISTED)
+        {
+            return;
+        }
 
         // Validate ID exists
-        if (!students.containsKey(id))
+        ReentrantLock lock = students.lockFor(id);
+
+        if (lock == null)
         {
             System.out.println("Error: No student with this ID.");
             return;
         }
 
-        Student student = students.get(id);
+        // Hold the record's lock for the whole session so other admins cannot edit or remove it meanwhile
+        if (!lock.tryLock())
+        {
+            System.out.println("Error: This student is being edited in another session. Try again later.");
+            return;
+        }
+
+        try
+        {
+            Student student = students.get(id);
+
+            // Removed (or replaced) by another session before we got the lock
+            if (student == null || students.lockFor(id) != lock)
+            {
+                System.out.println("Error: No student with this ID.");
+                return;
+            }
+
+            editStudent(id, student);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Edit session for one student; the caller holds the record's lock
+    // Edits are collected in an EditSession (undo/redo) and saved once, when the admin exits with Q, with a
+    // compare-and-swap against the version the session started from; D leaves without saving anything
+    private static void editStudent(long id, Student original)
+    {
+        EditSession session = new EditSession(students, id, original);
         String choice;
 
         // Show a brief summary of the current record
         System.out.println("Current Record:");
-        System.out.println(student.getFirstName() + " " + student.getLastName() + " | " + student.getProgram() +
-                " | GPA: " + student.getGpaPrev());
+        System.out.println(original.firstName() + " " + original.lastName() + " | " + original.program() +
+                " | GPA: " + original.gpaPrev());
 
-        // Edit loop: continue until user chooses Q to exit
+        // Edit loop: continue until user chooses Q (save) or D (discard)
         do
         {
+            Student student = session.draft();
+            List<String> pending = session.pending();
             System.out.println();
-            System.out.println("Select what to edit:");
+            System.out.println("Select what to edit" + (pending.isEmpty() ? "" : " (unsaved: "
+                    + String.join(", ", pending) + ")") + ":");
             System.out.println("1. First Name");
             System.out.println("2. Last Name");
             System.out.println("3. Date of Birth");
@@ -364,90 +629,130 @@ public class Main
             System.out.println("6. Current Semester");
             System.out.println("7. Program");
             System.out.println("8. Number of Courses");
-            System.out.println("Q. Exit");
-            String raw = promptLine("");
-
-            choice = raw;
+            System.out.println("U. Undo" + (session.canUndo() ? "" : " (nothing to undo)"));
+            System.out.println("R. Redo" + (session.canRedo() ? "" : " (nothing to redo)"));
+            System.out.println("D. Discard Changes and Exit");
+            System.out.println("Q. Save and Exit");
+            choice = promptLine("").toUpperCase(Locale.ROOT);
 
             switch (choice)
             {
-                case "1" -> editFieldString("Enter new first name", student::getFirstName, student::setFirstName);
-                case "2" -> editFieldString("Enter new last name", student::getLastName, student::setLastName);
-                case "3" -> editFieldString("Enter new date of birth (YYYY-MM-DD)", student::getDateOfBirth,
-                        student::setDateOfBirth);
-                case "4" -> editFieldString("Enter gender", student::getGender, student::setGender);
-                case "5" -> editGPA(student);
-                case "6" -> editFieldInt("Enter new current semester", student::getCurrentSemester, student::setCurrentSemester);
-                case "7" -> editFieldString("Enter new program name", student::getProgram, student::setProgram);
-                case "8" ->
-                {
-                    // Special-case with range validation, similar to Add Student
-                    String current = String.valueOf(student.getNumCourses());
-                    String line = promptLineAllowBlank("Enter new number of courses (0 - 12) (current: " + current + "): ");
-
-                    if (!line.isBlank())
-                    {
-                        try
-                        {
-                            int val = Integer.parseInt(line.trim());
-
-                            if (val >= 0 && val <= 12)
-                            {
-                                student.setNumCourses(val);
-                                System.out.println("Field updated.");
-                            }
-                            else
-                            {
-                                System.out.println("Invalid range (0 - 12). No change made.");
-                            }
-                        }
-                        catch (NumberFormatException e)
-                        {
-                            System.out.println("Invalid integer. No changes made.");
-                        }
-                    }
-                    else
-                    {
-                        System.out.println("No changes made.");
-                    }
-                }
-                case "Q", "q" -> System.out.println("Finished editing.");
-                default ->
+                case "1" -> session.edit(editFieldString(student, "Enter new first name", Student::firstName,
+                        Student::withFirstName));
+                case "2" -> session.edit(editFieldString(student, "Enter new last name", Student::lastName,
+                        Student::withLastName));
+                case "3" -> session.edit(editDateOfBirth(student));
+                case "4" -> session.edit(editGender(student));
+                case "5" -> session.edit(editGPA(student));
+                case "6" -> session.edit(editFieldInt(student, "Enter new current semester", Student::currentSemester,
+                        Student::withCurrentSemester));
+                case "7" -> session.edit(editFieldString(student, "Enter new program name", Student::program,
+                        Student::withProgram));
+                case "8" -> session.edit(editNumCourses(student));
+                case "U" -> printStep("Undone", session.undo(), "Nothing to undo.");
+                case "R" -> printStep("Redone", session.redo(), "Nothing to redo.");
+                case "D" ->
                 {
-                    // Guard against invalid choices while staying in the loop
-                    if (!choice.equalsIgnoreCase("Q"))
-                    {
-                        System.out.println("Invalid choice. Please try again.");
-                    }
+                    session.discard();
+                    System.out.println("Changes discarded.");
                 }
-
+                case "Q" -> System.out.println("Finished editing.");
+                default -> System.out.println("Invalid choice. Please try again.");
             }
         }
-        while (!choice.equalsIgnoreCase("Q"));
+        while (!choice.equals("Q") && !choice.equals("D"));
+
+        List<String> changes = session.pending();
+
+        if (choice.equals("D"))
+        {
+            return;
+        }
+
+        if (changes.isEmpty())
+        {
+            System.out.println("No changes made.");
+        }
+        else if (session.commit())
+        {
+            System.out.println("Student record updated (" + String.join(", ", changes) + ").");
+        }
+        else
+        {
+            System.out.println("Error: This student was changed in another session. Your changes were not saved.");
+        }
+    }
+
+    private static void printStep(String label, List<EditSession.Change> step, String none)
+    {
+        if (step.isEmpty())
+        {
+            System.out.println(none);
+            return;
+        }
+
+        for (EditSession.Change change : step)
+        {
+            boolean undone = label.equals("Undone");
+            System.out.println(label + ": " + change.field() + (undone ? " back to " : " set to ")
+                    + fieldText(change.field(), undone ? change.before() : change.after()) + ".");
+        }
+    }
 
-        // Re-save the record
-        students.put(id, student);
-        System.out.println("Student record updated.");
+    // A value from an EditSession change as the admin typed it
+    private static String fieldText(String field, Object value)
+    {
+        return switch (field)
+        {
+            case "dateOfBirth" -> (Integer) value == Student.UNKNOWN_BIRTH_DAY ? "unknown"
+                    : LocalDate.ofEpochDay((Integer) value).toString();
+            case "gender" -> ((Gender) value).code();
+            case "program" -> Programs.name((Integer) value);
+            default -> String.valueOf(value);
+        };
     }
 
     // Remove student
     private static void removeStudent()
     {
         System.out.println("=== Remove Student ===");
-        String id = promptLine("Enter student ID: ");
+        long id = resolveStudentId(promptLine("Enter student ID or full name: "));
+
+        if (id == CANDIDATES_LISTED)
+        {
+            return;
+        }
 
         if (students.containsKey(id))
         {
             String confirm = promptLine("Are you sure you want to remove this student? [Y/N] ");
+            ReentrantLock lock = students.lockFor(id);
 
-            if (confirm.equalsIgnoreCase("Y"))
+            if (!confirm.equalsIgnoreCase("Y"))
             {
-                students.remove(id);
-                System.out.println("Student removed.");
+                System.out.println("Action cancelled.");
+            }
+            else if (lock == null)
+            {
+                // Removed by another session while confirming
+                System.out.println("Student not found.");
+            }
+            else if (!lock.tryLock())
+            {
+                // Do not wait for another admin's edit session to finish
+                System.out.println("Error: This student is being edited in another session. Try again later.");
             }
             else
             {
-                System.out.println("Action cancelled.");
+                try
+                {
+                    students.remove(id);
+                    System.out.println("Student removed.");
+                }
+                finally
+                {
+                    lock.unlock();
+                }
             }
         }
         else
@@ -467,65 +772,1330 @@ public class Main
             return;
         }
 
-        // Iterate in insertion order (LinkedHashMap)
-        for (Map.Entry<String, Student> entry : students.entrySet())
+        // Iterate in insertion order, streaming rows through one buffered writer
+        long start = Metrics.start();
+
+        try
         {
-            String id = entry.getKey();
-            Student student = entry.getValue();
+            StudentExporter listing = new StudentExporter(console, StudentExporter.Format.LISTING);
+
+            for (Map.Entry<Long, Student> entry : students.entries())
+            {
+                listing.write(entry.getKey(), entry.getValue());
+            }
 
-            System.out.println(id + " | " + student.getFirstName() + " " + student.getLastName() + " | " + student.getDateOfBirth() +
-                    " | " + student.getGender() + " | GPA: " + student.getGpaPrev() + " | Semester: " + student.getCurrentSemester() +
-                    " | Program: " + student.getProgram() + " | Courses: " + student.getNumCourses());
+            listing.flush();
+            Metrics.record(Metrics.Operation.LIST, start);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
         }
     }
 
-    // Main menu
-    private static void mainMenu()
+    // Filter, sort and limit with a one-line query (see Query for the syntax)
+    private static void queryStudents()
     {
-        System.out.println("=== Welcome to Student Enrollment Management System ===");
-
-        // Require successful login; exit early upon failure
-        if (!adminLogin())
+        System.out.println("=== Query Students ===");
+        System.out.println("Fields: firstName, lastName, dateOfBirth, age, gender, gpa, semester, program, courses");
+        System.out.println("Example: gpa < 2.0 AND semester >= 3 AND program = 'Software Development' " +
+                "ORDER BY gpa LIMIT 10");
+        String text = promptLine("Query: ");
+        long start = System.nanoTime();
+        QueryEngine.Execution execution;
+
+        try
+        {
+            execution = queries.execute(text);
+        }
+        catch (IllegalArgumentException e)
         {
+            System.out.println("Invalid query: " + e.getMessage());
             return;
         }
 
-        String choice;
+        long rows = 0;
 
-        // Main menu loop
-        do
+        try
         {
-            System.out.println();
-            System.out.println("1. Add Student");
-            System.out.println("2. Modify Student");
-            System.out.println("3. Remove Student");
-            System.out.println("4. List of All Students");
-            System.out.println("Q. Quit");
-
-            choice = promptLine("");
+            StudentExporter listing = new StudentExporter(console, StudentExporter.Format.LISTING);
 
-            switch (choice)
+            for (Iterator<Map.Entry<Long, Student>> it = execution.rows().iterator(); it.hasNext(); )
             {
-                case "1" -> addStudent();
-                case "2" -> modifyStudent();
-                case "3" -> removeStudent();
-                case "4" -> listStudents();
-                case "Q", "q" -> System.out.println("System shutting down... Goodbye.");
-                default ->
-                {
-                    if (!choice.equalsIgnoreCase("Q"))
-                    {
-                        System.out.println("Invalid choice. Please try again.");
-                    }
-                }
+                Map.Entry<Long, Student> row = it.next();
+                listing.write(row.getKey(), row.getValue());
+                rows++;
             }
+
+            listing.flush();
         }
-        while (!choice.equalsIgnoreCase("Q"));
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        System.out.println(rows + " student(s) found (" + execution.plan() + ", " +
+                (System.nanoTime() - start) / 1_000_000 + " ms).");
     }
 
-    public static void main(String[] args)
+    // Whole-roster reports; each prints how long it took and whether it ran in parallel
+    private static void showReports()
     {
-        // Entry point
-        mainMenu();
+        System.out.println("=== Reports ===");
+        System.out.println("1. GPA by Program");
+        System.out.println("2. GPA by Semester");
+        System.out.println("3. Course Load by Program");
+        System.out.println("4. Course Load by Semester");
+        System.out.println("5. Academic Probation (GPA below " + RosterReports.PROBATION_GPA + ")");
+        String choice = promptLine("");
+
+        switch (choice)
+        {
+            case "1" -> printGpaReport(reports.gpaBy(RosterColumns.GroupBy.PROGRAM));
+            case "2" -> printGpaReport(reports.gpaBy(RosterColumns.GroupBy.SEMESTER));
+            case "3" -> printCourseLoadReport(reports.courseLoadBy(RosterColumns.GroupBy.PROGRAM));
+            case "4" -> printCourseLoadReport(reports.courseLoadBy(RosterColumns.GroupBy.SEMESTER));
+            case "5" -> printProbationReport(reports.probation(RosterReports.PROBATION_GPA));
+            default -> System.out.println("Invalid choice.");
+        }
+    }
+
+    private static void printGpaReport(RosterReports.Report<Map<String, GpaSummary>> report)
+    {
+        System.out.println(report.title());
+        System.out.printf("%-28s %8s %6s %6s %6s %6s %6s %6s%n", "Group", "Students", "Mean", "Min", "P25", "Median",
+                "P90", "Max");
+
+        for (Map.Entry<String, GpaSummary> group : report.result().entrySet())
+        {
+            printGpaRow(group.getKey(), group.getValue());
+        }
+
+        RosterReports.Report<GpaSummary> overall = reports.gpaOverall();
+        printGpaRow("All students", overall.result());
+        System.out.println("(" + report.timing() + "; overall " + overall.timing() + ")");
+    }
+
+    private static void printGpaRow(String group, GpaSummary gpa)
+    {
+        System.out.printf("%-28.28s %8d %6.2f %6.2f %6.2f %6.2f %6.2f %6.2f%n", group, gpa.count(), gpa.mean(),
+                gpa.min(), gpa.percentile(25), gpa.median(), gpa.percentile(90), gpa.max());
+    }
+
+    private static void printCourseLoadReport(RosterReports.Report<Map<String, long[]>> report)
+    {
+        System.out.println(report.title() + " (students per number of courses)");
+        StringBuilder header = new StringBuilder(String.format("%-28s", "Group"));
+
+        for (int courses = 0; courses <= StudentRules.MAX_COURSES; courses++)
+        {
+            header.append(String.format(" %5d", courses));
+        }
+
+        System.out.println(header);
+
+        for (Map.Entry<String, long[]> group : report.result().entrySet())
+        {
+            StringBuilder line = new StringBuilder(String.format("%-28.28s", group.getKey()));
+
+            for (long count : group.getValue())
+            {
+                line.append(String.format(" %5d", count));
+            }
+
+            System.out.println(line);
+        }
+
+        System.out.println("(" + report.timing() + ")");
+    }
+
+    private static void printProbationReport(RosterReports.Report<List<RosterReports.ProbationEntry>> report)
+    {
+        System.out.println(report.title());
+
+        for (RosterReports.ProbationEntry entry : report.result())
+        {
+            Student student = students.get(entry.id());
+            String name = student == null ? "" : student.firstName() + " " + student.lastName();
+            System.out.printf("%-13s %-32.32s GPA: %.2f | Semester: %d | Program: %s%n", StudentId.format(entry.id()),
+                    name, entry.gpa(), entry.semester(), entry.program());
+        }
+
+        System.out.println(report.result().size() + " student(s) on probation (" + report.timing() + ").");
+    }
+
+    // Course catalog and enrollments
+    private static void manageCourses()
+    {
+        System.out.println("=== Courses ===");
+        System.out.println("1. List Courses");
+        System.out.println("2. Add or Change Course");
+        System.out.println("3. Enroll Student");
+        System.out.println("4. Drop Course");
+        System.out.println("5. Courses of a Student");
+        System.out.println("6. Course Roster");
+        String choice = promptLine("");
+
+        try
+        {
+            switch (choice)
+            {
+                case "1" -> listCourses();
+                case "2" -> putCourse();
+                case "3" -> enrollStudent();
+                case "4" -> dropCourse();
+                case "5" -> showStudentCourses();
+                case "6" -> showRoster();
+                default -> System.out.println("Invalid choice.");
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void listCourses()
+    {
+        List<Course> courses = enrollments.courses();
+
+        if (courses.isEmpty())
+        {
+            System.out.println("The catalog is empty.");
+            return;
+        }
+
+        for (Course course : courses)
+        {
+            System.out.printf("%-16s %-40.40s %5d / %d seats taken%n", course.code(), course.title(),
+                    enrollments.enrolled(course.code()), course.capacity());
+        }
+    }
+
+    // A new course needs every field; for an existing one, blank keeps the current title or capacity
+    private static void putCourse()
+    {
+        String code = Course.normalizeCode(promptLine("Enter course code: "));
+        Course existing = enrollments.course(code);
+        String title;
+        int capacity;
+
+        if (existing == null)
+        {
+            title = promptLine("Enter title: ");
+            capacity = promptInt("Enter capacity: ");
+        }
+        else
+        {
+            System.out.println("Changing " + existing.code() + " (" + existing.title() + ", " + existing.capacity()
+                    + " seats). Leave blank to keep a value.");
+            String newTitle = promptLineAllowBlank("New title: ").trim();
+            title = newTitle.isEmpty() ? existing.title() : newTitle;
+            String newCapacity = promptLineAllowBlank("New capacity: ").trim();
+
+            try
+            {
+                capacity = newCapacity.isEmpty() ? existing.capacity() : Integer.parseInt(newCapacity);
+            }
+            catch (NumberFormatException e)
+            {
+                System.out.println("Error: Capacity must be a whole number.");
+                return;
+            }
+        }
+
+        try
+        {
+            enrollments.putCourse(new Course(code, title, capacity));
+            System.out.println(existing == null ? "Course added." : "Course updated.");
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not save the catalog: " + e.getMessage());
+        }
+    }
+
+    private static void enrollStudent()
+    {
+        long id = promptStudent();
+
+        if (id < 0)
+        {
+            return;
+        }
+
+        String code = promptLine("Enter course code: ");
+
+        switch (enrollments.enroll(id, code))
+        {
+            case ENROLLED -> System.out.println("Enrolled.");
+            case ALREADY_ENROLLED -> System.out.println("The student is already enrolled in this course.");
+            case COURSE_FULL -> System.out.println("The course is full.");
+            case COURSE_LIMIT -> System.out.println("The student is already in " + StudentRules.MAX_COURSES
+                    + " courses.");
+        }
+    }
+
+    private static void dropCourse()
+    {
+        long id = promptStudent();
+
+        if (id >= 0)
+        {
+            String code = promptLine("Enter course code: ");
+            System.out.println(enrollments.drop(id, code) ? "Course dropped." : "The student is not in this course.");
+        }
+    }
+
+    private static void showStudentCourses()
+    {
+        long id = promptStudent();
+
+        if (id < 0)
+        {
+            return;
+        }
+
+        List<Course> courses = enrollments.coursesOf(id);
+
+        for (Course course : courses)
+        {
+            System.out.printf("%-16s %s%n", course.code(), course.title());
+        }
+
+        System.out.println(courses.size() + " course(s).");
+    }
+
+    private static void showRoster()
+    {
+        Course course = enrollments.course(promptLine("Enter course code: "));
+
+        if (course == null)
+        {
+            System.out.println("No such course.");
+            return;
+        }
+
+        long[] roster = enrollments.roster(course.code());
+
+        for (long id : roster)
+        {
+            Student student = students.get(id);
+
+            if (student != null)
+            {
+                printStudent(id, student);
+            }
+        }
+
+        System.out.println(roster.length + " of " + course.capacity() + " seats taken.");
+    }
+
+    // Student ID (or unique full name) of an existing student, or -1 after telling the admin why not
+    private static long promptStudent()
+    {
+        long id = resolveStudentId(promptLine("Enter student ID or full name: "));
+
+        if (id == CANDIDATES_LISTED)
+        {
+            return -1;
+        }
+
+        if (id == StudentId.INVALID || !students.containsKey(id))
+        {
+            System.out.println("Student not found.");
+            return -1;
+        }
+
+        return id;
+    }
+
+    // Point-in-time views of the roster: tags, a student or the roster as of a point, and diffs between points
+    private static void showHistory()
+    {
+        System.out.println("=== Roster History ===");
+
+        if (students.isOffHeap())
+        {
+            System.out.println("Roster history is off in off-heap mode (-Dsems.store.offHeap=true).");
+            return;
+        }
+
+        System.out.println("1. Versions & Tags");
+        System.out.println("2. Tag Current Roster");
+        System.out.println("3. Remove Tag");
+        System.out.println("4. Student As Of...");
+        System.out.println("5. Roster As Of...");
+        System.out.println("6. Changes Between Two Points");
+        String choice = promptLine("");
+
+        try
+        {
+            switch (choice)
+            {
+                case "1" -> listVersions();
+                case "2" -> System.out.println("Tagged " + describe(history.tag(promptLine("Enter tag name: "))) + ".");
+                case "3" -> System.out.println(history.untag(promptLine("Enter tag name: ")) ? "Tag removed."
+                        : "No such tag.");
+                case "4" -> showStudentAsOf();
+                case "5" -> listRosterAsOf();
+                case "6" -> showChanges();
+                default -> System.out.println("Invalid choice.");
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void listVersions()
+    {
+        System.out.println("Current: " + describe(history.current()));
+        System.out.println("Oldest retained: " + describe(history.oldest()) + ", " + history.retainedVersions()
+                + " version(s) retained.");
+
+        for (Map.Entry<String, RosterSnapshot> tag : history.tags().entrySet())
+        {
+            System.out.println("Tag " + tag.getKey() + ": " + describe(tag.getValue()));
+        }
+    }
+
+    private static String describe(RosterSnapshot snapshot)
+    {
+        return "version " + snapshot.version() + " (" + HISTORY_TIME.format(LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(snapshot.committedAt()), ZoneId.systemDefault())) + ", " + snapshot.size()
+                + " students)";
+    }
+
+    // A point in the history: blank for now, a tag, v<number> for a version, or a local date / date and time;
+    // null after telling the admin why there is no such point
+    private static RosterSnapshot promptSnapshot(String prompt)
+    {
+        String text = promptLineAllowBlank(prompt + " (tag, v<version>, YYYY-MM-DD [HH:MM], blank for now): ").trim();
+        RosterSnapshot snapshot;
+
+        if (text.isEmpty())
+        {
+            return history.current();
+        }
+
+        if (history.tagged(text) != null)
+        {
+            return history.tagged(text);
+        }
+
+        try
+        {
+            if (text.matches("[vV]\\d+"))
+            {
+                snapshot = history.version(Long.parseLong(text.substring(1)));
+            }
+            else
+            {
+                LocalDateTime time = text.length() <= 10 ? LocalDate.parse(text).atStartOfDay()
+                        : LocalDateTime.parse(text.replace(' ', 'T'));
+                snapshot = history.at(time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+        }
+        catch (NumberFormatException | DateTimeParseException e)
+        {
+            System.out.println("Not a tag, version or date: " + text);
+            return null;
+        }
+
+        if (snapshot == null)
+        {
+            System.out.println("That is older than the retained history (oldest: " + describe(history.oldest())
+                    + ").");
+        }
+
+        return snapshot;
+    }
+
+    private static void showStudentAsOf()
+    {
+        long id = StudentId.parse(promptLine("Enter student ID: "));
+
+        if (id == StudentId.INVALID)
+        {
+            System.out.println("Student not found.");
+            return;
+        }
+
+        RosterSnapshot snapshot = promptSnapshot("As of");
+
+        if (snapshot == null)
+        {
+            return;
+        }
+
+        Student student = snapshot.get(id);
+        System.out.println("As of " + describe(snapshot) + ":");
+
+        if (student == null)
+        {
+            System.out.println("No student with that ID.");
+        }
+        else
+        {
+            printStudent(id, student);
+        }
+    }
+
+    private static void listRosterAsOf()
+    {
+        RosterSnapshot snapshot = promptSnapshot("As of");
+
+        if (snapshot == null)
+        {
+            return;
+        }
+
+        try
+        {
+            StudentExporter listing = new StudentExporter(console, StudentExporter.Format.LISTING);
+
+            for (long id : snapshot.ids())
+            {
+                listing.write(id, snapshot.get(id));
+            }
+
+            listing.flush();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        System.out.println("Roster as of " + describe(snapshot) + ".");
+    }
+
+    // + added, - removed, ~ changed (old row, then new row)
+    private static void showChanges()
+    {
+        RosterSnapshot from = promptSnapshot("From");
+        RosterSnapshot to = from == null ? null : promptSnapshot("To");
+
+        if (to == null)
+        {
+            return;
+        }
+
+        List<RosterSnapshot.Difference> differences = from.diff(to);
+
+        for (RosterSnapshot.Difference difference : differences)
+        {
+            if (difference.added())
+            {
+                System.out.print("+ ");
+                printStudent(difference.studentId(), difference.after());
+            }
+            else if (difference.removed())
+            {
+                System.out.print("- ");
+                printStudent(difference.studentId(), difference.before());
+            }
+            else
+            {
+                System.out.println("~ " + StudentId.format(difference.studentId()) + " changed "
+                        + String.join(", ", difference.changedFields()) + ":");
+                printStudent(difference.studentId(), difference.before());
+                printStudent(difference.studentId(), difference.after());
+            }
+        }
+
+        System.out.println(differences.size() + " student(s) differ between " + describe(from) + " and "
+                + describe(to) + ".");
+    }
+
+    // Operation counts and latencies since startup, the gauges, and optionally a Prometheus dump
+    private static void showStatistics()
+    {
+        System.out.println("=== Statistics ===");
+
+        if (!Metrics.ENABLED)
+        {
+            System.out.println("Metrics are off (started with -Dsems.metrics=false).");
+            return;
+        }
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        System.out.printf("%-8s %9s %7s %9s %9s %9s %9s %9s %9s%n", "", "Count", "Failed", "Mean", "P50", "P90",
+                "P99", "P99.9", "Max");
+
+        for (Metrics.OperationStats stats : snapshot.operations())
+        {
+            LatencyHistogram.Snapshot latency = stats.latency();
+            System.out.printf("%-8s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", stats.operation().label(),
+                    latency.count(), stats.failures(), latency.meanNanos() / 1000, latency.percentileNanos(50) / 1000.0,
+                    latency.percentileNanos(90) / 1000.0, latency.percentileNanos(99) / 1000.0,
+                    latency.percentileNanos(99.9) / 1000.0, latency.maxNanos() / 1000.0);
+        }
+
+        System.out.println("(latencies in microseconds)");
+
+        for (Metrics.Gauge gauge : snapshot.gauges())
+        {
+            System.out.printf("%s: %,.0f%n", gauge.help(), gauge.value().getAsDouble());
+        }
+
+        if (promptLine("Write Prometheus dump to " + METRICS_FILE + "? (Y/N): ").equalsIgnoreCase("Y"))
+        {
+            try
+            {
+                Metrics.dump(METRICS_FILE);
+                System.out.println("Metrics written.");
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not write metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    // Gauges for the statistics menu and the Prometheus dump
+    private static void registerGauges()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        Metrics.gauge("sems_store_students", "Students in the store", students::size);
+        Metrics.gauge("sems_startup_first_prompt_millis", "Time from launch to the first prompt (ms)",
+                () -> firstPromptMillis);
+        Metrics.gauge("sems_heap_used_bytes", "Heap in use (bytes)",
+                () -> runtime.totalMemory() - runtime.freeMemory());
+        // Includes garbage not collected yet, so read it as an upper bound
+        Metrics.gauge("sems_heap_bytes_per_student", "Heap in use per student (bytes)",
+                () -> students.isEmpty() ? 0 : (double) (runtime.totalMemory() - runtime.freeMemory()) / students.size());
+
+        if (students.isOffHeap())
+        {
+            Metrics.gauge("sems_arena_reserved_bytes", "Off-heap arena reserved (bytes)",
+                    () -> students.arenaStats().reservedBytes());
+            Metrics.gauge("sems_arena_garbage_bytes", "Off-heap arena dead names not compacted yet (bytes)",
+                    () -> students.arenaStats().garbageBytes());
+        }
+    }
+
+    // Page through the students in insertion order without printing them all at once
+    // The cursor keeps its place, so Next only walks the rows of the new page
+    private static void browseStudents()
+    {
+        System.out.println("=== Browse Students ===");
+
+        if (students.isEmpty())
+        {
+            System.out.println("No student records found.");
+            return;
+        }
+
+        String sizeLine = promptLine("Rows per page (blank for " + DEFAULT_PAGE_SIZE + "): ");
+        int pageSize = DEFAULT_PAGE_SIZE;
+
+        try
+        {
+            pageSize = sizeLine.isEmpty() ? DEFAULT_PAGE_SIZE : Math.max(1, Integer.parseInt(sizeLine));
+        }
+        catch (NumberFormatException e)
+        {
+            System.out.println("Invalid integer input. Using " + DEFAULT_PAGE_SIZE + ".");
+        }
+
+        int page = 0;
+        Iterator<Map.Entry<Long, Student>> cursor = students.entries().iterator();
+        int cursorRow = 0;
+        String choice;
+
+        do
+        {
+            int from = page * pageSize;
+
+            // Going back restarts the cursor from the first row
+            if (from < cursorRow)
+            {
+                cursor = students.entries().iterator();
+                cursorRow = 0;
+            }
+
+            // Other sessions may remove students meanwhile, so the roster can end before the page starts
+            while (cursorRow < from && cursor.hasNext())
+            {
+                cursor.next();
+                cursorRow = cursorRow + 1;
+            }
+
+            int printed = printPage(cursor, pageSize);
+            cursorRow = cursorRow + printed;
+
+            if (printed == 0)
+            {
+                System.out.println("No students on this page any more.");
+            }
+
+            int pages = Math.max(page + 1, (students.size() + pageSize - 1) / pageSize);
+            System.out.println("Page " + (page + 1) + " of " + pages + " - N. Next  P. Previous  Q. Back");
+            choice = promptLine("");
+
+            if (choice.equalsIgnoreCase("N") && page + 1 < pages)
+            {
+                page = page + 1;
+            }
+            else if (choice.equalsIgnoreCase("P") && page > 0)
+            {
+                page = page - 1;
+            }
+            else if (!choice.equalsIgnoreCase("Q"))
+            {
+                System.out.println("No more pages in that direction.");
+            }
+        }
+        while (!choice.equalsIgnoreCase("Q"));
+    }
+
+    // Print up to rows entries from the cursor; returns how many it took
+    private static int printPage(Iterator<Map.Entry<Long, Student>> cursor, int rows)
+    {
+        try
+        {
+            StudentExporter listing = new StudentExporter(console, StudentExporter.Format.LISTING);
+            int printed = 0;
+
+            while (printed < rows && cursor.hasNext())
+            {
+                Map.Entry<Long, Student> entry = cursor.next();
+                listing.write(entry.getKey(), entry.getValue());
+                printed = printed + 1;
+            }
+
+            listing.flush();
+            return printed;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Print one student as a listing row
+    private static void printStudent(long id, Student student)
+    {
+        // Removed by another session since it was looked up
+        if (student == null)
+        {
+            return;
+        }
+
+        try
+        {
+            StudentExporter listing = new StudentExporter(console, StudentExporter.Format.LISTING);
+            listing.write(id, student);
+            listing.flush();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Export all students to a CSV, JSON-lines or fixed-width text file
+    private static void exportStudents()
+    {
+        System.out.println("=== Export Students ===");
+        Path file = Paths.get(promptLine("Enter file path (.csv, .jsonl or .txt for a table): "));
+
+        try
+        {
+            long start = System.nanoTime();
+            long rows = StudentExporter.exportTo(file, StudentExporter.formatOf(file), students.entries());
+            System.out.println("Exported " + rows + " student(s) to " + file + " in " +
+                    (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+        catch (IOException e)
+        {
+            System.out.println("Export failed: " + e.getMessage());
+        }
+    }
+
+    // Search students through the secondary indexes
+    private static void searchStudents()
+    {
+        System.out.println("=== Search Students ===");
+        System.out.println("1. By Program");
+        System.out.println("2. By Current Semester");
+        System.out.println("3. By Last Name");
+        System.out.println("4. By Name Prefix");
+        System.out.println("5. By Age Range");
+        System.out.println("6. By Name, Allowing Typos");
+        String choice = promptLine("");
+
+        List<Long> ids;
+
+        switch (choice)
+        {
+            case "1" -> ids = indexes.findByProgram(promptLine("Enter program name: "));
+            case "2" -> ids = indexes.findBySemester(promptInt("Enter semester number: "));
+            case "3" -> ids = indexes.findByLastName(promptLine("Enter last name: "));
+            case "4" -> ids = indexes.findByNamePrefix(promptLine("Enter start of name: "));
+            case "5" ->
+            {
+                ids = findByAge();
+
+                if (ids == null)
+                {
+                    return;
+                }
+            }
+            case "6" ->
+            {
+                findByName();
+                return;
+            }
+            default ->
+            {
+                System.out.println("Invalid choice.");
+                return;
+            }
+        }
+
+        if (ids.isEmpty())
+        {
+            System.out.println("No matching students found.");
+            return;
+        }
+
+        for (long id : ids)
+        {
+            printStudent(id, students.get(id));
+        }
+
+        System.out.println(ids.size() + " student(s) found.");
+    }
+
+    // Closest names first, with how many letters differ
+    private static void findByName()
+    {
+        String name = promptLine("Enter name (typos allowed): ");
+        long start = System.nanoTime();
+        List<NameSearch.Match> matches = names.search(name, DEFAULT_PAGE_SIZE, students);
+        long micros = (System.nanoTime() - start) / 1000;
+
+        if (matches.isEmpty())
+        {
+            System.out.println("No matching students found.");
+            return;
+        }
+
+        for (NameSearch.Match match : matches)
+        {
+            int distance = match.distance();
+            System.out.print(distance == 0 ? "exact    " : "~" + distance + (distance == 1 ? " edit   " : " edits  "));
+            printStudent(match.id(), students.get(match.id()));
+        }
+
+        System.out.println(matches.size() + " closest student(s), " + micros + " us.");
+    }
+
+    // Age range search; there is no age index, so this is one pass comparing stored birth days
+    // Returns null (after printing why) if the range was not valid
+    private static List<Long> findByAge()
+    {
+        AgeRange ages;
+
+        try
+        {
+            String min = promptLineAllowBlank("Minimum age (blank for none): ").trim();
+            String max = promptLineAllowBlank("Maximum age (blank for none): ").trim();
+            ages = AgeRange.of(min.isEmpty() ? null : Integer.valueOf(min), max.isEmpty() ? null : Integer.valueOf(max),
+                    LocalDate.now());
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("Invalid age.");
+            return null;
+        }
+
+        // Only the birth day is needed, so no Student is built per row
+        List<Long> ids = new ArrayList<>();
+        students.scan(view ->
+        {
+            if (ages.contains(view.birthDay()))
+            {
+                ids.add(view.id());
+            }
+        });
+
+        return ids;
+    }
+
+    // Bulk import from a CSV or JSON-lines file
+    private static void importStudents()
+    {
+        System.out.println("=== Import Students ===");
+        Path file = Paths.get(promptLine("Enter file path (.csv or .jsonl): "));
+
+        if (!Files.isRegularFile(file))
+        {
+            System.out.println("File not found.");
+            return;
+        }
+
+        try
+        {
+            BulkImporter.Result result = new BulkImporter(students).importFile(file);
+            System.out.println("Imported " + result.imported() + " student(s), rejected " + result.rejected() +
+                    " in " + result.elapsedMillis() + " ms.");
+
+            if (result.rejected() > 0)
+            {
+                System.out.println("Rejected lines written to " + result.rejectsFile());
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
+
+    // Main menu
+    private static void mainMenu()
+    {
+        firstPromptMillis = millisSinceLaunch();
+
+        if (firstPromptMillis > STARTUP_BUDGET_MILLIS)
+        {
+            System.err.println("Startup took " + firstPromptMillis + " ms (budget " + STARTUP_BUDGET_MILLIS
+                    + " ms); bench/startup.sh builds a class-data-sharing archive that shortens it.");
+        }
+
+        System.out.println("=== Welcome to Student Enrollment Management System ===");
+
+        // Require successful login; exit early upon failure
+        if (!adminLogin())
+        {
+            return;
+        }
+
+        awaitIndexes();
+
+        String choice;
+
+        // Main menu loop
+        do
+        {
+            System.out.println();
+            System.out.println("1. Add Student");
+            System.out.println("2. Modify Student");
+            System.out.println("3. Remove Student");
+            System.out.println("4. List of All Students");
+            System.out.println("5. Search Students");
+            System.out.println("6. Import Students From File");
+            System.out.println("7. Browse Students (Paged)");
+            System.out.println("8. Export Students To File");
+            System.out.println("9. Query Students");
+            System.out.println("10. Reports");
+            System.out.println("11. Statistics");
+            System.out.println("12. Courses & Enrollment");
+            System.out.println("13. Roster History");
+            System.out.println("Q. Quit");
+
+            choice = promptLine("");
+
+            switch (choice)
+            {
+                case "1" -> addStudent();
+                case "2" -> modifyStudent();
+                case "3" -> removeStudent();
+                case "4" -> listStudents();
+                case "5" -> searchStudents();
+                case "6" -> importStudents();
+                case "7" -> browseStudents();
+                case "8" -> exportStudents();
+                case "9" -> queryStudents();
+                case "10" -> showReports();
+                case "11" -> showStatistics();
+                case "12" -> manageCourses();
+                case "13" -> showHistory();
+                case "Q", "q" -> System.out.println("System shutting down... Goodbye.");
+                default ->
+                {
+                    if (!choice.equalsIgnoreCase("Q"))
+                    {
+                        System.out.println("Invalid choice. Please try again.");
+                    }
+                }
+            }
+        }
+        while (!choice.equalsIgnoreCase("Q"));
+    }
+
+    // Usage: Main                                   interactive console
+    //        Main --batch=<file|-> --user=<name>     headless commands (see BatchRunner), password from SEMS_PASSWORD
+    //        Main --http=<port> --user=<name>        also serve the HTTP API (see StudentHttpServer);
+    //             [--headless]                       --headless serves without the console until Ctrl+C
+    //        Main --set-password=<name> --user=<name>   add an admin or change a password (SEMS_NEW_PASSWORD);
+    //                                               on a new install, without --user, this creates the first admin
+    //        Main --startup-check                   start as the console would, report the time to the first prompt
+    //                                               against sems.startup.budgetMs and exit (1 if over budget)
+    public static void main(String[] args)
+    {
+        String batchFile = null;
+        String batchUser = null;
+        int httpPort = -1;
+        boolean headless = false;
+        String newPasswordUser = null;
+        boolean startupCheck = false;
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--batch="))
+            {
+                batchFile = arg.substring("--batch=".length());
+            }
+            else if (arg.startsWith("--user="))
+            {
+                batchUser = arg.substring("--user=".length());
+            }
+            else if (arg.startsWith("--http="))
+            {
+                httpPort = Integer.parseInt(arg.substring("--http=".length()));
+            }
+            else if (arg.equals("--headless"))
+            {
+                headless = true;
+            }
+            else if (arg.equals("--startup-check"))
+            {
+                startupCheck = true;
+            }
+            else if (arg.startsWith("--set-password="))
+            {
+                newPasswordUser = arg.substring("--set-password=".length());
+            }
+            else
+            {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        Path accountsFile = Paths.get(System.getProperty("sems.accounts",
+                Paths.get(System.getProperty("sems.dataDir", "data"), "admins").toString()));
+
+        try
+        {
+            authenticator = new Authenticator(AccountStore.open(accountsFile), new LoginThrottle());
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not load admin accounts: " + e.getMessage());
+            System.exit(1);
+        }
+
+        // There are no default logins: until the first admin exists, --set-password is the only thing that runs
+        boolean firstAccount = !authenticator.hasAccounts();
+
+        if (firstAccount && newPasswordUser == null)
+        {
+            System.err.println("No admin accounts in " + accountsFile + ". Create the first one with "
+                    + "--set-password=<name> and its password in SEMS_NEW_PASSWORD.");
+            System.exit(2);
+        }
+
+        // Batch mode and the HTTP API never prompt, so credentials come from the command line and environment
+        boolean unattended = !firstAccount && (batchFile != null || httpPort >= 0 || newPasswordUser != null);
+
+        if (unattended)
+        {
+            try
+            {
+                authenticator.authenticate(batchUser, System.getenv("SEMS_PASSWORD"), "command line");
+            }
+            catch (Authenticator.AuthenticationException e)
+            {
+                System.err.println("Batch, HTTP and account modes need --user=<name> and a matching SEMS_PASSWORD. "
+                        + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        if (newPasswordUser != null)
+        {
+            System.exit(setPassword(newPasswordUser, System.getenv("SEMS_NEW_PASSWORD")));
+        }
+
+        if (headless && httpPort < 0)
+        {
+            System.err.println("--headless needs --http=<port>.");
+            System.exit(2);
+        }
+
+        // Recover persisted students (snapshot + log tail) before showing the menu
+        // Snapshot rows are only mapped here; each Student is built the first time it is read
+        try
+        {
+            storage.open(students);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not load student data: " + e.getMessage());
+            return;
+        }
+
+        // Indexes and columns catch up with the recovered students, then follow changes (StudentStore.attach)
+        // The console builds them in the background while the login prompt waits; the menu waits for them after
+        // login (awaitIndexes). Batch and HTTP requests need them from the start.
+        if (FAST_START && batchFile == null && httpPort < 0)
+        {
+            indexBuild = new Thread(Main::attachIndexes, "index-build");
+            indexBuild.setDaemon(true);
+            indexBuild.start();
+        }
+        else
+        {
+            attachIndexes();
+        }
+
+        // Enrollments refer to recovered students, so they are loaded after them
+        try
+        {
+            enrollments = Enrollments.open(Paths.get(System.getProperty("sems.dataDir", "data")), students);
+            students.addListener(enrollments);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not load enrollments: " + e.getMessage());
+            return;
+        }
+
+        // Recovery replays puts through the store; the metrics should only count what happens from here
+        Metrics.reset();
+        registerGauges();
+        long dumpSeconds = Long.getLong("sems.metrics.dumpSeconds", 0);
+
+        if (Metrics.ENABLED && dumpSeconds > 0)
+        {
+            metricsDumper = Metrics.dumpEvery(METRICS_FILE, dumpSeconds);
+        }
+
+        // Attached after recovery: replaying the log re-applies old changes, it does not make new ones
+        if (Boolean.getBoolean("sems.cdc"))
+        {
+            try
+            {
+                changes = ChangeFeed.open(Paths.get(System.getProperty("sems.dataDir", "data"), "cdc"));
+                students.addListener(changes);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not open the change log: " + e.getMessage());
+                return;
+            }
+        }
+
+        // Flush the log on any exit path, including Ctrl+C
+        Runtime.getRuntime().addShutdownHook(new Thread(Main::shutdown));
+
+        if (httpPort >= 0)
+        {
+            String host = System.getProperty("sems.http.host", "127.0.0.1");
+
+            try
+            {
+                server = new StudentHttpServer(students, indexes, names, enrollments, authenticator,
+                        new InetSocketAddress(host, httpPort), Integer.getInteger("sems.http.backlog", 4096));
+                server.start();
+                System.err.println("Serving the student API on http://" + host + ":" + server.port() + "/students");
+            }
+            catch (IOException e)
+            {
+                System.err.println("Could not start the HTTP API: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (startupCheck)
+        {
+            System.exit(checkStartup());
+        }
+
+        // Entry point
+        if (batchFile != null)
+        {
+            System.exit(runBatch(batchFile));
+        }
+
+        // The server's threads keep the process alive until Ctrl+C
+        if (headless)
+        {
+            return;
+        }
+
+        mainMenu();
+        shutdown();
+    }
+
+    // Add an admin or replace a password; the new password comes from the environment, never the command line
+    private static int setPassword(String username, String password)
+    {
+        if (password == null || password.length() < 8)
+        {
+            System.err.println("Set SEMS_NEW_PASSWORD to the new password (at least 8 characters).");
+            return 2;
+        }
+
+        try
+        {
+            authenticator.setPassword(username, password);
+            System.err.println("Password set for " + username + ".");
+            return 0;
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            System.err.println("Could not save admin accounts: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Stop taking API requests, drain the change feed, then flush storage; runs again from the shutdown hook
+    private static synchronized void shutdown()
+    {
+        if (server != null)
+        {
+            server.close();
+            server = null;
+        }
+
+        if (changes != null)
+        {
+            try
+            {
+                changes.close();
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not flush the change log: " + e.getMessage());
+            }
+
+            changes = null;
+        }
+
+        if (enrollments != null)
+        {
+            try
+            {
+                enrollments.close();
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not flush enrollments: " + e.getMessage());
+            }
+
+            enrollments = null;
+        }
+
+        // Final dump, so the file matches the end of the run
+        if (metricsDumper != null)
+        {
+            metricsDumper.shutdownNow();
+            metricsDumper = null;
+
+            try
+            {
+                Metrics.dump(METRICS_FILE);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Could not write metrics: " + e.getMessage());
+            }
+        }
+
+        closeStorage();
+    }
+
+    private static void attachIndexes()
+    {
+        students.attach(indexes);
+        students.attach(names);
+        students.attach(columns);
+
+        // The history keeps every version's records on the heap, which off-heap mode is there to avoid
+        if (!students.isOffHeap())
+        {
+            students.attach(history);
+        }
+    }
+
+    // Wait for the background index build, if one is running
+    private static void awaitIndexes()
+    {
+        if (indexBuild == null)
+        {
+            return;
+        }
+
+        try
+        {
+            indexBuild.join();
+            indexBuild = null;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Milliseconds since the JVM was launched
+    private static long millisSinceLaunch()
+    {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    // --startup-check: the console's startup path without the console; also the training run for the CDS archive
+    private static int checkStartup()
+    {
+        firstPromptMillis = millisSinceLaunch();
+        awaitIndexes();
+        long indexesReady = millisSinceLaunch();
+        System.out.println("Time to first prompt: " + firstPromptMillis + " ms (budget " + STARTUP_BUDGET_MILLIS
+                + " ms), indexes ready after " + indexesReady + " ms, " + students.size() + " students.");
+        shutdown();
+        return firstPromptMillis <= STARTUP_BUDGET_MILLIS ? 0 : 1;
+    }
+
+    // Run a command file (or stdin for "-"); the exit status is 1 if any command failed
+    private static int runBatch(String file)
+    {
+        int batchSize = Integer.getInteger("sems.batch.syncEvery", 1000);
+        BatchRunner runner = new BatchRunner(students, indexes, storage, console, batchSize);
+
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Paths.get(file)))
+        {
+            BatchRunner.Summary summary = runner.run(in);
+            shutdown();
+            System.err.printf("%d operations, %d failed, %d commits, %d ms (%.0f ops/s)%n",
+                    summary.operations(), summary.failed(), summary.transactions(),
+                    summary.elapsedMillis(), summary.operationsPerSecond());
+            return summary.failed() == 0 ? 0 : 1;
+        }
+        catch (IOException | UncheckedIOException e)
+        {
+            System.err.println("Batch failed: " + e.getMessage());
+            shutdown();
+            return 1;
+        }
+    }
+
+    // Flush and close the write-ahead log
+    private static void closeStorage()
+    {
+        try
+        {
+            storage.close();
+        }
+        catch (IOException e)
+        {
+            System.out.println("Could not flush student data: " + e.getMessage());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package analytics;
+
+import models.StudentRules;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Mergeable GPA distribution: count, sum, min, max and a histogram in hundredths of a point
+ * GPAs are kept to two decimals, so percentiles read from the 401 buckets are exact; two partial summaries
+ * built over different rows merge by adding their buckets, which is what lets reports split the roster.
+ */
+public final class GpaSummary
+{
+    private static final int BUCKETS = (int) Math.round(StudentRules.MAX_GPA * 100) + 1;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count = 0;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double gpa)
+    {
+        int bucket = (int) Math.round(gpa * 100);
+        buckets[Math.max(0, Math.min(BUCKETS - 1, bucket))]++;
+        count++;
+        sum += gpa;
+        min = Math.min(min, gpa);
+        max = Math.max(max, gpa);
+    }
+
+    // Adds other into this summary and returns this
+    public GpaSummary merge(GpaSummary other)
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            buckets[i] += other.buckets[i];
+        }
+
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    // Wire form for summaries built in another process (see shard.ShardServer): count, sum, min, max, buckets
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeLong(count);
+        out.writeDouble(sum);
+        out.writeDouble(min);
+        out.writeDouble(max);
+
+        for (long bucket : buckets)
+        {
+            out.writeLong(bucket);
+        }
+    }
+
+    public static GpaSummary read(DataInput in) throws IOException
+    {
+        GpaSummary summary = new GpaSummary();
+        summary.count = in.readLong();
+        summary.sum = in.readDouble();
+        summary.min = in.readDouble();
+        summary.max = in.readDouble();
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            summary.buckets[i] = in.readLong();
+        }
+
+        return summary;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public double mean()
+    {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double min()
+    {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double max()
+    {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double median()
+    {
+        return percentile(50);
+    }
+
+    // Nearest-rank percentile (0 - 100)
+    public double percentile(double p)
+    {
+        if (count == 0)
+        {
+            return Double.NaN;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets[i];
+
+            if (seen >= rank)
+            {
+                return i / 100.0;
+            }
+        }
+
+        return max;
+    }
+}
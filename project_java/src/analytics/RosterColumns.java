@@ -0,0 +1,410 @@
+package analytics;
+
+import models.Gender;
+import models.Programs;
+import models.Student;
+import store.LongHashMap;
+import store.StoreListener;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Column-oriented copy of the roster for reporting
+ * GPA, semester, course count and birth day live in primitive arrays, program as its program ID and gender as
+ * its ordinal.
+ * Registered as a store listener so it follows every add, re-save and remove; removal moves the last
+ * row into the freed slot, so the columns stay dense and aggregations are plain loops over [0, size).
+ * Methods are synchronized so reports can run while other sessions change the store.
+ */
+public class RosterColumns implements StoreListener
+{
+    // Which column an aggregation reads
+    public enum Metric
+    {
+        GPA, SEMESTER, NUM_COURSES
+    }
+
+    // What an aggregation is grouped by
+    public enum GroupBy
+    {
+        PROGRAM, SEMESTER
+    }
+
+    // Result row of aggregate()
+    public record GroupStats(String group, long count, double avg, double min, double max)
+    {
+    }
+
+    // Columns a filter can be pushed down to
+    public enum Column
+    {
+        GPA, SEMESTER, NUM_COURSES, PROGRAM, GENDER, BIRTH_DAY
+    }
+
+    // One pushed-down condition: the column value is within [low, high] (inside) or not (outside)
+    // Rows with an unknown birth day never match a BIRTH_DAY range
+    public record ColumnRange(Column column, double low, double high, boolean inside)
+    {
+        boolean matches(double value)
+        {
+            return (value >= low && value <= high) == inside;
+        }
+    }
+
+    // The arrays as of one moment, for RosterReports; only rows [0, size) are valid
+    // groups is set when the read asked for a grouping
+    record View(double[] gpa, int[] semester, int[] numCourses, int[] program, long[] rowIds, int size, Groups groups)
+    {
+    }
+
+    // Wider semester ranges than this are remapped to dense codes before grouping
+    private static final int MAX_DIRECT_SEMESTER_RANGE = 4096;
+    // Scans of at least this many rows are split across the common fork-join pool
+    private static final int PARALLEL_SCAN_ROWS = Integer.getInteger("sems.scan.parallelRows", 50_000);
+
+    private double[] gpa = new double[1024];
+    private int[] semester = new int[1024];
+    private int[] numCourses = new int[1024];
+    private int[] program = new int[1024];
+    private int[] gender = new int[1024];
+    private int[] birthDay = new int[1024];
+    private long[] rowIds = new long[1024];
+    private int size = 0;
+
+    private final LongHashMap<Integer> rowOf = new LongHashMap<>();
+
+    @Override
+    public synchronized void onPut(long id, Student previous, Student student)
+    {
+        Integer row = rowOf.get(id);
+
+        if (row == null)
+        {
+            ensureCapacity(size + 1);
+            row = size;
+            size = size + 1;
+            rowIds[row] = id;
+            rowOf.put(id, row);
+        }
+
+        gpa[row] = student.gpaPrev();
+        semester[row] = student.currentSemester();
+        numCourses[row] = student.numCourses();
+        program[row] = student.programId();
+        gender[row] = student.gender().ordinal();
+        birthDay[row] = student.birthDay();
+    }
+
+    @Override
+    public synchronized void onRemove(long id, Student removed)
+    {
+        Integer row = rowOf.remove(id);
+
+        if (row == null)
+        {
+            return;
+        }
+
+        int last = size - 1;
+
+        // Move the last row into the hole
+        if (row != last)
+        {
+            gpa[row] = gpa[last];
+            semester[row] = semester[last];
+            numCourses[row] = numCourses[last];
+            program[row] = program[last];
+            gender[row] = gender[last];
+            birthDay[row] = birthDay[last];
+            rowIds[row] = rowIds[last];
+            rowOf.put(rowIds[row], row);
+        }
+
+        size = last;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    // Number of students per gender
+    public synchronized Map<String, Long> countByGender()
+    {
+        long[] counts = new long[Gender.values().length];
+
+        for (int i = 0; i < size; i++)
+        {
+            counts[gender[i]]++;
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+
+        for (int code = 0; code < counts.length; code++)
+        {
+            if (counts[code] > 0)
+            {
+                result.put(Gender.ofOrdinal(code).code(), counts[code]);
+            }
+        }
+
+        return result;
+    }
+
+    // count/avg/min/max of a metric per group, groups in ascending order (program name or semester number)
+    public synchronized List<GroupStats> aggregate(Metric metric, GroupBy groupBy)
+    {
+        Groups groups = groups(groupBy);
+        int groupCount = groups.count();
+        long[] count = new long[groupCount];
+        double[] sum = new double[groupCount];
+        double[] min = new double[groupCount];
+        double[] max = new double[groupCount];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+        int[] keys = groups.keys();
+        int base = groups.base();
+
+        for (int i = 0; i < size; i++)
+        {
+            int g = keys[i] - base;
+            double value = value(metric, i);
+            count[g]++;
+            sum[g] += value;
+
+            if (value < min[g])
+            {
+                min[g] = value;
+            }
+
+            if (value > max[g])
+            {
+                max[g] = value;
+            }
+        }
+
+        List<GroupStats> result = new ArrayList<>();
+
+        for (int g : groups.order())
+        {
+            if (count[g] > 0)
+            {
+                result.add(new GroupStats(groups.label(g), count[g], sum[g] / count[g], min[g], max[g]));
+            }
+        }
+
+        return result;
+    }
+
+    // Histogram of a metric per group: buckets of equal width over [low, high], values outside are clamped
+    public synchronized Map<String, long[]> histogram(Metric metric, GroupBy groupBy, double low, double high, int buckets)
+    {
+        Groups groups = groups(groupBy);
+        long[][] counts = new long[groups.count()][buckets];
+        double width = (high - low) / buckets;
+        int[] keys = groups.keys();
+        int base = groups.base();
+
+        for (int i = 0; i < size; i++)
+        {
+            int bucket = (int) ((value(metric, i) - low) / width);
+            bucket = Math.max(0, Math.min(buckets - 1, bucket));
+            counts[keys[i] - base][bucket]++;
+        }
+
+        Map<String, long[]> result = new LinkedHashMap<>();
+
+        for (int g : groups.order())
+        {
+            long total = 0;
+
+            for (long c : counts[g])
+            {
+                total = total + c;
+            }
+
+            if (total > 0)
+            {
+                result.put(groups.label(g), counts[g]);
+            }
+        }
+
+        return result;
+    }
+
+    // Run a read-only computation over the columns while holding the lock, so no row changes underneath it
+    // The body may fan out to other threads as long as it joins them before returning
+    synchronized <T> T read(GroupBy groupBy, Function<View, T> body)
+    {
+        Groups groups = groupBy == null ? null : groups(groupBy);
+        return body.apply(new View(gpa, semester, numCourses, program, rowIds, size, groups));
+    }
+
+    // IDs of the rows matching every range, in column order; a plain loop over the arrays without touching a Student
+    public synchronized long[] idsWhere(List<ColumnRange> ranges)
+    {
+        ColumnRange[] tests = ranges.toArray(new ColumnRange[0]);
+        IntStream rows = IntStream.range(0, size);
+
+        // The workers only read the arrays; this thread holds the lock until they are done
+        if (size >= PARALLEL_SCAN_ROWS)
+        {
+            rows = rows.parallel();
+        }
+
+        return rows.filter(row -> matches(tests, row)).mapToLong(row -> rowIds[row]).toArray();
+    }
+
+    private boolean matches(ColumnRange[] tests, int row)
+    {
+        for (ColumnRange test : tests)
+        {
+            if (test.column() == Column.BIRTH_DAY && birthDay[row] == Student.UNKNOWN_BIRTH_DAY)
+            {
+                return false;
+            }
+
+            double value = switch (test.column())
+            {
+                case GPA -> gpa[row];
+                case SEMESTER -> semester[row];
+                case NUM_COURSES -> numCourses[row];
+                case PROGRAM -> program[row];
+                case GENDER -> gender[row];
+                case BIRTH_DAY -> birthDay[row];
+            };
+
+            if (!test.matches(value))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Course-load histogram over the whole roster: index = number of courses (0 - 12)
+    public synchronized long[] courseLoadHistogram()
+    {
+        long[] counts = new long[13];
+
+        for (int i = 0; i < size; i++)
+        {
+            counts[Math.max(0, Math.min(12, numCourses[i]))]++;
+        }
+
+        return counts;
+    }
+
+    private double value(Metric metric, int row)
+    {
+        return switch (metric)
+        {
+            case GPA -> gpa[row];
+            case SEMESTER -> semester[row];
+            case NUM_COURSES -> numCourses[row];
+        };
+    }
+
+    // Group key column plus labels; group index = keys[row] - base
+    record Groups(int[] keys, int base, String[] labels, List<Integer> order)
+    {
+        int count()
+        {
+            return labels.length;
+        }
+
+        String label(int g)
+        {
+            return labels[g];
+        }
+    }
+
+    private Groups groups(GroupBy groupBy)
+    {
+        if (groupBy == GroupBy.PROGRAM)
+        {
+            // Program IDs are already dense; report them alphabetically
+            String[] labels = new String[Programs.size()];
+            List<Integer> order = new ArrayList<>(labels.length);
+
+            for (int id = 0; id < labels.length; id++)
+            {
+                labels[id] = Programs.name(id);
+                order.add(id);
+            }
+
+            order.sort(Comparator.comparing(code -> labels[code]));
+            return new Groups(program, 0, labels, order);
+        }
+
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+
+        for (int i = 0; i < size; i++)
+        {
+            low = Math.min(low, semester[i]);
+            high = Math.max(high, semester[i]);
+        }
+
+        if (size == 0)
+        {
+            return new Groups(semester, 0, new String[0], List.of());
+        }
+
+        // Semesters are free-form integers: use them directly when the range is small, otherwise remap to dense codes
+        int[] keys = semester;
+        int base = low;
+        int[] values;
+
+        if ((long) high - low < MAX_DIRECT_SEMESTER_RANGE)
+        {
+            values = new int[high - low + 1];
+
+            for (int g = 0; g < values.length; g++)
+            {
+                values[g] = low + g;
+            }
+        }
+        else
+        {
+            values = Arrays.stream(semester, 0, size).distinct().sorted().toArray();
+            keys = new int[size];
+            base = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                keys[i] = Arrays.binarySearch(values, semester[i]);
+            }
+        }
+
+        String[] labels = new String[values.length];
+        List<Integer> order = new ArrayList<>(values.length);
+
+        for (int g = 0; g < values.length; g++)
+        {
+            labels[g] = String.valueOf(values[g]);
+            order.add(g);
+        }
+
+        return new Groups(keys, base, labels, order);
+    }
+
+    private void ensureCapacity(int needed)
+    {
+        if (needed > gpa.length)
+        {
+            int capacity = Math.max(needed, gpa.length * 2);
+            gpa = Arrays.copyOf(gpa, capacity);
+            semester = Arrays.copyOf(semester, capacity);
+            numCourses = Arrays.copyOf(numCourses, capacity);
+            program = Arrays.copyOf(program, capacity);
+            gender = Arrays.copyOf(gender, capacity);
+            birthDay = Arrays.copyOf(birthDay, capacity);
+            rowIds = Arrays.copyOf(rowIds, capacity);
+        }
+    }
+}
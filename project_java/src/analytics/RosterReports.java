@@ -0,0 +1,264 @@
+package analytics;
+
+import models.Programs;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Whole-roster reports over RosterColumns: GPA distributions, course loads and the academic probation list
+ * Each report folds rows into a mergeable partial (GpaSummary, count arrays, row lists). Rosters of at least
+ * parallelRows students are split in halves on a fork-join pool down to LEAF_ROWS-row leaves whose partials are
+ * merged on the way back up; smaller ones run as one sequential loop, where forking would only add overhead.
+ * Every Report carries its own runtime and how it ran, so runs on different machines can be compared.
+ */
+public class RosterReports
+{
+    // A finished report: result plus how long it took and whether it was split across the pool
+    public record Report<T>(String title, T result, int rows, boolean parallel, int parallelism, long nanos)
+    {
+        public double millis()
+        {
+            return nanos / 1_000_000.0;
+        }
+
+        // e.g. "250000 rows, parallel on 8 threads, 3.41 ms"
+        public String timing()
+        {
+            return String.format("%d rows, %s, %.2f ms", rows,
+                    parallel ? "parallel on " + parallelism + " threads" : "sequential", millis());
+        }
+    }
+
+    // One student on the probation list
+    public record ProbationEntry(long id, double gpa, int semester, String program)
+    {
+    }
+
+    // Tunables (override with -Dsems.report.parallelRows=..., etc.)
+    private static final int PARALLEL_ROWS = Integer.getInteger("sems.report.parallelRows", 20_000);
+    private static final int LEAF_ROWS = Integer.getInteger("sems.report.leafRows", 4096);
+    public static final double PROBATION_GPA =
+            Double.parseDouble(System.getProperty("sems.report.probationGpa", "2.0"));
+
+    private final RosterColumns columns;
+    private final ForkJoinPool pool;
+    private final int parallelRows;
+
+    public RosterReports(RosterColumns columns)
+    {
+        this(columns, ForkJoinPool.commonPool(), PARALLEL_ROWS);
+    }
+
+    // A dedicated pool and threshold, e.g. to measure how a report scales with the number of threads
+    public RosterReports(RosterColumns columns, ForkJoinPool pool, int parallelRows)
+    {
+        this.columns = columns;
+        this.pool = pool;
+        this.parallelRows = parallelRows;
+    }
+
+    // GPA distribution of the whole roster
+    public Report<GpaSummary> gpaOverall()
+    {
+        return run("GPA, all students", null, view -> (from, to) ->
+        {
+            GpaSummary summary = new GpaSummary();
+
+            for (int row = from; row < to; row++)
+            {
+                summary.add(view.gpa()[row]);
+            }
+
+            return summary;
+        }, GpaSummary::merge, (view, summary) -> summary);
+    }
+
+    // GPA distribution per program (alphabetical) or per semester (ascending)
+    public Report<Map<String, GpaSummary>> gpaBy(RosterColumns.GroupBy groupBy)
+    {
+        return run("GPA by " + label(groupBy), groupBy, view -> (from, to) ->
+        {
+            GpaSummary[] summaries = new GpaSummary[view.groups().count()];
+            int[] keys = view.groups().keys();
+            int base = view.groups().base();
+
+            for (int row = from; row < to; row++)
+            {
+                int g = keys[row] - base;
+
+                if (summaries[g] == null)
+                {
+                    summaries[g] = new GpaSummary();
+                }
+
+                summaries[g].add(view.gpa()[row]);
+            }
+
+            return summaries;
+        }, (left, right) ->
+        {
+            for (int g = 0; g < left.length; g++)
+            {
+                left[g] = left[g] == null ? right[g] : right[g] == null ? left[g] : left[g].merge(right[g]);
+            }
+
+            return left;
+        }, (view, summaries) ->
+        {
+            Map<String, GpaSummary> result = new LinkedHashMap<>();
+
+            for (int g : view.groups().order())
+            {
+                if (summaries[g] != null)
+                {
+                    result.put(view.groups().label(g), summaries[g]);
+                }
+            }
+
+            return result;
+        });
+    }
+
+    // Students per course count (index 0 - 12) within each program or semester
+    public Report<Map<String, long[]>> courseLoadBy(RosterColumns.GroupBy groupBy)
+    {
+        return run("Course load by " + label(groupBy), groupBy, view -> (from, to) ->
+        {
+            long[][] counts = new long[view.groups().count()][13];
+            int[] keys = view.groups().keys();
+            int base = view.groups().base();
+
+            for (int row = from; row < to; row++)
+            {
+                counts[keys[row] - base][Math.max(0, Math.min(12, view.numCourses()[row]))]++;
+            }
+
+            return counts;
+        }, (left, right) ->
+        {
+            for (int g = 0; g < left.length; g++)
+            {
+                for (int c = 0; c < 13; c++)
+                {
+                    left[g][c] += right[g][c];
+                }
+            }
+
+            return left;
+        }, (view, counts) ->
+        {
+            Map<String, long[]> result = new LinkedHashMap<>();
+
+            for (int g : view.groups().order())
+            {
+                if (Arrays.stream(counts[g]).sum() > 0)
+                {
+                    result.put(view.groups().label(g), counts[g]);
+                }
+            }
+
+            return result;
+        });
+    }
+
+    // Students whose previous GPA is below the threshold, lowest GPA first
+    public Report<List<ProbationEntry>> probation(double threshold)
+    {
+        return run("Academic probation (GPA < " + threshold + ")", null, view -> (from, to) ->
+        {
+            List<ProbationEntry> entries = new ArrayList<>();
+
+            for (int row = from; row < to; row++)
+            {
+                if (view.gpa()[row] < threshold)
+                {
+                    entries.add(new ProbationEntry(view.rowIds()[row], view.gpa()[row], view.semester()[row],
+                            Programs.name(view.program()[row])));
+                }
+            }
+
+            return entries;
+        }, (left, right) ->
+        {
+            left.addAll(right);
+            return left;
+        }, (view, entries) ->
+        {
+            entries.sort(Comparator.comparingDouble(ProbationEntry::gpa).thenComparingLong(ProbationEntry::id));
+            return entries;
+        });
+    }
+
+    // Partial result over rows [from, to)
+    private interface Leaf<P>
+    {
+        P compute(int from, int to);
+    }
+
+    // Builds the leaf for one consistent view of the columns
+    private interface LeafFactory<P>
+    {
+        Leaf<P> over(RosterColumns.View view);
+    }
+
+    // Compute the partials (split or in one loop), merge them and finish the result, all under the columns' lock
+    // finish runs there too because group labels and row IDs are only valid for that view
+    private <P, R> Report<R> run(String title, RosterColumns.GroupBy groupBy, LeafFactory<P> factory,
+                                 BinaryOperator<P> merge, BiFunction<RosterColumns.View, P, R> finish)
+    {
+        long start = System.nanoTime();
+
+        return columns.read(groupBy, view ->
+        {
+            Leaf<P> leaf = factory.over(view);
+            boolean parallel = view.size() >= parallelRows && pool.getParallelism() > 1;
+            P partial = parallel ? pool.invoke(new Split<>(leaf, merge, 0, view.size())) : leaf.compute(0, view.size());
+            R result = finish.apply(view, partial);
+            return new Report<>(title, result, view.size(), parallel, pool.getParallelism(), System.nanoTime() - start);
+        });
+    }
+
+    // Halves the row range until it is at most LEAF_ROWS, then merges the partials pairwise
+    private static final class Split<P> extends RecursiveTask<P>
+    {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks never leave the process, the serializable supertype is incidental
+        private final transient Leaf<P> leaf;
+        private final transient BinaryOperator<P> merge;
+        private final int from;
+        private final int to;
+
+        Split(Leaf<P> leaf, BinaryOperator<P> merge, int from, int to)
+        {
+            this.leaf = leaf;
+            this.merge = merge;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected P compute()
+        {
+            if (to - from <= LEAF_ROWS)
+            {
+                return leaf.compute(from, to);
+            }
+
+            int mid = (from + to) >>> 1;
+            Split<P> left = new Split<>(leaf, merge, from, mid);
+            left.fork();
+            P right = new Split<>(leaf, merge, mid, to).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+
+    private static String label(RosterColumns.GroupBy groupBy)
+    {
+        return groupBy == RosterColumns.GroupBy.PROGRAM ? "program" : "semester";
+    }
+}
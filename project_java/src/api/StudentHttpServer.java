@@ -0,0 +1,896 @@
+package api;
+
+import auth.Authenticator;
+import enrollment.Enrollments;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exporter.StudentExporter;
+import importer.RecordParser;
+import metrics.Metrics;
+import models.AgeRange;
+import models.Course;
+import models.Student;
+import models.StudentFields;
+import models.StudentId;
+import store.NameSearch;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedded HTTP/JSON API over the student store, on the JDK's built-in server
+ * Every request runs on its own virtual thread, so a request waiting on a record lock or a slow client
+ * does not hold a platform thread. Students use the same JSON fields as the exporter and importer.
+ *
+ *   GET    /students?after=<cursor>&limit=N     one page in insertion order, streamed; "next" is the cursor
+ *                                                for the following page (null on the last page)
+ *   GET    /students/search?program=&semester=&lastName=&name=&prefix=&fuzzy=&minAge=&maxAge=&limit=N
+ *                                                            filters are combined; fuzzy is a name with typos
+ *                                                            allowed, closest first (among the best 1000)
+ *   GET    /students/{id}
+ *   POST   /students                            all fields required; 201 with the new ID
+ *   PUT    /students/{id}                       all fields required
+ *   PATCH  /students/{id}                       only the fields given
+ *   DELETE /students/{id}
+ *   GET    /students/{id}/courses                the student's courses
+ *   PUT    /students/{id}/courses/{code}         enroll; 409 if the course is full or the student is at the limit
+ *   DELETE /students/{id}/courses/{code}         drop; 404 if the student was not enrolled
+ *   GET    /courses                              the catalog with seats taken
+ *   GET    /courses/{code}                       one course and its roster (student IDs)
+ *   POST   /login                               {"username":..,"password":..} -> {"token":..}
+ *   POST   /logout
+ *
+ * /students and /courses need "Authorization: Bearer <token>" from /login, or Basic credentials (checked against the
+ * cached password digest after the first request, so only the first one pays for the password hash).
+ * Writes go through the store, so they reach the write-ahead log and the indexes like console edits,
+ * and wait for a record an admin is editing (409 if it stays locked). A PUT or PATCH body may repeat the
+ * "id" a GET returned; it must match the URL. An unexpected failure is logged here and answered with a plain 500.
+ */
+public class StudentHttpServer implements Closeable
+{
+    static
+    {
+        // Read once by the JDK server, so they must be set before the first server is created:
+        // - it closes idle keep-alive connections beyond maxIdleConnections (default 200)
+        // - headers and body are separate writes, so without nodelay every small response waits on the
+        //   client's delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null)
+        {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "16384");
+        }
+
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+        {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static final String BASE = "/students";
+    private static final String LOGIN = "/login";
+    private static final String LOGOUT = "/logout";
+    private static final String COURSES = "/courses";
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final long LOCK_WAIT_MILLIS = 2000;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final StudentStore store;
+    private final StudentIndexes indexes;
+    private final NameSearch names;
+    private final Enrollments enrollments;
+    private final Authenticator authenticator;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Thrown by request handling to end the request with an error status
+    private static final class HttpError extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message)
+        {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public StudentHttpServer(StudentStore store, StudentIndexes indexes, NameSearch names, Enrollments enrollments,
+                             Authenticator authenticator, InetSocketAddress address, int backlog) throws IOException
+    {
+        this.store = store;
+        this.indexes = indexes;
+        this.names = names;
+        this.enrollments = enrollments;
+        this.authenticator = authenticator;
+        server = HttpServer.create(address, backlog);
+        server.setExecutor(executor);
+        server.createContext(BASE, this::handle);
+        server.createContext(LOGIN, this::handle);
+        server.createContext(LOGOUT, this::handle);
+        server.createContext(COURSES, this::handle);
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    public int port()
+    {
+        return server.getAddress().getPort();
+    }
+
+    // Stop accepting, give in-flight requests a moment to finish
+    @Override
+    public void close()
+    {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            String rest = path.length() > BASE.length() + 1 ? path.substring(BASE.length() + 1) : "";
+
+            if (path.equals(LOGIN) || path.equals(LOGOUT))
+            {
+                if (!method.equals("POST"))
+                {
+                    throw new HttpError(405, "use POST on " + path);
+                }
+
+                if (path.equals(LOGIN))
+                {
+                    login(exchange);
+                }
+                else
+                {
+                    authenticator.logout(bearerToken(exchange));
+                    exchange.sendResponseHeaders(204, -1);
+                }
+
+                return;
+            }
+
+            if (path.equals(COURSES) || path.startsWith(COURSES + "/"))
+            {
+                authorize(exchange);
+
+                if (!method.equals("GET"))
+                {
+                    throw new HttpError(405, "use GET on " + COURSES);
+                }
+
+                String code = path.length() > COURSES.length() + 1 ? path.substring(COURSES.length() + 1) : "";
+
+                if (code.isEmpty())
+                {
+                    listCourses(exchange);
+                }
+                else
+                {
+                    course(exchange, code);
+                }
+
+                return;
+            }
+
+            if (!path.equals(BASE) && !path.equals(BASE + "/") && !path.startsWith(BASE + "/"))
+            {
+                throw new HttpError(404, "not found");
+            }
+
+            authorize(exchange);
+            Map<String, String> query = query(exchange);
+
+            if (rest.isEmpty())
+            {
+                switch (method)
+                {
+                    case "GET" -> list(exchange, query);
+                    case "POST" -> add(exchange);
+                    default -> throw new HttpError(405, "use GET or POST on " + BASE);
+                }
+            }
+            else if (rest.equals("search"))
+            {
+                if (!method.equals("GET"))
+                {
+                    throw new HttpError(405, "use GET on " + BASE + "/search");
+                }
+
+                search(exchange, query);
+            }
+            else if (rest.contains("/"))
+            {
+                studentCourses(exchange, method, rest);
+            }
+            else
+            {
+                long id = StudentId.parse(rest);
+
+                if (id == StudentId.INVALID)
+                {
+                    throw new HttpError(404, "invalid student ID " + rest);
+                }
+
+                switch (method)
+                {
+                    case "GET" -> get(exchange, id);
+                    case "PUT" -> update(exchange, id, true);
+                    case "PATCH" -> update(exchange, id, false);
+                    case "DELETE" -> delete(exchange, id);
+                    default -> throw new HttpError(405, "use GET, PUT, PATCH or DELETE on a student");
+                }
+            }
+        }
+        catch (HttpError e)
+        {
+            sendError(exchange, e.status, e.getMessage());
+        }
+        catch (RuntimeException e)
+        {
+            // Details stay in the server's log, they can name files and internal state
+            System.err.println(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " failed: "
+                    + e);
+            e.printStackTrace();
+            sendError(exchange, 500, "internal server error");
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException, HttpError
+    {
+        Map<String, String> body = readFields(exchange);
+
+        try
+        {
+            String token = authenticator.login(body.get("username"), body.get("password"), source(exchange));
+            send(exchange, 200, "{\"token\":\"" + token + "\"}\n");
+        }
+        catch (Authenticator.AuthenticationException e)
+        {
+            throw refused(exchange, e);
+        }
+    }
+
+    // Session token, or Basic credentials checked through the authenticator's cache and throttle
+    private void authorize(HttpExchange exchange) throws HttpError
+    {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+
+        if (header != null && header.regionMatches(true, 0, "Basic ", 0, 6))
+        {
+            String credentials;
+
+            try
+            {
+                credentials = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new HttpError(400, "malformed Basic credentials");
+            }
+
+            int colon = credentials.indexOf(':');
+
+            try
+            {
+                authenticator.authenticate(colon < 0 ? credentials : credentials.substring(0, colon),
+                        colon < 0 ? null : credentials.substring(colon + 1), source(exchange));
+                return;
+            }
+            catch (Authenticator.AuthenticationException e)
+            {
+                throw refused(exchange, e);
+            }
+        }
+
+        if (authenticator.session(bearerToken(exchange)) == null)
+        {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer, Basic realm=\"students\"");
+            throw new HttpError(401, "log in at " + LOGIN + " and send the token as a Bearer token");
+        }
+    }
+
+    private static HttpError refused(HttpExchange exchange, Authenticator.AuthenticationException e)
+    {
+        if (e.throttled())
+        {
+            exchange.getResponseHeaders().set("Retry-After", Long.toString(e.retryAfterSeconds()));
+            return new HttpError(429, e.getMessage());
+        }
+
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer, Basic realm=\"students\"");
+        return new HttpError(401, e.getMessage());
+    }
+
+    private static String bearerToken(HttpExchange exchange)
+    {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.regionMatches(true, 0, "Bearer ", 0, 7) ? header.substring(7).trim() : null;
+    }
+
+    private static String source(HttpExchange exchange)
+    {
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    private void get(HttpExchange exchange, long id) throws IOException, HttpError
+    {
+        Student student = store.get(id);
+
+        if (student == null)
+        {
+            throw new HttpError(404, "no student with ID " + StudentId.format(id));
+        }
+
+        StringWriter body = new StringWriter();
+        new StudentExporter(body, StudentExporter.Format.JSON_LINES).write(id, student);
+        send(exchange, 200, body.toString());
+    }
+
+    private void add(HttpExchange exchange) throws IOException, HttpError
+    {
+        Map<String, String> fields = readFields(exchange);
+
+        if (fields.containsKey("id"))
+        {
+            throw new HttpError(400, "the server assigns new IDs, leave out \"id\"");
+        }
+
+        Student student = apply(Student.builder(), fields, true);
+
+        long id = store.newId();
+        store.putIfAbsent(id, student);
+
+        exchange.getResponseHeaders().set("Location", BASE + "/" + StudentId.format(id));
+        send(exchange, 201, "{\"id\":\"" + StudentId.format(id) + "\"}\n");
+    }
+
+    private void update(HttpExchange exchange, long id, boolean replace) throws IOException, HttpError
+    {
+        Map<String, String> fields = readFields(exchange);
+        String bodyId = fields.remove("id");
+
+        // A record as GET returned it carries its ID; that is fine as long as it is this record's
+        if (bodyId != null && StudentId.parse(bodyId) != id)
+        {
+            throw new HttpError(400, "\"id\" " + bodyId + " does not match " + StudentId.format(id) + " in the URL");
+        }
+
+        ReentrantLock lock = lock(id);
+
+        try
+        {
+            // A rejected request never touches the stored record, the new version is only built when valid
+            Student student = apply(store.get(id).toBuilder(), fields, replace);
+            store.put(id, student);
+
+            StringWriter body = new StringWriter();
+            new StudentExporter(body, StudentExporter.Format.JSON_LINES).write(id, student);
+            send(exchange, 200, body.toString());
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void delete(HttpExchange exchange, long id) throws IOException, HttpError
+    {
+        ReentrantLock lock = lock(id);
+
+        try
+        {
+            store.remove(id);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    // {id}/courses and {id}/courses/{code}
+    private void studentCourses(HttpExchange exchange, String method, String rest) throws IOException, HttpError
+    {
+        String[] parts = rest.split("/", 3);
+        long id = StudentId.parse(parts[0]);
+
+        if (id == StudentId.INVALID || !parts[1].equals("courses") || (parts.length == 3 && parts[2].contains("/")))
+        {
+            throw new HttpError(404, "not found");
+        }
+
+        if (!store.containsKey(id))
+        {
+            throw new HttpError(404, "no student with ID " + StudentId.format(id));
+        }
+
+        try
+        {
+            if (parts.length == 2 || parts[2].isEmpty())
+            {
+                if (!method.equals("GET"))
+                {
+                    throw new HttpError(405, "use GET on a student's courses");
+                }
+
+                StringBuilder json = new StringBuilder("{\"courses\":[");
+
+                for (Course course : enrollments.coursesOf(id))
+                {
+                    json.append(json.charAt(json.length() - 1) == '[' ? "" : ",").append(course(course, -1));
+                }
+
+                send(exchange, 200, json.append("]}\n").toString());
+                return;
+            }
+
+            String code = parts[2];
+
+            switch (method)
+            {
+                case "PUT" ->
+                {
+                    Enrollments.Outcome outcome = enrollments.enroll(id, code);
+
+                    switch (outcome)
+                    {
+                        case COURSE_FULL -> throw new HttpError(409, Course.normalizeCode(code) + " is full");
+                        case COURSE_LIMIT -> throw new HttpError(409, "the student is at the course limit");
+                        default -> send(exchange, outcome == Enrollments.Outcome.ENROLLED ? 201 : 200,
+                                "{\"enrolled\":" + quote(Course.normalizeCode(code)) + "}\n");
+                    }
+                }
+                case "DELETE" ->
+                {
+                    if (!enrollments.drop(id, code))
+                    {
+                        throw new HttpError(404, "not enrolled in " + Course.normalizeCode(code));
+                    }
+
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                default -> throw new HttpError(405, "use PUT or DELETE on an enrollment");
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Unknown course, or the student was removed meanwhile
+            throw new HttpError(404, e.getMessage());
+        }
+    }
+
+    private void listCourses(HttpExchange exchange) throws IOException
+    {
+        StringBuilder json = new StringBuilder("{\"courses\":[");
+
+        for (Course course : enrollments.courses())
+        {
+            json.append(json.charAt(json.length() - 1) == '[' ? "\n" : ",\n")
+                    .append(course(course, enrollments.enrolled(course.code())));
+        }
+
+        send(exchange, 200, json.append("]}\n").toString());
+    }
+
+    private void course(HttpExchange exchange, String code) throws IOException, HttpError
+    {
+        Course course = enrollments.course(code);
+
+        if (course == null)
+        {
+            throw new HttpError(404, "unknown course " + Course.normalizeCode(code));
+        }
+
+        long[] roster = enrollments.roster(code);
+        StringBuilder json = new StringBuilder(course(course, roster.length));
+        json.setLength(json.length() - 1);
+        json.append(",\"roster\":[");
+
+        for (int i = 0; i < roster.length; i++)
+        {
+            json.append(i == 0 ? "\"" : ",\"").append(StudentId.format(roster[i])).append('"');
+        }
+
+        send(exchange, 200, json.append("]}\n").toString());
+    }
+
+    // A course as a JSON object; enrolled < 0 leaves the seat count out
+    private static String course(Course course, int enrolled)
+    {
+        return "{\"code\":" + quote(course.code()) + ",\"title\":" + quote(course.title()) + ",\"capacity\":"
+                + course.capacity() + (enrolled < 0 ? "" : ",\"enrolled\":" + enrolled) + "}";
+    }
+
+    // One page in insertion order, written straight to the response as it is read from the store
+    private void list(HttpExchange exchange, Map<String, String> query) throws IOException, HttpError
+    {
+        long start = Metrics.start();
+        int limit = limit(query);
+        long after = -1;
+
+        if (query.containsKey("after"))
+        {
+            try
+            {
+                after = Long.parseLong(query.get("after"));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new HttpError(400, "invalid cursor " + query.get("after"));
+            }
+        }
+
+        StudentStore.Cursor cursor = store.cursorAfter(after);
+
+        try (Writer out = startStream(exchange))
+        {
+            StudentExporter exporter = new StudentExporter(out, StudentExporter.Format.JSON_LINES);
+            int count = 0;
+
+            out.write("{\"students\":[\n");
+
+            while (count < limit && cursor.hasNext())
+            {
+                Map.Entry<Long, Student> entry = cursor.next();
+
+                if (count > 0)
+                {
+                    out.write(',');
+                }
+
+                exporter.write(entry.getKey(), entry.getValue());
+                count++;
+            }
+
+            out.write("],\"next\":");
+            out.write(cursor.hasNext() ? "\"" + cursor.position() + "\"" : "null");
+            out.write("}\n");
+        }
+
+        Metrics.record(Metrics.Operation.LIST, start);
+    }
+
+    // Index lookups, intersected when more than one filter is given; an age range is checked per row and scans the
+    // whole store only when it is the sole filter. Fuzzy results keep their ranking (closest first).
+    private void search(HttpExchange exchange, Map<String, String> query) throws IOException, HttpError
+    {
+        int limit = limit(query);
+        List<List<Long>> matches = new ArrayList<>();
+        List<Long> fuzzy = null;
+        AgeRange ages = ages(query);
+
+        for (Map.Entry<String, String> filter : query.entrySet())
+        {
+            String value = filter.getValue();
+
+            switch (filter.getKey())
+            {
+                case "program" -> matches.add(indexes.findByProgram(value));
+                case "lastName" -> matches.add(indexes.findByLastName(value));
+                case "name" -> matches.add(indexes.findByFullName(value));
+                case "prefix" -> matches.add(indexes.findByNamePrefix(value));
+                case "fuzzy" -> fuzzy = names.search(value, MAX_LIMIT, store).stream().map(NameSearch.Match::id)
+                        .toList();
+                case "semester" ->
+                {
+                    try
+                    {
+                        matches.add(indexes.findBySemester(Integer.parseInt(value.trim())));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new HttpError(400, "invalid semester " + value);
+                    }
+                }
+                case "limit", "minAge", "maxAge" ->
+                {
+                    // Handled above
+                }
+                default -> throw new HttpError(400, "unknown search filter " + filter.getKey());
+            }
+        }
+
+        if (matches.isEmpty() && fuzzy == null && ages == null)
+        {
+            throw new HttpError(400,
+                    "give at least one of program, semester, lastName, name, prefix, fuzzy, minAge, maxAge");
+        }
+
+        // Walk the smallest match list and keep IDs every other filter matched too; a fuzzy list is walked
+        // instead whenever given, since its order is the ranking and the other filters only narrow it
+        matches.sort(Comparator.comparingInt(List::size));
+
+        if (fuzzy != null)
+        {
+            matches.add(0, fuzzy);
+        }
+        List<Set<Long>> others = new ArrayList<>();
+
+        for (List<Long> ids : matches.subList(Math.min(1, matches.size()), matches.size()))
+        {
+            others.add(new HashSet<>(ids));
+        }
+
+        try (Writer out = startStream(exchange))
+        {
+            StudentExporter exporter = new StudentExporter(out, StudentExporter.Format.JSON_LINES);
+            int count = 0;
+
+            out.write("{\"students\":[\n");
+
+            for (Map.Entry<Long, Student> row : candidates(matches))
+            {
+                if (count == limit)
+                {
+                    break;
+                }
+
+                long id = row.getKey();
+                Student student = row.getValue();
+
+                if (!others.stream().allMatch(ids -> ids.contains(id)) || (ages != null && !ages.contains(student)))
+                {
+                    continue;
+                }
+
+                if (count > 0)
+                {
+                    out.write(',');
+                }
+
+                exporter.write(id, student);
+                count++;
+            }
+
+            out.write("]}\n");
+        }
+    }
+
+    // minAge / maxAge query parameters, or null when neither is given
+    private static AgeRange ages(Map<String, String> query) throws HttpError
+    {
+        String minAge = query.get("minAge");
+        String maxAge = query.get("maxAge");
+
+        if (minAge == null && maxAge == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return AgeRange.of(minAge == null ? null : Integer.valueOf(minAge.trim()),
+                    maxAge == null ? null : Integer.valueOf(maxAge.trim()), LocalDate.now());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new HttpError(400, "minAge and maxAge must be whole numbers");
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new HttpError(400, e.getMessage());
+        }
+    }
+
+    // Students of the first index match (the fuzzy ranking, else the smallest list), or every student when only an
+    // age range was given
+    private Iterable<Map.Entry<Long, Student>> candidates(List<List<Long>> matches)
+    {
+        if (matches.isEmpty())
+        {
+            return store.entries();
+        }
+
+        return () -> matches.get(0).stream()
+                .<Map.Entry<Long, Student>>map(id -> new AbstractMap.SimpleImmutableEntry<>(id, store.get(id)))
+                .filter(row -> row.getValue() != null)
+                .iterator();
+    }
+
+    // Wait a short while for a record an admin or another request is editing
+    private ReentrantLock lock(long id) throws HttpError
+    {
+        ReentrantLock lock = store.lockFor(id);
+
+        if (lock == null)
+        {
+            throw new HttpError(404, "no student with ID " + StudentId.format(id));
+        }
+
+        try
+        {
+            if (!lock.tryLock(LOCK_WAIT_MILLIS, TimeUnit.MILLISECONDS))
+            {
+                throw new HttpError(409, "student " + StudentId.format(id) + " is being edited in another session");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "interrupted");
+        }
+
+        // Removed while we waited
+        if (store.lockFor(id) != lock)
+        {
+            lock.unlock();
+            throw new HttpError(404, "no student with ID " + StudentId.format(id));
+        }
+
+        return lock;
+    }
+
+    private static Student apply(Student.Builder student, Map<String, String> fields, boolean allRequired)
+            throws HttpError
+    {
+        try
+        {
+            if (allRequired)
+            {
+                for (String field : StudentFields.NAMES)
+                {
+                    StudentFields.set(student, field, fields.get(field));
+                }
+            }
+
+            for (Map.Entry<String, String> field : fields.entrySet())
+            {
+                StudentFields.set(student, field.getKey(), field.getValue());
+            }
+
+            return student.build();
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new HttpError(400, e.getMessage());
+        }
+    }
+
+    private static Map<String, String> readFields(HttpExchange exchange) throws IOException, HttpError
+    {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+
+        if (body.length > MAX_BODY_BYTES)
+        {
+            throw new HttpError(413, "request body over " + MAX_BODY_BYTES + " bytes");
+        }
+
+        try
+        {
+            return RecordParser.parseFlatJsonObject(new String(body, StandardCharsets.UTF_8));
+        }
+        catch (StringIndexOutOfBoundsException e)
+        {
+            throw new HttpError(400, "malformed JSON: unexpected end of body");
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new HttpError(400, e.getMessage());
+        }
+    }
+
+    private static int limit(Map<String, String> query) throws HttpError
+    {
+        String value = query.get("limit");
+
+        try
+        {
+            int limit = value == null ? DEFAULT_LIMIT : Integer.parseInt(value);
+
+            if (limit < 1 || limit > MAX_LIMIT)
+            {
+                throw new HttpError(400, "limit must be between 1 and " + MAX_LIMIT);
+            }
+
+            return limit;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new HttpError(400, "invalid limit " + value);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange)
+    {
+        Map<String, String> query = new LinkedHashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+
+        if (raw == null || raw.isEmpty())
+        {
+            return query;
+        }
+
+        for (String pair : raw.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+
+        return query;
+    }
+
+    // Chunked response of unknown length; the caller closes the writer to end it
+    private static Writer startStream(HttpExchange exchange) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024);
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException
+    {
+        // Headers already went out (a stream failed part way); all we can do is drop the connection
+        if (exchange.getResponseCode() != -1)
+        {
+            return;
+        }
+
+        send(exchange, status, "{\"error\":" + quote(message) + "}\n");
+    }
+
+    // A JSON string literal
+    private static String quote(String text)
+    {
+        StringBuilder json = new StringBuilder("\"");
+
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,159 @@
+package auth;
+
+import models.AdminAccount;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+
+/**
+ * Administrator accounts kept in a small text file, one per line:
+ *
+ *   username:iterations:base64(salt):base64(hash)
+ *
+ * Lookups go through a HashMap by username. The file is rewritten atomically (temp file + move) and is
+ * readable by its owner only where the file system supports POSIX permissions. There are no built-in
+ * accounts: a new install starts empty and the first admin is created with Main --set-password.
+ */
+public class AccountStore
+{
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    // Null for an in-memory store that is never saved
+    private final Path file;
+    private final Map<String, AdminAccount> accounts = new HashMap<>();
+
+    private AccountStore(Path file)
+    {
+        this.file = file;
+    }
+
+    // Load the accounts file; a missing file gives an empty store, and the file is written by the first put
+    public static AccountStore open(Path file) throws IOException
+    {
+        AccountStore store = new AccountStore(file);
+
+        if (Files.notExists(file))
+        {
+            return store;
+        }
+
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+        {
+            lineNumber++;
+
+            if (line.isBlank() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            try
+            {
+                store.add(parse(line.trim()));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException(file + " line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        return store;
+    }
+
+    // Accounts that live only in memory (benchmarks, embedding)
+    public static AccountStore inMemory(Collection<AdminAccount> accounts)
+    {
+        AccountStore store = new AccountStore(null);
+        accounts.forEach(store::add);
+        return store;
+    }
+
+    public synchronized AdminAccount get(String username)
+    {
+        return username == null ? null : accounts.get(username);
+    }
+
+    // Add or replace an account and rewrite the file
+    public synchronized void put(AdminAccount account) throws IOException
+    {
+        if (account.username().isBlank() || account.username().indexOf(':') >= 0
+                || !account.username().strip().equals(account.username()))
+        {
+            throw new IllegalArgumentException("username must be non-blank, without ':' or surrounding spaces");
+        }
+
+        add(account);
+        save();
+    }
+
+    public synchronized int size()
+    {
+        return accounts.size();
+    }
+
+    private void add(AdminAccount account)
+    {
+        accounts.put(account.username(), account);
+    }
+
+    // Caller holds the monitor (or is still constructing the store)
+    private void save() throws IOException
+    {
+        if (file == null)
+        {
+            return;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(file.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8))
+        {
+            writer.write("# username:iterations:salt:hash (PBKDF2-HMAC-SHA256)\n");
+
+            for (AdminAccount account : new TreeMap<>(accounts).values())
+            {
+                writer.write(account.username() + ":" + account.iterations() + ":" + ENCODER.encodeToString(account.salt())
+                        + ":" + ENCODER.encodeToString(account.hash()) + "\n");
+            }
+        }
+
+        try
+        {
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Not a POSIX file system (Windows); the file keeps the directory's permissions
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static AdminAccount parse(String line)
+    {
+        String[] parts = line.split(":");
+
+        if (parts.length != 4 || parts[0].isEmpty())
+        {
+            throw new IllegalArgumentException("expected username:iterations:salt:hash");
+        }
+
+        try
+        {
+            return new AdminAccount(parts[0], Integer.parseInt(parts[1]), DECODER.decode(parts[2]),
+                    DECODER.decode(parts[3]));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("invalid account entry for " + parts[0] + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package auth;
+
+import metrics.Metrics;
+import models.AdminAccount;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks admin passwords for the console, batch mode and the HTTP API
+ * - the KDF runs only after the login throttle allows the attempt, and also for unknown usernames so
+ *   response times do not reveal which usernames exist
+ * - a verified password is remembered per user as a SHA-256 digest, so repeated Basic-auth requests
+ *   cost one SHA-256 instead of a full PBKDF2 run (dropped when the account changes)
+ * - login() hands out random session tokens; both caches are bounded LRU maps with an idle timeout
+ */
+public class Authenticator
+{
+    private static final int MAX_CACHED = 10_000;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(30);
+    private static final int TOKEN_BYTES = 32;
+    // Hashed in place of the real salt for unknown usernames
+    private static final byte[] UNKNOWN_USER_SALT = new byte[16];
+
+    // Thrown when a login is refused; retryAfterSeconds is 0 for a wrong username or password
+    public static final class AuthenticationException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        AuthenticationException(String message, long retryAfterSeconds)
+        {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public boolean throttled()
+        {
+            return retryAfterSeconds > 0;
+        }
+
+        public long retryAfterSeconds()
+        {
+            return retryAfterSeconds;
+        }
+    }
+
+    // A cached verification (password digest) or session (digest unused); both expire when idle
+    private record Entry(AdminAccount account, byte[] digest, long lastUsedNanos)
+    {
+    }
+
+    // Fixed-size LRU map of cache entries
+    private static final class Cache extends LinkedHashMap<String, Entry>
+    {
+        private static final long serialVersionUID = 1L;
+
+        Cache()
+        {
+            super(256, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    }
+
+    private final AccountStore accounts;
+    private final LoginThrottle throttle;
+    private final SecureRandom random = new SecureRandom();
+    // Username -> digest of the last password verified for it
+    private final Cache verified = new Cache();
+    // Session token -> account it was issued for
+    private final Cache sessions = new Cache();
+
+    public Authenticator(AccountStore accounts, LoginThrottle throttle)
+    {
+        this.accounts = accounts;
+        this.throttle = throttle;
+    }
+
+    // Check a username and password; source identifies the caller for throttling (address, "console", ...)
+    // Timed as a login, whether it was answered from the cache or ran the KDF
+    public String authenticate(String username, String password, String source) throws AuthenticationException
+    {
+        long start = Metrics.start();
+
+        try
+        {
+            String name = verify(username, password, source);
+            Metrics.record(Metrics.Operation.LOGIN, start);
+            return name;
+        }
+        catch (AuthenticationException e)
+        {
+            Metrics.record(Metrics.Operation.LOGIN, start, false);
+            throw e;
+        }
+    }
+
+    private String verify(String username, String password, String source) throws AuthenticationException
+    {
+        AdminAccount account = accounts.get(username);
+
+        if (account != null && password != null)
+        {
+            byte[] digest = digest(account, password);
+
+            synchronized (this)
+            {
+                Entry cached = verified.get(username);
+
+                if (cached != null && cached.account() == account && !expired(cached)
+                        && MessageDigest.isEqual(cached.digest(), digest))
+                {
+                    verified.put(username, new Entry(account, digest, System.nanoTime()));
+                    return username;
+                }
+            }
+        }
+
+        long wait = throttle.tryAcquire(username, source);
+
+        if (wait > 0)
+        {
+            throw new AuthenticationException("Too many login attempts. Try again in " + wait + " s.", wait);
+        }
+
+        if (account == null || password == null)
+        {
+            PasswordHasher.hash(password == null ? "" : password, UNKNOWN_USER_SALT, PasswordHasher.DEFAULT_ITERATIONS);
+            throw new AuthenticationException("Invalid login credentials.", 0);
+        }
+
+        if (!PasswordHasher.verify(account, password))
+        {
+            throw new AuthenticationException("Invalid login credentials.", 0);
+        }
+
+        synchronized (this)
+        {
+            verified.put(username, new Entry(account, digest(account, password), System.nanoTime()));
+        }
+
+        return username;
+    }
+
+    // Authenticate and start a session; returns the session token
+    public String login(String username, String password, String source) throws AuthenticationException
+    {
+        AdminAccount account = accounts.get(authenticate(username, password, source));
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        synchronized (this)
+        {
+            sessions.put(token, new Entry(account, null, System.nanoTime()));
+        }
+
+        return token;
+    }
+
+    // Username of a live session, or null if the token is unknown, expired or its account has changed
+    public synchronized String session(String token)
+    {
+        Entry session = token == null ? null : sessions.get(token);
+
+        if (session == null)
+        {
+            return null;
+        }
+
+        if (expired(session) || accounts.get(session.account().username()) != session.account())
+        {
+            sessions.remove(token);
+            return null;
+        }
+
+        sessions.put(token, new Entry(session.account(), null, System.nanoTime()));
+        return session.account().username();
+    }
+
+    public synchronized void logout(String token)
+    {
+        sessions.remove(token);
+    }
+
+    // False until the first admin is created (a new install)
+    public boolean hasAccounts()
+    {
+        return accounts.size() > 0;
+    }
+
+    // Create or replace an account; sessions and cached checks for the old password stop working
+    public void setPassword(String username, String password) throws IOException
+    {
+        accounts.put(PasswordHasher.newAccount(username, password, PasswordHasher.DEFAULT_ITERATIONS));
+
+        synchronized (this)
+        {
+            verified.remove(username);
+        }
+    }
+
+    private static boolean expired(Entry entry)
+    {
+        return System.nanoTime() - entry.lastUsedNanos() > IDLE_TIMEOUT_NANOS;
+    }
+
+    // Fast digest of a password already checked against the account (keyed by the stored hash)
+    private static byte[] digest(AdminAccount account, String password)
+    {
+        try
+        {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(account.hash());
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // SHA-256 is required on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package auth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token buckets per username and per source (client address, "console", "batch")
+ * Every password check that has to run the KDF takes one token from both buckets; when either is empty the
+ * attempt is refused before any hashing, so guessing cannot burn CPU. Buckets refill continuously.
+ * Both maps are bounded (least recently used buckets are dropped; a dropped bucket comes back full).
+ */
+public class LoginThrottle
+{
+    private static final int MAX_BUCKETS = 10_000;
+
+    // One bucket; tokens are fractional so refill needs no timer
+    private static final class Bucket
+    {
+        double tokens;
+        long updatedNanos;
+
+        Bucket(double tokens, long now)
+        {
+            this.tokens = tokens;
+            this.updatedNanos = now;
+        }
+    }
+
+    // Fixed-size LRU map of buckets
+    private static final class Buckets extends LinkedHashMap<String, Bucket>
+    {
+        private static final long serialVersionUID = 1L;
+
+        Buckets()
+        {
+            super(256, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest)
+        {
+            return size() > MAX_BUCKETS;
+        }
+    }
+
+    private final int userCapacity;
+    private final double userTokensPerSecond;
+    private final int sourceCapacity;
+    private final double sourceTokensPerSecond;
+    private final Buckets byUser = new Buckets();
+    private final Buckets bySource = new Buckets();
+
+    // Defaults: 5 tries per username then one every 10 s; 20 tries per source then one a second
+    public LoginThrottle()
+    {
+        this(5, 0.1, 20, 1.0);
+    }
+
+    public LoginThrottle(int userCapacity, double userTokensPerSecond, int sourceCapacity, double sourceTokensPerSecond)
+    {
+        this.userCapacity = userCapacity;
+        this.userTokensPerSecond = userTokensPerSecond;
+        this.sourceCapacity = sourceCapacity;
+        this.sourceTokensPerSecond = sourceTokensPerSecond;
+    }
+
+    // Take a token for this username and source; returns 0 if allowed, otherwise the seconds until the next
+    // attempt would be (nothing is taken from either bucket then)
+    public synchronized long tryAcquire(String username, String source)
+    {
+        long now = System.nanoTime();
+        Bucket user = refill(byUser, username, userCapacity, userTokensPerSecond, now);
+        Bucket from = refill(bySource, source, sourceCapacity, sourceTokensPerSecond, now);
+
+        if (user.tokens < 1 || from.tokens < 1)
+        {
+            double wait = Math.max(user.tokens < 1 ? (1 - user.tokens) / userTokensPerSecond : 0,
+                    from.tokens < 1 ? (1 - from.tokens) / sourceTokensPerSecond : 0);
+            return Math.max(1, (long) Math.ceil(wait));
+        }
+
+        user.tokens -= 1;
+        from.tokens -= 1;
+        return 0;
+    }
+
+    private static Bucket refill(Buckets buckets, String key, int capacity, double perSecond, long now)
+    {
+        Bucket bucket = buckets.get(key);
+
+        if (bucket == null)
+        {
+            bucket = new Bucket(capacity, now);
+            buckets.put(key, bucket);
+            return bucket;
+        }
+
+        bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedNanos) / 1e9 * perSecond);
+        bucket.updatedNanos = now;
+        return bucket;
+    }
+}
@@ -0,0 +1,64 @@
+package auth;
+
+import models.AdminAccount;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes, compared in constant time
+ */
+public final class PasswordHasher
+{
+    // OWASP's current recommendation for PBKDF2-HMAC-SHA256; override with -Dsems.auth.iterations=...
+    public static final int DEFAULT_ITERATIONS = Integer.getInteger("sems.auth.iterations", 600_000);
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHasher()
+    {
+    }
+
+    // A new account with a fresh random salt
+    public static AdminAccount newAccount(String username, String password, int iterations)
+    {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return new AdminAccount(username, iterations, salt, hash(password, salt, iterations));
+    }
+
+    // Hashes the password with the account's salt and iteration count; the time taken does not depend on
+    // where the hashes differ
+    public static boolean verify(AdminAccount account, String password)
+    {
+        return MessageDigest.isEqual(account.hash(), hash(password, account.salt(), account.iterations()));
+    }
+
+    static byte[] hash(String password, byte[] salt, int iterations)
+    {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, iterations, HASH_BITS);
+
+        try
+        {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        }
+        catch (GeneralSecurityException e)
+        {
+            // PBKDF2WithHmacSHA256 is required on every Java platform
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+        finally
+        {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+}
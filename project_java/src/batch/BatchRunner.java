@@ -0,0 +1,643 @@
+package batch;
+
+import exporter.StudentExporter;
+import models.AgeRange;
+import models.Programs;
+import models.Student;
+import models.StudentFields;
+import models.StudentId;
+import persistence.StorageEngine;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless command mode: runs add/update/remove/list commands from a file or stdin straight against the store,
+ * without the console prompts. One command per line, blank lines and lines starting with # are ignored:
+ *
+ *   add firstName=Ann lastName=Lee dateOfBirth=2001-04-02 gender=F gpaPrev=3.4 currentSemester=2 program="Software Development" numCourses=5
+ *   update 00000A gpaPrev=3.9 program="Information Technology"
+ *   remove 00000A
+ *   list [program=X] [semester=N] [lastName=X] [minAge=N] [maxAge=N]
+ *                                                   (a leading -- on options is allowed: list --program=X)
+ *   begin ... commit | rollback                     (all-or-nothing transaction)
+ *
+ * Commands outside begin/commit each succeed or fail on their own and are synced to disk in groups of
+ * autoCommitEvery. A transaction is validated completely before anything is applied, locks every record it
+ * touches, and is applied as one StudentStore.group: no other change comes in between, a failure part way
+ * (e.g. the disk) reverts what was applied, and the log holds all of it or none after a crash. It is synced to
+ * disk once at commit and only counted once that is done. Other sessions reading single records while it is
+ * applied can see part of it.
+ */
+public class BatchRunner
+{
+    // How long a transaction waits for a record that an admin is editing
+    private static final long LOCK_WAIT_SECONDS = 5;
+
+    // Totals reported at the end of a run
+    public record Summary(long operations, long failed, long transactions, long elapsedMillis)
+    {
+        public double operationsPerSecond()
+        {
+            return elapsedMillis == 0 ? operations * 1000.0 : operations * 1000.0 / elapsedMillis;
+        }
+    }
+
+    // One parsed add/update/remove command
+    private record Operation(long line, String command, long id, Map<String, String> fields)
+    {
+    }
+
+    // Thrown when a command or transaction cannot be applied
+    private static final class BatchException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        BatchException(String message)
+        {
+            super(message);
+        }
+    }
+
+    private final StudentStore store;
+    private final StudentIndexes indexes;
+    // May be null when the store is not persisted
+    private final StorageEngine storage;
+    private final Writer out;
+    private final int autoCommitEvery;
+
+    private long operations = 0;
+    private long failed = 0;
+    private long transactions = 0;
+    private int unsynced = 0;
+
+    public BatchRunner(StudentStore store, StudentIndexes indexes, StorageEngine storage, Writer out, int autoCommitEvery)
+    {
+        this.store = store;
+        this.indexes = indexes;
+        this.storage = storage;
+        this.out = out;
+        this.autoCommitEvery = autoCommitEvery;
+    }
+
+    public Summary run(BufferedReader in) throws IOException
+    {
+        long start = System.nanoTime();
+        List<Operation> transaction = null;
+        boolean transactionFailed = false;
+        long lineNumber = 0;
+        String line;
+
+        while ((line = in.readLine()) != null)
+        {
+            lineNumber++;
+            String trimmed = line.trim();
+
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+            {
+                continue;
+            }
+
+            List<String> tokens;
+
+            try
+            {
+                tokens = tokenize(trimmed);
+            }
+            catch (IllegalArgumentException e)
+            {
+                error(lineNumber, e.getMessage());
+                transactionFailed = transaction != null;
+                continue;
+            }
+
+            String command = tokens.get(0).toLowerCase(Locale.ROOT);
+
+            switch (command)
+            {
+                case "begin" ->
+                {
+                    if (transaction != null)
+                    {
+                        error(lineNumber, "nested begin is not supported");
+                    }
+                    else
+                    {
+                        syncIfNeeded(true);
+                        transaction = new ArrayList<>();
+                        transactionFailed = false;
+                    }
+                }
+                case "commit" ->
+                {
+                    if (transaction == null)
+                    {
+                        error(lineNumber, "commit without begin");
+                    }
+                    else if (transactionFailed)
+                    {
+                        error(lineNumber, "transaction rolled back because of earlier errors");
+                        failed += transaction.size();
+                    }
+                    else
+                    {
+                        commit(lineNumber, transaction);
+                    }
+
+                    transaction = null;
+                }
+                case "rollback" ->
+                {
+                    if (transaction == null)
+                    {
+                        error(lineNumber, "rollback without begin");
+                    }
+                    else
+                    {
+                        failed += transaction.size();
+                        transaction = null;
+                    }
+                }
+                case "add", "update", "remove" ->
+                {
+                    operations++;
+
+                    try
+                    {
+                        Operation operation = parse(lineNumber, command, tokens);
+
+                        if (transaction != null)
+                        {
+                            transaction.add(operation);
+                        }
+                        else
+                        {
+                            apply(List.of(operation));
+                            unsynced++;
+                            syncIfNeeded(false);
+                        }
+                    }
+                    catch (BatchException e)
+                    {
+                        error(lineNumber, e.getMessage());
+                        failed++;
+                        transactionFailed = transaction != null;
+                    }
+                }
+                case "list" -> list(lineNumber, tokens);
+                default ->
+                {
+                    error(lineNumber, "unknown command " + tokens.get(0));
+                    transactionFailed = transaction != null;
+                }
+            }
+        }
+
+        if (transaction != null)
+        {
+            error(lineNumber, "missing commit, transaction rolled back");
+            failed += transaction.size();
+        }
+
+        syncIfNeeded(true);
+        out.flush();
+        return new Summary(operations, failed, transactions, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void commit(long lineNumber, List<Operation> transaction) throws IOException
+    {
+        try
+        {
+            apply(transaction);
+            sync();
+            transactions++;
+        }
+        catch (BatchException e)
+        {
+            error(lineNumber, "transaction rolled back: " + e.getMessage());
+            failed += transaction.size();
+        }
+    }
+
+    // Validate, lock and apply a group of operations; nothing is applied if any of them fails
+    private void apply(List<Operation> group) throws BatchException, IOException
+    {
+        // Lock every existing record the group touches, in ID order so two batch runs cannot deadlock
+        TreeMap<Long, ReentrantLock> locks = new TreeMap<>();
+
+        for (Operation operation : group)
+        {
+            if (!operation.command().equals("add"))
+            {
+                locks.put(operation.id(), null);
+            }
+        }
+
+        List<ReentrantLock> held = new ArrayList<>();
+
+        try
+        {
+            for (Map.Entry<Long, ReentrantLock> entry : locks.entrySet())
+            {
+                ReentrantLock lock = store.lockFor(entry.getKey());
+
+                if (lock == null)
+                {
+                    throw new BatchException("no student with ID " + StudentId.format(entry.getKey()));
+                }
+
+                if (!lock.tryLock(LOCK_WAIT_SECONDS, TimeUnit.SECONDS))
+                {
+                    throw new BatchException("student " + StudentId.format(entry.getKey()) + " is being edited");
+                }
+
+                held.add(lock);
+
+                if (store.lockFor(entry.getKey()) != lock)
+                {
+                    throw new BatchException("no student with ID " + StudentId.format(entry.getKey()));
+                }
+            }
+
+            // Build every new record before changing anything, so a late failure leaves the store untouched
+            Map<Long, Student.Builder> updated = new HashMap<>();
+            Set<Long> removed = new HashSet<>();
+            List<Student> added = new ArrayList<>();
+
+            for (Operation operation : group)
+            {
+                switch (operation.command())
+                {
+                    case "add" ->
+                    {
+                        Student.Builder student = Student.builder();
+
+                        for (String field : StudentFields.NAMES)
+                        {
+                            set(operation, student, field, operation.fields().get(field));
+                        }
+
+                        added.add(student.build());
+                    }
+                    case "update" ->
+                    {
+                        if (removed.contains(operation.id()))
+                        {
+                            throw new BatchException("line " + operation.line() + ": student was removed earlier");
+                        }
+
+                        Student.Builder student = updated.computeIfAbsent(operation.id(),
+                                id -> store.get(id).toBuilder());
+
+                        for (Map.Entry<String, String> field : operation.fields().entrySet())
+                        {
+                            set(operation, student, field.getKey(), field.getValue());
+                        }
+                    }
+                    default ->
+                    {
+                        if (!removed.add(operation.id()))
+                        {
+                            throw new BatchException("line " + operation.line() + ": student was removed earlier");
+                        }
+
+                        updated.remove(operation.id());
+                    }
+                }
+            }
+
+            long[] addedIds = new long[added.size()];
+            Runnable changes = () ->
+            {
+                for (Map.Entry<Long, Student.Builder> entry : updated.entrySet())
+                {
+                    store.put(entry.getKey(), entry.getValue().build());
+                }
+
+                for (long id : removed)
+                {
+                    store.remove(id);
+                }
+
+                for (int i = 0; i < addedIds.length; i++)
+                {
+                    addedIds[i] = store.newId();
+                    store.putIfAbsent(addedIds[i], added.get(i));
+                }
+            };
+
+            try
+            {
+                if (group.size() == 1)
+                {
+                    changes.run();
+                }
+                else
+                {
+                    store.group(changes);
+                }
+            }
+            catch (UncheckedIOException e)
+            {
+                throw new BatchException("could not save: " + e.getMessage());
+            }
+
+            for (long id : addedIds)
+            {
+                out.write("added ");
+                out.write(StudentId.format(id));
+                out.write('\n');
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BatchException("interrupted");
+        }
+        finally
+        {
+            for (ReentrantLock lock : held)
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static void set(Operation operation, Student.Builder student, String field, String value) throws BatchException
+    {
+        try
+        {
+            StudentFields.set(student, field, value);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new BatchException("line " + operation.line() + ": " + e.getMessage());
+        }
+    }
+
+    // Check the command shape and field values up front (values are checked again when applied)
+    private static Operation parse(long line, String command, List<String> tokens) throws BatchException
+    {
+        int first = 1;
+        long id = StudentId.INVALID;
+
+        if (!command.equals("add"))
+        {
+            if (tokens.size() < 2 || (id = StudentId.parse(tokens.get(1))) == StudentId.INVALID)
+            {
+                throw new BatchException(command + " needs a student ID");
+            }
+
+            first = 2;
+        }
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        Student.Builder scratch = Student.builder();
+
+        for (String token : tokens.subList(first, tokens.size()))
+        {
+            int equals = token.indexOf('=');
+            String name = equals < 0 ? null : StudentFields.canonical(stripDashes(token.substring(0, equals)));
+
+            if (name == null)
+            {
+                throw new BatchException("expected field=value, got '" + token + "'");
+            }
+
+            String value = token.substring(equals + 1);
+
+            try
+            {
+                StudentFields.set(scratch, name, value);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new BatchException(e.getMessage());
+            }
+
+            fields.put(name, value);
+        }
+
+        if (command.equals("add") && fields.size() != StudentFields.NAMES.size())
+        {
+            List<String> missing = new ArrayList<>(StudentFields.NAMES);
+            missing.removeAll(fields.keySet());
+            throw new BatchException("add is missing " + String.join(", ", missing));
+        }
+
+        if (command.equals("update") && fields.isEmpty())
+        {
+            throw new BatchException("update has no fields to change");
+        }
+
+        if (command.equals("remove") && !fields.isEmpty())
+        {
+            throw new BatchException("remove takes only an ID");
+        }
+
+        return new Operation(line, command, id, fields);
+    }
+
+    // list with optional program / semester / lastName / age filters; the first indexed filter picks the index to
+    // start from, the age range is checked per row against the stored birth day
+    private void list(long lineNumber, List<String> tokens) throws IOException
+    {
+        String program = null;
+        Integer semester = null;
+        String lastName = null;
+        Integer minAge = null;
+        Integer maxAge = null;
+
+        for (String token : tokens.subList(1, tokens.size()))
+        {
+            int equals = token.indexOf('=');
+            String name = equals < 0 ? "" : stripDashes(token.substring(0, equals)).toLowerCase(Locale.ROOT);
+            String value = equals < 0 ? "" : token.substring(equals + 1).trim();
+
+            try
+            {
+                switch (name)
+                {
+                    case "program" -> program = value;
+                    case "semester", "currentsemester" -> semester = Integer.parseInt(value);
+                    case "lastname" -> lastName = value;
+                    case "minage" -> minAge = Integer.parseInt(value);
+                    case "maxage" -> maxAge = Integer.parseInt(value);
+                    default ->
+                    {
+                        error(lineNumber, "unknown list option '" + token + "'");
+                        return;
+                    }
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                error(lineNumber, "invalid number in '" + token + "'");
+                return;
+            }
+        }
+
+        AgeRange ages;
+
+        try
+        {
+            ages = minAge == null && maxAge == null ? null : AgeRange.of(minAge, maxAge, LocalDate.now());
+        }
+        catch (IllegalArgumentException e)
+        {
+            error(lineNumber, e.getMessage());
+            return;
+        }
+
+        StudentExporter listing = new StudentExporter(out, StudentExporter.Format.LISTING);
+        Iterable<Long> ids;
+
+        int programId = program == null ? -1 : Programs.find(program);
+
+        if (program != null)
+        {
+            ids = indexes.findByProgram(programId);
+        }
+        else if (semester != null)
+        {
+            ids = indexes.findBySemester(semester);
+        }
+        else if (lastName != null)
+        {
+            ids = indexes.findByLastName(lastName);
+        }
+        else if (ages != null)
+        {
+            // Filter on the birth day alone; only the matching rows are built
+            List<Map.Entry<Long, Student>> rows = new ArrayList<>();
+            store.scan(view ->
+            {
+                if (ages.contains(view.birthDay()))
+                {
+                    rows.add(Map.entry(view.id(), view.student()));
+                }
+            });
+
+            for (Map.Entry<Long, Student> row : rows)
+            {
+                listing.write(row.getKey(), row.getValue());
+            }
+
+            return;
+        }
+        else
+        {
+            for (Map.Entry<Long, Student> entry : store.entries())
+            {
+                listing.write(entry.getKey(), entry.getValue());
+            }
+
+            return;
+        }
+
+        for (long id : ids)
+        {
+            Student student = store.get(id);
+
+            if (student != null
+                    && (programId < 0 || programId == student.programId())
+                    && (semester == null || semester == student.currentSemester())
+                    && (lastName == null || lastName.equalsIgnoreCase(student.lastName().trim()))
+                    && (ages == null || ages.contains(student)))
+            {
+                listing.write(id, student);
+            }
+        }
+    }
+
+    private void syncIfNeeded(boolean force) throws IOException
+    {
+        if (unsynced > 0 && (force || unsynced >= autoCommitEvery))
+        {
+            transactions++;
+            sync();
+        }
+    }
+
+    private void sync() throws IOException
+    {
+        unsynced = 0;
+
+        if (storage != null)
+        {
+            storage.sync();
+        }
+    }
+
+    private void error(long lineNumber, String message) throws IOException
+    {
+        out.write("line ");
+        out.write(Long.toString(lineNumber));
+        out.write(": error: ");
+        out.write(message);
+        out.write('\n');
+    }
+
+    private static String stripDashes(String name)
+    {
+        return name.startsWith("--") ? name.substring(2) : name;
+    }
+
+    // Split on whitespace; double quotes group a value with spaces (key="a b"), \" is a literal quote
+    static List<String> tokenize(String line)
+    {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+
+            if (c == '\\' && quoted && i + 1 < line.length())
+            {
+                token.append(line.charAt(++i));
+            }
+            else if (c == '"')
+            {
+                quoted = !quoted;
+                inToken = true;
+            }
+            else if (Character.isWhitespace(c) && !quoted)
+            {
+                if (inToken)
+                {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            }
+            else
+            {
+                token.append(c);
+                inToken = true;
+            }
+        }
+
+        if (quoted)
+        {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+
+        if (inToken)
+        {
+            tokens.add(token.toString());
+        }
+
+        return tokens;
+    }
+}
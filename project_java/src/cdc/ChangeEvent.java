@@ -0,0 +1,42 @@
+package cdc;
+
+import models.Student;
+import models.StudentFields;
+
+import java.util.List;
+
+/**
+ * One committed change to the student store, as seen by change-data-capture subscribers
+ * Sequence numbers increase by one per event and keep counting across restarts (they continue from the change log).
+ * before is null for CREATE, after is null for DELETE; changedFields lists the fields that differ, in
+ * StudentFields.NAMES order (every field for CREATE and DELETE).
+ */
+public record ChangeEvent(long sequence, Type type, long studentId, long timestampMillis, Student before,
+                          Student after, List<String> changedFields)
+{
+    public enum Type
+    {
+        CREATE, UPDATE, DELETE
+    }
+
+    public ChangeEvent
+    {
+        changedFields = List.copyOf(changedFields);
+    }
+
+    static ChangeEvent of(long sequence, long studentId, long timestampMillis, Student before, Student after)
+    {
+        if (before == null)
+        {
+            return new ChangeEvent(sequence, Type.CREATE, studentId, timestampMillis, null, after, StudentFields.NAMES);
+        }
+
+        if (after == null)
+        {
+            return new ChangeEvent(sequence, Type.DELETE, studentId, timestampMillis, before, null, StudentFields.NAMES);
+        }
+
+        return new ChangeEvent(sequence, Type.UPDATE, studentId, timestampMillis, before, after,
+                StudentFields.changed(before, after));
+    }
+}
@@ -0,0 +1,468 @@
+package cdc;
+
+import models.Student;
+import store.StoreListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Change-data-capture stream of the student store: attach with StudentStore.addListener
+ * The store calls its listeners under its commit lock, so there is exactly one producer, which numbers the
+ * events and writes them into a power-of-two ring without locking. Each subscription reads the ring on its own
+ * thread and parks while it has caught up. The change log (when the feed has a directory) is the one lossless
+ * subscriber: the producer waits rather than overwrite an event the log has not written yet, which is what
+ * lets every other subscriber fall behind freely. One that gets lapped by the ring catches up by replaying
+ * from the log; without a log it is told what it missed (onMissed) and continues from the oldest event left.
+ * Delivery is at-least-once: durable subscriptions checkpoint their offset after each drained batch, but never
+ * past the last event the log has flushed, so a crash that loses the log's buffer cannot leave a checkpoint
+ * ahead of the log. Sequence numbers continue after the log and every checkpoint, so they are never reused.
+ * The changes of a StudentStore.group are held back until it commits, then published back to back; a group
+ * that fails publishes nothing.
+ */
+public class ChangeFeed implements StoreListener, Closeable
+{
+    // subscribe(...) from here: only events published after subscribing
+    public static final long LATEST = -1;
+
+    // Tunables (override with -Dsems.cdc.ringSize=..., rounded up to a power of two)
+    private static final int RING_SIZE = Integer.getInteger("sems.cdc.ringSize", 8192);
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+
+    private final AtomicReferenceArray<ChangeEvent> ring;
+    private final int mask;
+    private final ChangeLog log;
+    private final Path offsetDir;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Last sequence handed to the ring; only the producer writes it
+    private volatile long published;
+    // Sequences after the log's end that a checkpoint had passed at startup (older checkpoints, a log cut
+    // short): they exist nowhere, lostFrom > lostTo if there are none
+    private final long lostFrom;
+    private final long lostTo;
+    // Changes of the open group, null outside one; only the producer uses it
+    private List<Pending> group;
+
+    // A change held back until its group commits
+    private record Pending(long id, long time, Student previous, Student student)
+    {
+    }
+
+    // In-memory feed without history: lapped subscribers skip ahead
+    public ChangeFeed()
+    {
+        this(null, null, RING_SIZE, 0);
+    }
+
+    private ChangeFeed(ChangeLog log, Path offsetDir, int ringSize, long checkpointed)
+    {
+        int capacity = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.log = log;
+        this.offsetDir = offsetDir;
+        this.published = log == null ? 0 : Math.max(log.lastSequence(), checkpointed);
+        this.lostFrom = log == null ? 1 : log.lastSequence() + 1;
+        this.lostTo = published;
+
+        if (log != null)
+        {
+            start(new Subscription("change-log", log, published + 1, true, null));
+        }
+    }
+
+    // Feed backed by <dir>/changes.log, with durable subscriber offsets in <dir>/offsets
+    // Sequence numbers continue from the last logged event, or the highest checkpoint if that is further
+    public static ChangeFeed open(Path dir) throws IOException
+    {
+        Path offsetDir = dir.resolve("offsets");
+        Files.createDirectories(offsetDir);
+        long checkpointed = 0;
+
+        try (DirectoryStream<Path> offsets = Files.newDirectoryStream(offsetDir, "*.offset"))
+        {
+            for (Path offsetFile : offsets)
+            {
+                checkpointed = Math.max(checkpointed, readOffset(offsetFile));
+            }
+        }
+
+        return new ChangeFeed(ChangeLog.open(dir.resolve("changes.log")), offsetDir, RING_SIZE, checkpointed);
+    }
+
+    private static long readOffset(Path offsetFile) throws IOException
+    {
+        String stored = Files.readString(offsetFile, StandardCharsets.UTF_8).trim();
+
+        try
+        {
+            return Long.parseLong(stored);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Corrupt offset file " + offsetFile + ": " + stored);
+        }
+    }
+
+    // Sequence of the newest event
+    public long published()
+    {
+        return published;
+    }
+
+    // The backing log, null for an in-memory feed
+    public ChangeLog log()
+    {
+        return log;
+    }
+
+    public List<Subscription> subscriptions()
+    {
+        return List.copyOf(subscriptions);
+    }
+
+    // Deliver every event from fromSequence on (LATEST for new events only); older events come from the log
+    public Subscription subscribe(String name, long fromSequence, ChangeSubscriber subscriber)
+    {
+        return start(new Subscription(name, subscriber, fromSequence == LATEST ? published + 1 : fromSequence,
+                false, null));
+    }
+
+    // Subscription whose offset survives restarts: resumes after the last checkpointed event, or at the start of
+    // the log the first time
+    public Subscription subscribeDurable(String name, ChangeSubscriber subscriber) throws IOException
+    {
+        if (offsetDir == null)
+        {
+            throw new IllegalStateException("Durable subscriptions need a feed opened on a directory.");
+        }
+
+        if (!name.matches("[A-Za-z0-9._-]+"))
+        {
+            throw new IllegalArgumentException("Subscription names may only use letters, digits, '.', '_' and '-'.");
+        }
+
+        Path offsetFile = offsetDir.resolve(name + ".offset");
+        long from = log.firstSequence();
+
+        if (Files.exists(offsetFile))
+        {
+            from = readOffset(offsetFile) + 1;
+        }
+
+        return start(new Subscription(name, subscriber, from, false, offsetFile));
+    }
+
+    private Subscription start(Subscription subscription)
+    {
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    @Override
+    public void onPut(long id, Student previous, Student student)
+    {
+        if (group != null)
+        {
+            group.add(new Pending(id, System.currentTimeMillis(), previous, student));
+            return;
+        }
+
+        ChangeEvent event = ChangeEvent.of(published + 1, id, System.currentTimeMillis(), previous, student);
+
+        // Re-saving an unchanged record is not a change
+        if (event.changedFields().isEmpty())
+        {
+            return;
+        }
+
+        publish(event);
+    }
+
+    @Override
+    public void onRemove(long id, Student removed)
+    {
+        if (group != null)
+        {
+            group.add(new Pending(id, System.currentTimeMillis(), removed, null));
+            return;
+        }
+
+        publish(ChangeEvent.of(published + 1, id, System.currentTimeMillis(), removed, null));
+    }
+
+    @Override
+    public void onGroupStart()
+    {
+        group = new ArrayList<>();
+    }
+
+    @Override
+    public void onGroupEnd(boolean committed)
+    {
+        List<Pending> changes = group;
+        group = null;
+
+        if (!committed)
+        {
+            return;
+        }
+
+        for (Pending change : changes)
+        {
+            ChangeEvent event = ChangeEvent.of(published + 1, change.id(), change.time(), change.previous(),
+                    change.student());
+
+            if (change.student() == null || !event.changedFields().isEmpty())
+            {
+                publish(event);
+            }
+        }
+    }
+
+    // Called by the single producer (under the store's commit lock)
+    private void publish(ChangeEvent event)
+    {
+        long sequence = event.sequence();
+        long overwritten = sequence - ring.length();
+
+        // Backpressure: never overwrite an event a lossless subscriber still needs
+        for (Subscription subscription : subscriptions)
+        {
+            while (subscription.lossless && subscription.running && subscription.processed < overwritten)
+            {
+                LockSupport.unpark(subscription.thread);
+                LockSupport.parkNanos(50_000);
+            }
+        }
+
+        ring.set((int) (sequence & mask), event);
+        published = sequence;
+
+        for (Subscription subscription : subscriptions)
+        {
+            if (subscription.waiting)
+            {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    // Stop every subscription (the change log last, after its final flush) and close the log; durable
+    // subscriptions then checkpoint what the log held back
+    @Override
+    public void close() throws IOException
+    {
+        List<Subscription> stopped = List.copyOf(subscriptions).reversed();
+
+        for (Subscription subscription : stopped)
+        {
+            subscription.close();
+        }
+
+        if (log != null)
+        {
+            log.close();
+
+            for (Subscription subscription : stopped)
+            {
+                subscription.checkpoint();
+            }
+        }
+    }
+
+    /**
+     * One subscriber and the thread that feeds it
+     */
+    public final class Subscription implements Closeable
+    {
+        private final String name;
+        private final ChangeSubscriber subscriber;
+        private final boolean lossless;
+        private final Path offsetFile;
+        private final Thread thread;
+        // Last sequence delivered to the subscriber
+        private volatile long processed;
+        private volatile boolean running = true;
+        private volatile boolean waiting = false;
+        private volatile Exception failure;
+        private long checkpointed;
+
+        private Subscription(String name, ChangeSubscriber subscriber, long from, boolean lossless, Path offsetFile)
+        {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.lossless = lossless;
+            this.offsetFile = offsetFile;
+            this.processed = Math.max(0, from - 1);
+            this.checkpointed = processed;
+            this.thread = new Thread(this::run, "cdc-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        public String name()
+        {
+            return name;
+        }
+
+        // Last sequence delivered
+        public long processed()
+        {
+            return processed;
+        }
+
+        // Events published but not delivered yet
+        public long lag()
+        {
+            return Math.max(0, published - processed);
+        }
+
+        // Why the subscription stopped, null while it runs (or after close)
+        public Exception failure()
+        {
+            return failure;
+        }
+
+        public boolean isRunning()
+        {
+            return running;
+        }
+
+        private void run()
+        {
+            try
+            {
+                while (running || (lossless && processed < published))
+                {
+                    long next = processed + 1;
+
+                    if (next > published)
+                    {
+                        subscriber.onIdle();
+                        checkpoint();
+                        waiting = true;
+
+                        if (running && published < next)
+                        {
+                            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                        }
+
+                        waiting = false;
+                        continue;
+                    }
+
+                    ChangeEvent event = ring.get((int) (next & mask));
+
+                    if (event != null && event.sequence() == next)
+                    {
+                        deliver(event);
+                    }
+                    else
+                    {
+                        catchUp(next);
+                    }
+                }
+
+                subscriber.onIdle();
+                checkpoint();
+            }
+            catch (Exception e)
+            {
+                failure = e;
+                running = false;
+                System.err.println("Change subscriber " + name + " stopped at " + (processed + 1) + ": " + e);
+            }
+        }
+
+        private void deliver(ChangeEvent event) throws Exception
+        {
+            subscriber.onEvent(event);
+            processed = event.sequence();
+        }
+
+        // next is no longer (or not yet) in the ring: replay it from the log, or skip to what the ring still has
+        private void catchUp(long next) throws Exception
+        {
+            long oldestInRing = Math.max(1, published - ring.length() + 1);
+
+            if (next >= lostFrom && next <= lostTo)
+            {
+                subscriber.onMissed(next, lostTo);
+                processed = lostTo;
+                return;
+            }
+
+            if (log != null && next >= log.firstSequence())
+            {
+                // The log only holds what it flushed; the rest is still in the ring or comes on the next pass
+                if (log.replay(next, oldestInRing - 1, this::deliver) < next && processed + 1 < oldestInRing)
+                {
+                    LockSupport.parkNanos(1_000_000);
+                }
+
+                return;
+            }
+
+            long resume = log != null ? Math.min(oldestInRing, log.firstSequence()) : oldestInRing;
+
+            if (next < resume)
+            {
+                subscriber.onMissed(next, resume - 1);
+                processed = resume - 1;
+            }
+            else
+            {
+                // Published but not visible in the slot yet
+                Thread.onSpinWait();
+            }
+        }
+
+        // Only up to what the log has flushed: an event past that is gone after a crash, and its sequence is
+        // handed out again
+        private void checkpoint() throws IOException
+        {
+            if (offsetFile == null)
+            {
+                return;
+            }
+
+            long durable = Math.min(processed, log.flushedSequence());
+
+            if (durable <= checkpointed)
+            {
+                return;
+            }
+
+            Path temp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+            Files.writeString(temp, Long.toString(durable), StandardCharsets.UTF_8);
+            Files.move(temp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointed = durable;
+        }
+
+        // Stop after the event in hand (the change log drains first) and wait for the thread
+        @Override
+        public void close()
+        {
+            running = false;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
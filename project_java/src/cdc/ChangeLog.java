@@ -0,0 +1,229 @@
+package cdc;
+
+import models.Student;
+import persistence.StudentCodec;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed change log: the durable subscriber of a ChangeFeed and the source for replay-from-offset
+ * Record layout as in the write-ahead log: [int bodyLength][body][int crc32(body)],
+ * body = [long seq][byte type][long studentId][long timestamp][byte hasBefore][before][byte hasAfter][after].
+ * Appends are buffered and flushed whenever the feed goes idle (or the buffer fills), so replay sees every
+ * event up to the last flush. The store's own WAL stays the source of truth; this log only has to survive a
+ * restart of the process, so it is not fsynced per event. Events after the last flush are lost if the process
+ * dies, which is why durable subscriptions never checkpoint past flushedSequence().
+ */
+public class ChangeLog implements ChangeSubscriber, Closeable
+{
+    // Receives replayed events; may throw to stop the replay
+    public interface Replayer
+    {
+        void accept(ChangeEvent event) throws Exception;
+    }
+
+    private static final int MAX_RECORD = 1 << 20;
+
+    private final Path path;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+    private final long firstSequence;
+    private volatile long lastSequence;
+    // Newest event handed to the file system (survives the process)
+    private volatile long flushedSequence;
+
+    private ChangeLog(Path path, long firstSequence, long lastSequence) throws IOException
+    {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.lastSequence = lastSequence;
+        this.flushedSequence = lastSequence;
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 1 << 16));
+    }
+
+    // Open (or create) the log; a torn record at the tail from a crash is cut off first
+    public static ChangeLog open(Path path) throws IOException
+    {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        long[] scan = {0, 0, 0};
+
+        if (Files.exists(path))
+        {
+            scan = scan(path, 0, Long.MAX_VALUE, null);
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+            {
+                channel.truncate(scan[0]);
+            }
+        }
+
+        return new ChangeLog(path, scan[1] == 0 ? 1 : scan[1], scan[2]);
+    }
+
+    // Sequence of the oldest event in the log (1 for an empty log)
+    public long firstSequence()
+    {
+        return firstSequence;
+    }
+
+    // Sequence of the newest event written, 0 if there is none
+    public long lastSequence()
+    {
+        return lastSequence;
+    }
+
+    // Sequence of the newest event flushed, 0 if there is none; later ones may still be in the buffer
+    public long flushedSequence()
+    {
+        return flushedSequence;
+    }
+
+    @Override
+    public synchronized void onEvent(ChangeEvent event) throws IOException
+    {
+        body.reset();
+        bodyOut.writeLong(event.sequence());
+        bodyOut.writeByte(event.type().ordinal());
+        bodyOut.writeLong(event.studentId());
+        bodyOut.writeLong(event.timestampMillis());
+        writeStudent(event.before());
+        writeStudent(event.after());
+
+        crc.reset();
+        crc.update(body.toByteArray(), 0, body.size());
+        out.writeInt(body.size());
+        body.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        lastSequence = event.sequence();
+    }
+
+    @Override
+    public synchronized void onIdle() throws IOException
+    {
+        out.flush();
+        flushedSequence = lastSequence;
+    }
+
+    private void writeStudent(Student student) throws IOException
+    {
+        bodyOut.writeBoolean(student != null);
+
+        if (student != null)
+        {
+            StudentCodec.write(bodyOut, student);
+        }
+    }
+
+    // Deliver the logged events with fromSequence <= seq <= toSequence in order; returns the last sequence
+    // delivered, or fromSequence - 1 if there was none (e.g. it was not flushed yet)
+    public long replay(long fromSequence, long toSequence, Replayer replayer) throws IOException
+    {
+        long[] scan = scan(path, fromSequence, toSequence, replayer);
+        return scan[2] == 0 ? fromSequence - 1 : scan[2];
+    }
+
+    // Walk the intact records; returns {validLength, firstSequence, lastSequence} of what was read
+    private static long[] scan(Path path, long fromSequence, long toSequence, Replayer replayer) throws IOException
+    {
+        long validLength = 0;
+        long first = 0;
+        long last = 0;
+        CRC32 check = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+        {
+            while (true)
+            {
+                byte[] data;
+
+                try
+                {
+                    int length = in.readInt();
+
+                    if (length <= 0 || length > MAX_RECORD)
+                    {
+                        break;
+                    }
+
+                    data = new byte[length];
+                    in.readFully(data);
+                    int expected = in.readInt();
+                    check.reset();
+                    check.update(data);
+
+                    if ((int) check.getValue() != expected)
+                    {
+                        break;
+                    }
+                }
+                catch (EOFException e)
+                {
+                    // Torn or not yet flushed record at the tail
+                    break;
+                }
+
+                validLength = validLength + data.length + 8;
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(data));
+                long seq = record.readLong();
+
+                if (seq > toSequence)
+                {
+                    break;
+                }
+
+                if (seq < fromSequence)
+                {
+                    continue;
+                }
+
+                if (replayer != null)
+                {
+                    ChangeEvent.Type type = ChangeEvent.Type.values()[record.readUnsignedByte()];
+                    long studentId = record.readLong();
+                    long timestamp = record.readLong();
+                    Student before = record.readBoolean() ? StudentCodec.read(record) : null;
+                    Student after = record.readBoolean() ? StudentCodec.read(record) : null;
+                    ChangeEvent event = ChangeEvent.of(seq, studentId, timestamp, before, after);
+
+                    if (event.type() != type)
+                    {
+                        throw new IOException("change log record " + seq + " is inconsistent");
+                    }
+
+                    try
+                    {
+                        replayer.accept(event);
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        throw e;
+                    }
+                    catch (Exception e)
+                    {
+                        throw new IOException("replay stopped at " + seq, e);
+                    }
+                }
+
+                first = first == 0 ? seq : first;
+                last = seq;
+            }
+        }
+
+        return new long[]{validLength, first, last};
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        out.close();
+        flushedSequence = lastSequence;
+    }
+}
@@ -0,0 +1,22 @@
+package cdc;
+
+/**
+ * Receives change events in sequence order on its own thread (see ChangeFeed.subscribe)
+ * An exception from onEvent stops the subscription; the event is delivered again when it is resubscribed
+ * from the same offset.
+ */
+public interface ChangeSubscriber
+{
+    void onEvent(ChangeEvent event) throws Exception;
+
+    // Called once the subscriber has processed everything published so far, a good moment to flush or checkpoint
+    default void onIdle() throws Exception
+    {
+    }
+
+    // A lossy subscriber fell a whole ring behind and there was no change log to catch up from;
+    // events fromSequence .. toSequence (inclusive) were skipped
+    default void onMissed(long fromSequence, long toSequence)
+    {
+    }
+}
@@ -0,0 +1,149 @@
+package enrollment;
+
+import models.Course;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Course catalog kept in a small text file, one course per line:
+ *
+ *   code|capacity|title
+ *
+ * Courses are kept sorted by code. The file is rewritten atomically (temp file + move) whenever a course is
+ * added or changed, which only happens from an admin's menu, never per enrollment.
+ */
+public class CourseCatalog
+{
+    // Null for an in-memory catalog that is never saved
+    private final Path file;
+    private final Map<String, Course> courses = new TreeMap<>();
+
+    private CourseCatalog(Path file)
+    {
+        this.file = file;
+    }
+
+    // Load the catalog file; a missing file is an empty catalog
+    public static CourseCatalog open(Path file) throws IOException
+    {
+        CourseCatalog catalog = new CourseCatalog(file);
+
+        if (Files.notExists(file))
+        {
+            return catalog;
+        }
+
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+        {
+            lineNumber++;
+
+            if (line.isBlank() || line.startsWith("#"))
+            {
+                continue;
+            }
+
+            String[] parts = line.split("\\|", 3);
+
+            try
+            {
+                if (parts.length != 3)
+                {
+                    throw new IllegalArgumentException("expected code|capacity|title");
+                }
+
+                Course course = new Course(parts[0], parts[2], Integer.parseInt(parts[1].trim()));
+                catalog.courses.put(course.code(), course);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException(file + " line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        return catalog;
+    }
+
+    // Catalog that lives only in memory (benchmarks, embedding)
+    public static CourseCatalog inMemory()
+    {
+        return new CourseCatalog(null);
+    }
+
+    // The course with this code (any case), or null
+    public synchronized Course get(String code)
+    {
+        return courses.get(Course.normalizeCode(code));
+    }
+
+    // Every course, sorted by code
+    public synchronized List<Course> all()
+    {
+        return new ArrayList<>(courses.values());
+    }
+
+    public synchronized int size()
+    {
+        return courses.size();
+    }
+
+    // Add or replace a course and rewrite the file
+    public synchronized void put(Course course) throws IOException
+    {
+        Course previous = courses.put(course.code(), course);
+
+        try
+        {
+            save();
+        }
+        catch (IOException e)
+        {
+            // Keep memory and file in step
+            if (previous == null)
+            {
+                courses.remove(course.code());
+            }
+            else
+            {
+                courses.put(course.code(), previous);
+            }
+
+            throw e;
+        }
+    }
+
+    // Caller holds the monitor
+    private void save() throws IOException
+    {
+        if (file == null)
+        {
+            return;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(file.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8))
+        {
+            writer.write("# code|capacity|title\n");
+
+            for (Course course : courses.values())
+            {
+                writer.write(course.code() + "|" + course.capacity() + "|" + course.title() + "\n");
+            }
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,293 @@
+package enrollment;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of enrollments and drops, replayed at startup
+ * Record layout as in the write-ahead log: [int bodyLength][body][int crc32(body)],
+ * body = [byte op][long studentId][UTF course code]. Each append is one write() call, so a record reaches the
+ * OS before enroll/drop returns; fsync is batched on a timer (sems.wal.syncIntervalMs) like the WAL's group commit.
+ * Removing a student is not logged: replay skips enrollments of students that no longer exist.
+ * Guarded by a ReentrantLock rather than the monitor, so a virtual thread blocked in write/force does not pin
+ * its carrier thread.
+ */
+public class EnrollmentLog implements Closeable
+{
+    static final byte OP_ENROLL = 1;
+    static final byte OP_DROP = 2;
+
+    private static final long SYNC_INTERVAL_MILLIS = Long.getLong("sems.wal.syncIntervalMs", 200L);
+    private static final int MAX_RECORD = 1024;
+
+    // Receives the records read back when the log is opened
+    public interface Handler
+    {
+        void enroll(long studentId, String course);
+
+        void drop(long studentId, String course);
+    }
+
+    // One live enrollment, for rewrite()
+    public record Entry(long studentId, String course)
+    {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Path path;
+    private FileChannel channel;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+    private ScheduledExecutorService syncTimer;
+    private long recordCount;
+    private boolean unsynced = false;
+
+    private EnrollmentLog(Path path, FileChannel channel, long recordCount)
+    {
+        this.path = path;
+        this.channel = channel;
+        this.recordCount = recordCount;
+    }
+
+    // Replay the log into handler, cut off a torn tail and open it for appending
+    public static EnrollmentLog open(Path path, Handler handler) throws IOException
+    {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        long validLength = 0;
+        long records = 0;
+
+        if (Files.exists(path))
+        {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+            {
+                CRC32 check = new CRC32();
+
+                while (true)
+                {
+                    byte[] data;
+
+                    try
+                    {
+                        int length = in.readInt();
+
+                        if (length <= 0 || length > MAX_RECORD)
+                        {
+                            break;
+                        }
+
+                        data = new byte[length];
+                        in.readFully(data);
+                        int expected = in.readInt();
+                        check.reset();
+                        check.update(data);
+
+                        if ((int) check.getValue() != expected)
+                        {
+                            break;
+                        }
+                    }
+                    catch (EOFException e)
+                    {
+                        break;
+                    }
+
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(data));
+                    byte op = record.readByte();
+                    long studentId = record.readLong();
+                    String course = record.readUTF();
+
+                    switch (op)
+                    {
+                        case OP_ENROLL -> handler.enroll(studentId, course);
+                        case OP_DROP -> handler.drop(studentId, course);
+                        default -> throw new IOException("Unknown enrollment log record type " + op);
+                    }
+
+                    validLength = validLength + data.length + 8;
+                    records = records + 1;
+                }
+            }
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength);
+        channel.position(validLength);
+        EnrollmentLog log = new EnrollmentLog(path, channel, records);
+        log.startSyncTimer();
+        return log;
+    }
+
+    private void startSyncTimer()
+    {
+        syncTimer = Executors.newSingleThreadScheduledExecutor(task ->
+        {
+            Thread thread = new Thread(task, "enrollment-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncTimer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void appendEnroll(long studentId, String course) throws IOException
+    {
+        append(OP_ENROLL, studentId, course);
+    }
+
+    public void appendDrop(long studentId, String course) throws IOException
+    {
+        append(OP_DROP, studentId, course);
+    }
+
+    private void append(byte op, long studentId, String course) throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            body.reset();
+            bodyOut.writeByte(op);
+            bodyOut.writeLong(studentId);
+            bodyOut.writeUTF(course);
+            writeFrame(channel);
+            recordCount = recordCount + 1;
+            unsynced = true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void writeFrame(FileChannel target) throws IOException
+    {
+        crc.reset();
+        crc.update(body.toByteArray(), 0, body.size());
+        ByteBuffer frame = ByteBuffer.allocate(body.size() + 8);
+        frame.putInt(body.size());
+        frame.put(body.toByteArray(), 0, body.size());
+        frame.putInt((int) crc.getValue());
+        frame.flip();
+
+        while (frame.hasRemaining())
+        {
+            target.write(frame);
+        }
+    }
+
+    public long recordCount()
+    {
+        lock.lock();
+
+        try
+        {
+            return recordCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Compaction: replace the log with one enroll record per live enrollment (temp file, fsync, atomic move)
+    public void rewrite(Iterable<Entry> enrollments) throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            rewriteLocked(enrollments);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void rewriteLocked(Iterable<Entry> enrollments) throws IOException
+    {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long records = 0;
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            for (Entry entry : enrollments)
+            {
+                body.reset();
+                bodyOut.writeByte(OP_ENROLL);
+                bodyOut.writeLong(entry.studentId());
+                bodyOut.writeUTF(entry.course());
+                writeFrame(out);
+                records = records + 1;
+            }
+
+            out.force(false);
+        }
+
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        recordCount = records;
+        unsynced = false;
+    }
+
+    public void sync() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            if (unsynced)
+            {
+                channel.force(false);
+                unsynced = false;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void syncQuietly()
+    {
+        try
+        {
+            sync();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Enrollment log sync failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            syncTimer.shutdownNow();
+            sync();
+            channel.close();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package enrollment;
+
+import models.Course;
+import models.Student;
+import models.StudentId;
+import models.StudentRules;
+import store.StoreListener;
+import store.StudentStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Course enrollments: which students are in which course, with each course's capacity enforced
+ * - per student a sorted int[] of section numbers (at most StudentRules.MAX_COURSES), per course a sorted
+ *   long[] roster of student IDs (the reverse index); both are compact arrays that grow in place
+ * - enroll and drop lock the student's schedule, then the course's section, always in that order, so they
+ *   cannot deadlock. The seat check and the roster update happen together under the section lock, so a burst
+ *   of concurrent enrollments can never put more students in a course than it has seats. The log append
+ *   runs after the section lock is released (under the schedule lock only), so a slow disk holds up that one
+ *   student rather than the whole course; enroll gives the seat back if the append fails, drop logs before it
+ *   frees the seat. Replay does not re-check seats, so only each student's own order has to match the log.
+ * - ReentrantLocks rather than monitors: a virtual thread (HTTP API) blocked in the log's I/O, or waiting for
+ *   a lock, must not pin its carrier thread
+ * - every change is in the enrollment log before the call returns; the log is compacted when it is opened
+ * - registered as a store listener: a removed student leaves all of their courses
+ * - Student.numCourses stays the course load an admin entered; it is not derived from enrollments
+ */
+public class Enrollments implements StoreListener, Closeable
+{
+    public enum Outcome
+    {
+        ENROLLED, ALREADY_ENROLLED, COURSE_FULL, COURSE_LIMIT
+    }
+
+    // Compact the log at startup once it holds more than this many records and twice the live enrollments
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    // One course, its roster (sorted student IDs) and its number in the schedules
+    private static final class Section
+    {
+        final int number;
+        volatile Course course;
+        final ReentrantLock lock = new ReentrantLock();
+        long[] roster = new long[8];
+        int size = 0;
+
+        Section(int number, Course course)
+        {
+            this.number = number;
+            this.course = course;
+        }
+
+        // Caller holds the section's lock
+        void add(long studentId)
+        {
+            int at = -Arrays.binarySearch(roster, 0, size, studentId) - 1;
+
+            if (size == roster.length)
+            {
+                roster = Arrays.copyOf(roster, size * 2);
+            }
+
+            System.arraycopy(roster, at, roster, at + 1, size - at);
+            roster[at] = studentId;
+            size = size + 1;
+        }
+
+        void remove(long studentId)
+        {
+            int at = Arrays.binarySearch(roster, 0, size, studentId);
+
+            if (at >= 0)
+            {
+                System.arraycopy(roster, at + 1, roster, at, size - at - 1);
+                size = size - 1;
+            }
+        }
+    }
+
+    // One student's courses as sorted section numbers; removed once the student has been deleted
+    private static final class Schedule
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        int[] sections = new int[0];
+        boolean removed = false;
+
+        boolean contains(int number)
+        {
+            return Arrays.binarySearch(sections, number) >= 0;
+        }
+
+        void add(int number)
+        {
+            int at = -Arrays.binarySearch(sections, number) - 1;
+            int[] grown = new int[sections.length + 1];
+            System.arraycopy(sections, 0, grown, 0, at);
+            grown[at] = number;
+            System.arraycopy(sections, at, grown, at + 1, sections.length - at);
+            sections = grown;
+        }
+
+        void remove(int number)
+        {
+            int at = Arrays.binarySearch(sections, number);
+
+            if (at >= 0)
+            {
+                int[] shrunk = new int[sections.length - 1];
+                System.arraycopy(sections, 0, shrunk, 0, at);
+                System.arraycopy(sections, at + 1, shrunk, at, sections.length - at - 1);
+                sections = shrunk;
+            }
+        }
+    }
+
+    private final StudentStore store;
+    private final CourseCatalog catalog;
+    private final Map<String, Section> sections = new ConcurrentHashMap<>();
+    private final List<Section> byNumber = new CopyOnWriteArrayList<>();
+    private final Map<Long, Schedule> schedules = new ConcurrentHashMap<>();
+    // Null when nothing is persisted
+    private EnrollmentLog log;
+
+    private Enrollments(StudentStore store, CourseCatalog catalog)
+    {
+        this.store = store;
+        this.catalog = catalog;
+
+        for (Course course : catalog.all())
+        {
+            addSection(course);
+        }
+    }
+
+    // Load <dir>/courses.txt and replay <dir>/enrollments.log; call after the store has been recovered
+    // and register the result as a store listener
+    public static Enrollments open(Path dir, StudentStore store) throws IOException
+    {
+        Enrollments enrollments = new Enrollments(store, CourseCatalog.open(dir.resolve("courses.txt")));
+        enrollments.log = EnrollmentLog.open(dir.resolve("enrollments.log"), new EnrollmentLog.Handler()
+        {
+            // Replay trusts the log's order, so seats are not re-checked (a capacity may have been lowered since)
+            @Override
+            public void enroll(long studentId, String course)
+            {
+                Section section = enrollments.sections.get(course);
+
+                if (section != null && store.containsKey(studentId))
+                {
+                    Schedule schedule = enrollments.schedules.computeIfAbsent(studentId, id -> new Schedule());
+
+                    if (!schedule.contains(section.number))
+                    {
+                        schedule.add(section.number);
+                        section.add(studentId);
+                    }
+                }
+            }
+
+            @Override
+            public void drop(long studentId, String course)
+            {
+                Section section = enrollments.sections.get(course);
+                Schedule schedule = enrollments.schedules.get(studentId);
+
+                if (section != null && schedule != null && schedule.contains(section.number))
+                {
+                    schedule.remove(section.number);
+                    section.remove(studentId);
+                }
+            }
+        });
+
+        long live = enrollments.byNumber.stream().mapToLong(section -> section.size).sum();
+
+        if (enrollments.log.recordCount() > Math.max(COMPACT_MIN_RECORDS, 2 * live))
+        {
+            enrollments.log.rewrite(enrollments.entries());
+        }
+
+        return enrollments;
+    }
+
+    // Catalog and enrollments in memory only (benchmarks, embedding)
+    public static Enrollments inMemory(StudentStore store)
+    {
+        return new Enrollments(store, CourseCatalog.inMemory());
+    }
+
+    // Every course, sorted by code
+    public List<Course> courses()
+    {
+        return catalog.all();
+    }
+
+    // The course with this code (any case), or null
+    public Course course(String code)
+    {
+        Section section = sections.get(Course.normalizeCode(code));
+        return section == null ? null : section.course;
+    }
+
+    // Add a course, or change the title or capacity of an existing one; a capacity below the number of students
+    // already enrolled is refused
+    public void putCourse(Course course) throws IOException
+    {
+        synchronized (catalog)
+        {
+            Section section = sections.get(course.code());
+
+            if (section == null)
+            {
+                catalog.put(course);
+                addSection(course);
+                return;
+            }
+
+            section.lock.lock();
+
+            try
+            {
+                if (course.capacity() < section.size)
+                {
+                    throw new IllegalArgumentException(section.size + " students are already enrolled in "
+                            + course.code() + ".");
+                }
+
+                catalog.put(course);
+                section.course = course;
+            }
+            finally
+            {
+                section.lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the catalog's monitor (or is constructing)
+    private void addSection(Course course)
+    {
+        Section section = new Section(byNumber.size(), course);
+        byNumber.add(section);
+        sections.put(course.code(), section);
+    }
+
+    // Enroll a student in a course; throws IllegalArgumentException for an unknown student or course
+    public Outcome enroll(long studentId, String code)
+    {
+        Section section = section(code);
+        Schedule schedule = schedules.computeIfAbsent(requireStudent(studentId), id -> new Schedule());
+
+        schedule.lock.lock();
+
+        try
+        {
+            // Checked again under the lock: onRemove takes it too, so a student removed from here on is seen
+            if (schedule.removed || !store.containsKey(studentId))
+            {
+                // Created after onRemove ran; do not leave it behind
+                schedules.remove(studentId, schedule);
+                throw noSuchStudent(studentId);
+            }
+
+            if (schedule.contains(section.number))
+            {
+                return Outcome.ALREADY_ENROLLED;
+            }
+
+            if (schedule.sections.length >= StudentRules.MAX_COURSES)
+            {
+                return Outcome.COURSE_LIMIT;
+            }
+
+            section.lock.lock();
+
+            try
+            {
+                if (section.size >= section.course.capacity())
+                {
+                    return Outcome.COURSE_FULL;
+                }
+
+                // Take the seat now; it is given back below if the enrollment cannot be logged
+                section.add(studentId);
+            }
+            finally
+            {
+                section.lock.unlock();
+            }
+
+            try
+            {
+                append(EnrollmentLog.OP_ENROLL, studentId, section);
+            }
+            catch (UncheckedIOException e)
+            {
+                removeFrom(section, studentId);
+                throw e;
+            }
+
+            schedule.add(section.number);
+            return Outcome.ENROLLED;
+        }
+        finally
+        {
+            schedule.lock.unlock();
+        }
+    }
+
+    // Drop a course; returns false if the student was not enrolled in it
+    public boolean drop(long studentId, String code)
+    {
+        Section section = section(code);
+        Schedule schedule = schedules.get(studentId);
+
+        if (schedule == null)
+        {
+            return false;
+        }
+
+        schedule.lock.lock();
+
+        try
+        {
+            if (schedule.removed || !schedule.contains(section.number))
+            {
+                return false;
+            }
+
+            // Logged before the seat is freed: if the append fails, nothing has changed
+            append(EnrollmentLog.OP_DROP, studentId, section);
+            removeFrom(section, studentId);
+            schedule.remove(section.number);
+            return true;
+        }
+        finally
+        {
+            schedule.lock.unlock();
+        }
+    }
+
+    private static void removeFrom(Section section, long studentId)
+    {
+        section.lock.lock();
+
+        try
+        {
+            section.remove(studentId);
+        }
+        finally
+        {
+            section.lock.unlock();
+        }
+    }
+
+    // Courses the student is enrolled in, sorted by code
+    public List<Course> coursesOf(long studentId)
+    {
+        Schedule schedule = schedules.get(studentId);
+        List<Course> courses = new ArrayList<>();
+
+        if (schedule != null)
+        {
+            schedule.lock.lock();
+
+            try
+            {
+                for (int number : schedule.sections)
+                {
+                    courses.add(byNumber.get(number).course);
+                }
+            }
+            finally
+            {
+                schedule.lock.unlock();
+            }
+        }
+
+        courses.sort(Comparator.comparing(Course::code));
+        return courses;
+    }
+
+    // IDs of the students enrolled in a course, in ID order
+    public long[] roster(String code)
+    {
+        Section section = section(code);
+
+        section.lock.lock();
+
+        try
+        {
+            return Arrays.copyOf(section.roster, section.size);
+        }
+        finally
+        {
+            section.lock.unlock();
+        }
+    }
+
+    // Students enrolled in a course
+    public int enrolled(String code)
+    {
+        Section section = section(code);
+
+        section.lock.lock();
+
+        try
+        {
+            return section.size;
+        }
+        finally
+        {
+            section.lock.unlock();
+        }
+    }
+
+    // Schedules do not depend on any student field, only removals change them
+    @Override
+    public void onPut(long id, Student previous, Student student)
+    {
+    }
+
+    // A removed student leaves every course; not logged, replay skips students that no longer exist
+    @Override
+    public void onRemove(long id, Student removed)
+    {
+        Schedule schedule = schedules.remove(id);
+
+        if (schedule == null)
+        {
+            return;
+        }
+
+        schedule.lock.lock();
+
+        try
+        {
+            schedule.removed = true;
+
+            for (int number : schedule.sections)
+            {
+                removeFrom(byNumber.get(number), id);
+            }
+
+            schedule.sections = new int[0];
+        }
+        finally
+        {
+            schedule.lock.unlock();
+        }
+    }
+
+    private Section section(String code)
+    {
+        Section section = sections.get(Course.normalizeCode(code));
+
+        if (section == null)
+        {
+            throw new IllegalArgumentException("Unknown course " + Course.normalizeCode(code) + ".");
+        }
+
+        return section;
+    }
+
+    private long requireStudent(long studentId)
+    {
+        if (!store.containsKey(studentId))
+        {
+            throw noSuchStudent(studentId);
+        }
+
+        return studentId;
+    }
+
+    private static IllegalArgumentException noSuchStudent(long studentId)
+    {
+        return new IllegalArgumentException("No student with ID " + StudentId.format(studentId) + ".");
+    }
+
+    // Caller holds the student's schedule lock (not the section's), so the student's records are in order
+    private void append(byte op, long studentId, Section section)
+    {
+        if (log == null)
+        {
+            return;
+        }
+
+        try
+        {
+            if (op == EnrollmentLog.OP_ENROLL)
+            {
+                log.appendEnroll(studentId, section.course.code());
+            }
+            else
+            {
+                log.appendDrop(studentId, section.course.code());
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not save enrollment of " + StudentId.format(studentId), e);
+        }
+    }
+
+    // Every live enrollment, course by course
+    private List<EnrollmentLog.Entry> entries()
+    {
+        List<EnrollmentLog.Entry> entries = new ArrayList<>();
+
+        for (Section section : byNumber)
+        {
+            section.lock.lock();
+
+            try
+            {
+                for (int i = 0; i < section.size; i++)
+                {
+                    entries.add(new EnrollmentLog.Entry(section.roster[i], section.course.code()));
+                }
+            }
+            finally
+            {
+                section.lock.unlock();
+            }
+        }
+
+        return entries;
+    }
+
+    // Force the log to disk and close it
+    @Override
+    public void close() throws IOException
+    {
+        if (log != null)
+        {
+            log.close();
+        }
+    }
+}
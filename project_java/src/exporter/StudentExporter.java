@@ -0,0 +1,398 @@
+package exporter;
+
+import importer.BulkImporter;
+import models.Student;
+import models.StudentId;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Streams students to a Writer one field at a time
+ * Rows are never built as a single String; the caller provides a (large) buffered writer and flushes once.
+ * CSV and JSON lines use the same field names as the bulk importer, so an export can be imported again.
+ */
+public class StudentExporter
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Format
+    {
+        CSV, JSON_LINES, TABLE, LISTING
+    }
+
+    // Fixed-width table columns: header, width
+    private static final String[] TABLE_HEADERS = {"ID", "First Name", "Last Name", "Date of Birth", "Gender", "GPA",
+            "Sem", "Program", "Courses"};
+    private static final int[] TABLE_WIDTHS = {13, 16, 16, 13, 8, 5, 4, 28, 7};
+
+    private final Writer out;
+    private final Format format;
+    // Scratch space for formatting ints without creating Strings
+    private final char[] digits = new char[11];
+    private final char[] date = new char[10];
+
+    public StudentExporter(Writer out, Format format)
+    {
+        this.out = out;
+        this.format = format;
+    }
+
+    // Picks the format from the file extension: .csv, .json/.jsonl/.ndjson, anything else is a table
+    public static Format formatOf(Path file)
+    {
+        String name = file.getFileName().toString().toLowerCase();
+
+        if (name.endsWith(".csv"))
+        {
+            return Format.CSV;
+        }
+
+        return BulkImporter.formatOf(file) == BulkImporter.Format.JSON_LINES ? Format.JSON_LINES : Format.TABLE;
+    }
+
+    // Export every entry to a file through one buffered writer; returns the number of rows written
+    public static long exportTo(Path file, Format format, Iterable<Map.Entry<Long, Student>> entries) throws IOException
+    {
+        long rows = 0;
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+                BUFFER_SIZE))
+        {
+            StudentExporter exporter = new StudentExporter(writer, format);
+            exporter.writeHeader();
+
+            for (Map.Entry<Long, Student> entry : entries)
+            {
+                exporter.write(entry.getKey(), entry.getValue());
+                rows++;
+            }
+        }
+
+        return rows;
+    }
+
+    // Large buffered writer over System.out for console listings; flush it, do not close it
+    public static Writer consoleWriter()
+    {
+        return new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), BUFFER_SIZE);
+    }
+
+    public void writeHeader() throws IOException
+    {
+        switch (format)
+        {
+            case CSV ->
+            {
+                out.write("firstName,lastName,dateOfBirth,gender,gpaPrev,currentSemester,program,numCourses,id");
+                out.write('\n');
+            }
+            case TABLE ->
+            {
+                for (int i = 0; i < TABLE_HEADERS.length; i++)
+                {
+                    writeCell(TABLE_HEADERS[i], TABLE_WIDTHS[i]);
+                }
+
+                out.write('\n');
+
+                for (int width : TABLE_WIDTHS)
+                {
+                    for (int i = 0; i < width; i++)
+                    {
+                        out.write('-');
+                    }
+
+                    out.write(' ');
+                }
+
+                out.write('\n');
+            }
+            default ->
+            {
+                // JSON lines and the console listing have no header
+            }
+        }
+    }
+
+    public void write(long id, Student student) throws IOException
+    {
+        switch (format)
+        {
+            case CSV -> writeCsv(id, student);
+            case JSON_LINES -> writeJson(id, student);
+            case TABLE -> writeTable(id, student);
+            case LISTING -> writeListing(id, student);
+        }
+    }
+
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    private void writeCsv(long id, Student student) throws IOException
+    {
+        writeCsvField(student.firstName());
+        out.write(',');
+        writeCsvField(student.lastName());
+        out.write(',');
+        writeDate(student.birthDay());
+        out.write(',');
+        out.write(student.gender().code());
+        out.write(',');
+        out.write(Double.toString(student.gpaPrev()));
+        out.write(',');
+        writeInt(student.currentSemester());
+        out.write(',');
+        writeCsvField(student.program());
+        out.write(',');
+        writeInt(student.numCourses());
+        out.write(',');
+        writeCsvField(StudentId.format(id));
+        out.write('\n');
+    }
+
+    private void writeJson(long id, Student student) throws IOException
+    {
+        out.write("{\"id\":");
+        writeJsonString(StudentId.format(id));
+        out.write(",\"firstName\":");
+        writeJsonString(student.firstName());
+        out.write(",\"lastName\":");
+        writeJsonString(student.lastName());
+        out.write(",\"dateOfBirth\":");
+
+        if (formatDate(student.birthDay()))
+        {
+            out.write('"');
+            out.write(date);
+            out.write('"');
+        }
+        else
+        {
+            out.write("null");
+        }
+
+        out.write(",\"gender\":\"");
+        out.write(student.gender().code());
+        out.write('"');
+        out.write(",\"gpaPrev\":");
+        out.write(Double.toString(student.gpaPrev()));
+        out.write(",\"currentSemester\":");
+        writeInt(student.currentSemester());
+        out.write(",\"program\":");
+        writeJsonString(student.program());
+        out.write(",\"numCourses\":");
+        writeInt(student.numCourses());
+        out.write("}\n");
+    }
+
+    private void writeTable(long id, Student student) throws IOException
+    {
+        writeCell(StudentId.format(id), TABLE_WIDTHS[0]);
+        writeCell(student.firstName(), TABLE_WIDTHS[1]);
+        writeCell(student.lastName(), TABLE_WIDTHS[2]);
+        writeCell(formatDate(student.birthDay()) ? CharBuffer.wrap(date) : null, TABLE_WIDTHS[3]);
+        writeCell(student.gender().code(), TABLE_WIDTHS[4]);
+        writeCell(Double.toString(student.gpaPrev()), TABLE_WIDTHS[5]);
+        writeCell(intChars(student.currentSemester()), TABLE_WIDTHS[6]);
+        writeCell(student.program(), TABLE_WIDTHS[7]);
+        writeCell(intChars(student.numCourses()), TABLE_WIDTHS[8]);
+        out.write('\n');
+    }
+
+    // Same layout as the original listStudents line
+    private void writeListing(long id, Student student) throws IOException
+    {
+        write(StudentId.format(id));
+        out.write(" | ");
+        write(student.firstName());
+        out.write(' ');
+        write(student.lastName());
+        out.write(" | ");
+        writeDate(student.birthDay());
+        out.write(" | ");
+        out.write(student.gender().code());
+        out.write(" | GPA: ");
+        out.write(Double.toString(student.gpaPrev()));
+        out.write(" | Semester: ");
+        writeInt(student.currentSemester());
+        out.write(" | Program: ");
+        write(student.program());
+        out.write(" | Courses: ");
+        writeInt(student.numCourses());
+        out.write('\n');
+    }
+
+    private void write(String value) throws IOException
+    {
+        out.write(value == null ? "null" : value);
+    }
+
+    private void writeCsvField(String value) throws IOException
+    {
+        if (value == null)
+        {
+            return;
+        }
+
+        boolean quote = false;
+
+        for (int i = 0; i < value.length() && !quote; i++)
+        {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!quote)
+        {
+            out.write(value);
+            return;
+        }
+
+        out.write('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c == '"')
+            {
+                out.write('"');
+            }
+
+            out.write(c);
+        }
+
+        out.write('"');
+    }
+
+    private void writeJsonString(String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.write("null");
+            return;
+        }
+
+        out.write('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            switch (c)
+            {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                    {
+                        out.write(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+
+        out.write('"');
+    }
+
+    // Left-aligned cell, truncated or space padded to width, plus one separating space
+    private void writeCell(CharSequence value, int width) throws IOException
+    {
+        int length = value == null ? 0 : Math.min(value.length(), width);
+
+        for (int i = 0; i < length; i++)
+        {
+            out.write(value.charAt(i));
+        }
+
+        for (int i = length; i <= width; i++)
+        {
+            out.write(' ');
+        }
+    }
+
+    // Date of birth as YYYY-MM-DD; nothing at all when unknown
+    private void writeDate(int birthDay) throws IOException
+    {
+        if (formatDate(birthDay))
+        {
+            out.write(date);
+        }
+    }
+
+    // Fills date[] from an epoch day; false if the date is unknown
+    private boolean formatDate(int birthDay)
+    {
+        if (birthDay == Student.UNKNOWN_BIRTH_DAY)
+        {
+            return false;
+        }
+
+        LocalDate day = LocalDate.ofEpochDay(birthDay);
+        putDigits(day.getYear(), 0, 4);
+        date[4] = '-';
+        putDigits(day.getMonthValue(), 5, 2);
+        date[7] = '-';
+        putDigits(day.getDayOfMonth(), 8, 2);
+        return true;
+    }
+
+    private void putDigits(int value, int start, int count)
+    {
+        for (int i = start + count - 1; i >= start; i--)
+        {
+            date[i] = (char) ('0' + value % 10);
+            value = value / 10;
+        }
+    }
+
+    private void writeInt(int value) throws IOException
+    {
+        int start = formatInt(value);
+        out.write(digits, start, digits.length - start);
+    }
+
+    // Formats into the scratch buffer and wraps it (no copy) for writeCell
+    private CharSequence intChars(int value)
+    {
+        int start = formatInt(value);
+        return CharBuffer.wrap(digits, start, digits.length - start);
+    }
+
+    // Writes the decimal digits right-aligned into digits[] and returns the first used index
+    private int formatInt(int value)
+    {
+        int position = digits.length;
+        long remaining = Math.abs((long) value);
+
+        do
+        {
+            digits[--position] = (char) ('0' + remaining % 10);
+            remaining = remaining / 10;
+        }
+        while (remaining > 0);
+
+        if (value < 0)
+        {
+            digits[--position] = '-';
+        }
+
+        return position;
+    }
+}
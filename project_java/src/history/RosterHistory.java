@@ -0,0 +1,315 @@
+package history;
+
+import models.Student;
+import store.StoreListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Multi-version history of the roster: every committed add, re-save and remove becomes a new RosterSnapshot
+ * - attach with StudentStore.attach: the records it replays are collected and built into version 0 in one go
+ *   when onAttached runs; each later change then adds one version, in commit order
+ * - versions are roots of a persistent trie (StudentTrie), so a change copies a handful of nodes and the
+ *   versions share all the rest; current() is a volatile read
+ * - point-in-time reads: version(n), at(time), and tags, names pinned to a version ("start-of-term")
+ * - retention: every version of the last sems.history.keepAllMinutes (default 60), then the last version of
+ *   each hour for sems.history.keepHourlyDays (default 14), at most sems.history.maxVersions (default 10000)
+ *   in all; tagged versions stay until untagged. Dropped versions are simply no longer referenced, and the
+ *   nodes only they used are left to the garbage collector.
+ * - the changes of a StudentStore.group become a single version when the group commits, and none if it fails
+ * - history lives in memory and starts over at every startup; the change log (cdc) is the durable record
+ */
+public class RosterHistory implements StoreListener
+{
+    // Tunables (override with -Dsems.history.keepAllMinutes=..., etc.)
+    private static final long KEEP_ALL_MILLIS = Long.getLong("sems.history.keepAllMinutes", 60) * 60_000L;
+    private static final long KEEP_HOURLY_MILLIS = Long.getLong("sems.history.keepHourlyDays", 14) * 86_400_000L;
+    private static final int MAX_VERSIONS = Integer.getInteger("sems.history.maxVersions", 10_000);
+    // Retention is applied after this many new versions (so the cap can be exceeded by up to this many)
+    private static final int PRUNE_EVERY = 256;
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    // Records replayed by attach, until onAttached turns them into version 0 (then null)
+    private long[] loadedIds = new long[1024];
+    private Student[] loadedStudents = new Student[1024];
+    private int loadedCount = 0;
+    private volatile RosterSnapshot current;
+    // Retained versions, oldest first; guarded by this
+    private final List<RosterSnapshot> versions = new ArrayList<>();
+    private final Map<String, RosterSnapshot> tags = new TreeMap<>();
+    private int sincePrune = 0;
+    // The open group's roster (trie and size), null outside one; the store calls listeners one at a time
+    private StudentTrie groupTrie;
+    private int groupSize;
+
+    // Replayed by attach before onAttached (each record once), otherwise a change made after the previous version
+    @Override
+    public void onPut(long id, Student replaced, Student student)
+    {
+        if (loadedIds != null)
+        {
+            load(id, student);
+            return;
+        }
+
+        if (groupTrie != null)
+        {
+            groupSize = groupSize + (groupTrie.get(id) == null ? 1 : 0);
+            groupTrie = groupTrie.put(id, student);
+            return;
+        }
+
+        RosterSnapshot previous = current;
+        int size = previous.size() + (previous.get(id) == null ? 1 : 0);
+        commit(new RosterSnapshot(previous.version() + 1, now(previous), size, previous.trie.put(id, student)));
+    }
+
+    // attach only replays puts; the store calls this after onAttached
+    @Override
+    public void onRemove(long id, Student removed)
+    {
+        if (groupTrie != null)
+        {
+            StudentTrie trie = groupTrie.remove(id);
+            groupSize = groupSize - (trie != groupTrie ? 1 : 0);
+            groupTrie = trie;
+            return;
+        }
+
+        RosterSnapshot previous = current;
+        StudentTrie trie = previous.trie.remove(id);
+
+        if (trie != previous.trie)
+        {
+            commit(new RosterSnapshot(previous.version() + 1, now(previous), previous.size() - 1, trie));
+        }
+    }
+
+    @Override
+    public void onGroupStart()
+    {
+        groupTrie = current.trie;
+        groupSize = current.size();
+    }
+
+    // A committed group that changed anything is one new version
+    @Override
+    public void onGroupEnd(boolean committed)
+    {
+        StudentTrie trie = groupTrie;
+        groupTrie = null;
+        RosterSnapshot previous = current;
+
+        if (committed && trie != previous.trie)
+        {
+            commit(new RosterSnapshot(previous.version() + 1, now(previous), groupSize, trie));
+        }
+    }
+
+    private void load(long id, Student student)
+    {
+        if (loadedCount == loadedIds.length)
+        {
+            loadedIds = Arrays.copyOf(loadedIds, loadedCount * 2);
+            loadedStudents = Arrays.copyOf(loadedStudents, loadedCount * 2);
+        }
+
+        loadedIds[loadedCount] = id;
+        loadedStudents[loadedCount] = student;
+        loadedCount = loadedCount + 1;
+    }
+
+    // The replay is complete: publish it as version 0
+    @Override
+    public void onAttached()
+    {
+        StudentTrie trie = StudentTrie.of(loadedIds, loadedStudents, loadedCount);
+        RosterSnapshot first = new RosterSnapshot(0, System.currentTimeMillis(), loadedCount, trie);
+        loadedIds = null;
+        loadedStudents = null;
+        commit(first);
+    }
+
+    // The store calls listeners one at a time under its commit lock, so versions are numbered in commit order
+    private synchronized void commit(RosterSnapshot snapshot)
+    {
+        versions.add(snapshot);
+        current = snapshot;
+        sincePrune = sincePrune + 1;
+
+        if (sincePrune >= PRUNE_EVERY)
+        {
+            prune(snapshot.committedAt());
+        }
+    }
+
+    // Commit times never go backwards, even if the clock does
+    private static long now(RosterSnapshot previous)
+    {
+        return Math.max(previous.committedAt(), System.currentTimeMillis());
+    }
+
+    // The roster as of the last committed change; null until attached
+    public RosterSnapshot current()
+    {
+        return current;
+    }
+
+    // The given version, or null if it was dropped by retention (or is not committed yet)
+    public synchronized RosterSnapshot version(long number)
+    {
+        int low = 0;
+        int high = versions.size() - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long found = versions.get(middle).version();
+
+            if (found == number)
+            {
+                return versions.get(middle);
+            }
+
+            if (found < number)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+
+        return null;
+    }
+
+    // The roster as it was at the given time (epoch milliseconds): the newest retained version committed at or
+    // before it, or null if that is older than the retained history. Past the keep-all window versions are
+    // hourly, so the result can be up to an hour older than asked; its committedAt() says which moment it shows.
+    public synchronized RosterSnapshot at(long time)
+    {
+        int low = 0;
+        int high = versions.size() - 1;
+        RosterSnapshot found = null;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+
+            if (versions.get(middle).committedAt() <= time)
+            {
+                found = versions.get(middle);
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+
+        return found;
+    }
+
+    // Oldest version still retained, or null until attached
+    public synchronized RosterSnapshot oldest()
+    {
+        return versions.isEmpty() ? null : versions.get(0);
+    }
+
+    public synchronized int retainedVersions()
+    {
+        return versions.size();
+    }
+
+    // Pin the current version under a name (letters, digits, '-', '_' and '.'); replaces an existing tag
+    public synchronized RosterSnapshot tag(String name)
+    {
+        if (name == null || !name.matches("[A-Za-z0-9._-]{1,40}"))
+        {
+            throw new IllegalArgumentException("Tag names are 1 - 40 letters, digits, '.', '_' or '-'.");
+        }
+
+        if (current == null)
+        {
+            throw new IllegalStateException("The roster history is still loading.");
+        }
+
+        tags.put(name, current);
+        return current;
+    }
+
+    // Unpin a tag; its version is dropped at the next pruning unless retention keeps it anyway
+    public synchronized boolean untag(String name)
+    {
+        return tags.remove(name) != null;
+    }
+
+    // The snapshot tagged with name, or null
+    public synchronized RosterSnapshot tagged(String name)
+    {
+        return tags.get(name);
+    }
+
+    // Every tag and its snapshot, by name
+    public synchronized Map<String, RosterSnapshot> tags()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(tags));
+    }
+
+    // Apply the retention policy as of now
+    public synchronized void prune()
+    {
+        if (current != null)
+        {
+            prune(Math.max(current.committedAt(), System.currentTimeMillis()));
+        }
+    }
+
+    // Caller holds the monitor
+    private void prune(long now)
+    {
+        sincePrune = 0;
+        Set<RosterSnapshot> pinned = Collections.newSetFromMap(new IdentityHashMap<>());
+        pinned.addAll(tags.values());
+        List<RosterSnapshot> kept = new ArrayList<>();
+        int last = versions.size() - 1;
+
+        for (int i = 0; i <= last; i++)
+        {
+            RosterSnapshot snapshot = versions.get(i);
+            long time = snapshot.committedAt();
+            // The last version of its hour is what the roster looked like at the end of that hour
+            boolean endOfHour = i == last || versions.get(i + 1).committedAt() / HOUR_MILLIS != time / HOUR_MILLIS;
+
+            if (i == last || pinned.contains(snapshot) || time >= now - KEEP_ALL_MILLIS
+                    || (endOfHour && time >= now - KEEP_HOURLY_MILLIS))
+            {
+                kept.add(snapshot);
+            }
+        }
+
+        // Over the cap: the oldest untagged versions go first (the current one always stays)
+        int excess = kept.size() - Math.max(1, MAX_VERSIONS);
+
+        for (int i = 0; i < kept.size() - 1 && excess > 0; i++)
+        {
+            if (!pinned.contains(kept.get(i)))
+            {
+                kept.set(i, null);
+                excess = excess - 1;
+            }
+        }
+
+        kept.removeIf(snapshot -> snapshot == null);
+        versions.clear();
+        versions.addAll(kept);
+    }
+}
@@ -0,0 +1,92 @@
+package history;
+
+import models.Student;
+import models.StudentFields;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The whole roster as it was right after one committed change (see RosterHistory)
+ * Immutable and shares every unchanged record and trie node with the versions around it, so taking or keeping
+ * one costs a few objects no matter how many students there are. Reads need no lock.
+ */
+public final class RosterSnapshot
+{
+    // One student whose record differs between two snapshots; before is null if added, after is null if removed
+    public record Difference(long studentId, Student before, Student after)
+    {
+        public boolean added()
+        {
+            return before == null;
+        }
+
+        public boolean removed()
+        {
+            return after == null;
+        }
+
+        // Fields that differ, in StudentFields.NAMES order (every field for an added or removed student)
+        public List<String> changedFields()
+        {
+            return before == null || after == null ? StudentFields.NAMES : StudentFields.changed(before, after);
+        }
+    }
+
+    private final long version;
+    private final long committedAt;
+    private final int size;
+    final StudentTrie trie;
+
+    RosterSnapshot(long version, long committedAt, int size, StudentTrie trie)
+    {
+        this.version = version;
+        this.committedAt = committedAt;
+        this.size = size;
+        this.trie = trie;
+    }
+
+    // Number of the change that produced this snapshot; 0 is the roster as loaded at startup
+    public long version()
+    {
+        return version;
+    }
+
+    // When the change was committed (epoch milliseconds)
+    public long committedAt()
+    {
+        return committedAt;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // The student's record in this snapshot, or null if there was no such student
+    public Student get(long id)
+    {
+        return trie.get(id);
+    }
+
+    // Every student ID in this snapshot, ascending
+    public long[] ids()
+    {
+        long[] ids = new long[size];
+        int[] count = {0};
+        trie.forEach((id, unused, student) -> ids[count[0]++] = id);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // What changed from this snapshot to other (which may be older or newer), sorted by student ID
+    public List<Difference> diff(RosterSnapshot other)
+    {
+        List<Difference> differences = new ArrayList<>();
+        StudentTrie.diff(trie, other.trie, (id, before, after) -> differences.add(new Difference(id, before, after)));
+        differences.sort(Comparator.comparingLong(Difference::studentId));
+        return differences;
+    }
+}
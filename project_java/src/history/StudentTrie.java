@@ -0,0 +1,406 @@
+package history;
+
+import models.Student;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persistent hash trie from student ID to Student (a CHAMP-style hash array mapped trie)
+ * - each node covers 5 bits of the mixed ID: a bitmap of the slots holding a record and one of the slots holding
+ *   a child node, with compact arrays for both, so a node holds at most 32 of each
+ * - put and remove never change a node others can see: they copy the path from the root to the record and share
+ *   every other node with the old trie, so the old root stays a complete, unchanged version
+ * - the ID mix is a bijection, so two IDs never share a full hash and no collision nodes are needed
+ * - a whole roster is loaded with of(), which builds the trie level by level instead of by one put per record
+ * - a child node always holds two or more records (removing down to one pulls the last record up), so two tries
+ *   with the same records are shaped the same and diff can skip shared subtrees
+ */
+final class StudentTrie
+{
+    static final StudentTrie EMPTY = new StudentTrie(0, 0, new long[0], new Student[0], new StudentTrie[0]);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // Receives the records of a trie, or the differences between two
+    interface Visitor
+    {
+        void accept(long id, Student before, Student after);
+    }
+
+    private final int dataMap;
+    private final int nodeMap;
+    private final long[] ids;
+    private final Student[] students;
+    private final StudentTrie[] children;
+
+    private StudentTrie(int dataMap, int nodeMap, long[] ids, Student[] students, StudentTrie[] children)
+    {
+        this.dataMap = dataMap;
+        this.nodeMap = nodeMap;
+        this.ids = ids;
+        this.students = students;
+        this.children = children;
+    }
+
+    // A trie of ids[i] -> students[i] for i < count (the IDs must be distinct); reorders both arrays
+    static StudentTrie of(long[] ids, Student[] students, int count)
+    {
+        long[] hashes = new long[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            hashes[i] = hash(ids[i]);
+        }
+
+        return build(hashes, ids, students, 0, count, 0, new long[count], new long[count], new Student[count]);
+    }
+
+    // Sort [from, to) by the slot at shift (a counting sort through the buffers), then build one node: a slot
+    // with one record keeps it, a slot with several gets a child built the same way from the next 5 bits
+    private static StudentTrie build(long[] hashes, long[] ids, Student[] students, int from, int to, int shift,
+                                     long[] hashBuffer, long[] idBuffer, Student[] studentBuffer)
+    {
+        int[] starts = new int[MASK + 2];
+
+        for (int i = from; i < to; i++)
+        {
+            starts[slot(hashes[i], shift) + 1]++;
+        }
+
+        int dataMap = 0;
+        int nodeMap = 0;
+
+        for (int slot = 0; slot <= MASK; slot++)
+        {
+            int count = starts[slot + 1];
+            dataMap = dataMap | (count == 1 ? 1 << slot : 0);
+            nodeMap = nodeMap | (count > 1 ? 1 << slot : 0);
+            starts[slot + 1] = starts[slot] + count;
+        }
+
+        int[] next = starts.clone();
+
+        for (int i = from; i < to; i++)
+        {
+            int at = from + next[slot(hashes[i], shift)]++;
+            hashBuffer[at] = hashes[i];
+            idBuffer[at] = ids[i];
+            studentBuffer[at] = students[i];
+        }
+
+        System.arraycopy(hashBuffer, from, hashes, from, to - from);
+        System.arraycopy(idBuffer, from, ids, from, to - from);
+        System.arraycopy(studentBuffer, from, students, from, to - from);
+        long[] nodeIds = new long[Integer.bitCount(dataMap)];
+        Student[] nodeStudents = new Student[nodeIds.length];
+        StudentTrie[] nodeChildren = new StudentTrie[Integer.bitCount(nodeMap)];
+        int records = 0;
+        int nodes = 0;
+
+        for (int slot = 0; slot <= MASK; slot++)
+        {
+            int start = from + starts[slot];
+            int end = from + starts[slot + 1];
+
+            if (end - start == 1)
+            {
+                nodeIds[records] = ids[start];
+                nodeStudents[records] = students[start];
+                records = records + 1;
+            }
+            else if (end - start > 1)
+            {
+                nodeChildren[nodes] = build(hashes, ids, students, start, end, shift + BITS, hashBuffer, idBuffer,
+                        studentBuffer);
+                nodes = nodes + 1;
+            }
+        }
+
+        return new StudentTrie(dataMap, nodeMap, nodeIds, nodeStudents, nodeChildren);
+    }
+
+    // Spread the ID over all 64 bits; multiplying by an odd constant and xor-shifting are both reversible
+    static long hash(long id)
+    {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private static int slot(long hash, int shift)
+    {
+        return (int) ((hash >>> shift) & MASK);
+    }
+
+    private static int bit(long hash, int shift)
+    {
+        return 1 << slot(hash, shift);
+    }
+
+    private static int index(int map, int bit)
+    {
+        return Integer.bitCount(map & (bit - 1));
+    }
+
+    Student get(long id)
+    {
+        long hash = hash(id);
+        StudentTrie node = this;
+
+        for (int shift = 0; ; shift += BITS)
+        {
+            int bit = bit(hash, shift);
+
+            if ((node.dataMap & bit) != 0)
+            {
+                int i = index(node.dataMap, bit);
+                return node.ids[i] == id ? node.students[i] : null;
+            }
+
+            if ((node.nodeMap & bit) == 0)
+            {
+                return null;
+            }
+
+            node = node.children[index(node.nodeMap, bit)];
+        }
+    }
+
+    // This trie with id mapped to student
+    StudentTrie put(long id, Student student)
+    {
+        return put(id, hash(id), student, 0);
+    }
+
+    private StudentTrie put(long id, long hash, Student student, int shift)
+    {
+        int bit = bit(hash, shift);
+
+        if ((dataMap & bit) != 0)
+        {
+            int i = index(dataMap, bit);
+
+            if (ids[i] == id)
+            {
+                if (students[i] == student)
+                {
+                    return this;
+                }
+
+                Student[] copy = students.clone();
+                copy[i] = student;
+                return new StudentTrie(dataMap, nodeMap, ids, copy, children);
+            }
+
+            // Another record has this slot: both move down into a new child
+            StudentTrie child = pair(ids[i], hash(ids[i]), students[i], id, hash, student, shift + BITS);
+            return new StudentTrie(dataMap ^ bit, nodeMap | bit, delete(ids, i), delete(students, i),
+                    insert(children, index(nodeMap, bit), child));
+        }
+
+        if ((nodeMap & bit) != 0)
+        {
+            int j = index(nodeMap, bit);
+            StudentTrie child = children[j].put(id, hash, student, shift + BITS);
+
+            if (child == children[j])
+            {
+                return this;
+            }
+
+            StudentTrie[] copy = children.clone();
+            copy[j] = child;
+            return new StudentTrie(dataMap, nodeMap, ids, students, copy);
+        }
+
+        int i = index(dataMap, bit);
+        return new StudentTrie(dataMap | bit, nodeMap, insert(ids, i, id), insert(students, i, student), children);
+    }
+
+    // This trie without id (this trie itself if id is not in it)
+    StudentTrie remove(long id)
+    {
+        return remove(id, hash(id), 0);
+    }
+
+    private StudentTrie remove(long id, long hash, int shift)
+    {
+        int bit = bit(hash, shift);
+
+        if ((dataMap & bit) != 0)
+        {
+            int i = index(dataMap, bit);
+
+            if (ids[i] != id)
+            {
+                return this;
+            }
+
+            return new StudentTrie(dataMap ^ bit, nodeMap, delete(ids, i), delete(students, i), children);
+        }
+
+        if ((nodeMap & bit) == 0)
+        {
+            return this;
+        }
+
+        int j = index(nodeMap, bit);
+        StudentTrie child = children[j].remove(id, hash, shift + BITS);
+
+        if (child == children[j])
+        {
+            return this;
+        }
+
+        // Down to a single record: it moves up into this node
+        if (child.nodeMap == 0 && child.ids.length == 1)
+        {
+            int i = index(dataMap, bit);
+            return new StudentTrie(dataMap | bit, nodeMap ^ bit, insert(ids, i, child.ids[0]),
+                    insert(students, i, child.students[0]), delete(children, j));
+        }
+
+        StudentTrie[] copy = children.clone();
+        copy[j] = child;
+        return new StudentTrie(dataMap, nodeMap, ids, students, copy);
+    }
+
+    // Call visitor.accept(id, null, student) for every record, in trie order
+    void forEach(Visitor visitor)
+    {
+        for (int i = 0; i < ids.length; i++)
+        {
+            visitor.accept(ids[i], null, students[i]);
+        }
+
+        for (StudentTrie child : children)
+        {
+            child.forEach(visitor);
+        }
+    }
+
+    // Call visitor.accept(id, before, after) for every ID whose record differs between older and newer: before is
+    // null for a record only newer has, after is null for one only older has. Subtrees both share are skipped,
+    // so the cost follows the number of changes rather than the size of the roster.
+    static void diff(StudentTrie older, StudentTrie newer, Visitor visitor)
+    {
+        if (older == newer)
+        {
+            return;
+        }
+
+        int slots = older.dataMap | older.nodeMap | newer.dataMap | newer.nodeMap;
+
+        while (slots != 0)
+        {
+            int bit = Integer.lowestOneBit(slots);
+            slots = slots ^ bit;
+            StudentTrie oldChild = (older.nodeMap & bit) != 0 ? older.children[index(older.nodeMap, bit)] : null;
+            StudentTrie newChild = (newer.nodeMap & bit) != 0 ? newer.children[index(newer.nodeMap, bit)] : null;
+
+            if (oldChild != null && newChild != null)
+            {
+                diff(oldChild, newChild, visitor);
+                continue;
+            }
+
+            // The shapes differ here (a record or nothing on one side), so compare the slot's records by ID
+            Map<Long, Student> before = records(older, bit, oldChild);
+            Map<Long, Student> after = records(newer, bit, newChild);
+
+            for (Map.Entry<Long, Student> entry : before.entrySet())
+            {
+                changed(entry.getKey(), entry.getValue(), after.remove(entry.getKey()), visitor);
+            }
+
+            for (Map.Entry<Long, Student> entry : after.entrySet())
+            {
+                visitor.accept(entry.getKey(), null, entry.getValue());
+            }
+        }
+    }
+
+    // Every record under one slot of node: its own record there, or everything in child
+    private static Map<Long, Student> records(StudentTrie node, int bit, StudentTrie child)
+    {
+        Map<Long, Student> records = new HashMap<>();
+
+        if ((node.dataMap & bit) != 0)
+        {
+            int i = index(node.dataMap, bit);
+            records.put(node.ids[i], node.students[i]);
+        }
+
+        if (child != null)
+        {
+            child.forEach((id, unused, student) -> records.put(id, student));
+        }
+
+        return records;
+    }
+
+    private static void changed(long id, Student before, Student after, Visitor visitor)
+    {
+        // A re-save of the same values is not a change
+        if (before != after && !Objects.equals(before, after))
+        {
+            visitor.accept(id, before, after);
+        }
+    }
+
+    // Caller checked the hashes differ from shift on
+    private static StudentTrie pair(long id1, long hash1, Student student1, long id2, long hash2, Student student2,
+                                    int shift)
+    {
+        int bit1 = bit(hash1, shift);
+        int bit2 = bit(hash2, shift);
+
+        if (bit1 == bit2)
+        {
+            StudentTrie child = pair(id1, hash1, student1, id2, hash2, student2, shift + BITS);
+            return new StudentTrie(0, bit1, new long[0], new Student[0], new StudentTrie[] {child});
+        }
+
+        // Records are kept in slot order; slot 31 is the sign bit
+        return Integer.compareUnsigned(bit1, bit2) < 0
+                ? new StudentTrie(bit1 | bit2, 0, new long[] {id1, id2}, new Student[] {student1, student2},
+                        new StudentTrie[0])
+                : new StudentTrie(bit1 | bit2, 0, new long[] {id2, id1}, new Student[] {student2, student1},
+                        new StudentTrie[0]);
+    }
+
+    private static long[] insert(long[] array, int at, long value)
+    {
+        long[] grown = new long[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, at);
+        grown[at] = value;
+        System.arraycopy(array, at, grown, at + 1, array.length - at);
+        return grown;
+    }
+
+    private static <T> T[] insert(T[] array, int at, T value)
+    {
+        T[] grown = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, at, grown, at + 1, array.length - at);
+        grown[at] = value;
+        return grown;
+    }
+
+    private static long[] delete(long[] array, int at)
+    {
+        long[] shrunk = new long[array.length - 1];
+        System.arraycopy(array, 0, shrunk, 0, at);
+        System.arraycopy(array, at + 1, shrunk, at, array.length - at - 1);
+        return shrunk;
+    }
+
+    private static <T> T[] delete(T[] array, int at)
+    {
+        T[] shrunk = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, at + 1, shrunk, at, array.length - at - 1);
+        return shrunk;
+    }
+}
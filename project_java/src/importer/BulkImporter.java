@@ -0,0 +1,210 @@
+package importer;
+
+import models.Student;
+import store.StudentStore;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming bulk import of students from a CSV or JSON-lines file
+ * The file is read in chunks of CHUNK_LINES lines; chunks are parsed and validated in parallel on a
+ * fork-join pool, then applied to the store strictly in file order, so IDs are assigned the same way
+ * on every run. At most MAX_CHUNKS_IN_FLIGHT chunks are held at once, which bounds memory use.
+ * Rejected lines are written to "<input>.rejects" with their line numbers.
+ */
+public class BulkImporter
+{
+    private static final int CHUNK_LINES = 4096;
+    private static final int MAX_CHUNKS_IN_FLIGHT = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+
+    // Input formats; chosen from the file extension by formatOf()
+    public enum Format
+    {
+        CSV, JSON_LINES
+    }
+
+    // Summary returned to the caller
+    public record Result(long imported, long rejected, Path rejectsFile, long elapsedMillis)
+    {
+    }
+
+    // Lines of one chunk and their parse results (one of students[i] / errors[i] is set)
+    private record Chunk(long firstLine, String[] lines, Student[] students, String[] errors)
+    {
+    }
+
+    private final StudentStore store;
+    private final ForkJoinPool pool;
+
+    public BulkImporter(StudentStore store)
+    {
+        this(store, ForkJoinPool.commonPool());
+    }
+
+    public BulkImporter(StudentStore store, ForkJoinPool pool)
+    {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    // .json / .jsonl / .ndjson are JSON lines, anything else is CSV
+    public static Format formatOf(Path file)
+    {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson") ? Format.JSON_LINES : Format.CSV;
+    }
+
+    public Result importFile(Path file) throws IOException
+    {
+        return importFile(file, formatOf(file));
+    }
+
+    public Result importFile(Path file, Format format) throws IOException
+    {
+        long start = System.nanoTime();
+        Path rejectsFile = file.resolveSibling(file.getFileName() + ".rejects");
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        long[] totals = new long[2];
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8))
+        {
+            long lineNumber = 0;
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            long chunkStart = 1;
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+
+                if (lineNumber == 1 && format == Format.CSV && RecordParser.isCsvHeader(line))
+                {
+                    chunkStart = 2;
+                    continue;
+                }
+
+                lines.add(line);
+
+                if (lines.size() == CHUNK_LINES)
+                {
+                    submit(inFlight, chunkStart, lines, format, rejects, totals);
+                    lines = new ArrayList<>(CHUNK_LINES);
+                    chunkStart = lineNumber + 1;
+                }
+            }
+
+            if (!lines.isEmpty())
+            {
+                submit(inFlight, chunkStart, lines, format, rejects, totals);
+            }
+
+            while (!inFlight.isEmpty())
+            {
+                apply(await(inFlight.poll()), rejects, totals);
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new Result(totals[0], totals[1], rejectsFile, elapsedMillis);
+    }
+
+    // Queue a chunk for parsing; when too many are pending, first apply the oldest one
+    private void submit(Deque<Future<Chunk>> inFlight, long firstLine, List<String> lines, Format format,
+                        BufferedWriter rejects, long[] totals) throws IOException
+    {
+        while (inFlight.size() >= MAX_CHUNKS_IN_FLIGHT)
+        {
+            apply(await(inFlight.poll()), rejects, totals);
+        }
+
+        String[] chunkLines = lines.toArray(new String[0]);
+        inFlight.add(pool.submit(() -> parse(firstLine, chunkLines, format)));
+    }
+
+    // Runs on the pool: parse and validate every line of the chunk
+    private static Chunk parse(long firstLine, String[] lines, Format format)
+    {
+        Student[] students = new Student[lines.length];
+        String[] errors = new String[lines.length];
+
+        for (int i = 0; i < lines.length; i++)
+        {
+            if (lines[i].isBlank())
+            {
+                continue;
+            }
+
+            try
+            {
+                students[i] = format == Format.CSV ? RecordParser.parseCsv(lines[i]) : RecordParser.parseJson(lines[i]);
+            }
+            catch (IllegalArgumentException e)
+            {
+                errors[i] = e.getMessage();
+            }
+        }
+
+        return new Chunk(firstLine, lines, students, errors);
+    }
+
+    // Runs on the caller thread in file order: IDs come from the store counter exactly as for Add Student
+    private void apply(Chunk chunk, BufferedWriter rejects, long[] totals) throws IOException
+    {
+        for (int i = 0; i < chunk.lines().length; i++)
+        {
+            Student student = chunk.students()[i];
+
+            if (student != null)
+            {
+                store.putIfAbsent(store.newId(), student);
+                totals[0]++;
+            }
+            else if (chunk.errors()[i] != null)
+            {
+                reject(rejects, chunk.firstLine() + i, chunk.errors()[i], chunk.lines()[i]);
+                totals[1]++;
+            }
+        }
+    }
+
+    private static void reject(BufferedWriter rejects, long lineNumber, String reason, String line) throws IOException
+    {
+        rejects.write("line ");
+        rejects.write(Long.toString(lineNumber));
+        rejects.write(": ");
+        rejects.write(reason);
+        rejects.write(" | ");
+        rejects.write(line);
+        rejects.newLine();
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Import failed: " + e.getCause(), e.getCause());
+        }
+    }
+}
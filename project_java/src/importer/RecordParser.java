@@ -0,0 +1,247 @@
+package importer;
+
+import models.Student;
+import models.StudentFields;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns one CSV or JSON-lines record into a validated Student
+ * Throws IllegalArgumentException with a readable reason when the record is rejected
+ * The flat JSON object parser is also used for HTTP request bodies
+ */
+public final class RecordParser
+{
+    // Column order for CSV files (an optional header row with these names is skipped)
+    static final String[] FIELDS = StudentFields.NAMES.toArray(new String[0]);
+
+    private RecordParser()
+    {
+    }
+
+    static boolean isCsvHeader(String line)
+    {
+        return line.trim().regionMatches(true, 0, FIELDS[0], 0, FIELDS[0].length());
+    }
+
+    static Student parseCsv(String line)
+    {
+        List<String> values = splitCsv(line);
+
+        // A trailing ninth column (the ID written by the exporter) is ignored
+        if (values.size() != FIELDS.length && values.size() != FIELDS.length + 1)
+        {
+            throw new IllegalArgumentException("expected " + FIELDS.length + " fields, found " + values.size());
+        }
+
+        Map<String, String> record = new HashMap<>();
+
+        for (int i = 0; i < FIELDS.length; i++)
+        {
+            record.put(FIELDS[i], values.get(i));
+        }
+
+        return toStudent(record);
+    }
+
+    static Student parseJson(String line)
+    {
+        return toStudent(parseFlatJsonObject(line));
+    }
+
+    // Apply the same rules as the interactive Add Student flow; every field is required
+    private static Student toStudent(Map<String, String> record)
+    {
+        Student.Builder student = Student.builder();
+
+        for (String field : StudentFields.NAMES)
+        {
+            StudentFields.set(student, field, record.get(field));
+        }
+
+        return student.build();
+    }
+
+    // Split one CSV line; fields may be quoted, with "" as an escaped quote
+    static List<String> splitCsv(String line)
+    {
+        List<String> values = new ArrayList<>(FIELDS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+
+            if (quoted)
+            {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                }
+                else if (c == '"')
+                {
+                    quoted = false;
+                }
+                else
+                {
+                    field.append(c);
+                }
+            }
+            else if (c == '"')
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                values.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+
+        if (quoted)
+        {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+
+        values.add(field.toString());
+        return values;
+    }
+
+    // Minimal parser for one flat JSON object with string, number or null values
+    public static Map<String, String> parseFlatJsonObject(String line)
+    {
+        Map<String, String> record = new HashMap<>();
+        int[] pos = {skipSpace(line, 0)};
+
+        expect(line, pos, '{');
+
+        if (peek(line, pos) == '}')
+        {
+            pos[0]++;
+            return record;
+        }
+
+        while (true)
+        {
+            String key = readJsonString(line, pos);
+            expect(line, pos, ':');
+            pos[0] = skipSpace(line, pos[0]);
+            String value;
+
+            if (peek(line, pos) == '"')
+            {
+                value = readJsonString(line, pos);
+            }
+            else
+            {
+                int start = pos[0];
+
+                while (pos[0] < line.length() && ",}".indexOf(line.charAt(pos[0])) < 0
+                        && !Character.isWhitespace(line.charAt(pos[0])))
+                {
+                    pos[0]++;
+                }
+
+                value = line.substring(start, pos[0]);
+                value = value.equals("null") ? null : value;
+            }
+
+            record.put(key, value);
+            char next = peek(line, pos);
+            pos[0]++;
+
+            if (next == '}')
+            {
+                return record;
+            }
+
+            if (next != ',')
+            {
+                throw new IllegalArgumentException("malformed JSON near column " + pos[0]);
+            }
+        }
+    }
+
+    private static String readJsonString(String line, int[] pos)
+    {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+
+        while (pos[0] < line.length())
+        {
+            char c = line.charAt(pos[0]++);
+
+            if (c == '"')
+            {
+                return value.toString();
+            }
+
+            if (c == '\\' && pos[0] < line.length())
+            {
+                char escaped = line.charAt(pos[0]++);
+
+                switch (escaped)
+                {
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'r' -> value.append('\r');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' ->
+                    {
+                        if (pos[0] + 4 > line.length())
+                        {
+                            throw new IllegalArgumentException("malformed unicode escape");
+                        }
+
+                        value.append((char) Integer.parseInt(line.substring(pos[0], pos[0] + 4), 16));
+                        pos[0] += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+            else
+            {
+                value.append(c);
+            }
+        }
+
+        throw new IllegalArgumentException("unterminated JSON string");
+    }
+
+    private static void expect(String line, int[] pos, char expected)
+    {
+        if (peek(line, pos) != expected)
+        {
+            throw new IllegalArgumentException("malformed JSON: expected '" + expected + "' at column " + (pos[0] + 1));
+        }
+
+        pos[0]++;
+    }
+
+    // Next non-space character (position is moved past the spaces), or 0 at end of line
+    private static char peek(String line, int[] pos)
+    {
+        pos[0] = skipSpace(line, pos[0]);
+        return pos[0] < line.length() ? line.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String line, int pos)
+    {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos)))
+        {
+            pos++;
+        }
+
+        return pos;
+    }
+}
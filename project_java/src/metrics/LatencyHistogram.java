@@ -0,0 +1,122 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram: log-linear buckets with 64 sub-buckets per power
+ * of two, so every recorded value is kept to within 1/64 (about 1.6%) of itself from 1 ns up to 2^40 ns
+ * (about 18 minutes; longer values land in the last bucket). Recording is a bucket index computed from the
+ * leading zeros plus three atomic adds, with no allocation; percentiles are read from a snapshot.
+ */
+public final class LatencyHistogram
+{
+    private static final int SUB_BITS = 6;
+    private static final int HALF = 1 << SUB_BITS;
+    private static final int LINEAR = HALF << 1;
+    private static final int MAX_SHIFT = 40 - SUB_BITS;
+    private static final int BUCKETS = LINEAR + MAX_SHIFT * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // Counts and totals at one moment; cheap to query repeatedly
+    public record Snapshot(long[] counts, long count, long sumNanos, long maxNanos)
+    {
+        public double meanNanos()
+        {
+            return count == 0 ? Double.NaN : (double) sumNanos / count;
+        }
+
+        // Nearest-rank percentile (0 - 100), reported as the highest value of its bucket (never above the max)
+        public long percentileNanos(double p)
+        {
+            if (count == 0)
+            {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++)
+            {
+                seen += counts[i];
+
+                if (seen >= rank)
+                {
+                    return Math.min(maxNanos, highestEquivalent(i));
+                }
+            }
+
+            return maxNanos;
+        }
+    }
+
+    public void record(long nanos)
+    {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Counts are read bucket by bucket, so a snapshot taken while recording may be off by the values in flight
+    public Snapshot snapshot()
+    {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts.set(i, 0);
+        }
+
+        sum.reset();
+        max.reset();
+    }
+
+    // Values below 128 get a bucket each; above that, the top SUB_BITS + 1 bits pick the bucket
+    static int index(long value)
+    {
+        if (value < LINEAR)
+        {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+
+        if (shift > MAX_SHIFT)
+        {
+            return BUCKETS - 1;
+        }
+
+        return LINEAR + (shift - 1) * HALF + (int) ((value >>> shift) - HALF);
+    }
+
+    // Largest value that maps to the bucket
+    static long highestEquivalent(int index)
+    {
+        if (index < LINEAR)
+        {
+            return index;
+        }
+
+        int shift = (index - LINEAR) / HALF + 1;
+        long mantissa = HALF + (index - LINEAR) % HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,238 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide operation metrics: a latency histogram and a failure counter per operation, plus gauges
+ * Call sites bracket an operation with start() and record(...). Both check ENABLED, a static final flag, first,
+ * so with -Dsems.metrics=false the JIT folds the instrumentation away. With -Dsems.metrics.jfr=true every
+ * recorded operation is also a Flight Recorder event (see OperationEvent).
+ * Exposed through snapshot() (console statistics) and writePrometheus (text exposition format 0.0.4), which
+ * dump(...) writes to a file atomically, e.g. for node_exporter's textfile collector.
+ */
+public final class Metrics
+{
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("sems.metrics"));
+    private static final boolean JFR = ENABLED && Boolean.getBoolean("sems.metrics.jfr");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // The instrumented operations
+    public enum Operation
+    {
+        ADD, MODIFY, REMOVE, LIST, LOGIN;
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+
+        public String label()
+        {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // A value read when the metrics are shown
+    public record Gauge(String name, String help, DoubleSupplier value)
+    {
+    }
+
+    // One operation's numbers at snapshot time
+    public record OperationStats(Operation operation, LatencyHistogram.Snapshot latency, long failures)
+    {
+    }
+
+    public record Snapshot(List<OperationStats> operations, List<Gauge> gauges)
+    {
+    }
+
+    private static final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    private Metrics()
+    {
+    }
+
+    // Start time for record(...); 0 when metrics are off
+    public static long start()
+    {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    public static void record(Operation operation, long start)
+    {
+        record(operation, start, true);
+    }
+
+    // A failed operation (not found, conflict, wrong password, ...) counts in the latency too
+    public static void record(Operation operation, long start, boolean succeeded)
+    {
+        if (!ENABLED)
+        {
+            return;
+        }
+
+        long nanos = System.nanoTime() - start;
+        operation.latency.record(nanos);
+
+        if (!succeeded)
+        {
+            operation.failures.increment();
+        }
+
+        if (JFR)
+        {
+            OperationEvent.emit(operation, nanos, succeeded);
+        }
+    }
+
+    // name must be a valid Prometheus metric name (e.g. sems_store_students)
+    public static void gauge(String name, String help, DoubleSupplier value)
+    {
+        if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*"))
+        {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+
+        gauges.add(new Gauge(name, help, value));
+    }
+
+    // Forget everything recorded so far (e.g. the puts made while recovering the store)
+    public static void reset()
+    {
+        for (Operation operation : Operation.values())
+        {
+            operation.latency.reset();
+            operation.failures.reset();
+        }
+    }
+
+    public static Snapshot snapshot()
+    {
+        List<OperationStats> operations = new ArrayList<>();
+
+        for (Operation operation : Operation.values())
+        {
+            operations.add(new OperationStats(operation, operation.latency.snapshot(), operation.failures.sum()));
+        }
+
+        return new Snapshot(operations, List.copyOf(gauges));
+    }
+
+    // Operations as summaries (quantiles in seconds) and failure counters, then the gauges
+    public static void writePrometheus(Writer out) throws IOException
+    {
+        Snapshot snapshot = snapshot();
+
+        out.write("# HELP sems_operation_latency_seconds Latency of admin operations.\n");
+        out.write("# TYPE sems_operation_latency_seconds summary\n");
+
+        for (OperationStats stats : snapshot.operations())
+        {
+            String label = "operation=\"" + stats.operation().label() + "\"";
+
+            for (double quantile : QUANTILES)
+            {
+                // No observations yet: quantiles are NaN by convention
+                String value = stats.latency().count() == 0 ? "NaN"
+                        : seconds(stats.latency().percentileNanos(quantile * 100));
+                out.write("sems_operation_latency_seconds{" + label + ",quantile=\"" + quantile + "\"} " + value + "\n");
+            }
+
+            out.write("sems_operation_latency_seconds_sum{" + label + "} "
+                    + seconds(stats.latency().sumNanos()) + "\n");
+            out.write("sems_operation_latency_seconds_count{" + label + "} " + stats.latency().count() + "\n");
+        }
+
+        out.write("# HELP sems_operation_failures_total Operations that did not succeed.\n");
+        out.write("# TYPE sems_operation_failures_total counter\n");
+
+        for (OperationStats stats : snapshot.operations())
+        {
+            out.write("sems_operation_failures_total{operation=\"" + stats.operation().label() + "\"} "
+                    + stats.failures() + "\n");
+        }
+
+        for (Gauge gauge : snapshot.gauges())
+        {
+            out.write("# HELP " + gauge.name() + " " + gauge.help() + "\n");
+            out.write("# TYPE " + gauge.name() + " gauge\n");
+            out.write(gauge.name() + " " + number(gauge.value().getAsDouble()) + "\n");
+        }
+
+        out.flush();
+    }
+
+    // Write the Prometheus text to a temporary file and move it over the target, so readers never see half a dump
+    public static void dump(Path file) throws IOException
+    {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try
+        {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8))
+            {
+                writePrometheus(out);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Re-dump the file every intervalSeconds on a daemon thread; shut the returned executor down to stop
+    public static ScheduledExecutorService dumpEvery(Path file, long intervalSeconds)
+    {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task ->
+        {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        timer.scheduleWithFixedDelay(() ->
+        {
+            try
+            {
+                dump(file);
+            }
+            catch (IOException e)
+            {
+                System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+        return timer;
+    }
+
+    private static String seconds(long nanos)
+    {
+        return number(nanos / 1e9);
+    }
+
+    private static String number(double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return "NaN";
+        }
+
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -0,0 +1,44 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one instrumented operation, committed when -Dsems.metrics.jfr=true and a recording
+ * has the event enabled (e.g. java -XX:StartFlightRecording ...). The event's start time is when it was
+ * committed; the operation's own duration is in latency.
+ */
+@Name("sems.Operation")
+@Label("SEMS Operation")
+@Category("SEMS")
+@Description("One add, modify, remove, list or login")
+@StackTrace(false)
+final class OperationEvent extends jdk.jfr.Event
+{
+    @Label("Operation")
+    String operation;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    static void emit(Metrics.Operation operation, long nanos, boolean succeeded)
+    {
+        OperationEvent event = new OperationEvent();
+
+        if (event.shouldCommit())
+        {
+            event.operation = operation.label();
+            event.latency = nanos;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+}
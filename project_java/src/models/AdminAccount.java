@@ -1,6 +1,9 @@
 package models;
 
-public record AdminAccount(String username, String password)
+/**
+ * An administrator login: the password is kept only as a salted PBKDF2 hash (see auth.PasswordHasher)
+ * The iteration count is stored per account so it can be raised for new hashes without breaking old ones.
+ */
+public record AdminAccount(String username, int iterations, byte[] salt, byte[] hash)
 {
-
 }
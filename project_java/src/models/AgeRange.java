@@ -0,0 +1,36 @@
+package models;
+
+import java.time.LocalDate;
+
+/**
+ * Age filter turned into an inclusive range of birth days (epoch days), so matching a student is two int compares
+ * Students whose date of birth is unknown never match.
+ */
+public record AgeRange(int firstBirthDay, int lastBirthDay)
+{
+    // Either bound may be null; ages are whole years on the given day
+    public static AgeRange of(Integer minAge, Integer maxAge, LocalDate today)
+    {
+        if ((minAge != null && minAge < 0) || (maxAge != null && maxAge < 0))
+        {
+            throw new IllegalArgumentException("age must not be negative");
+        }
+
+        // At most maxAge: born after the day they would have turned maxAge + 1
+        int first = maxAge == null ? Student.UNKNOWN_BIRTH_DAY + 1
+                : (int) today.minusYears(maxAge + 1L).toEpochDay() + 1;
+        // At least minAge: born on or before the day they turned minAge
+        int last = minAge == null ? Integer.MAX_VALUE : (int) today.minusYears(minAge).toEpochDay();
+        return new AgeRange(first, last);
+    }
+
+    public boolean contains(int birthDay)
+    {
+        return birthDay != Student.UNKNOWN_BIRTH_DAY && birthDay >= firstBirthDay && birthDay <= lastBirthDay;
+    }
+
+    public boolean contains(Student student)
+    {
+        return contains(student.birthDay());
+    }
+}
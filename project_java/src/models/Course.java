@@ -0,0 +1,50 @@
+package models;
+
+import java.util.Locale;
+
+/**
+ * A course in the catalog: code (e.g. "CS101", stored upper-case), title and the number of seats
+ * A student can be enrolled in at most StudentRules.MAX_COURSES courses at once (see enrollment.Enrollments).
+ */
+public record Course(String code, String title, int capacity)
+{
+    public static final int MAX_CAPACITY = 10_000;
+
+    public Course
+    {
+        code = normalizeCode(code);
+
+        if (!isValidCode(code))
+        {
+            throw new IllegalArgumentException("Course code must be 2 - 16 letters, digits or '-'.");
+        }
+
+        if (title == null || title.isBlank() || title.chars().anyMatch(c -> c == '|' || c < ' '))
+        {
+            throw new IllegalArgumentException("Course title must not be blank or contain '|' or line breaks.");
+        }
+
+        title = title.strip();
+
+        if (capacity < 1 || capacity > MAX_CAPACITY)
+        {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ".");
+        }
+    }
+
+    public Course withCapacity(int capacity)
+    {
+        return new Course(code, title, capacity);
+    }
+
+    // Codes are matched case-insensitively
+    public static String normalizeCode(String code)
+    {
+        return code == null ? "" : code.strip().toUpperCase(Locale.ROOT);
+    }
+
+    public static boolean isValidCode(String code)
+    {
+        return code != null && code.matches("[A-Z0-9-]{2,16}");
+    }
+}
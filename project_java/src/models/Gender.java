@@ -0,0 +1,67 @@
+package models;
+
+import java.util.Locale;
+
+/**
+ * Gender of a student, stored as an enum instead of a free-form String
+ * The one-letter code is what listings and exports show and what parse() expects (full words work too).
+ */
+public enum Gender
+{
+    FEMALE("F"), MALE("M"), OTHER("X"), UNSPECIFIED("U");
+
+    private static final Gender[] VALUES = values();
+
+    private final String code;
+
+    Gender(String code)
+    {
+        this.code = code;
+    }
+
+    public String code()
+    {
+        return code;
+    }
+
+    // By ordinal, as stored in snapshots and the log
+    public static Gender ofOrdinal(int ordinal)
+    {
+        return VALUES[ordinal];
+    }
+
+    // Strict parse for new input; throws IllegalArgumentException for anything not recognized
+    public static Gender parse(String text)
+    {
+        Gender gender = match(text);
+
+        if (gender == null)
+        {
+            throw new IllegalArgumentException("invalid gender '" + text + "' (F, M, X or U)");
+        }
+
+        return gender;
+    }
+
+    // Lenient mapping for values saved before gender was an enum: blank is UNSPECIFIED, anything else
+    // that is not recognized is OTHER
+    public static Gender fromLegacy(String text)
+    {
+        Gender gender = match(text);
+        return gender != null ? gender : OTHER;
+    }
+
+    private static Gender match(String text)
+    {
+        String value = text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+
+        return switch (value)
+        {
+            case "f", "female", "woman", "w" -> FEMALE;
+            case "m", "male", "man" -> MALE;
+            case "x", "o", "other", "non-binary", "nonbinary", "nb" -> OTHER;
+            case "", "u", "unspecified", "unknown", "-" -> UNSPECIFIED;
+            default -> null;
+        };
+    }
+}
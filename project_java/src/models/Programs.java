@@ -0,0 +1,77 @@
+package models;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shared registry of program names; each distinct program gets a small integer ID that students store
+ * instead of their own String copy. Names match case-insensitively and ignoring surrounding spaces (as the
+ * program index always did); the first spelling seen is the one shown. IDs live for the process only,
+ * files keep the names.
+ */
+public final class Programs
+{
+    // ID 0 is the empty program
+    public static final int NONE = 0;
+
+    private static final Map<String, Integer> ids = new HashMap<>();
+    // Replaced (never modified at an index already handed out) when it grows
+    private static volatile String[] names = new String[64];
+    private static int count = 0;
+
+    static
+    {
+        idOf("");
+    }
+
+    private Programs()
+    {
+    }
+
+    // ID of a program, registering it on first use
+    public static synchronized int idOf(String name)
+    {
+        String display = name == null ? "" : name.trim();
+        String key = display.toLowerCase(Locale.ROOT);
+        Integer id = ids.get(key);
+
+        if (id != null)
+        {
+            return id;
+        }
+
+        String[] current = names;
+
+        if (count == current.length)
+        {
+            String[] grown = new String[count * 2];
+            System.arraycopy(current, 0, grown, 0, count);
+            current = grown;
+        }
+
+        current[count] = display;
+        names = current;
+        ids.put(key, count);
+        return count++;
+    }
+
+    // ID of an already registered program, or -1; lookups never register names
+    public static synchronized int find(String name)
+    {
+        Integer id = ids.get(name == null ? "" : name.trim().toLowerCase(Locale.ROOT));
+        return id == null ? -1 : id;
+    }
+
+    // Lock-free: an ID is only handed out after its name is stored
+    public static String name(int id)
+    {
+        return names[id];
+    }
+
+    // IDs are dense, 0 until size() - 1
+    public static synchronized int size()
+    {
+        return count;
+    }
+}
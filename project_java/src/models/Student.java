@@ -1,117 +1,181 @@
 package models;
 
-public class Student
+import java.time.LocalDate;
+
+/**
+ * One student, immutable so it can be shared between threads and kept in snapshots without copying
+ * Change a record with the withers (one field) or toBuilder() (several fields), then save the new record;
+ * StudentStore.replace commits it only if nobody saved a different version in the meantime.
+ *
+ * Fields are kept pre-parsed: the date of birth as an epoch day, gender as an enum and the program as an ID in
+ * the shared Programs registry, so a student holds no String besides its names and filters compare ints.
+ */
+public record Student(String firstName, String lastName, int birthDay, Gender gender, double gpaPrev,
+                      int currentSemester, int programId, int numCourses)
 {
-    // Variables
-    private String firstName;
-    private String lastName;
-    private String dateOfBirth;
-    private String gender;
-    private double gpaPrev;
-    private int currentSemester;
-    private String program;
-    private int numCourses;
-
-    /*public Student(String firstName, String lastName, String dateOfBirth, String gender,
-                   double gpaPrev, int currentSemester, String program, int numCourses)
-    {
-        this.firstName = firstName;
-        this.lastName = lastName;
-        this.dateOfBirth = dateOfBirth;
-        this.gender = gender;
-        this.gpaPrev = gpaPrev;
-        this.currentSemester = currentSemester;
-        this.program = program;
-        this.numCourses = numCourses;
-    }*/
-
-    public String getFirstName()
-    {
-        return firstName;
-    }
-
-    public void setFirstName(String firstName)
-    {
-        this.firstName = firstName;
-    }
-
-    public String getLastName()
-    {
-        return lastName;
-    }
+    // birthDay of records migrated from text that never was a valid date
+    public static final int UNKNOWN_BIRTH_DAY = Integer.MIN_VALUE;
 
-    public void setLastName(String lastName)
+    public static Builder builder()
     {
-        this.lastName = lastName;
+        return new Builder();
     }
 
-    public String getDateOfBirth()
+    public Builder toBuilder()
     {
-        return dateOfBirth;
+        return new Builder()
+                .firstName(firstName)
+                .lastName(lastName)
+                .birthDay(birthDay)
+                .gender(gender)
+                .gpaPrev(gpaPrev)
+                .currentSemester(currentSemester)
+                .programId(programId)
+                .numCourses(numCourses);
     }
 
-    public void setDateOfBirth(String dateOfBirth)
+    // Null if unknown
+    public LocalDate dateOfBirth()
     {
-        this.dateOfBirth = dateOfBirth;
+        return birthDay == UNKNOWN_BIRTH_DAY ? null : LocalDate.ofEpochDay(birthDay);
     }
 
-    public String getGender()
+    public String program()
     {
-        return gender;
+        return Programs.name(programId);
     }
 
-    public void setGender(String gender)
+    public Student withFirstName(String firstName)
     {
-        this.gender = gender;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
     }
 
-    public double getGpaPrev()
+    public Student withLastName(String lastName)
     {
-        return gpaPrev;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
     }
 
-    public void setGpaPrev(double gpaPrev)
+    public Student withDateOfBirth(LocalDate dateOfBirth)
     {
-        this.gpaPrev = gpaPrev;
+        return new Student(firstName, lastName, (int) dateOfBirth.toEpochDay(), gender, gpaPrev, currentSemester,
+                programId, numCourses);
     }
 
-    public int getCurrentSemester()
+    public Student withGender(Gender gender)
     {
-        return currentSemester;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
     }
 
-    public void setCurrentSemester(int currentSemester)
+    public Student withGpaPrev(double gpaPrev)
     {
-        this.currentSemester = currentSemester;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
     }
 
-    public String getProgram()
+    public Student withCurrentSemester(int currentSemester)
     {
-        return program;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
     }
 
-    public void setProgram(String program)
+    public Student withProgram(String program)
     {
-        this.program = program;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, Programs.idOf(program),
+                numCourses);
     }
 
-    public int getNumCourses()
+    public Student withNumCourses(int numCourses)
     {
-        return numCourses;
-    }
-
-    public void setNumCourses(int numCourses)
-    {
-        this.numCourses = numCourses;
+        return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
     }
 
     @Override
     public String toString()
     {
-        return firstName + " " + lastName + " | " + dateOfBirth + " | " + gender
+        return firstName + " " + lastName + " | " + dateOfBirth() + " | " + gender.code()
                 + " | GPA: " + gpaPrev
                 + " | Semester: " + currentSemester
-                + " | Program: " + program
+                + " | Program: " + program()
                 + " | Courses: " + numCourses;
     }
+
+    // Collects fields for a new record; not thread-safe, build() as many records as needed
+    public static final class Builder
+    {
+        private String firstName;
+        private String lastName;
+        private int birthDay = UNKNOWN_BIRTH_DAY;
+        private Gender gender = Gender.UNSPECIFIED;
+        private double gpaPrev;
+        private int currentSemester;
+        private int programId = Programs.NONE;
+        private int numCourses;
+
+        private Builder()
+        {
+        }
+
+        public Builder firstName(String firstName)
+        {
+            this.firstName = firstName;
+            return this;
+        }
+
+        public Builder lastName(String lastName)
+        {
+            this.lastName = lastName;
+            return this;
+        }
+
+        public Builder dateOfBirth(LocalDate dateOfBirth)
+        {
+            this.birthDay = dateOfBirth == null ? UNKNOWN_BIRTH_DAY : (int) dateOfBirth.toEpochDay();
+            return this;
+        }
+
+        public Builder birthDay(int birthDay)
+        {
+            this.birthDay = birthDay;
+            return this;
+        }
+
+        public Builder gender(Gender gender)
+        {
+            this.gender = gender;
+            return this;
+        }
+
+        public Builder gpaPrev(double gpaPrev)
+        {
+            this.gpaPrev = gpaPrev;
+            return this;
+        }
+
+        public Builder currentSemester(int currentSemester)
+        {
+            this.currentSemester = currentSemester;
+            return this;
+        }
+
+        public Builder program(String program)
+        {
+            this.programId = Programs.idOf(program);
+            return this;
+        }
+
+        public Builder programId(int programId)
+        {
+            this.programId = programId;
+            return this;
+        }
+
+        public Builder numCourses(int numCourses)
+        {
+            this.numCourses = numCourses;
+            return this;
+        }
+
+        public Student build()
+        {
+            return new Student(firstName, lastName, birthDay, gender, gpaPrev, currentSemester, programId, numCourses);
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Sets Student fields by name from text (on a Student.Builder), applying StudentRules
+ * Shared by the bulk importer, batch mode and the HTTP API; field names match the CSV header
+ */
+public final class StudentFields
+{
+    public static final List<String> NAMES = List.of("firstName", "lastName", "dateOfBirth", "gender", "gpaPrev",
+            "currentSemester", "program", "numCourses");
+
+    private StudentFields()
+    {
+    }
+
+    // Canonical field name for a case-insensitive name, or null if there is no such field
+    public static String canonical(String name)
+    {
+        for (String field : NAMES)
+        {
+            if (field.equalsIgnoreCase(name))
+            {
+                return field;
+            }
+        }
+
+        return null;
+    }
+
+    // Parse, validate and set one field; throws IllegalArgumentException with a readable reason
+    public static void set(Student.Builder student, String field, String value)
+    {
+        String name = canonical(field);
+
+        if (name == null)
+        {
+            throw new IllegalArgumentException("unknown field " + field);
+        }
+
+        if (value == null || value.isBlank())
+        {
+            throw new IllegalArgumentException("missing " + name);
+        }
+
+        String text = value.trim();
+
+        switch (name)
+        {
+            case "firstName" -> student.firstName(text);
+            case "lastName" -> student.lastName(text);
+            case "dateOfBirth" ->
+            {
+                LocalDate dateOfBirth = StudentRules.parseDateOfBirth(text);
+
+                if (dateOfBirth == null)
+                {
+                    throw new IllegalArgumentException("invalid date of birth '" + text + "' (YYYY-MM-DD)");
+                }
+
+                student.dateOfBirth(dateOfBirth);
+            }
+            case "gender" -> student.gender(Gender.parse(text));
+            case "gpaPrev" ->
+            {
+                double gpa = parseDouble(name, text);
+
+                if (!StudentRules.isValidGpa(gpa))
+                {
+                    throw new IllegalArgumentException("GPA out of range (0.0 - 4.0): " + gpa);
+                }
+
+                student.gpaPrev(gpa);
+            }
+            case "currentSemester" -> student.currentSemester(parseInt(name, text));
+            case "program" -> student.program(text);
+            case "numCourses" ->
+            {
+                int numCourses = parseInt(name, text);
+
+                if (!StudentRules.isValidNumCourses(numCourses))
+                {
+                    throw new IllegalArgumentException("number of courses out of range (0 - 12): " + numCourses);
+                }
+
+                student.numCourses(numCourses);
+            }
+            default -> throw new IllegalStateException("unhandled field " + name);
+        }
+    }
+
+    // Names of the fields that differ between two versions of a record, in NAMES order
+    public static List<String> changed(Student before, Student after)
+    {
+        List<String> changed = new ArrayList<>();
+        addIf(changed, "firstName", !Objects.equals(before.firstName(), after.firstName()));
+        addIf(changed, "lastName", !Objects.equals(before.lastName(), after.lastName()));
+        addIf(changed, "dateOfBirth", before.birthDay() != after.birthDay());
+        addIf(changed, "gender", before.gender() != after.gender());
+        addIf(changed, "gpaPrev", Double.compare(before.gpaPrev(), after.gpaPrev()) != 0);
+        addIf(changed, "currentSemester", before.currentSemester() != after.currentSemester());
+        addIf(changed, "program", before.programId() != after.programId());
+        addIf(changed, "numCourses", before.numCourses() != after.numCourses());
+        return changed;
+    }
+
+    private static void addIf(List<String> changed, String field, boolean differs)
+    {
+        if (differs)
+        {
+            changed.add(field);
+        }
+    }
+
+    private static double parseDouble(String field, String value)
+    {
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("invalid number for " + field + ": '" + value + "'");
+        }
+    }
+
+    private static int parseInt(String field, String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("invalid integer for " + field + ": '" + value + "'");
+        }
+    }
+}
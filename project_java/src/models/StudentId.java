@@ -0,0 +1,126 @@
+package models;
+
+/**
+ * Student IDs are plain longs handed out by the store's counter and never change, even after a rename
+ * They are shown to admins in Crockford base-32 (digits and letters without I, L, O, U), padded to 6 characters,
+ * e.g. 1 -> "000001", 1000 -> "0000Z8"
+ */
+public final class StudentId
+{
+    // Returned by parse() for input that is not an ID
+    public static final long INVALID = -1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int MIN_WIDTH = 6;
+
+    private StudentId()
+    {
+    }
+
+    public static String format(long id)
+    {
+        char[] chars = new char[13];
+        int position = chars.length;
+        long remaining = id;
+
+        do
+        {
+            chars[--position] = ALPHABET[(int) (remaining & 31)];
+            remaining = remaining >>> 5;
+        }
+        while (remaining != 0);
+
+        while (chars.length - position < MIN_WIDTH)
+        {
+            chars[--position] = '0';
+        }
+
+        return new String(chars, position, chars.length - position);
+    }
+
+    // Parse a base-32 ID (case-insensitive, I/L read as 1, O as 0, dashes ignored); a blank or dashes alone is not one
+    // Old "First_Last_counter" IDs are accepted too: the counter became the numeric ID when they were migrated
+    public static long parse(String text)
+    {
+        if (text == null)
+        {
+            return INVALID;
+        }
+
+        String value = text.trim();
+        int underscore = value.lastIndexOf('_');
+
+        if (underscore >= 0)
+        {
+            try
+            {
+                long legacy = Long.parseLong(value.substring(underscore + 1));
+                return legacy >= 0 ? legacy : INVALID;
+            }
+            catch (NumberFormatException e)
+            {
+                return INVALID;
+            }
+        }
+
+        if (value.isEmpty() || value.length() > 13)
+        {
+            return INVALID;
+        }
+
+        long id = 0;
+        int symbols = 0;
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            int digit = digit(value.charAt(i));
+
+            if (digit == -2)
+            {
+                continue;
+            }
+
+            if (digit < 0 || (id >>> 59) != 0)
+            {
+                return INVALID;
+            }
+
+            id = (id << 5) | digit;
+            symbols++;
+        }
+
+        return symbols > 0 ? id : INVALID;
+    }
+
+    // Whether text is an ID as admins see them: it parses and has a digit. format() pads with '0', so only IDs
+    // past 2^30 are all letters; a lone word like "Bob" parses too but is far more likely a name.
+    public static boolean looksLikeId(String text)
+    {
+        return parse(text) != INVALID && text.chars().anyMatch(c -> c >= '0' && c <= '9');
+    }
+
+    // Base-32 value of one character, -2 for a separator to skip, -1 if invalid
+    private static int digit(char c)
+    {
+        char upper = Character.toUpperCase(c);
+
+        return switch (upper)
+        {
+            case '-' -> -2;
+            case 'I', 'L' -> 1;
+            case 'O' -> 0;
+            default ->
+            {
+                for (int i = 0; i < ALPHABET.length; i++)
+                {
+                    if (ALPHABET[i] == upper)
+                    {
+                        yield i;
+                    }
+                }
+
+                yield -1;
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package models;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Validation rules shared by the console prompts and the bulk importer
+ */
+public final class StudentRules
+{
+    public static final double MIN_GPA = 0.0;
+    public static final double MAX_GPA = 4.0;
+    public static final int MIN_COURSES = 0;
+    public static final int MAX_COURSES = 12;
+
+    private StudentRules()
+    {
+    }
+
+    public static boolean isValidGpa(double gpa)
+    {
+        return gpa >= MIN_GPA && gpa <= MAX_GPA;
+    }
+
+    public static boolean isValidNumCourses(int numCourses)
+    {
+        return numCourses >= MIN_COURSES && numCourses <= MAX_COURSES;
+    }
+
+    // Date of birth must be a real calendar date written as YYYY-MM-DD
+    public static boolean isValidDateOfBirth(String dateOfBirth)
+    {
+        return parseDateOfBirth(dateOfBirth) != null;
+    }
+
+    // The date, or null if the text is not a real YYYY-MM-DD date
+    public static LocalDate parseDateOfBirth(String dateOfBirth)
+    {
+        if (dateOfBirth == null || dateOfBirth.length() != 10)
+        {
+            return null;
+        }
+
+        try
+        {
+            return LocalDate.parse(dateOfBirth);
+        }
+        catch (DateTimeParseException e)
+        {
+            return null;
+        }
+    }
+
+    // Epoch day of a date of birth saved as text before it was typed; Student.UNKNOWN_BIRTH_DAY if it never
+    // was a valid date
+    public static int birthDayFromLegacy(String dateOfBirth)
+    {
+        LocalDate date = parseDateOfBirth(dateOfBirth == null ? null : dateOfBirth.trim());
+        return date == null ? Student.UNKNOWN_BIRTH_DAY : (int) date.toEpochDay();
+    }
+}
@@ -0,0 +1,280 @@
+package persistence;
+
+import models.Gender;
+import models.Programs;
+import models.Student;
+import models.StudentId;
+import models.StudentRules;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped view of a columnar snapshot (version 4, or versions 3 and 2 written before the typed fields)
+ * Rows are read straight from the mapping on demand, so opening a snapshot does not build a Student per row.
+ * Only the small program dictionary is decoded up front.
+ *
+ * Version 4 layout (all big-endian):
+ *   header   : magic, version, lastSeq, studentCounter (long), rowCount, dictCount, then 10 section offsets (long)
+ *   id       : long[rowCount]
+ *   gpa      : double[rowCount]
+ *   semester : int[rowCount]
+ *   courses  : int[rowCount]
+ *   program  : int[rowCount]     dictionary code
+ *   gender   : int[rowCount]     Gender ordinal
+ *   birthDay : int[rowCount]     epoch day, Student.UNKNOWN_BIRTH_DAY if unknown
+ *   strings  : int[rowCount * 2] heap offsets of first name, last name
+ *   dict     : int[dictCount]    heap offsets of the program names
+ *   heap     : [u16 length][UTF-8 bytes] entries
+ * Version 3 has no birthDay offset or column, a dictionary code in the gender column (the dictionary holds genders as
+ * well as programs) and a third string slot with the date of birth as text.
+ * Version 2 is version 3 with an int studentCounter, no id column and a leading string slot holding the old string ID.
+ */
+public class MappedSnapshot
+{
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 10 * 8;
+    // Per-row string slots in the strings section
+    static final int SLOT_FIRST_NAME = 0;
+    static final int SLOT_LAST_NAME = 1;
+    static final int STRING_SLOTS = 2;
+    // Versions 2 and 3 keep the date of birth as a third string
+    private static final int SLOT_LEGACY_DATE_OF_BIRTH = 2;
+
+    private final MappedByteBuffer buffer;
+    private final int version;
+    private final long lastSeq;
+    private final long studentCounter;
+    private final int rowCount;
+    private final String[] dictionary;
+    // Program ID of each dictionary code, resolved once so rows map to programs without a lookup
+    // (lazily for versions 2 and 3, whose dictionary also holds the genders, -1 until resolved)
+    private final int[] programIds;
+    // Versions 2 and 3: Gender of each dictionary code
+    private final Gender[] legacyGenders;
+    private final int idOffset;
+    private final int gpaOffset;
+    private final int semesterOffset;
+    private final int coursesOffset;
+    private final int programOffset;
+    private final int genderOffset;
+    private final int birthDayOffset;
+    private final int stringsOffset;
+    private final int heapOffset;
+    // Version 2 rows start with the old string ID slot; versions 2 and 3 add the date of birth slot
+    private final int stringSlots;
+    private final int firstStringSlot;
+
+    private MappedSnapshot(MappedByteBuffer buffer) throws IOException
+    {
+        this.buffer = buffer;
+
+        if (buffer.getInt(0) != SnapshotFile.MAGIC)
+        {
+            throw new IOException("Not a student snapshot");
+        }
+
+        this.version = buffer.getInt(4);
+        this.lastSeq = buffer.getLong(8);
+        int dictCount;
+        int position;
+
+        if (version == SnapshotFile.VERSION_TYPED_FIELDS || version == SnapshotFile.VERSION_NUMERIC_IDS)
+        {
+            this.studentCounter = buffer.getLong(16);
+            this.rowCount = buffer.getInt(24);
+            dictCount = buffer.getInt(28);
+            position = 32;
+            this.idOffset = (int) buffer.getLong(position);
+            position = position + 8;
+            this.firstStringSlot = 0;
+        }
+        else if (version == SnapshotFile.VERSION_COLUMNAR)
+        {
+            this.studentCounter = buffer.getInt(16);
+            this.rowCount = buffer.getInt(20);
+            dictCount = buffer.getInt(24);
+            position = 28;
+            this.idOffset = -1;
+            this.firstStringSlot = 1;
+        }
+        else
+        {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        boolean typed = version == SnapshotFile.VERSION_TYPED_FIELDS;
+        this.stringSlots = typed ? STRING_SLOTS : firstStringSlot + 3;
+        this.gpaOffset = (int) buffer.getLong(position);
+        this.semesterOffset = (int) buffer.getLong(position + 8);
+        this.coursesOffset = (int) buffer.getLong(position + 16);
+        this.programOffset = (int) buffer.getLong(position + 24);
+        this.genderOffset = (int) buffer.getLong(position + 32);
+        position = position + 40;
+
+        if (typed)
+        {
+            this.birthDayOffset = (int) buffer.getLong(position);
+            position = position + 8;
+        }
+        else
+        {
+            this.birthDayOffset = -1;
+        }
+
+        this.stringsOffset = (int) buffer.getLong(position);
+        int dictOffset = (int) buffer.getLong(position + 8);
+        this.heapOffset = (int) buffer.getLong(position + 16);
+
+        this.dictionary = new String[dictCount];
+        this.programIds = new int[dictCount];
+        this.legacyGenders = typed ? null : new Gender[dictCount];
+
+        for (int i = 0; i < dictCount; i++)
+        {
+            dictionary[i] = readHeapString(buffer.getInt(dictOffset + i * 4));
+
+            if (typed)
+            {
+                programIds[i] = Programs.idOf(dictionary[i]);
+            }
+            else
+            {
+                programIds[i] = -1;
+                legacyGenders[i] = Gender.fromLegacy(dictionary[i]);
+            }
+        }
+    }
+
+    // Map the file read-only; the mapping stays valid after the channel is closed
+    // A single MappedByteBuffer is limited to 2 GB, which is far above any roster we keep
+    public static MappedSnapshot open(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int version()
+    {
+        return version;
+    }
+
+    public long lastSeq()
+    {
+        return lastSeq;
+    }
+
+    public long studentCounter()
+    {
+        return studentCounter;
+    }
+
+    public int rowCount()
+    {
+        return rowCount;
+    }
+
+    // Numeric ID of the row; version 2 string IDs are converted the same way as old WAL records
+    public long id(int row)
+    {
+        if (idOffset < 0)
+        {
+            return StudentId.parse(readHeapString(buffer.getInt(stringsOffset + row * stringSlots * 4)));
+        }
+
+        return buffer.getLong(idOffset + row * 8);
+    }
+
+    public String firstName(int row)
+    {
+        return readString(row, SLOT_FIRST_NAME);
+    }
+
+    public String lastName(int row)
+    {
+        return readString(row, SLOT_LAST_NAME);
+    }
+
+    // Epoch day of the date of birth, Student.UNKNOWN_BIRTH_DAY if unknown
+    public int birthDay(int row)
+    {
+        if (birthDayOffset < 0)
+        {
+            return StudentRules.birthDayFromLegacy(readString(row, SLOT_LEGACY_DATE_OF_BIRTH));
+        }
+
+        return buffer.getInt(birthDayOffset + row * 4);
+    }
+
+    public double gpaPrev(int row)
+    {
+        return buffer.getDouble(gpaOffset + row * 8);
+    }
+
+    public int currentSemester(int row)
+    {
+        return buffer.getInt(semesterOffset + row * 4);
+    }
+
+    public int numCourses(int row)
+    {
+        return buffer.getInt(coursesOffset + row * 4);
+    }
+
+    // Dictionary code of the row's program (same code = same program)
+    public int programCode(int row)
+    {
+        return buffer.getInt(programOffset + row * 4);
+    }
+
+    public String program(int row)
+    {
+        return dictionary[programCode(row)];
+    }
+
+    public int programId(int row)
+    {
+        int code = programCode(row);
+        int id = programIds[code];
+
+        if (id < 0)
+        {
+            id = Programs.idOf(dictionary[code]);
+            programIds[code] = id;
+        }
+
+        return id;
+    }
+
+    public Gender gender(int row)
+    {
+        int code = buffer.getInt(genderOffset + row * 4);
+        return legacyGenders == null ? Gender.ofOrdinal(code) : legacyGenders[code];
+    }
+
+    // Build a full Student object for one row
+    public Student student(int row)
+    {
+        return new Student(firstName(row), lastName(row), birthDay(row), gender(row), gpaPrev(row),
+                currentSemester(row), programId(row), numCourses(row));
+    }
+
+    private String readString(int row, int slot)
+    {
+        return readHeapString(buffer.getInt(stringsOffset + (row * stringSlots + firstStringSlot + slot) * 4));
+    }
+
+    private String readHeapString(int offset)
+    {
+        int position = heapOffset + offset;
+        int length = Short.toUnsignedInt(buffer.getShort(position));
+        byte[] bytes = new byte[length];
+        buffer.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,253 @@
+package persistence;
+
+import models.Student;
+import models.StudentId;
+import store.StudentStore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Compacted image of the whole store
+ * Version 4 (written): columnar layout with typed date of birth / gender columns, read through MappedSnapshot,
+ *                      see that class for the layout
+ * Version 3 (read only): the same with date of birth and gender as Strings (migrated when read)
+ * Version 2 (read only): version 3 with string IDs
+ * Version 1 (read only): magic, version, last WAL sequence, student counter, row count, then (id, student) rows
+ */
+public final class SnapshotFile
+{
+    static final int MAGIC = 0x53454D53; // "SEMS"
+    static final int VERSION_ROWS = 1;
+    static final int VERSION_COLUMNAR = 2;
+    static final int VERSION_NUMERIC_IDS = 3;
+    static final int VERSION_TYPED_FIELDS = 4;
+    static final int CURRENT_VERSION = VERSION_TYPED_FIELDS;
+
+    private SnapshotFile()
+    {
+    }
+
+    // Convert the in-memory store to a columnar snapshot
+    // Written to a temp file, fsynced, then atomically moved over the previous snapshot
+    public static void write(Path path, long lastSeq, StudentStore store) throws IOException
+    {
+        // Take the rows first so the arrays below are sized to what is actually written
+        List<Map.Entry<Long, Student>> entries = new ArrayList<>(store.size());
+
+        for (Map.Entry<Long, Student> entry : store.entries())
+        {
+            entries.add(entry);
+        }
+
+        int rows = entries.size();
+        long[] ids = new long[rows];
+        double[] gpa = new double[rows];
+        int[] semester = new int[rows];
+        int[] courses = new int[rows];
+        int[] program = new int[rows];
+        int[] gender = new int[rows];
+        int[] birthDay = new int[rows];
+        int[] strings = new int[rows * MappedSnapshot.STRING_SLOTS];
+
+        // Shared UTF-8 heap; program names go through a dictionary so each program is stored once
+        // Dictionary codes are the file's own: program IDs only live as long as the process
+        ByteArrayOutputStream heapBytes = new ByteArrayOutputStream(rows * 32 + 64);
+        DataOutputStream heap = new DataOutputStream(heapBytes);
+        Map<Integer, Integer> dictionary = new HashMap<>();
+        int[] dictOffsets = new int[16];
+
+        int row = 0;
+
+        for (Map.Entry<Long, Student> entry : entries)
+        {
+            Student student = entry.getValue();
+            int base = row * MappedSnapshot.STRING_SLOTS;
+
+            ids[row] = entry.getKey();
+            gpa[row] = student.gpaPrev();
+            semester[row] = student.currentSemester();
+            courses[row] = student.numCourses();
+            gender[row] = student.gender().ordinal();
+            birthDay[row] = student.birthDay();
+            strings[base + MappedSnapshot.SLOT_FIRST_NAME] = appendHeapString(heap, student.firstName());
+            strings[base + MappedSnapshot.SLOT_LAST_NAME] = appendHeapString(heap, student.lastName());
+
+            Integer code = dictionary.get(student.programId());
+
+            if (code == null)
+            {
+                code = dictionary.size();
+
+                if (code == dictOffsets.length)
+                {
+                    dictOffsets = Arrays.copyOf(dictOffsets, code * 2);
+                }
+
+                dictOffsets[code] = appendHeapString(heap, student.program());
+                dictionary.put(student.programId(), code);
+            }
+
+            program[row] = code;
+            row = row + 1;
+        }
+
+        int dictCount = dictionary.size();
+        long idOffset = MappedSnapshot.HEADER_SIZE;
+        long gpaOffset = idOffset + rows * 8L;
+        long semesterOffset = gpaOffset + rows * 8L;
+        long coursesOffset = semesterOffset + rows * 4L;
+        long programOffset = coursesOffset + rows * 4L;
+        long genderOffset = programOffset + rows * 4L;
+        long birthDayOffset = genderOffset + rows * 4L;
+        long stringsOffset = birthDayOffset + rows * 4L;
+        long dictOffset = stringsOffset + strings.length * 4L;
+        long heapOffset = dictOffset + dictCount * 4L;
+
+        if (heapOffset + heapBytes.size() > Integer.MAX_VALUE)
+        {
+            throw new IOException("Snapshot larger than 2 GB is not supported");
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(CURRENT_VERSION);
+            out.writeLong(lastSeq);
+            out.writeLong(store.getStudentCounter());
+            out.writeInt(rows);
+            out.writeInt(dictCount);
+            out.writeLong(idOffset);
+            out.writeLong(gpaOffset);
+            out.writeLong(semesterOffset);
+            out.writeLong(coursesOffset);
+            out.writeLong(programOffset);
+            out.writeLong(genderOffset);
+            out.writeLong(birthDayOffset);
+            out.writeLong(stringsOffset);
+            out.writeLong(dictOffset);
+            out.writeLong(heapOffset);
+
+            for (long value : ids)
+            {
+                out.writeLong(value);
+            }
+
+            for (double value : gpa)
+            {
+                out.writeDouble(value);
+            }
+
+            writeInts(out, semester, rows);
+            writeInts(out, courses, rows);
+            writeInts(out, program, rows);
+            writeInts(out, gender, rows);
+            writeInts(out, birthDay, rows);
+            writeInts(out, strings, strings.length);
+            writeInts(out, dictOffsets, dictCount);
+            heapBytes.writeTo(out);
+
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Format version of an existing snapshot
+    static int version(Path path) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path)))
+        {
+            if (in.readInt() != MAGIC)
+            {
+                throw new IOException("Not a student snapshot: " + path);
+            }
+
+            return in.readInt();
+        }
+    }
+
+    // Load every row into the store; returns the last WAL sequence number the snapshot covers
+    static long read(Path path, StudentStore store) throws IOException
+    {
+        if (version(path) == VERSION_ROWS)
+        {
+            return readRows(path, store);
+        }
+
+        // Rows stay in the mapping until they are first read (the mapping lives as long as any row is unread)
+        MappedSnapshot snapshot = MappedSnapshot.open(path);
+        IntFunction<Student> rows = snapshot::student;
+        store.setStudentCounter(snapshot.studentCounter());
+
+        for (int row = 0; row < snapshot.rowCount(); row++)
+        {
+            long id = snapshot.id(row);
+
+            if (!store.putLazily(id, rows, row))
+            {
+                store.put(id, snapshot.student(row));
+            }
+        }
+
+        return snapshot.lastSeq();
+    }
+
+    // Legacy row-by-row format, kept so existing data directories still load (the next compaction rewrites them)
+    private static long readRows(Path path, StudentStore store) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+        {
+            in.readInt();
+            in.readInt();
+            long lastSeq = in.readLong();
+            store.setStudentCounter(in.readInt());
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++)
+            {
+                long id = StudentId.parse(in.readUTF());
+                store.put(id, StudentCodec.readTextFields(in));
+            }
+
+            return lastSeq;
+        }
+    }
+
+    // Append [u16 length][UTF-8 bytes] to the heap and return its offset
+    private static int appendHeapString(DataOutputStream heap, String value) throws IOException
+    {
+        byte[] utf8 = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+
+        if (utf8.length > 0xFFFF)
+        {
+            throw new IOException("String too long for snapshot: " + utf8.length + " bytes");
+        }
+
+        int offset = heap.size();
+        heap.writeShort(utf8.length);
+        heap.write(utf8);
+        return offset;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException
+    {
+        for (int i = 0; i < count; i++)
+        {
+            out.writeInt(values[i]);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package persistence;
+
+import models.Student;
+import models.StudentId;
+import store.StoreListener;
+import store.StudentStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable storage behind the student store
+ * Every put/remove is appended to the write-ahead log (O(1) I/O per change); once the log grows past
+ * compactEvery records, the full store is written to a columnar snapshot (see MappedSnapshot) and the log is cleared.
+ * At startup the snapshot is loaded and the log tail replayed on top of it; data written in an older format is
+ * converted as it is read and saved straight away as a new snapshot.
+ * The changes of a StudentStore.group are collected and logged as one group at its end, so after a crash
+ * replay has either all of them or none.
+ */
+public class StorageEngine implements StoreListener, Closeable
+{
+    // Tunables (override with -Dsems.dataDir=..., etc.)
+    private static final String DATA_DIR = System.getProperty("sems.dataDir", "data");
+    private static final int SYNC_EVERY_RECORDS = Integer.getInteger("sems.wal.syncEvery", 64);
+    private static final long SYNC_INTERVAL_MILLIS = Long.getLong("sems.wal.syncIntervalMs", 200L);
+    private static final long COMPACT_EVERY = Long.getLong("sems.snapshot.compactEvery", 50_000L);
+
+    private final Path snapshotPath;
+    private final Path walPath;
+    private StudentStore store;
+    private WriteAheadLog wal;
+    // Sequence number of the last record written (or recovered)
+    private long lastSeq = 0;
+    // Changes of the open group, null outside one; the store calls listeners under its commit lock
+    private List<WriteAheadLog.Change> group;
+    private long groupStartSeq;
+
+    public StorageEngine()
+    {
+        this(Paths.get(DATA_DIR));
+    }
+
+    public StorageEngine(Path dataDir)
+    {
+        this.snapshotPath = dataDir.resolve("students.snapshot");
+        this.walPath = dataDir.resolve("students.wal");
+    }
+
+    // Recover the store from disk, then start logging its changes
+    // Must be called before any other listener that writes back to the store
+    public void open(StudentStore store) throws IOException
+    {
+        this.store = store;
+        Files.createDirectories(walPath.getParent());
+        boolean olderFormat = false;
+
+        if (Files.exists(snapshotPath))
+        {
+            olderFormat = SnapshotFile.version(snapshotPath) < SnapshotFile.CURRENT_VERSION;
+            lastSeq = SnapshotFile.read(snapshotPath, store);
+        }
+
+        long snapshotSeq = lastSeq;
+        long[] replayed = WriteAheadLog.replay(walPath, new WriteAheadLog.Handler()
+        {
+            @Override
+            public void put(long seq, long id, long studentCounter, Student student)
+            {
+                // Records already folded into the snapshot are skipped (crash between snapshot and log reset)
+                if (seq > snapshotSeq)
+                {
+                    store.put(id, student);
+                    store.setStudentCounter(Math.max(store.getStudentCounter(), studentCounter));
+                    lastSeq = seq;
+                }
+            }
+
+            @Override
+            public void remove(long seq, long id)
+            {
+                if (seq > snapshotSeq)
+                {
+                    store.remove(id);
+                    lastSeq = seq;
+                }
+            }
+        });
+
+        wal = WriteAheadLog.open(walPath, replayed[0], replayed[1], SYNC_EVERY_RECORDS, SYNC_INTERVAL_MILLIS);
+        store.addListener(this);
+
+        // Migrated records only exist in memory until they are rewritten in the current format
+        if (olderFormat || replayed[2] > 0)
+        {
+            snapshot();
+        }
+    }
+
+    @Override
+    public void onPut(long id, Student previous, Student student)
+    {
+        lastSeq = lastSeq + 1;
+
+        if (group != null)
+        {
+            group.add(new WriteAheadLog.Change(lastSeq, id, store.getStudentCounter(), student));
+            return;
+        }
+
+        try
+        {
+            wal.appendPut(lastSeq, id, store.getStudentCounter(), student);
+            compactIfNeeded();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not persist student " + StudentId.format(id), e);
+        }
+    }
+
+    @Override
+    public void onRemove(long id, Student removed)
+    {
+        lastSeq = lastSeq + 1;
+
+        if (group != null)
+        {
+            group.add(new WriteAheadLog.Change(lastSeq, id, 0, null));
+            return;
+        }
+
+        try
+        {
+            wal.appendRemove(lastSeq, id);
+            compactIfNeeded();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not persist removal of " + StudentId.format(id), e);
+        }
+    }
+
+    @Override
+    public void onGroupStart()
+    {
+        group = new ArrayList<>();
+        groupStartSeq = lastSeq;
+    }
+
+    // Log the whole group in one write. If that fails the store reverts the group, and the reverting changes are
+    // collected into the still open group and dropped with it.
+    @Override
+    public void onGroupEnd(boolean committed)
+    {
+        if (!committed)
+        {
+            group = null;
+            lastSeq = groupStartSeq;
+            return;
+        }
+
+        if (!group.isEmpty())
+        {
+            try
+            {
+                wal.appendGroup(group);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Could not persist the transaction", e);
+            }
+        }
+
+        group = null;
+
+        try
+        {
+            compactIfNeeded();
+        }
+        catch (IOException e)
+        {
+            // The group is in the log already; compaction is tried again after the next change
+            System.err.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    private void compactIfNeeded() throws IOException
+    {
+        if (wal.recordCount() >= COMPACT_EVERY)
+        {
+            snapshot();
+        }
+    }
+
+    // Force every logged change to disk now (end of a batch transaction)
+    public void sync() throws IOException
+    {
+        wal.sync();
+    }
+
+    // Write a full snapshot and clear the log; the store's counter is saved with it
+    public void snapshot() throws IOException
+    {
+        wal.sync();
+        SnapshotFile.write(snapshotPath, lastSeq, store);
+        wal.reset();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (wal != null)
+        {
+            wal.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package persistence;
+
+import models.Gender;
+import models.Programs;
+import models.Student;
+import models.StudentRules;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of a single Student, shared by the write-ahead log, the snapshot file and the change log
+ * Field order must stay in sync between write and read; readTextFields reads records written before
+ * date of birth, gender and program were typed
+ */
+public final class StudentCodec
+{
+    private StudentCodec()
+    {
+    }
+
+    public static void write(DataOutput out, Student student) throws IOException
+    {
+        writeString(out, student.firstName());
+        writeString(out, student.lastName());
+        out.writeInt(student.birthDay());
+        out.writeByte(student.gender().ordinal());
+        out.writeDouble(student.gpaPrev());
+        out.writeInt(student.currentSemester());
+        // The name, not the ID: program IDs only live as long as the process
+        writeString(out, student.program());
+        out.writeInt(student.numCourses());
+    }
+
+    public static Student read(DataInput in) throws IOException
+    {
+        // Arguments are evaluated left to right, i.e. in the order write() put them
+        return new Student(in.readUTF(), in.readUTF(), in.readInt(), Gender.ofOrdinal(in.readUnsignedByte()),
+                in.readDouble(), in.readInt(), Programs.idOf(in.readUTF()), in.readInt());
+    }
+
+    // Encoding from before the typed fields, where date of birth, gender and program were all Strings
+    static Student readTextFields(DataInput in) throws IOException
+    {
+        return new Student(in.readUTF(), in.readUTF(), StudentRules.birthDayFromLegacy(in.readUTF()),
+                Gender.fromLegacy(in.readUTF()), in.readDouble(), in.readInt(), Programs.idOf(in.readUTF()),
+                in.readInt());
+    }
+
+    // writeUTF does not accept null, store missing values as blank
+    static void writeString(DataOutput out, String value) throws IOException
+    {
+        out.writeUTF(value == null ? "" : value);
+    }
+}
@@ -0,0 +1,466 @@
+package persistence;
+
+import models.Student;
+import models.StudentId;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of store mutations
+ * Record layout: [int bodyLength][body][int crc32(body)], body = [long seq][byte op][payload]
+ * Each append is a single write() call; fsync is batched by record count and by a background timer
+ * A group of changes (a batch transaction) is written as BEGIN, its records, COMMIT in one write; replay applies
+ * the records only once it reads the COMMIT, so a group cut short by a crash is dropped as a whole. A write
+ * that fails is cut off the file again, so later records never follow a partial one.
+ */
+public class WriteAheadLog implements Closeable
+{
+    // Records written before numeric IDs carried the old "First_Last_counter" string; they are still replayed
+    static final byte OP_PUT_LEGACY = 1;
+    static final byte OP_REMOVE_LEGACY = 2;
+    // Puts written before date of birth, gender and program were typed (see StudentCodec.readTextFields)
+    static final byte OP_PUT_TEXT_FIELDS = 3;
+    static final byte OP_REMOVE = 4;
+    static final byte OP_PUT = 5;
+    // Group markers, no payload
+    static final byte OP_BEGIN = 6;
+    static final byte OP_COMMIT = 7;
+
+    // Receives the records read back by replay()
+    public interface Handler
+    {
+        void put(long seq, long id, long studentCounter, Student student);
+
+        void remove(long seq, long id);
+    }
+
+    // One change of a group: a put, or a remove if student is null
+    public record Change(long seq, long id, long studentCounter, Student student)
+    {
+    }
+
+    // Not a monitor: appends block in channel.write/force, and a virtual thread blocked inside synchronized would
+    // pin its carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FileChannel channel;
+    // Reused encode buffer so an append does not allocate a new stream every time
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+    // Framed records waiting for the next write
+    private final ByteArrayOutputStream frames = new ByteArrayOutputStream(256);
+    private final DataOutputStream framesOut = new DataOutputStream(frames);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncTimer;
+    private final int syncEveryRecords;
+    private int unsyncedRecords = 0;
+    private long recordCount;
+
+    private WriteAheadLog(Path path, long validLength, long recordCount, int syncEveryRecords) throws IOException
+    {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.truncate(validLength);
+        this.channel.position(validLength);
+        this.recordCount = recordCount;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncTimer = Executors.newSingleThreadScheduledExecutor(r ->
+        {
+            Thread t = new Thread(r, "wal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Open the log for appending; validLength/recordCount come from a previous replay() so a torn tail is cut off
+    public static WriteAheadLog open(Path path, long validLength, long recordCount, int syncEveryRecords,
+            long syncIntervalMillis) throws IOException
+    {
+        WriteAheadLog log = new WriteAheadLog(path, validLength, recordCount, syncEveryRecords);
+
+        // Group commit: whatever was written since the last fsync is forced at least every syncIntervalMillis.
+        // Scheduled only once the log is fully built, so the timer never sees a half-constructed one
+        log.syncTimer.scheduleWithFixedDelay(log::syncQuietly, syncIntervalMillis, syncIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        return log;
+    }
+
+    public void appendPut(long seq, long id, long studentCounter, Student student) throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            frame(seq, id, studentCounter, student);
+            write(1);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void appendRemove(long seq, long id) throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            frame(seq, id, 0, null);
+            write(1);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Log a group of changes so that replay applies all of them or none
+    public void appendGroup(List<Change> changes) throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            frameMarker(changes.get(0).seq(), OP_BEGIN);
+
+            for (Change change : changes)
+            {
+                frame(change.seq(), change.id(), change.studentCounter(), change.student());
+            }
+
+            frameMarker(changes.get(changes.size() - 1).seq(), OP_COMMIT);
+            write(changes.size() + 2);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Encode a put (a remove if student is null) into the pending frames
+    private void frame(long seq, long id, long studentCounter, Student student) throws IOException
+    {
+        body.reset();
+        bodyOut.writeLong(seq);
+
+        if (student == null)
+        {
+            bodyOut.writeByte(OP_REMOVE);
+            bodyOut.writeLong(id);
+        }
+        else
+        {
+            bodyOut.writeByte(OP_PUT);
+            bodyOut.writeLong(id);
+            bodyOut.writeLong(studentCounter);
+            StudentCodec.write(bodyOut, student);
+        }
+
+        frameBody();
+    }
+
+    private void frameMarker(long seq, byte op) throws IOException
+    {
+        body.reset();
+        bodyOut.writeLong(seq);
+        bodyOut.writeByte(op);
+        frameBody();
+    }
+
+    private void frameBody() throws IOException
+    {
+        byte[] data = body.toByteArray();
+        crc.reset();
+        crc.update(data);
+        framesOut.writeInt(data.length);
+        framesOut.write(data);
+        framesOut.writeInt((int) crc.getValue());
+    }
+
+    // Write the pending frames (records of them) in one go; on failure the file is cut back to where it was
+    private void write(int records) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+        frames.reset();
+        long start = channel.position();
+
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e)
+        {
+            try
+            {
+                channel.truncate(start);
+                channel.position(start);
+            }
+            catch (IOException cut)
+            {
+                e.addSuppressed(cut);
+            }
+
+            throw e;
+        }
+
+        recordCount = recordCount + records;
+        unsyncedRecords = unsyncedRecords + records;
+
+        if (unsyncedRecords >= syncEveryRecords)
+        {
+            sync();
+        }
+    }
+
+    // Number of records currently in the log (used to decide when to compact)
+    public long recordCount()
+    {
+        lock.lock();
+
+        try
+        {
+            return recordCount;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void sync() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            if (unsyncedRecords > 0 && channel.isOpen())
+            {
+                channel.force(false);
+                unsyncedRecords = 0;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void syncQuietly()
+    {
+        try
+        {
+            sync();
+        }
+        catch (IOException e)
+        {
+            System.err.println("WAL sync failed: " + e.getMessage());
+        }
+    }
+
+    // Drop every record, called once a snapshot containing them is safely on disk
+    public void reset() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            recordCount = 0;
+            unsyncedRecords = 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        lock.lock();
+
+        try
+        {
+            syncTimer.shutdownNow();
+
+            if (channel.isOpen())
+            {
+                sync();
+                channel.close();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Read every intact record in order; stops at the first torn or corrupt record. The records of a group are
+    // passed on at its COMMIT; a group the log ends in is dropped.
+    // Returns {validLength, recordCount, olderFormatCount} so the log can be reopened right after the last good
+    // record outside an unfinished group, and the caller knows whether records in an older format were migrated
+    public static long[] replay(Path path, Handler handler) throws IOException
+    {
+        if (!Files.exists(path))
+        {
+            return new long[]{0, 0, 0};
+        }
+
+        long validLength = 0;
+        long records = 0;
+        long olderFormat = 0;
+        CRC32 check = new CRC32();
+        // Records read since the last complete record or group
+        long length = 0;
+        long count = 0;
+        // Changes of the open group, null outside one
+        List<Change> group = null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16)))
+        {
+            while (true)
+            {
+                byte[] data;
+
+                try
+                {
+                    int size = in.readInt();
+
+                    if (size <= 0 || size > (1 << 20))
+                    {
+                        break;
+                    }
+
+                    data = new byte[size];
+                    in.readFully(data);
+                    int expected = in.readInt();
+                    check.reset();
+                    check.update(data);
+
+                    if ((int) check.getValue() != expected)
+                    {
+                        break;
+                    }
+                }
+                catch (EOFException e)
+                {
+                    // Torn write at the tail
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(data));
+                long seq = record.readLong();
+                byte op = record.readByte();
+                length = length + data.length + 8;
+                count = count + 1;
+
+                switch (op)
+                {
+                    case OP_BEGIN ->
+                    {
+                        // Never written inside another group; if it were, that one did not commit
+                        group = new ArrayList<>();
+                        length = data.length + 8;
+                        count = 1;
+                        continue;
+                    }
+                    case OP_COMMIT ->
+                    {
+                        if (group == null)
+                        {
+                            return new long[]{validLength, records, olderFormat};
+                        }
+
+                        for (Change change : group)
+                        {
+                            if (change.student() == null)
+                            {
+                                handler.remove(change.seq(), change.id());
+                            }
+                            else
+                            {
+                                handler.put(change.seq(), change.id(), change.studentCounter(), change.student());
+                            }
+                        }
+
+                        group = null;
+                    }
+                    case OP_PUT ->
+                    {
+                        long id = record.readLong();
+                        long counter = record.readLong();
+                        Student student = StudentCodec.read(record);
+
+                        if (group != null)
+                        {
+                            group.add(new Change(seq, id, counter, student));
+                            continue;
+                        }
+
+                        handler.put(seq, id, counter, student);
+                    }
+                    case OP_REMOVE ->
+                    {
+                        long id = record.readLong();
+
+                        if (group != null)
+                        {
+                            group.add(new Change(seq, id, 0, null));
+                            continue;
+                        }
+
+                        handler.remove(seq, id);
+                    }
+                    case OP_PUT_TEXT_FIELDS ->
+                    {
+                        long id = record.readLong();
+                        long counter = record.readLong();
+                        handler.put(seq, id, counter, StudentCodec.readTextFields(record));
+                        olderFormat = olderFormat + 1;
+                    }
+                    case OP_PUT_LEGACY ->
+                    {
+                        long id = StudentId.parse(record.readUTF());
+                        int counter = record.readInt();
+                        handler.put(seq, id, counter, StudentCodec.readTextFields(record));
+                        olderFormat = olderFormat + 1;
+                    }
+                    case OP_REMOVE_LEGACY ->
+                    {
+                        handler.remove(seq, StudentId.parse(record.readUTF()));
+                        olderFormat = olderFormat + 1;
+                    }
+                    default ->
+                    {
+                        // Unknown record type: treat like corruption and stop here
+                        return new long[]{validLength, records, olderFormat};
+                    }
+                }
+
+                // Complete: a record outside a group, or a whole group
+                validLength = validLength + length;
+                records = records + count;
+                length = 0;
+                count = 0;
+            }
+        }
+
+        return new long[]{validLength, records, olderFormat};
+    }
+}
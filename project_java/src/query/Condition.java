@@ -0,0 +1,95 @@
+package query;
+
+import analytics.RosterColumns;
+import models.Student;
+
+/**
+ * One parsed filter term, normalized once so testing a row does no parsing
+ * Numeric, date, program and gender terms become a value range ([low, high], or outside it for !=) that can be
+ * pushed down to RosterColumns; name terms stay case-insensitive text comparisons.
+ */
+public sealed interface Condition
+{
+    // Comparison operators as written in a query
+    enum Op
+    {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        Op(String symbol)
+        {
+            this.symbol = symbol;
+        }
+
+        public String symbol()
+        {
+            return symbol;
+        }
+    }
+
+    QueryField field();
+
+    boolean test(Student student);
+
+    // The value lies in [low, high] (inside) or not (outside); dates never match when unknown
+    record Range(QueryField field, double low, double high, boolean inside) implements Condition
+    {
+        static Range of(QueryField field, Op op, double value)
+        {
+            return switch (op)
+            {
+                case EQ -> new Range(field, value, value, true);
+                case NE -> new Range(field, value, value, false);
+                case LT -> new Range(field, Double.NEGATIVE_INFINITY, Math.nextDown(value), true);
+                case LE -> new Range(field, Double.NEGATIVE_INFINITY, value, true);
+                case GT -> new Range(field, Math.nextUp(value), Double.POSITIVE_INFINITY, true);
+                case GE -> new Range(field, value, Double.POSITIVE_INFINITY, true);
+            };
+        }
+
+        @Override
+        public boolean test(Student student)
+        {
+            if (field.column() == RosterColumns.Column.BIRTH_DAY && student.birthDay() == Student.UNKNOWN_BIRTH_DAY)
+            {
+                return false;
+            }
+
+            double value = field.number(student);
+            return (value >= low && value <= high) == inside;
+        }
+
+        // Exact single value this range selects, for an index lookup; null if it is not an equality
+        Double equalTo()
+        {
+            return inside && low == high ? low : null;
+        }
+
+        RosterColumns.ColumnRange pushDown()
+        {
+            return new RosterColumns.ColumnRange(field.column(), low, high, inside);
+        }
+    }
+
+    // Case-insensitive comparison of a name field
+    record Text(QueryField field, Op op, String value) implements Condition
+    {
+        @Override
+        public boolean test(Student student)
+        {
+            String text = field.text(student);
+            int compare = String.CASE_INSENSITIVE_ORDER.compare(text == null ? "" : text.trim(), value);
+
+            return switch (op)
+            {
+                case EQ -> compare == 0;
+                case NE -> compare != 0;
+                case LT -> compare < 0;
+                case LE -> compare <= 0;
+                case GT -> compare > 0;
+                case GE -> compare >= 0;
+            };
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package query;
+
+import models.Student;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A parsed roster query: filter terms joined by AND, an optional sort field and an optional row limit
+ *
+ *   [WHERE] term [AND term ...] [ORDER BY field [ASC|DESC]] [LIMIT n]
+ *   term := field op value     op := = != <> < <= > >=
+ *
+ * Examples:
+ *   gpa < 2.0 AND semester >= 3 AND program = 'Software Development'
+ *   age >= 21 AND gender = F ORDER BY gpa DESC LIMIT 10
+ *   ORDER BY lastName LIMIT 20
+ *
+ * Text values may be quoted with ' or "; dates are YYYY-MM-DD. Program and gender only take = and !=.
+ * Parse once and run as often as needed; ages are fixed against the day the query was parsed.
+ */
+public record Query(List<Condition> conditions, QueryField orderBy, boolean descending, int limit)
+{
+    public Query
+    {
+        conditions = List.copyOf(conditions);
+    }
+
+    // Throws IllegalArgumentException with a readable reason when the text is not a valid query
+    public static Query parse(String text)
+    {
+        return new QueryParser(text, LocalDate.now()).parse();
+    }
+
+    public boolean test(Student student)
+    {
+        for (Condition condition : conditions)
+        {
+            if (!condition.test(student))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean hasLimit()
+    {
+        return limit > 0;
+    }
+}
@@ -0,0 +1,196 @@
+package query;
+
+import analytics.RosterColumns;
+import models.Student;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs parsed queries against the student store
+ * The access path is picked per query, cheapest first:
+ *   index   - an equality on program, semester or last name; the smallest matching index list is walked
+ *             unless it still holds more than 1/INDEX_SELECTIVITY of the roster and a column scan is possible
+ *   columns - numeric, date, program or gender terms are pushed down to a scan of RosterColumns' primitive
+ *             arrays (split across the fork-join pool for large rosters)
+ *   scan    - name-only or empty filters walk the store in insertion order
+ * Every candidate is re-checked against the full query on the current record, so the result is exact even if
+ * the store changed between picking candidates and reading them.
+ * Unsorted rows stream lazily, so LIMIT stops reading early. ORDER BY has to see every match first; with a LIMIT it
+ * keeps only the best N in a bounded heap instead of sorting them all.
+ */
+public class QueryEngine
+{
+    // A query ready to be consumed: the chosen access path (for display) and the matching rows
+    public record Execution(String plan, Stream<Map.Entry<Long, Student>> rows)
+    {
+    }
+
+    // An index hit list longer than size / this is slower to walk record by record than a column scan
+    private static final int INDEX_SELECTIVITY = 10;
+
+    private final StudentStore store;
+    private final StudentIndexes indexes;
+    // May be null, then column terms fall back to the store scan
+    private final RosterColumns columns;
+
+    public QueryEngine(StudentStore store, StudentIndexes indexes, RosterColumns columns)
+    {
+        this.store = store;
+        this.indexes = indexes;
+        this.columns = columns;
+    }
+
+    public Execution execute(String query)
+    {
+        return execute(Query.parse(query));
+    }
+
+    public Execution execute(Query query)
+    {
+        List<Long> indexed = null;
+        String plan = null;
+
+        for (Condition condition : query.conditions())
+        {
+            List<Long> ids = indexLookup(condition);
+
+            if (ids != null && (indexed == null || ids.size() < indexed.size()))
+            {
+                indexed = ids;
+                plan = "index " + condition.field().displayName() + " (" + ids.size() + " candidates)";
+            }
+        }
+
+        List<RosterColumns.ColumnRange> pushed = new ArrayList<>();
+
+        for (Condition condition : query.conditions())
+        {
+            if (condition instanceof Condition.Range range)
+            {
+                pushed.add(range.pushDown());
+            }
+        }
+
+        boolean canScanColumns = columns != null && !pushed.isEmpty();
+        Stream<Map.Entry<Long, Student>> candidates;
+
+        if (indexed != null && (!canScanColumns || indexed.size() <= store.size() / INDEX_SELECTIVITY))
+        {
+            candidates = rows(indexed.stream().mapToLong(Long::longValue));
+        }
+        else
+        {
+            if (canScanColumns)
+            {
+                long[] ids = columns.idsWhere(pushed);
+                plan = "column scan on " + pushed.size() + " term(s) (" + ids.length + " candidates)";
+                candidates = rows(LongStream.of(ids));
+            }
+            else
+            {
+                plan = "full scan";
+                candidates = StreamSupport.stream(store.entries().spliterator(), false);
+            }
+        }
+
+        Stream<Map.Entry<Long, Student>> matches = candidates.filter(row -> query.test(row.getValue()));
+
+        if (query.orderBy() != null)
+        {
+            Comparator<Map.Entry<Long, Student>> order = order(query.orderBy(), query.descending());
+
+            if (query.hasLimit())
+            {
+                return new Execution(plan + ", top " + query.limit() + " by " + query.orderBy().displayName(),
+                        topN(matches, order, query.limit()).stream());
+            }
+
+            return new Execution(plan + ", sort by " + query.orderBy().displayName(), matches.sorted(order));
+        }
+
+        return new Execution(plan, query.hasLimit() ? matches.limit(query.limit()) : matches);
+    }
+
+    // Index candidates for an equality term, or null if no index covers it
+    private List<Long> indexLookup(Condition condition)
+    {
+        if (condition instanceof Condition.Range range && range.equalTo() != null)
+        {
+            double value = range.equalTo();
+
+            return switch (range.field())
+            {
+                case PROGRAM -> indexes.findByProgram((int) value);
+                case SEMESTER -> value == (int) value ? indexes.findBySemester((int) value) : List.of();
+                default -> null;
+            };
+        }
+
+        if (condition instanceof Condition.Text text && text.op() == Condition.Op.EQ
+                && text.field() == QueryField.LAST_NAME)
+        {
+            return indexes.findByLastName(text.value());
+        }
+
+        return null;
+    }
+
+    // Current record of each candidate ID; IDs removed in the meantime are skipped
+    private Stream<Map.Entry<Long, Student>> rows(LongStream ids)
+    {
+        return ids.mapToObj(id ->
+        {
+            Student student = store.get(id);
+            return student == null ? null : Map.entry(id, student);
+        }).filter(Objects::nonNull);
+    }
+
+    // The first limit rows in order, kept in a max-heap of size limit: O(n log limit), no full sort
+    static <T> List<T> topN(Stream<T> rows, Comparator<T> order, int limit)
+    {
+        PriorityQueue<T> heap = new PriorityQueue<>(limit + 1, order.reversed());
+
+        rows.forEach(row ->
+        {
+            if (heap.size() < limit)
+            {
+                heap.add(row);
+            }
+            else if (order.compare(row, heap.peek()) < 0)
+            {
+                heap.poll();
+                heap.add(row);
+            }
+        });
+
+        List<T> best = new ArrayList<>(heap);
+        best.sort(order);
+        return best;
+    }
+
+    // Sort on the field, ties by ID so the order is stable between runs
+    // Program and gender sort by name/code; age sorts youngest first, i.e. by birth day descending
+    private static Comparator<Map.Entry<Long, Student>> order(QueryField field, boolean descending)
+    {
+        Comparator<Map.Entry<Long, Student>> order = switch (field)
+        {
+            case FIRST_NAME, LAST_NAME, PROGRAM, GENDER ->
+                    Comparator.comparing(row -> field.text(row.getValue()), String.CASE_INSENSITIVE_ORDER);
+            case AGE -> Comparator.comparingDouble(
+                    (Map.Entry<Long, Student> row) -> field.number(row.getValue())).reversed();
+            default -> Comparator.comparingDouble(row -> field.number(row.getValue()));
+        };
+
+        if (descending)
+        {
+            order = order.reversed();
+        }
+
+        return order.thenComparing(Map.Entry::getKey);
+    }
+}
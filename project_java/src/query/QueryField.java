@@ -0,0 +1,90 @@
+package query;
+
+import analytics.RosterColumns;
+import models.Student;
+
+/**
+ * Student fields a query can filter and sort on
+ * Names match StudentFields (case-insensitive) plus a few short aliases; age is derived from the date of birth.
+ */
+public enum QueryField
+{
+    FIRST_NAME(null, "firstName", "first"),
+    LAST_NAME(null, "lastName", "last"),
+    DATE_OF_BIRTH(RosterColumns.Column.BIRTH_DAY, "dateOfBirth", "dob", "born"),
+    AGE(RosterColumns.Column.BIRTH_DAY, "age"),
+    GENDER(RosterColumns.Column.GENDER, "gender"),
+    GPA(RosterColumns.Column.GPA, "gpaPrev", "gpa"),
+    SEMESTER(RosterColumns.Column.SEMESTER, "currentSemester", "semester"),
+    PROGRAM(RosterColumns.Column.PROGRAM, "program"),
+    NUM_COURSES(RosterColumns.Column.NUM_COURSES, "numCourses", "courses");
+
+    // Primitive column holding the field, null for the name fields (text)
+    private final RosterColumns.Column column;
+    private final String[] names;
+
+    QueryField(RosterColumns.Column column, String... names)
+    {
+        this.column = column;
+        this.names = names;
+    }
+
+    public static QueryField of(String name)
+    {
+        for (QueryField field : values())
+        {
+            for (String candidate : field.names)
+            {
+                if (candidate.equalsIgnoreCase(name))
+                {
+                    return field;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("unknown field '" + name + "'");
+    }
+
+    public String displayName()
+    {
+        return names[0];
+    }
+
+    RosterColumns.Column column()
+    {
+        return column;
+    }
+
+    boolean isText()
+    {
+        return column == null;
+    }
+
+    // Column value of a numeric field (program ID, gender ordinal, birth day for AGE and DATE_OF_BIRTH)
+    double number(Student student)
+    {
+        return switch (this)
+        {
+            case DATE_OF_BIRTH, AGE -> student.birthDay();
+            case GENDER -> student.gender().ordinal();
+            case GPA -> student.gpaPrev();
+            case SEMESTER -> student.currentSemester();
+            case PROGRAM -> student.programId();
+            case NUM_COURSES -> student.numCourses();
+            case FIRST_NAME, LAST_NAME -> throw new IllegalStateException(this + " is a text field");
+        };
+    }
+
+    // Value as it is compared for the text fields, and as it sorts for program and gender
+    String text(Student student)
+    {
+        return switch (this)
+        {
+            case FIRST_NAME -> student.firstName();
+            case LAST_NAME -> student.lastName();
+            case PROGRAM -> student.program();
+            case GENDER -> student.gender().code();
+            default -> throw new IllegalStateException(this + " is not a text field");
+        };
+    }
+}
@@ -0,0 +1,324 @@
+package query;
+
+import models.AgeRange;
+import models.Gender;
+import models.Programs;
+import models.StudentRules;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser for the query language described on Query
+ * Values are resolved while parsing (dates to epoch days, ages to birth-day ranges, programs to IDs,
+ * genders to ordinals), so running the query compares primitives only.
+ */
+final class QueryParser
+{
+    private final String text;
+    private final LocalDate today;
+    private int pos = 0;
+
+    QueryParser(String text, LocalDate today)
+    {
+        this.text = text == null ? "" : text;
+        this.today = today;
+    }
+
+    Query parse()
+    {
+        List<Condition> conditions = new ArrayList<>();
+        QueryField orderBy = null;
+        boolean descending = false;
+        int limit = 0;
+
+        acceptKeyword("WHERE");
+
+        if (!atEnd() && !peekKeyword("ORDER") && !peekKeyword("LIMIT"))
+        {
+            do
+            {
+                conditions.add(condition());
+            }
+            while (acceptKeyword("AND"));
+        }
+
+        if (acceptKeyword("ORDER"))
+        {
+            expectKeyword("BY");
+            orderBy = QueryField.of(word());
+
+            if (acceptKeyword("DESC"))
+            {
+                descending = true;
+            }
+            else
+            {
+                acceptKeyword("ASC");
+            }
+        }
+
+        if (acceptKeyword("LIMIT"))
+        {
+            String value = value();
+
+            try
+            {
+                limit = Integer.parseInt(value);
+            }
+            catch (NumberFormatException e)
+            {
+                limit = -1;
+            }
+
+            if (limit <= 0)
+            {
+                throw new IllegalArgumentException("LIMIT must be a positive whole number, not '" + value + "'");
+            }
+        }
+
+        if (!atEnd())
+        {
+            throw error("unexpected '" + rest() + "'");
+        }
+
+        return new Query(conditions, orderBy, descending, limit);
+    }
+
+    private Condition condition()
+    {
+        QueryField field = QueryField.of(word());
+        Condition.Op op = operator();
+        String value = value();
+
+        switch (field)
+        {
+            case FIRST_NAME, LAST_NAME ->
+            {
+                return new Condition.Text(field, op, value.trim());
+            }
+            case AGE ->
+            {
+                return age(op, wholeNumber(field, value));
+            }
+            case DATE_OF_BIRTH ->
+            {
+                LocalDate date = StudentRules.parseDateOfBirth(value);
+
+                if (date == null)
+                {
+                    throw new IllegalArgumentException("invalid date '" + value + "' (YYYY-MM-DD)");
+                }
+
+                return Condition.Range.of(field, op, date.toEpochDay());
+            }
+            case GENDER ->
+            {
+                return Condition.Range.of(field, equality(field, op), Gender.parse(value).ordinal());
+            }
+            case PROGRAM ->
+            {
+                // An unknown program matches no student (its ID, -1, is never stored)
+                return Condition.Range.of(field, equality(field, op), Programs.find(value));
+            }
+            case SEMESTER, NUM_COURSES ->
+            {
+                return Condition.Range.of(field, op, wholeNumber(field, value));
+            }
+            case GPA ->
+            {
+                try
+                {
+                    return Condition.Range.of(field, op, Double.parseDouble(value));
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IllegalArgumentException("invalid number for gpaPrev: '" + value + "'");
+                }
+            }
+            default -> throw new IllegalStateException("unhandled field " + field);
+        }
+    }
+
+    // Age in whole years becomes a birth-day range through AgeRange; "age < 0" and the like match nothing
+    private Condition age(Condition.Op op, int age)
+    {
+        Integer minAge = switch (op)
+        {
+            case EQ, NE, GE -> age;
+            case GT -> age + 1;
+            case LT, LE -> null;
+        };
+        Integer maxAge = switch (op)
+        {
+            case EQ, NE, LE -> age;
+            case LT -> age - 1;
+            case GT, GE -> null;
+        };
+
+        if (maxAge != null && maxAge < 0)
+        {
+            return new Condition.Range(QueryField.AGE, 1, 0, op == Condition.Op.NE);
+        }
+
+        AgeRange range = AgeRange.of(minAge == null || minAge < 0 ? null : minAge, maxAge, today);
+        return new Condition.Range(QueryField.AGE, range.firstBirthDay(), range.lastBirthDay(),
+                op != Condition.Op.NE);
+    }
+
+    private static Condition.Op equality(QueryField field, Condition.Op op)
+    {
+        if (op != Condition.Op.EQ && op != Condition.Op.NE)
+        {
+            throw new IllegalArgumentException(field.displayName() + " only supports = and !=");
+        }
+
+        return op;
+    }
+
+    private static int wholeNumber(QueryField field, String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("invalid integer for " + field.displayName() + ": '" + value + "'");
+        }
+    }
+
+    private Condition.Op operator()
+    {
+        skipSpace();
+
+        for (String symbol : new String[]{"<=", ">=", "!=", "<>", "==", "=", "<", ">"})
+        {
+            if (text.startsWith(symbol, pos))
+            {
+                pos += symbol.length();
+
+                return switch (symbol)
+                {
+                    case "<=" -> Condition.Op.LE;
+                    case ">=" -> Condition.Op.GE;
+                    case "!=", "<>" -> Condition.Op.NE;
+                    case "<" -> Condition.Op.LT;
+                    case ">" -> Condition.Op.GT;
+                    default -> Condition.Op.EQ;
+                };
+            }
+        }
+
+        throw error("expected a comparison (= != < <= > >=)");
+    }
+
+    // Quoted string, or a bare run of characters up to a space or operator
+    private String value()
+    {
+        skipSpace();
+
+        if (atEnd())
+        {
+            throw error("expected a value");
+        }
+
+        char quote = text.charAt(pos);
+
+        if (quote == '\'' || quote == '"')
+        {
+            int end = text.indexOf(quote, pos + 1);
+
+            if (end < 0)
+            {
+                throw error("unterminated quote");
+            }
+
+            String value = text.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+
+        int start = pos;
+
+        while (pos < text.length() && !Character.isWhitespace(text.charAt(pos))
+                && "=!<>".indexOf(text.charAt(pos)) < 0)
+        {
+            pos++;
+        }
+
+        return text.substring(start, pos);
+    }
+
+    private String word()
+    {
+        skipSpace();
+        int start = pos;
+
+        while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_'))
+        {
+            pos++;
+        }
+
+        if (start == pos)
+        {
+            throw error(atEnd() ? "expected a field name" : "expected a field name at '" + rest() + "'");
+        }
+
+        return text.substring(start, pos);
+    }
+
+    private boolean peekKeyword(String keyword)
+    {
+        skipSpace();
+        int end = pos + keyword.length();
+
+        return text.regionMatches(true, pos, keyword, 0, keyword.length())
+                && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+    }
+
+    private boolean acceptKeyword(String keyword)
+    {
+        if (peekKeyword(keyword))
+        {
+            pos += keyword.length();
+            return true;
+        }
+
+        return false;
+    }
+
+    private void expectKeyword(String keyword)
+    {
+        if (!acceptKeyword(keyword))
+        {
+            throw error("expected " + keyword);
+        }
+    }
+
+    private boolean atEnd()
+    {
+        skipSpace();
+        return pos >= text.length();
+    }
+
+    private String rest()
+    {
+        String rest = text.substring(pos);
+        return rest.length() > 20 ? rest.substring(0, 20) + "..." : rest;
+    }
+
+    private void skipSpace()
+    {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+        {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException(message + " (column " + (pos + 1) + ")");
+    }
+}
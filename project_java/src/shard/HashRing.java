@@ -0,0 +1,110 @@
+package shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent hashing of student IDs onto named shards
+ * Every shard owns sems.shard.virtualNodes points (default 160) on a 64-bit ring, placed by hashing its name; an
+ * ID belongs to the shard with the first point at or after the ID's hash, wrapping around. Adding a shard takes
+ * over about 1/(n+1) of the IDs, spread over the others, and moves nothing between the shards already there.
+ * Points depend only on the names, so every router with the same shard list agrees on the owners.
+ */
+public final class HashRing
+{
+    private static final int VIRTUAL_NODES = Integer.getInteger("sems.shard.virtualNodes", 160);
+
+    private final List<String> names;
+    // Ring points ascending, and the shard (index into names) each belongs to
+    private final long[] points;
+    private final int[] owners;
+
+    public HashRing(List<String> names)
+    {
+        if (names.isEmpty())
+        {
+            throw new IllegalArgumentException("A ring needs at least one shard.");
+        }
+
+        if (names.stream().distinct().count() != names.size())
+        {
+            throw new IllegalArgumentException("Shard names must be unique: " + names);
+        }
+
+        this.names = List.copyOf(names);
+        int count = names.size() * VIRTUAL_NODES;
+        long[] unsortedPoints = new long[count];
+
+        for (int shard = 0; shard < names.size(); shard++)
+        {
+            for (int v = 0; v < VIRTUAL_NODES; v++)
+            {
+                unsortedPoints[shard * VIRTUAL_NODES + v] = hash(names.get(shard) + "#" + v);
+            }
+        }
+
+        // Sort the points and carry their owners along (a point collision just goes to the lower index)
+        Integer[] order = new Integer[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (a, b) -> unsortedPoints[a] != unsortedPoints[b]
+                ? Long.compare(unsortedPoints[a], unsortedPoints[b]) : Integer.compare(a, b));
+        points = new long[count];
+        owners = new int[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            points[i] = unsortedPoints[order[i]];
+            owners[i] = order[i] / VIRTUAL_NODES;
+        }
+    }
+
+    // This ring with one more shard
+    public HashRing with(String name)
+    {
+        List<String> grown = new ArrayList<>(names);
+        grown.add(name);
+        return new HashRing(grown);
+    }
+
+    public List<String> names()
+    {
+        return names;
+    }
+
+    // Name of the shard that owns the ID
+    public String owner(long id)
+    {
+        long hash = hash(id);
+        int at = Arrays.binarySearch(points, hash);
+        int index = at >= 0 ? at : -at - 1;
+        return names.get(owners[index == points.length ? 0 : index]);
+    }
+
+    // 64-bit finalizer of MurmurHash3: consecutive IDs land far apart on the ring
+    static long hash(long id)
+    {
+        long h = id;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // FNV-1a over the characters, then the finalizer above
+    static long hash(String name)
+    {
+        long h = 0xCBF29CE484222325L;
+
+        for (int i = 0; i < name.length(); i++)
+        {
+            h = (h ^ name.charAt(i)) * 0x100000001B3L;
+        }
+
+        return hash(h);
+    }
+}
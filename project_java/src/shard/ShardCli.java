@@ -0,0 +1,199 @@
+package shard;
+
+import analytics.GpaSummary;
+import analytics.RosterColumns;
+import exporter.StudentExporter;
+import models.Student;
+import models.StudentId;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command-line access to a sharded roster through ShardRouter; the secret comes from SEMS_SHARD_SECRET
+ *
+ *   count                                  students per shard and in all
+ *   get <id>                               one student and the shard that owns it
+ *   list [after-id] [limit]                one page in ID order (default: from the start, 50)
+ *   search <program|semester|lastName|namePrefix> <value> [after-id] [limit]
+ *   gpa <program|semester>                 GPA distribution over all shards
+ *   add-shard <name> <host:port>           add a running, empty shard and move its students to it
+ *   rebalance                              finish a rebalance the router did not complete
+ *
+ * Usage: SEMS_SHARD_SECRET=... java shard.ShardCli --shards=<file> <command> [arguments]
+ */
+public class ShardCli
+{
+    private static final int DEFAULT_LIMIT = 50;
+
+    public static void main(String[] args)
+    {
+        String secret = System.getenv("SEMS_SHARD_SECRET");
+
+        if (args.length < 2 || !args[0].startsWith("--shards=") || secret == null || secret.isEmpty())
+        {
+            System.err.println("Usage: SEMS_SHARD_SECRET=... ShardCli --shards=<file> count | get <id>"
+                    + " | list [after] [limit] | search <field> <value> [after] [limit] | gpa <program|semester>"
+                    + " | add-shard <name> <host:port> | rebalance");
+            System.exit(2);
+        }
+
+        try (ShardRouter router = ShardRouter.open(Paths.get(args[0].substring("--shards=".length())), secret))
+        {
+            if (router.isRebalancing() && !args[1].equals("rebalance"))
+            {
+                System.err.println("A rebalance did not finish; run 'rebalance' to complete it.");
+            }
+
+            run(router, args[1], Arrays.copyOfRange(args, 2, args.length));
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Shard request failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(ShardRouter router, String command, String[] args) throws IOException
+    {
+        switch (command)
+        {
+            case "count" ->
+            {
+                Map<String, Integer> sizes = router.sizes();
+                sizes.forEach((name, size) -> System.out.printf("%-20s %10d%n", name, size));
+                System.out.printf("%-20s %10d%n", "All shards", sizes.values().stream().mapToLong(i -> i).sum());
+            }
+            case "get" ->
+            {
+                long id = id(argument(args, 0, "get <id>"));
+                Student student = router.get(id);
+
+                if (student == null)
+                {
+                    System.out.println("No student with ID " + StudentId.format(id) + ".");
+                    return;
+                }
+
+                print(new ShardRouter.Page(List.of(new ShardClient.Row(id, student)), -1));
+                System.out.println("(on shard " + router.ownerOf(id) + ")");
+            }
+            case "list" -> print(router.list(args.length > 0 ? id(args[0]) : 0, limit(args, 1)));
+            case "search" ->
+            {
+                ShardClient.Field field = switch (argument(args, 0, "search <field> <value>"))
+                {
+                    case "program" -> ShardClient.Field.PROGRAM;
+                    case "semester" -> ShardClient.Field.SEMESTER;
+                    case "lastName" -> ShardClient.Field.LAST_NAME;
+                    case "namePrefix" -> ShardClient.Field.NAME_PREFIX;
+                    default -> throw new IllegalArgumentException("Search by program, semester, lastName or"
+                            + " namePrefix.");
+                };
+                String value = argument(args, 1, "search <field> <value>");
+                print(router.search(field, value, args.length > 2 ? id(args[2]) : 0, limit(args, 3)));
+            }
+            case "gpa" ->
+            {
+                RosterColumns.GroupBy groupBy = RosterColumns.GroupBy.valueOf(
+                        argument(args, 0, "gpa <program|semester>").toUpperCase(Locale.ROOT));
+                printGpa(router.gpaBy(groupBy));
+            }
+            case "add-shard" ->
+            {
+                long start = System.nanoTime();
+                long moved = router.addShard(argument(args, 0, "add-shard <name> <host:port>"),
+                        argument(args, 1, "add-shard <name> <host:port>"));
+                System.out.printf("Moved %d students in %.1f s.%n", moved, (System.nanoTime() - start) / 1e9);
+            }
+            case "rebalance" ->
+            {
+                long start = System.nanoTime();
+                long moved = router.rebalance();
+                System.out.printf("Moved %d students in %.1f s.%n", moved, (System.nanoTime() - start) / 1e9);
+            }
+            default -> throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    private static String argument(String[] args, int index, String usage)
+    {
+        if (index >= args.length)
+        {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+
+        return args[index];
+    }
+
+    private static long id(String text)
+    {
+        long id = StudentId.parse(text);
+
+        if (id == StudentId.INVALID)
+        {
+            throw new IllegalArgumentException("Not a student ID: " + text);
+        }
+
+        return id;
+    }
+
+    private static int limit(String[] args, int index)
+    {
+        try
+        {
+            return index < args.length ? Integer.parseInt(args[index]) : DEFAULT_LIMIT;
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Not a page size: " + args[index]);
+        }
+    }
+
+    private static void print(ShardRouter.Page page) throws IOException
+    {
+        StudentExporter exporter = new StudentExporter(StudentExporter.consoleWriter(), StudentExporter.Format.LISTING);
+
+        for (ShardClient.Row row : page.rows())
+        {
+            exporter.write(row.id(), row.student());
+        }
+
+        exporter.flush();
+
+        if (page.next() >= 0)
+        {
+            System.out.println("(more after " + StudentId.format(page.next()) + ")");
+        }
+    }
+
+    private static void printGpa(Map<String, GpaSummary> groups)
+    {
+        System.out.printf("%-28s %8s %6s %6s %6s %6s %6s %6s%n", "Group", "Students", "Mean", "Min", "P25", "Median",
+                "P90", "Max");
+        GpaSummary overall = new GpaSummary();
+
+        for (Map.Entry<String, GpaSummary> group : groups.entrySet())
+        {
+            printGpaRow(group.getKey(), group.getValue());
+            overall.merge(group.getValue());
+        }
+
+        printGpaRow("All students", overall);
+    }
+
+    private static void printGpaRow(String group, GpaSummary gpa)
+    {
+        System.out.printf("%-28.28s %8d %6.2f %6.2f %6.2f %6.2f %6.2f %6.2f%n", group, gpa.count(), gpa.mean(),
+                gpa.min(), gpa.percentile(25), gpa.median(), gpa.percentile(90), gpa.max());
+    }
+}
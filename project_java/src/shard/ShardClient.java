@@ -0,0 +1,372 @@
+package shard;
+
+import analytics.GpaSummary;
+import analytics.RosterColumns;
+import models.Student;
+import persistence.StudentCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Connection to one ShardServer (see ShardProtocol for the requests)
+ * Keeps up to sems.shard.connections idle connections (default 8) and opens more while they are all busy, so
+ * callers on many threads do not queue behind each other. A connection that fails is dropped, never reused.
+ */
+public class ShardClient implements Closeable
+{
+    private static final int IDLE_CONNECTIONS = Integer.getInteger("sems.shard.connections", 8);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("sems.shard.timeoutMs", 30_000);
+
+    // One stored student as a shard returns it
+    public record Row(long id, Student student)
+    {
+    }
+
+    // What SEARCH looks up (the shard's StudentIndexes); a semester is sent as its number in text
+    public enum Field
+    {
+        PROGRAM, SEMESTER, LAST_NAME, NAME_PREFIX
+    }
+
+    // One request: write the arguments after the op byte, read the result after the OK byte
+    private interface Call<T>
+    {
+        void write(DataOutputStream out) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Connection implements Closeable
+    {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        @Override
+        public void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Already broken
+            }
+        }
+    }
+
+    private final String name;
+    private final InetSocketAddress address;
+    private final String secret;
+    private final BlockingQueue<Connection> idle = new ArrayBlockingQueue<>(Math.max(1, IDLE_CONNECTIONS));
+
+    public ShardClient(String name, InetSocketAddress address, String secret)
+    {
+        this.name = name;
+        this.address = address;
+        this.secret = secret;
+    }
+
+    public String name()
+    {
+        return name;
+    }
+
+    public InetSocketAddress address()
+    {
+        return address;
+    }
+
+    public Student get(long id) throws IOException
+    {
+        return call(ShardProtocol.GET, new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out) throws IOException
+            {
+                out.writeLong(id);
+            }
+
+            @Override
+            public Student read(DataInputStream in) throws IOException
+            {
+                return in.readBoolean() ? StudentCodec.read(in) : null;
+            }
+        });
+    }
+
+    // Add or re-save; returns true if the shard already had the ID
+    public boolean put(long id, Student student) throws IOException
+    {
+        return call(ShardProtocol.PUT, writeStudent(id, student));
+    }
+
+    // Add only if the shard does not have the ID yet; returns true if added
+    public boolean putIfAbsent(long id, Student student) throws IOException
+    {
+        return call(ShardProtocol.PUT_IF_ABSENT, writeStudent(id, student));
+    }
+
+    public boolean remove(long id) throws IOException
+    {
+        return call(ShardProtocol.REMOVE, new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out) throws IOException
+            {
+                out.writeLong(id);
+            }
+
+            @Override
+            public Boolean read(DataInputStream in) throws IOException
+            {
+                return in.readBoolean();
+            }
+        });
+    }
+
+    // Up to limit students with IDs above after, in ID order
+    public List<Row> scan(long after, int limit) throws IOException
+    {
+        return call(ShardProtocol.SCAN, new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out) throws IOException
+            {
+                out.writeLong(after);
+                out.writeInt(limit);
+            }
+
+            @Override
+            public List<Row> read(DataInputStream in) throws IOException
+            {
+                return ShardProtocol.readRows(in);
+            }
+        });
+    }
+
+    // Up to limit matching students with IDs above after, in ID order
+    public List<Row> search(Field field, String value, long after, int limit) throws IOException
+    {
+        return call(ShardProtocol.SEARCH, new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out) throws IOException
+            {
+                out.writeByte(field.ordinal());
+                out.writeUTF(value);
+                out.writeLong(after);
+                out.writeInt(limit);
+            }
+
+            @Override
+            public List<Row> read(DataInputStream in) throws IOException
+            {
+                return ShardProtocol.readRows(in);
+            }
+        });
+    }
+
+    // GPA distribution per program or semester of this shard's students
+    public Map<String, GpaSummary> gpaBy(RosterColumns.GroupBy groupBy) throws IOException
+    {
+        return call(ShardProtocol.GPA, new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out) throws IOException
+            {
+                out.writeByte(groupBy.ordinal());
+            }
+
+            @Override
+            public Map<String, GpaSummary> read(DataInputStream in) throws IOException
+            {
+                Map<String, GpaSummary> groups = new TreeMap<>();
+                int count = in.readInt();
+
+                for (int i = 0; i < count; i++)
+                {
+                    groups.put(in.readUTF(), GpaSummary.read(in));
+                }
+
+                return groups;
+            }
+        });
+    }
+
+    // {students held, highest ID held or -1}
+    public long[] stats() throws IOException
+    {
+        return call(ShardProtocol.STATS, new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out)
+            {
+            }
+
+            @Override
+            public long[] read(DataInputStream in) throws IOException
+            {
+                return new long[] {in.readInt(), in.readLong()};
+            }
+        });
+    }
+
+    // Returns once every change the shard acknowledged is on its disk
+    public void sync() throws IOException
+    {
+        call(ShardProtocol.SYNC, new Call<Void>()
+        {
+            @Override
+            public void write(DataOutputStream out)
+            {
+            }
+
+            @Override
+            public Void read(DataInputStream in)
+            {
+                return null;
+            }
+        });
+    }
+
+    private static Call<Boolean> writeStudent(long id, Student student)
+    {
+        return new Call<>()
+        {
+            @Override
+            public void write(DataOutputStream out) throws IOException
+            {
+                out.writeLong(id);
+                StudentCodec.write(out, student);
+            }
+
+            @Override
+            public Boolean read(DataInputStream in) throws IOException
+            {
+                return in.readBoolean();
+            }
+        };
+    }
+
+    private <T> T call(byte op, Call<T> call) throws IOException
+    {
+        Connection connection = idle.poll();
+
+        if (connection == null)
+        {
+            connection = connect();
+        }
+
+        try
+        {
+            connection.out.writeByte(op);
+            call.write(connection.out);
+            connection.out.flush();
+            expectOk(connection.in);
+            T result = call.read(connection.in);
+
+            if (!idle.offer(connection))
+            {
+                connection.close();
+            }
+
+            return result;
+        }
+        catch (ShardException e)
+        {
+            // The shard refused the request but the connection is still in step
+            if (!idle.offer(connection))
+            {
+                connection.close();
+            }
+
+            throw e;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private Connection connect() throws IOException
+    {
+        Socket socket = new Socket();
+        socket.connect(address, TIMEOUT_MILLIS);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        Connection connection = new Connection(socket);
+
+        try
+        {
+            connection.out.writeByte(ShardProtocol.HELLO);
+            connection.out.writeUTF(secret);
+            connection.out.flush();
+            expectOk(connection.in);
+            return connection;
+        }
+        catch (IOException e)
+        {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void expectOk(DataInputStream in) throws IOException
+    {
+        byte status = in.readByte();
+
+        if (status == ShardProtocol.ERROR)
+        {
+            throw new ShardException("Shard " + name + ": " + in.readUTF());
+        }
+
+        if (status != ShardProtocol.OK)
+        {
+            throw new IOException("Shard " + name + " sent status " + status);
+        }
+    }
+
+    // An ERROR reply: the shard is fine, the request was not
+    public static final class ShardException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        ShardException(String message)
+        {
+            super(message);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        Connection connection;
+
+        while ((connection = idle.poll()) != null)
+        {
+            connection.close();
+        }
+    }
+}
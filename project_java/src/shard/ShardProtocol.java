@@ -0,0 +1,84 @@
+package shard;
+
+import models.Student;
+import persistence.StudentCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between ShardRouter and ShardServer: one request, one response, on a long-lived TCP connection
+ * - a connection opens with HELLO [UTF secret]; the server answers OK or ERROR and then closes
+ * - request: [byte op][arguments]; response: [byte OK][result] or [byte ERROR][UTF message]
+ * - a student is StudentCodec's encoding (the write-ahead log's); a row is [long id][student]; a list of rows is
+ *   [int count][rows], always in ascending ID order
+ *
+ *   GET [id]                          -> [boolean found][student if found]
+ *   PUT [id][student]                 -> [boolean replaced]        add or re-save
+ *   PUT_IF_ABSENT [id][student]       -> [boolean added]
+ *   REMOVE [id]                       -> [boolean removed]
+ *   SCAN [after][limit]               -> rows with ID > after, at most limit
+ *   SEARCH [field][UTF value][after][limit] -> matching rows with ID > after, at most limit (field:
+ *                                        ShardClient.Field ordinal)
+ *   GPA [groupBy]                     -> [int groups] then [UTF group][GpaSummary] per group
+ *   STATS                             -> [int students][long highest ID, or -1]
+ *   SYNC                              -> nothing; every change acknowledged so far is on disk
+ */
+final class ShardProtocol
+{
+    static final byte HELLO = 1;
+    static final byte GET = 2;
+    static final byte PUT = 3;
+    static final byte PUT_IF_ABSENT = 4;
+    static final byte REMOVE = 5;
+    static final byte SCAN = 6;
+    static final byte SEARCH = 7;
+    static final byte GPA = 8;
+    static final byte STATS = 9;
+    static final byte SYNC = 10;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // Largest page a shard returns for one SCAN or SEARCH
+    static final int MAX_ROWS = 10_000;
+
+    private ShardProtocol()
+    {
+    }
+
+    static void writeRows(DataOutput out, List<ShardClient.Row> rows) throws IOException
+    {
+        out.writeInt(rows.size());
+
+        for (ShardClient.Row row : rows)
+        {
+            out.writeLong(row.id());
+            StudentCodec.write(out, row.student());
+        }
+    }
+
+    static List<ShardClient.Row> readRows(DataInput in) throws IOException
+    {
+        int count = in.readInt();
+
+        if (count < 0 || count > MAX_ROWS)
+        {
+            throw new IOException("Bad row count " + count);
+        }
+
+        List<ShardClient.Row> rows = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            long id = in.readLong();
+            Student student = StudentCodec.read(in);
+            rows.add(new ShardClient.Row(id, student));
+        }
+
+        return rows;
+    }
+}
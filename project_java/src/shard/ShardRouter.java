@@ -0,0 +1,581 @@
+package shard;
+
+import analytics.GpaSummary;
+import analytics.RosterColumns;
+import models.Student;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Front end of a roster partitioned over ShardServer processes
+ * - the shard list is a text file of "name host:port" lines ('#' starts a comment); HashRing places every
+ *   student ID on one of them, so a get or a write goes to exactly one shard
+ * - list, search and the GPA report fan out to every shard at once (one virtual thread each); pages come back
+ *   in ID order from each shard and are merged into one page in ID order, with a cursor for the next one
+ * - the router hands out new IDs, continuing after the highest ID any shard holds
+ * - addShard writes the grown list to the file first, then moves every student whose owner changed (about
+ *   1/(n+1) of them) to the new shard: copy, fsync the target, remove from the old shard. While that runs,
+ *   a get that misses its owner asks the other shards, and writes also remove the copy left on the old one.
+ *   A marker file next to the list (<file>.rebalancing) is written before the list grows and deleted once every
+ *   student is on its owner. If the router stops halfway, the next one finds the marker, treats the shards as
+ *   rebalancing (gets and removes check every shard) and rebalance() picks up where it left off (it only moves
+ *   misplaced students).
+ * - assumes it is the only router writing to these shards; a second one would hand out the same new IDs
+ *   (add retries on a taken ID, so nothing is overwritten, but the two would race on edits of one student)
+ * - while a rebalance runs, a student between copy and removal is counted twice by size() and gpaBy()
+ */
+public class ShardRouter implements Closeable
+{
+    // Number of edit locks writes and moves are spread over
+    private static final int LOCK_STRIPES = 1024;
+
+    // One page of a listing or search; next is the cursor for the following page, or -1 after the last one
+    public record Page(List<ShardClient.Row> rows, long next)
+    {
+    }
+
+    private final Path config;
+    // Present while students may not be on their owner yet
+    private final Path marker;
+    private final String secret;
+    // Clients by shard name, in the order of the file; replaced as a whole by addShard
+    private volatile Map<String, ShardClient> shards;
+    private volatile HashRing ring;
+    private volatile boolean rebalancing;
+    private final AtomicLong nextId;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private ShardRouter(Path config, String secret, Map<String, ShardClient> shards) throws IOException
+    {
+        this.config = config;
+        this.marker = config.resolveSibling(config.getFileName() + ".rebalancing");
+        this.secret = secret;
+        this.shards = shards;
+        ring = new HashRing(new ArrayList<>(shards.keySet()));
+        // A rebalance that did not finish: until rebalance() completes it, students may be on their old shard
+        rebalancing = Files.exists(marker);
+
+        for (int i = 0; i < LOCK_STRIPES; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+
+        long highest = 0;
+
+        for (long[] stats : fanOut(ShardClient::stats).values())
+        {
+            highest = Math.max(highest, stats[1]);
+        }
+
+        nextId = new AtomicLong(highest + 1);
+    }
+
+    // Connect to the shards listed in the file (every one must answer)
+    public static ShardRouter open(Path config, String secret) throws IOException
+    {
+        Map<String, ShardClient> shards = new LinkedHashMap<>();
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(config, StandardCharsets.UTF_8))
+        {
+            lineNumber = lineNumber + 1;
+            int comment = line.indexOf('#');
+            String entry = (comment >= 0 ? line.substring(0, comment) : line).trim();
+
+            if (entry.isEmpty())
+            {
+                continue;
+            }
+
+            String[] parts = entry.split("\\s+");
+
+            if (parts.length != 2 || shards.containsKey(parts[0]))
+            {
+                throw new IOException(config + " line " + lineNumber + ": expected a new \"name host:port\"");
+            }
+
+            shards.put(parts[0], new ShardClient(parts[0], address(parts[1]), secret));
+        }
+
+        if (shards.isEmpty())
+        {
+            throw new IOException(config + " lists no shards");
+        }
+
+        return new ShardRouter(config, secret, shards);
+    }
+
+    // "host:port" to an address (IPv6 hosts in brackets)
+    public static InetSocketAddress address(String hostPort)
+    {
+        int colon = hostPort.lastIndexOf(':');
+
+        try
+        {
+            String host = hostPort.substring(0, Math.max(colon, 0)).replace("[", "").replace("]", "");
+            int port = Integer.parseInt(hostPort.substring(colon + 1));
+
+            if (host.isEmpty() || port <= 0 || port > 65535)
+            {
+                throw new IllegalArgumentException("Expected host:port, got \"" + hostPort + "\".");
+            }
+
+            return new InetSocketAddress(host, port);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Expected host:port, got \"" + hostPort + "\".");
+        }
+    }
+
+    public List<String> shardNames()
+    {
+        return ring.names();
+    }
+
+    // Name of the shard that holds (or will hold) the ID
+    public String ownerOf(long id)
+    {
+        return ring.owner(id);
+    }
+
+    // True while students may still be on a shard that does not own them (also after a restart, until
+    // rebalance() completes)
+    public boolean isRebalancing()
+    {
+        return rebalancing;
+    }
+
+    public Student get(long id) throws IOException
+    {
+        String owner = ring.owner(id);
+        Student student = shards.get(owner).get(id);
+
+        if (student != null || !rebalancing)
+        {
+            return student;
+        }
+
+        // Not moved yet: still on whichever shard owned it before
+        for (ShardClient shard : shards.values())
+        {
+            if (!shard.name().equals(owner))
+            {
+                student = shard.get(id);
+
+                if (student != null)
+                {
+                    return student;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    // Add a new student under a fresh ID and return the ID
+    public long add(Student student) throws IOException
+    {
+        while (true)
+        {
+            long id = nextId.getAndIncrement();
+
+            if (shards.get(ring.owner(id)).putIfAbsent(id, student))
+            {
+                return id;
+            }
+        }
+    }
+
+    // Add or re-save a student under the given ID
+    public void put(long id, Student student) throws IOException
+    {
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+
+        try
+        {
+            String owner = ring.owner(id);
+            shards.get(owner).put(id, student);
+
+            if (rebalancing)
+            {
+                removeElsewhere(id, owner);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    // Returns true if the student existed
+    public boolean remove(long id) throws IOException
+    {
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+
+        try
+        {
+            String owner = ring.owner(id);
+            boolean removed = shards.get(owner).remove(id);
+            return rebalancing ? removeElsewhere(id, owner) || removed : removed;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private boolean removeElsewhere(long id, String owner) throws IOException
+    {
+        boolean removed = false;
+
+        for (ShardClient shard : shards.values())
+        {
+            if (!shard.name().equals(owner))
+            {
+                removed = shard.remove(id) || removed;
+            }
+        }
+
+        return removed;
+    }
+
+    // Up to limit students with IDs above after, in ID order, from all shards
+    public Page list(long after, int limit) throws IOException
+    {
+        int pageSize = pageSize(limit);
+        return merge(fanOut(shard -> shard.scan(after, pageSize)), pageSize);
+    }
+
+    // Up to limit matching students with IDs above after, in ID order, from all shards
+    public Page search(ShardClient.Field field, String value, long after, int limit) throws IOException
+    {
+        int pageSize = pageSize(limit);
+        return merge(fanOut(shard -> shard.search(field, value, after, pageSize)), pageSize);
+    }
+
+    // GPA distribution per program or semester over all shards
+    public Map<String, GpaSummary> gpaBy(RosterColumns.GroupBy groupBy) throws IOException
+    {
+        Map<String, GpaSummary> merged = new TreeMap<>();
+
+        for (Map<String, GpaSummary> groups : fanOut(shard -> shard.gpaBy(groupBy)).values())
+        {
+            for (Map.Entry<String, GpaSummary> group : groups.entrySet())
+            {
+                merged.merge(group.getKey(), group.getValue(), GpaSummary::merge);
+            }
+        }
+
+        return merged;
+    }
+
+    // Students held by each shard, in the order of the file
+    public Map<String, Integer> sizes() throws IOException
+    {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        fanOut(ShardClient::stats).forEach((name, stats) -> sizes.put(name, (int) stats[0]));
+        return sizes;
+    }
+
+    public long size() throws IOException
+    {
+        return sizes().values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    private static int pageSize(int limit)
+    {
+        if (limit < 1)
+        {
+            throw new IllegalArgumentException("The page size must be at least 1.");
+        }
+
+        return Math.min(limit, ShardProtocol.MAX_ROWS);
+    }
+
+    // k-way merge of per-shard pages; each is a prefix of its shard's IDs above the cursor, so the first limit
+    // IDs of the merge are the first limit IDs overall. A student being moved can show up twice; the copy on
+    // its owner wins.
+    private Page merge(Map<String, List<ShardClient.Row>> pages, int limit)
+    {
+        record Head(String shard, List<ShardClient.Row> rows, int at)
+        {
+            ShardClient.Row row()
+            {
+                return rows.get(at);
+            }
+        }
+
+        HashRing owners = ring;
+        PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> Long.compare(a.row().id(), b.row().id()));
+        pages.forEach((shard, rows) ->
+        {
+            if (!rows.isEmpty())
+            {
+                heads.add(new Head(shard, rows, 0));
+            }
+        });
+
+        List<ShardClient.Row> merged = new ArrayList<>(limit);
+
+        while (!heads.isEmpty() && merged.size() < limit)
+        {
+            Head head = heads.poll();
+            ShardClient.Row row = head.row();
+            ShardClient.Row last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+
+            if (last == null || last.id() != row.id())
+            {
+                merged.add(row);
+            }
+            else if (owners.owner(row.id()).equals(head.shard()))
+            {
+                merged.set(merged.size() - 1, row);
+            }
+
+            if (head.at() + 1 < head.rows().size())
+            {
+                heads.add(new Head(head.shard(), head.rows(), head.at() + 1));
+            }
+        }
+
+        // A duplicate of the last row may still be waiting in another shard's page
+        while (!heads.isEmpty() && heads.peek().row().id() == merged.get(merged.size() - 1).id())
+        {
+            Head head = heads.poll();
+
+            if (owners.owner(head.row().id()).equals(head.shard()))
+            {
+                merged.set(merged.size() - 1, head.row());
+            }
+        }
+
+        long next = merged.size() < limit ? -1 : merged.get(merged.size() - 1).id();
+        return new Page(merged, next);
+    }
+
+    // Add a shard (which must be running and answer with the same secret) and move its students to it
+    // Returns the number of students moved
+    public synchronized long addShard(String name, String hostPort) throws IOException
+    {
+        if (!name.matches("[A-Za-z0-9._-]{1,40}"))
+        {
+            throw new IllegalArgumentException("Shard names are 1 - 40 letters, digits, '.', '_' or '-'.");
+        }
+
+        if (shards.containsKey(name))
+        {
+            throw new IllegalArgumentException("There already is a shard named " + name + ".");
+        }
+
+        ShardClient added = new ShardClient(name, address(hostPort), secret);
+        long[] stats = added.stats();
+        Map<String, ShardClient> grown = new LinkedHashMap<>(shards);
+        grown.put(name, added);
+        HashRing grownRing = ring.with(name);
+        markRebalancing();
+        saveConfig(grown);
+        nextId.accumulateAndGet(stats[1] + 1, Math::max);
+        shards = grown;
+        ring = grownRing;
+        return rebalance();
+    }
+
+    // Move every student that is not on its owner to the owner; safe to run again at any time
+    // Returns the number of students moved
+    public synchronized long rebalance() throws IOException
+    {
+        markRebalancing();
+        long moved = 0;
+
+        for (ShardClient source : shards.values())
+        {
+            long after = 0;
+
+            while (true)
+            {
+                List<ShardClient.Row> rows = source.scan(after, ShardProtocol.MAX_ROWS);
+
+                if (rows.isEmpty())
+                {
+                    break;
+                }
+
+                moved = moved + move(source, rows);
+                after = rows.get(rows.size() - 1).id();
+            }
+        }
+
+        Files.deleteIfExists(marker);
+        rebalancing = false;
+        return moved;
+    }
+
+    // Persist that a rebalance is under way before anything moves, so a restarted router knows
+    private void markRebalancing() throws IOException
+    {
+        if (!Files.exists(marker))
+        {
+            Files.writeString(marker, "Rebalance in progress; run ShardCli rebalance to finish it\n",
+                    StandardCharsets.UTF_8);
+        }
+
+        rebalancing = true;
+    }
+
+    // Copy the misplaced rows of one page to their owners, make the copies durable, then drop the originals
+    private long move(ShardClient source, List<ShardClient.Row> rows) throws IOException
+    {
+        Map<String, List<Long>> copied = new LinkedHashMap<>();
+
+        for (ShardClient.Row row : rows)
+        {
+            String owner = ring.owner(row.id());
+
+            if (owner.equals(source.name()))
+            {
+                continue;
+            }
+
+            ReentrantLock lock = lockOf(row.id());
+            lock.lock();
+
+            try
+            {
+                // Re-read under the lock: a write or remove may have happened since the scan
+                Student student = source.get(row.id());
+
+                if (student != null)
+                {
+                    // If the owner has it already, a write went there after the rebalance started and is newer
+                    shards.get(owner).putIfAbsent(row.id(), student);
+                    copied.computeIfAbsent(owner, shard -> new ArrayList<>()).add(row.id());
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        for (String owner : copied.keySet())
+        {
+            shards.get(owner).sync();
+        }
+
+        long moved = 0;
+
+        for (List<Long> ids : copied.values())
+        {
+            for (long id : ids)
+            {
+                source.remove(id);
+                moved = moved + 1;
+            }
+        }
+
+        return moved;
+    }
+
+    // Rewrite the shard list (temp file + move), keeping nothing but the entries
+    private void saveConfig(Map<String, ShardClient> list) throws IOException
+    {
+        Path parent = config.toAbsolutePath().getParent();
+        Path temp = parent.resolve(config.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8))
+        {
+            writer.write("# name host:port\n");
+
+            for (ShardClient shard : list.values())
+            {
+                writer.write(shard.name() + " " + shard.address().getHostString() + ":" + shard.address().getPort()
+                        + "\n");
+            }
+        }
+
+        Files.move(temp, config, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ReentrantLock lockOf(long id)
+    {
+        return locks[(int) Long.remainderUnsigned(HashRing.hash(id), LOCK_STRIPES)];
+    }
+
+    private interface ShardCall<T>
+    {
+        T call(ShardClient shard) throws IOException;
+    }
+
+    // Run the call on every shard in parallel; results by shard name, in the order of the file
+    private <T> Map<String, T> fanOut(ShardCall<T> call) throws IOException
+    {
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+
+        for (ShardClient shard : shards.values())
+        {
+            futures.put(shard.name(), executor.submit(() -> call.call(shard)));
+        }
+
+        Map<String, T> results = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Future<T>> future : futures.entrySet())
+        {
+            try
+            {
+                results.put(future.getKey(), future.getValue().get());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for shard " + future.getKey(), e);
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof IOException cause)
+                {
+                    throw cause;
+                }
+
+                throw new IOException("Shard " + future.getKey() + " failed: " + e.getCause(), e.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+
+        for (ShardClient shard : shards.values())
+        {
+            shard.close();
+        }
+    }
+}
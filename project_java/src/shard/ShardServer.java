@@ -0,0 +1,368 @@
+package shard;
+
+import analytics.GpaSummary;
+import analytics.RosterColumns;
+import analytics.RosterReports;
+import models.Student;
+import persistence.StorageEngine;
+import persistence.StudentCodec;
+import store.StoreListener;
+import store.StudentIndexes;
+import store.StudentStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One shard of a partitioned roster, in its own process: a StudentStore with its own write-ahead log and
+ * snapshot, indexes and columns, served to ShardRouter over ShardProtocol
+ * - listens on 127.0.0.1 unless --host says otherwise; every connection must first send SEMS_SHARD_SECRET
+ * - one virtual thread per connection; requests on a connection are answered in order
+ * - keeps the IDs it holds in a sorted set, so SCAN pages come out in ID order and a router can merge the
+ *   pages of all shards into one ordered listing
+ * - the shard does not hand out IDs: the router does, and the shard stores whatever ID it is given
+ *
+ * Usage: SEMS_SHARD_SECRET=... java shard.ShardServer --port=<port> --dir=<data dir> [--host=<address>]
+ */
+public class ShardServer
+{
+    private final StudentStore store = new StudentStore();
+    private final StudentIndexes indexes = new StudentIndexes();
+    private final RosterColumns columns = new RosterColumns();
+    private final RosterReports reports = new RosterReports(columns);
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+    private final StorageEngine storage;
+    private final byte[] secret;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    ShardServer(Path dir, String secret) throws IOException
+    {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        storage = new StorageEngine(dir);
+        storage.open(store);
+        store.attach(new StoreListener()
+        {
+            @Override
+            public void onPut(long id, Student previous, Student student)
+            {
+                ids.add(id);
+            }
+
+            @Override
+            public void onRemove(long id, Student removed)
+            {
+                ids.remove(id);
+            }
+        });
+        store.attach(indexes);
+        store.attach(columns);
+    }
+
+    public static void main(String[] args)
+    {
+        int port = -1;
+        String dir = null;
+        String host = System.getProperty("sems.shard.host", "127.0.0.1");
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--port="))
+            {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            }
+            else if (arg.startsWith("--dir="))
+            {
+                dir = arg.substring("--dir=".length());
+            }
+            else if (arg.startsWith("--host="))
+            {
+                host = arg.substring("--host=".length());
+            }
+            else
+            {
+                System.err.println("Unknown argument: " + arg);
+                System.exit(2);
+            }
+        }
+
+        String secret = System.getenv("SEMS_SHARD_SECRET");
+
+        if (port < 0 || dir == null || secret == null || secret.isEmpty())
+        {
+            System.err.println("Usage: SEMS_SHARD_SECRET=... ShardServer --port=<port> --dir=<data dir>"
+                    + " [--host=<address>]");
+            System.exit(2);
+        }
+
+        try
+        {
+            ShardServer shard = new ShardServer(Paths.get(dir), secret);
+            Runtime.getRuntime().addShutdownHook(new Thread(shard::close));
+            ServerSocket listener = new ServerSocket();
+            listener.bind(new InetSocketAddress(InetAddress.getByName(host), port), 1024);
+            System.err.println("Shard " + dir + " serving " + shard.store.size() + " students on " + host + ":"
+                    + listener.getLocalPort());
+            shard.serve(listener);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not start the shard: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void serve(ServerSocket listener) throws IOException
+    {
+        while (true)
+        {
+            Socket socket = listener.accept();
+            executor.submit(() -> session(socket));
+        }
+    }
+
+    private void session(Socket socket)
+    {
+        try (socket)
+        {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            if (in.readByte() != ShardProtocol.HELLO
+                    || !MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8), secret))
+            {
+                out.writeByte(ShardProtocol.ERROR);
+                out.writeUTF("wrong shard secret");
+                out.flush();
+                return;
+            }
+
+            out.writeByte(ShardProtocol.OK);
+            out.flush();
+
+            while (true)
+            {
+                byte op;
+
+                try
+                {
+                    op = in.readByte();
+                }
+                catch (EOFException e)
+                {
+                    return;
+                }
+
+                try
+                {
+                    respond(op, in, out);
+                }
+                catch (RuntimeException e)
+                {
+                    // Nothing is written before an operation succeeds, so the reply can still be an error
+                    error(out, e.toString());
+                }
+
+                out.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            // The router went away or sent garbage; it reconnects
+        }
+    }
+
+    // A request that fails validation is answered with ERROR and the connection stays usable
+    private void respond(byte op, DataInputStream in, DataOutputStream out) throws IOException
+    {
+        switch (op)
+        {
+            case ShardProtocol.GET ->
+            {
+                Student student = store.get(in.readLong());
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(student != null);
+
+                if (student != null)
+                {
+                    StudentCodec.write(out, student);
+                }
+            }
+            case ShardProtocol.PUT ->
+            {
+                long id = in.readLong();
+                Student student = StudentCodec.read(in);
+                boolean replaced = store.containsKey(id);
+                store.put(id, student);
+                keepCounterAbove(id);
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(replaced);
+            }
+            case ShardProtocol.PUT_IF_ABSENT ->
+            {
+                long id = in.readLong();
+                boolean added = store.putIfAbsent(id, StudentCodec.read(in));
+                keepCounterAbove(id);
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(added);
+            }
+            case ShardProtocol.REMOVE ->
+            {
+                boolean removed = store.remove(in.readLong()) != null;
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(removed);
+            }
+            case ShardProtocol.SCAN ->
+            {
+                long after = in.readLong();
+                int limit = in.readInt();
+                List<ShardClient.Row> rows = new ArrayList<>();
+
+                for (long id : ids.tailSet(after, false))
+                {
+                    if (rows.size() >= Math.min(limit, ShardProtocol.MAX_ROWS))
+                    {
+                        break;
+                    }
+
+                    Student student = store.get(id);
+
+                    if (student != null)
+                    {
+                        rows.add(new ShardClient.Row(id, student));
+                    }
+                }
+
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeRows(out, rows);
+            }
+            case ShardProtocol.SEARCH -> search(in, out);
+            case ShardProtocol.GPA ->
+            {
+                int groupBy = in.readUnsignedByte();
+
+                if (groupBy >= RosterColumns.GroupBy.values().length)
+                {
+                    error(out, "unknown grouping " + groupBy);
+                    return;
+                }
+
+                Map<String, GpaSummary> groups = reports.gpaBy(RosterColumns.GroupBy.values()[groupBy]).result();
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(groups.size());
+
+                for (Map.Entry<String, GpaSummary> group : groups.entrySet())
+                {
+                    out.writeUTF(group.getKey());
+                    group.getValue().write(out);
+                }
+            }
+            case ShardProtocol.STATS ->
+            {
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(store.size());
+                out.writeLong(ids.isEmpty() ? -1 : ids.last());
+            }
+            case ShardProtocol.SYNC ->
+            {
+                storage.sync();
+                out.writeByte(ShardProtocol.OK);
+            }
+            default -> throw new IOException("Unknown request " + op);
+        }
+    }
+
+    private void search(DataInputStream in, DataOutputStream out) throws IOException
+    {
+        int field = in.readUnsignedByte();
+        String value = in.readUTF();
+        long after = in.readLong();
+        int limit = Math.min(in.readInt(), ShardProtocol.MAX_ROWS);
+
+        if (field >= ShardClient.Field.values().length)
+        {
+            error(out, "unknown search field " + field);
+            return;
+        }
+
+        List<Long> matches;
+
+        switch (ShardClient.Field.values()[field])
+        {
+            case PROGRAM -> matches = indexes.findByProgram(value);
+            case LAST_NAME -> matches = indexes.findByLastName(value);
+            case NAME_PREFIX -> matches = indexes.findByNamePrefix(value);
+            default ->
+            {
+                try
+                {
+                    matches = indexes.findBySemester(Integer.parseInt(value.trim()));
+                }
+                catch (NumberFormatException e)
+                {
+                    error(out, "invalid semester " + value);
+                    return;
+                }
+            }
+        }
+
+        long[] sorted = matches.stream().mapToLong(Long::longValue).filter(id -> id > after).sorted().toArray();
+        List<ShardClient.Row> rows = new ArrayList<>();
+
+        for (int i = 0; i < sorted.length && rows.size() < limit; i++)
+        {
+            Student student = store.get(sorted[i]);
+
+            if (student != null)
+            {
+                rows.add(new ShardClient.Row(sorted[i], student));
+            }
+        }
+
+        out.writeByte(ShardProtocol.OK);
+        ShardProtocol.writeRows(out, rows);
+    }
+
+    private static void error(DataOutputStream out, String message) throws IOException
+    {
+        out.writeByte(ShardProtocol.ERROR);
+        out.writeUTF(message);
+    }
+
+    // The snapshot saves the store's counter; keep it past every stored ID like a store that made them itself
+    private synchronized void keepCounterAbove(long id)
+    {
+        store.setStudentCounter(Math.max(store.getStudentCounter(), id + 1));
+    }
+
+    private void close()
+    {
+        try
+        {
+            storage.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not flush the shard's log: " + e.getMessage());
+        }
+    }
+}
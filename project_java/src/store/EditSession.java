@@ -0,0 +1,178 @@
+package store;
+
+import models.Gender;
+import models.Student;
+import models.StudentFields;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * One admin's edit of one student, applied to the store in a single commit
+ * - every edit is recorded as a step: the fields it changed with their values before and after (as stored in
+ *   Student: epoch day, program ID, ...), not a copy of the record
+ * - undo and redo walk the steps; a new edit after an undo drops the steps that could have been redone
+ * - draft() is the record with the steps applied; nobody else sees it until commit(), which saves it with one
+ *   StudentStore.replace (one log write, one index update) against the version the session started from
+ * - discard() drops every step; the store is never touched
+ * Not thread-safe: a session belongs to one console loop, which also holds the record's edit lock.
+ */
+public final class EditSession
+{
+    // One changed field; field is one of StudentFields.NAMES
+    public record Change(String field, Object before, Object after)
+    {
+    }
+
+    private final StudentStore store;
+    private final long id;
+    private final Student original;
+    private Student draft;
+    private final Deque<List<Change>> undo = new ArrayDeque<>();
+    private final Deque<List<Change>> redo = new ArrayDeque<>();
+
+    public EditSession(StudentStore store, long id, Student original)
+    {
+        this.store = store;
+        this.id = id;
+        this.original = original;
+        this.draft = original;
+    }
+
+    public long id()
+    {
+        return id;
+    }
+
+    public Student original()
+    {
+        return original;
+    }
+
+    public Student draft()
+    {
+        return draft;
+    }
+
+    // Record the edited record as one step; returns the changes, empty if it equals the draft
+    public List<Change> edit(Student edited)
+    {
+        List<Change> changes = new ArrayList<>();
+
+        for (String field : StudentFields.changed(draft, edited))
+        {
+            changes.add(new Change(field, value(draft, field), value(edited, field)));
+        }
+
+        if (!changes.isEmpty())
+        {
+            undo.push(List.copyOf(changes));
+            redo.clear();
+            draft = edited;
+        }
+
+        return changes;
+    }
+
+    public boolean canUndo()
+    {
+        return !undo.isEmpty();
+    }
+
+    public boolean canRedo()
+    {
+        return !redo.isEmpty();
+    }
+
+    // Revert the last step; returns its changes, or an empty list if there is nothing to undo
+    public List<Change> undo()
+    {
+        if (undo.isEmpty())
+        {
+            return List.of();
+        }
+
+        List<Change> step = undo.pop();
+        redo.push(step);
+        draft = apply(draft, step, false);
+        return step;
+    }
+
+    // Apply the last undone step again; returns its changes, or an empty list if there is nothing to redo
+    public List<Change> redo()
+    {
+        if (redo.isEmpty())
+        {
+            return List.of();
+        }
+
+        List<Change> step = redo.pop();
+        undo.push(step);
+        draft = apply(draft, step, true);
+        return step;
+    }
+
+    // Fields that differ between the original and the draft (undone steps cancel out)
+    public List<String> pending()
+    {
+        return StudentFields.changed(original, draft);
+    }
+
+    // Save the draft in one write; false if another session saved or removed the student since the session began.
+    // Nothing to save counts as success. The session can go on afterwards only if nothing was saved.
+    public boolean commit()
+    {
+        return pending().isEmpty() || store.replace(id, original, draft);
+    }
+
+    // Forget every step; the draft is the original again
+    public void discard()
+    {
+        undo.clear();
+        redo.clear();
+        draft = original;
+    }
+
+    private static Student apply(Student student, List<Change> step, boolean forward)
+    {
+        Student.Builder builder = student.toBuilder();
+
+        for (Change change : step)
+        {
+            Object value = forward ? change.after() : change.before();
+
+            switch (change.field())
+            {
+                case "firstName" -> builder.firstName((String) value);
+                case "lastName" -> builder.lastName((String) value);
+                case "dateOfBirth" -> builder.birthDay((Integer) value);
+                case "gender" -> builder.gender((Gender) value);
+                case "gpaPrev" -> builder.gpaPrev((Double) value);
+                case "currentSemester" -> builder.currentSemester((Integer) value);
+                case "program" -> builder.programId((Integer) value);
+                case "numCourses" -> builder.numCourses((Integer) value);
+                default -> throw new IllegalStateException("unhandled field " + change.field());
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static Object value(Student student, String field)
+    {
+        return switch (field)
+        {
+            case "firstName" -> student.firstName();
+            case "lastName" -> student.lastName();
+            case "dateOfBirth" -> student.birthDay();
+            case "gender" -> student.gender();
+            case "gpaPrev" -> student.gpaPrev();
+            case "currentSemester" -> student.currentSemester();
+            case "program" -> student.programId();
+            case "numCourses" -> student.numCourses();
+            default -> throw new IllegalStateException("unhandled field " + field);
+        };
+    }
+}
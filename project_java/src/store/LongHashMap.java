@@ -0,0 +1,205 @@
+package store;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map with primitive long keys (linear probing, backward-shift deletion)
+ * Avoids boxing the key and per-entry node objects; a null value marks an empty slot, so values must not be null.
+ * Not thread-safe: callers synchronize.
+ */
+public class LongHashMap<V>
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    // capacity - 1, capacity is a power of two
+    private int mask;
+    // Grow when size exceeds capacity * 3/4
+    private int resizeAt;
+
+    public LongHashMap()
+    {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize)
+    {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key)
+    {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        int index = slot(key);
+
+        while (values[index] != null)
+        {
+            if (keys[index] == key)
+            {
+                return (V) values[index];
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    // Returns the previous value, or null
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (value == null)
+        {
+            throw new IllegalArgumentException("LongHashMap does not store null values");
+        }
+
+        int index = slot(key);
+
+        while (values[index] != null)
+        {
+            if (keys[index] == key)
+            {
+                V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        size = size + 1;
+
+        if (size > resizeAt)
+        {
+            rehash(keys.length * 2);
+        }
+
+        return null;
+    }
+
+    // Returns the removed value, or null
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        int index = slot(key);
+
+        while (values[index] != null)
+        {
+            if (keys[index] == key)
+            {
+                V old = (V) values[index];
+                shiftBack(index);
+                size = size - 1;
+                return old;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return null;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // Close the gap at index by moving later entries of the same probe run back
+    private void shiftBack(int gap)
+    {
+        int index = gap;
+
+        while (true)
+        {
+            index = (index + 1) & mask;
+
+            if (values[index] == null)
+            {
+                break;
+            }
+
+            int home = slot(keys[index]);
+
+            // Move the entry if its home slot is not in the cyclic range (gap, index]
+            if (((index - home) & mask) >= ((index - gap) & mask))
+            {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                gap = index;
+            }
+        }
+
+        values[gap] = null;
+    }
+
+    private int slot(long key)
+    {
+        // Fibonacci hashing spreads sequential IDs across the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++)
+        {
+            if (oldValues[i] != null)
+            {
+                int index = slot(oldKeys[i]);
+
+                while (values[index] != null)
+                {
+                    index = (index + 1) & mask;
+                }
+
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity / 4 * 3;
+    }
+
+    private static int tableSizeFor(int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+
+        while (capacity / 4 * 3 < expectedSize)
+        {
+            capacity = capacity * 2;
+        }
+
+        return capacity;
+    }
+}
@@ -0,0 +1,853 @@
+package store;
+
+import models.Student;
+
+import java.util.*;
+
+/**
+ * Typo-tolerant name search: a trigram index over the words of every student's first and last name
+ * - dictionary: each distinct name word (lower case) has a number; per number the sorted IDs of the students whose
+ *   name contains it. The words themselves sit back to back in one char array, so checking thousands of candidate
+ *   words reads one array instead of chasing a String per word.
+ * - trigram lists: for every trigram of "^word$", the numbers of the words containing it (ascending, append-only)
+ * - a query word matches name words within an edit distance that grows with its length: none up to 2 letters,
+ *   1 up to 5, 2 beyond (two neighbouring letters swapped count as one edit). One edit touches at most 4 of a word's
+ *   trigrams, so a word within d edits shares all but 4d of the query's: candidates come from the query's 4d + 1
+ *   rarest trigram lists and must share that many before the edit distance is computed. Words too short for that
+ *   bound to rule anything out are compared with every word of a similar length.
+ * - results are ranked by the summed distance of the query words, then by ID
+ * Registered as a store listener like StudentIndexes. A word no student uses any more keeps its number (empty ID
+ * list, revived if the name comes back) until such words are half the dictionary; then it is renumbered.
+ * Methods are synchronized; search only holds the monitor while reading the index, not while ranking.
+ */
+public class NameSearch implements StoreListener
+{
+    // One result: the student and how many edits separate the query from their name
+    public record Match(long id, int distance)
+    {
+    }
+
+    // Renumber once this many words are unused and they are half the dictionary
+    private static final int MIN_REBUILD = 1024;
+    private static final int MAX_QUERY_WORDS = 4;
+    private static final long[] NO_IDS = new long[0];
+    private static final int LONG_WORD = 32;
+
+    // Growable int array: the numbers of the words containing one trigram (ascending), or fuzzyTerms results
+    private static final class IntList
+    {
+        int[] values = new int[2];
+        int size = 0;
+
+        void add(int value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size] = value;
+            size = size + 1;
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Dictionary, indexed by word number: word n is chars[starts[n]] up to chars[starts[n + 1]]
+    private char[] chars = new char[512];
+    private int[] starts = new int[65];
+    private long[][] ids = new long[64][];
+    private int[] idCounts = new int[64];
+    // letters(word n), for a cheap lower bound on the edit distance
+    private long[] letters = new long[64];
+    // Scratch for fuzzyTerms: seen[term] == stamp marks a candidate, shared[term] its trigrams counted so far
+    private int[] seen = new int[64];
+    private int[] shared = new int[64];
+    private int stamp = 0;
+    private int termCount = 0;
+    private int unusedTerms = 0;
+    // Word -> number + 1 (0 marks a free slot); open addressing, linear probing, at most half full
+    private int[] table = new int[128];
+    private LongHashMap<IntList> grams = new LongHashMap<>();
+    // Word numbers by length (LONG_WORD and longer share the last list), for queries the trigrams cannot narrow
+    private IntList[] byLength = new IntList[LONG_WORD + 1];
+
+    // The store passes the replaced record, so the old words are known without keeping a copy per student
+    @Override
+    public synchronized void onPut(long id, Student previous, Student student)
+    {
+        String[] before = previous == null ? new String[0] : nameWords(previous);
+        String[] after = nameWords(student);
+
+        for (String word : before)
+        {
+            if (!contains(after, word))
+            {
+                removeId(word, id);
+            }
+        }
+
+        for (String word : after)
+        {
+            if (!contains(before, word))
+            {
+                addId(word, id);
+            }
+        }
+
+        renumberIfSparse();
+    }
+
+    @Override
+    public synchronized void onRemove(long id, Student removed)
+    {
+        for (String word : nameWords(removed))
+        {
+            removeId(word, id);
+        }
+
+        renumberIfSparse();
+    }
+
+    // Distinct name words currently indexed
+    public synchronized int wordCount()
+    {
+        return termCount - unusedTerms;
+    }
+
+    // Students whose names are closest to the query: every query word has to match a word of the name within its
+    // allowed distance. Ranked by the summed distance, then by ID; store supplies the names when the query has
+    // more than one word.
+    public List<Match> search(String query, int limit, StudentStore store)
+    {
+        String[] queryWords = split(query);
+
+        if (queryWords.length == 0 || limit <= 0)
+        {
+            return new ArrayList<>();
+        }
+
+        if (queryWords.length > MAX_QUERY_WORDS)
+        {
+            queryWords = Arrays.copyOf(queryWords, MAX_QUERY_WORDS);
+        }
+
+        // Per query word: matching name word -> distance. The word with the fewest students drives the search.
+        List<Map<String, Integer>> matches = new ArrayList<>();
+        long[][] driverIds;
+        int[] driverDistances;
+
+        synchronized (this)
+        {
+            int driver = -1;
+            long driverSize = Long.MAX_VALUE;
+            List<int[]> terms = new ArrayList<>();
+
+            for (String word : queryWords)
+            {
+                int[] found = fuzzyTerms(word);
+                Map<String, Integer> byWord = new HashMap<>();
+                long size = 0;
+
+                for (int f = 0; f < found.length; f += 2)
+                {
+                    byWord.put(word(found[f]), found[f + 1]);
+                    size += idCounts[found[f]];
+                }
+
+                if (size == 0)
+                {
+                    return new ArrayList<>();
+                }
+
+                if (size < driverSize)
+                {
+                    driver = matches.size();
+                    driverSize = size;
+                }
+
+                matches.add(byWord);
+                terms.add(found);
+            }
+
+            int[] found = terms.get(driver);
+            driverIds = new long[found.length / 2][];
+            driverDistances = new int[found.length / 2];
+
+            for (int f = 0; f < found.length; f += 2)
+            {
+                driverIds[f / 2] = Arrays.copyOf(ids[found[f]], idCounts[found[f]]);
+                driverDistances[f / 2] = found[f + 1];
+            }
+
+            matches.remove(driver);
+        }
+
+        return queryWords.length == 1 ? rank(driverIds, driverDistances, limit)
+                : rank(driverIds, driverDistances, matches, limit, store);
+    }
+
+    // One query word: the IDs are already scored, take them distance by distance
+    private static List<Match> rank(long[][] driverIds, int[] driverDistances, int limit)
+    {
+        List<Match> result = new ArrayList<>();
+        // A name can contain two words that both match; it counts once, at its best distance
+        Set<Long> taken = new HashSet<>();
+
+        for (int distance = 0; result.size() < limit && distance <= 2; distance++)
+        {
+            List<Long> level = new ArrayList<>();
+
+            for (int t = 0; t < driverIds.length; t++)
+            {
+                if (driverDistances[t] == distance)
+                {
+                    for (long id : driverIds[t])
+                    {
+                        level.add(id);
+                    }
+                }
+            }
+
+            level.sort(null);
+
+            for (long id : level)
+            {
+                if (result.size() == limit)
+                {
+                    break;
+                }
+
+                if (taken.add(id))
+                {
+                    result.add(new Match(id, distance));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    // Several query words: check every candidate's current name against the other words
+    private static List<Match> rank(long[][] driverIds, int[] driverDistances, List<Map<String, Integer>> others,
+                                    int limit, StudentStore store)
+    {
+        Map<Long, Integer> scores = new HashMap<>();
+
+        for (int t = 0; t < driverIds.length; t++)
+        {
+            for (long id : driverIds[t])
+            {
+                if (scores.containsKey(id) && scores.get(id) <= driverDistances[t])
+                {
+                    continue;
+                }
+
+                Student student = store.get(id);
+
+                if (student == null)
+                {
+                    continue;
+                }
+
+                String[] name = nameWords(student);
+                int score = driverDistances[t];
+
+                for (Map<String, Integer> matches : others)
+                {
+                    int best = Integer.MAX_VALUE;
+
+                    for (String word : name)
+                    {
+                        best = Math.min(best, matches.getOrDefault(word, Integer.MAX_VALUE));
+                    }
+
+                    if (best == Integer.MAX_VALUE)
+                    {
+                        score = -1;
+                        break;
+                    }
+
+                    score += best;
+                }
+
+                if (score >= 0)
+                {
+                    scores.merge(id, score, Math::min);
+                }
+            }
+        }
+
+        List<Match> result = new ArrayList<>();
+        scores.forEach((id, score) -> result.add(new Match(id, score)));
+        result.sort(Comparator.comparingInt(Match::distance).thenComparingLong(Match::id));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // Numbers of the used words within the allowed distance of word, with their distances: {term, distance, ...}
+    // Caller holds the monitor
+    private int[] fuzzyTerms(String word)
+    {
+        int max = maxDistance(word.length());
+
+        if (max == 0)
+        {
+            int term = find(word);
+            return term >= 0 && idCounts[term] > 0 ? new int[] {term, 0} : new int[0];
+        }
+
+        long[] queryGrams = trigrams(word);
+        // A word within max edits shares at least this many of the query's trigrams (a swap touches 4)
+        int needed = queryGrams.length - 4 * max;
+        IntList found = new IntList();
+        int[][] rows = new int[3][word.length() + max + 1];
+        char[] query = word.toCharArray();
+        long queryLetters = letters(query, 0, query.length);
+
+        if (needed <= 0)
+        {
+            // Too short for the trigram filter to rule anything out: every word of a fitting length is compared
+            for (int length = Math.max(1, word.length() - max); length <= word.length() + max; length++)
+            {
+                IntList terms = byLength[Math.min(length, LONG_WORD)];
+
+                for (int k = 0; terms != null && k < terms.size; k++)
+                {
+                    compare(terms.values[k], query, queryLetters, max, rows, found);
+                }
+
+                if (length >= LONG_WORD)
+                {
+                    break;
+                }
+            }
+
+            return found.toArray();
+        }
+
+        // Rarest lists first: a word sharing enough trigrams is in one of the first 4 * max + 1, and only the words
+        // found there are looked up (binary search) in the longer lists, until they have enough or cannot get there
+        IntList[] lists = new IntList[queryGrams.length];
+
+        for (int g = 0; g < queryGrams.length; g++)
+        {
+            lists[g] = grams.get(queryGrams[g]);
+        }
+
+        Arrays.sort(lists, Comparator.comparingInt(list -> list == null ? 0 : list.size));
+        int scanned = 4 * max + 1;
+        IntList candidates = new IntList();
+        stamp = stamp + 1;
+
+        if (stamp == 0)
+        {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+
+        for (int g = 0; g < scanned; g++)
+        {
+            for (int k = 0; lists[g] != null && k < lists[g].size; k++)
+            {
+                int term = lists[g].values[k];
+
+                if (seen[term] != stamp)
+                {
+                    seen[term] = stamp;
+                    shared[term] = 1;
+                    candidates.add(term);
+                }
+                else
+                {
+                    shared[term] = shared[term] + 1;
+                }
+            }
+        }
+
+        for (int c = 0; c < candidates.size; c++)
+        {
+            int term = candidates.values[c];
+            int hits = shared[term];
+
+            for (int g = scanned; g < lists.length && hits < needed && hits + lists.length - g >= needed; g++)
+            {
+                if (Arrays.binarySearch(lists[g].values, 0, lists[g].size, term) >= 0)
+                {
+                    hits = hits + 1;
+                }
+            }
+
+            if (hits >= needed)
+            {
+                compare(term, query, queryLetters, max, rows, found);
+            }
+        }
+
+        return found.toArray();
+    }
+
+    // Add {term, distance} to found if the word is in use and within max edits of the query
+    private void compare(int term, char[] query, long queryLetters, int max, int[][] rows, IntList found)
+    {
+        int start = starts[term];
+        int length = starts[term + 1] - start;
+
+        if (Math.abs(length - query.length) > max || idCounts[term] == 0)
+        {
+            return;
+        }
+
+        // Cheap lower bound first: every letter one word has and the other lacks takes an edit of its own
+        if (Long.bitCount(queryLetters & ~letters[term]) > max || Long.bitCount(letters[term] & ~queryLetters) > max)
+        {
+            return;
+        }
+
+        int distance = distance(query, chars, starts[term], length(term), max, rows);
+
+        if (distance <= max)
+        {
+            found.add(term);
+            found.add(distance);
+        }
+    }
+
+    // Which letters occur in word[from, to): one bit each for a-z and 0-9, the rest share the other bits (sharing
+    // a bit only makes the bound in compare weaker, never wrong)
+    private static long letters(char[] word, int from, int to)
+    {
+        long bits = 0;
+
+        for (int i = from; i < to; i++)
+        {
+            char c = word[i];
+            int bit = c >= 'a' && c <= 'z' ? c - 'a' : c >= '0' && c <= '9' ? 26 + c - '0' : 36 + c % 28;
+            bits |= 1L << bit;
+        }
+
+        return bits;
+    }
+
+    // Edits a query word may be away from a name word
+    private static int maxDistance(int length)
+    {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    // Optimal string alignment distance (insert, delete, substitute, swap neighbours) of a and the m chars of b from
+    // offset, or max + 1 once it is certain to exceed max. Only cells within max of the diagonal are computed; rows
+    // are three scratch arrays of m + 1 or more
+    private static int distance(char[] a, char[] b, int offset, int m, int max, int[][] rows)
+    {
+        int n = a.length;
+        int over = max + 1;
+
+        if (Math.abs(n - m) > max)
+        {
+            return over;
+        }
+
+        int[] previous2 = rows[0];
+        int[] previous = rows[1];
+        int[] current = rows[2];
+
+        for (int j = 0; j <= m; j++)
+        {
+            previous[j] = Math.min(j, over);
+        }
+
+        for (int i = 1; i <= n; i++)
+        {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[from - 1] = from == 1 ? Math.min(i, over) : over;
+            int rowMin = over;
+
+            for (int j = from; j <= to; j++)
+            {
+                int cost = a[i - 1] == b[offset + j - 1] ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+
+                if (i > 1 && j > 1 && a[i - 1] == b[offset + j - 2] && a[i - 2] == b[offset + j - 1])
+                {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, value);
+            }
+
+            // The next row reads one cell right of this band
+            if (to < m)
+            {
+                current[to + 1] = over;
+            }
+
+            if (rowMin > max)
+            {
+                return over;
+            }
+
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        return previous[m];
+    }
+
+    // Distinct trigrams of "^word$", three chars packed into a long
+    private static long[] trigrams(String word)
+    {
+        String padded = "^" + word + "$";
+        long[] result = new long[padded.length() - 2];
+        int count = 0;
+
+        for (int i = 0; i + 3 <= padded.length(); i++)
+        {
+            long gram = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            boolean seen = false;
+
+            for (int k = 0; k < count && !seen; k++)
+            {
+                seen = result[k] == gram;
+            }
+
+            if (!seen)
+            {
+                result[count] = gram;
+                count = count + 1;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    // Lower-case words of a student's first and last name, without duplicates
+    private static String[] nameWords(Student student)
+    {
+        String[] first = split(student.firstName());
+        String[] last = split(student.lastName());
+        String[] all = Arrays.copyOf(first, first.length + last.length);
+        int count = first.length;
+
+        for (String word : last)
+        {
+            if (!contains(Arrays.copyOf(all, count), word))
+            {
+                all[count] = word;
+                count = count + 1;
+            }
+        }
+
+        return count == all.length ? all : Arrays.copyOf(all, count);
+    }
+
+    // Words are runs of letters and digits ("O'Brien-Smith" is o, brien, smith)
+    private static String[] split(String text)
+    {
+        if (text == null)
+        {
+            return new String[0];
+        }
+
+        List<String> result = new ArrayList<>(2);
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++)
+        {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordChar && start < 0)
+            {
+                start = i;
+            }
+            else if (!wordChar && start >= 0)
+            {
+                result.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return result.toArray(new String[0]);
+    }
+
+    private static boolean contains(String[] words, String word)
+    {
+        for (String candidate : words)
+        {
+            if (candidate.equals(word))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Caller holds the monitor
+    private void addId(String word, long id)
+    {
+        int term = find(word);
+
+        if (term < 0)
+        {
+            term = newTerm(word);
+        }
+        else if (idCounts[term] == 0)
+        {
+            unusedTerms = unusedTerms - 1;
+        }
+
+        long[] list = ids[term];
+        int size = idCounts[term];
+        int at = size > 0 && list[size - 1] < id ? size : Arrays.binarySearch(list, 0, size, id);
+
+        if (at >= 0 && at < size)
+        {
+            return;
+        }
+
+        at = at < 0 ? -at - 1 : at;
+
+        if (size == list.length)
+        {
+            list = Arrays.copyOf(list, Math.max(1, size + (size >> 1) + 1));
+            ids[term] = list;
+        }
+
+        System.arraycopy(list, at, list, at + 1, size - at);
+        list[at] = id;
+        idCounts[term] = size + 1;
+    }
+
+    private void removeId(String word, long id)
+    {
+        int term = find(word);
+
+        if (term < 0)
+        {
+            return;
+        }
+
+        long[] list = ids[term];
+        int size = idCounts[term];
+        int at = Arrays.binarySearch(list, 0, size, id);
+
+        if (at < 0)
+        {
+            return;
+        }
+
+        System.arraycopy(list, at + 1, list, at, size - at - 1);
+        idCounts[term] = size - 1;
+
+        if (size == 1)
+        {
+            ids[term] = NO_IDS;
+            unusedTerms = unusedTerms + 1;
+        }
+    }
+
+    // Number of a known word (used or not), or -1
+    private int find(String word)
+    {
+        int mask = table.length - 1;
+
+        for (int slot = hash(word) & mask; table[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (isWord(table[slot] - 1, word))
+            {
+                return table[slot] - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isWord(int term, String word)
+    {
+        int start = starts[term];
+
+        if (starts[term + 1] - start != word.length())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < word.length(); i++)
+        {
+            if (chars[start + i] != word.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int length(int term)
+    {
+        return starts[term + 1] - starts[term];
+    }
+
+    private String word(int term)
+    {
+        return new String(chars, starts[term], length(term));
+    }
+
+    private int newTerm(String word)
+    {
+        int term = termCount;
+
+        if (term == ids.length)
+        {
+            int capacity = term * 2;
+            starts = Arrays.copyOf(starts, capacity + 1);
+            ids = Arrays.copyOf(ids, capacity);
+            idCounts = Arrays.copyOf(idCounts, capacity);
+            letters = Arrays.copyOf(letters, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            shared = Arrays.copyOf(shared, capacity);
+        }
+
+        int start = starts[term];
+
+        if (start + word.length() > chars.length)
+        {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, start + word.length()));
+        }
+
+        word.getChars(0, word.length(), chars, start);
+        starts[term + 1] = start + word.length();
+        letters[term] = letters(chars, start, start + word.length());
+        ids[term] = NO_IDS;
+        termCount = term + 1;
+
+        if (termCount * 2 > table.length)
+        {
+            rehash(table.length * 2);
+        }
+        else
+        {
+            insert(table, term);
+        }
+
+        if (byLength[Math.min(word.length(), LONG_WORD)] == null)
+        {
+            byLength[Math.min(word.length(), LONG_WORD)] = new IntList();
+        }
+
+        byLength[Math.min(word.length(), LONG_WORD)].add(term);
+
+        for (long gram : trigrams(word))
+        {
+            IntList terms = grams.get(gram);
+
+            if (terms == null)
+            {
+                terms = new IntList();
+                grams.put(gram, terms);
+            }
+
+            terms.add(term);
+        }
+
+        return term;
+    }
+
+    private void rehash(int capacity)
+    {
+        table = new int[capacity];
+
+        for (int term = 0; term < termCount; term++)
+        {
+            insert(table, term);
+        }
+    }
+
+    private void insert(int[] into, int term)
+    {
+        int mask = into.length - 1;
+        int slot = hash(term) & mask;
+
+        while (into[slot] != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        into[slot] = term + 1;
+    }
+
+    // Same value as hash(word(term)), without building the String
+    private int hash(int term)
+    {
+        int h = 0;
+
+        for (int i = starts[term]; i < starts[term + 1]; i++)
+        {
+            h = 31 * h + chars[i];
+        }
+
+        return spread(h);
+    }
+
+    private static int hash(String word)
+    {
+        return spread(word.hashCode());
+    }
+
+    private static int spread(int h)
+    {
+        h = h * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Drop unused words once they are half the dictionary: number the used ones from 0 again and rebuild the table,
+    // the trigram lists and the length lists
+    private void renumberIfSparse()
+    {
+        if (unusedTerms < MIN_REBUILD || unusedTerms * 2 < termCount)
+        {
+            return;
+        }
+
+        String[] oldWords = new String[termCount];
+
+        for (int old = 0; old < termCount; old++)
+        {
+            oldWords[old] = idCounts[old] > 0 ? word(old) : null;
+        }
+
+        long[][] oldIds = ids;
+        int[] oldCounts = idCounts;
+        int oldCount = termCount;
+        int capacity = Math.max(64, Integer.highestOneBit(Math.max(1, oldCount - unusedTerms)) * 2);
+
+        chars = new char[Math.max(512, chars.length / 2)];
+        starts = new int[capacity + 1];
+        ids = new long[capacity][];
+        idCounts = new int[capacity];
+        letters = new long[capacity];
+        seen = new int[capacity];
+        shared = new int[capacity];
+        termCount = 0;
+        unusedTerms = 0;
+        table = new int[capacity * 2];
+        grams = new LongHashMap<>();
+        byLength = new IntList[LONG_WORD + 1];
+
+        for (int old = 0; old < oldCount; old++)
+        {
+            if (oldCounts[old] > 0)
+            {
+                int term = newTerm(oldWords[old]);
+                ids[term] = oldIds[old];
+                idCounts[term] = oldCounts[old];
+            }
+        }
+    }
+}
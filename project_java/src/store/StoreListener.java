@@ -0,0 +1,33 @@
+package store;
+
+import models.Student;
+
+/**
+ * Callback interface for anything that has to follow changes to the student store
+ * (persistence, indexes, ...). Listeners are called after the in-memory map was updated.
+ */
+public interface StoreListener
+{
+    // Called after a student was added or re-saved under the given ID, with the record it replaced (null for a
+    // new student) so listeners that need the old version (change capture, name search) do not keep a copy
+    void onPut(long id, Student previous, Student student);
+
+    // Called after a student was removed, with the record that was removed
+    void onRemove(long id, Student removed);
+
+    // Called before the changes of a StudentStore.group, which then come back to back
+    default void onGroupStart()
+    {
+    }
+
+    // Called after the last change of a group. committed is false if the group failed: its changes were already
+    // reverted through onPut/onRemove, so a listener that held the group's changes back can drop them all.
+    default void onGroupEnd(boolean committed)
+    {
+    }
+
+    // Called by StudentStore.attach once every existing record has been replayed, before any later change
+    default void onAttached()
+    {
+    }
+}
@@ -0,0 +1,352 @@
+package store;
+
+import models.Gender;
+import models.Student;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Off-heap storage for StudentStore's records (-Dsems.store.offHeap=true)
+ * - every record is a fixed 48-byte struct in direct ByteBuffer chunks: id, name references, birth day, program,
+ *   GPA, semester, course count, gender and a live flag; a record is addressed by its index
+ * - names go to a string pool, also off-heap: [int length][UTF-8 bytes] entries, referenced by offset. A re-save
+ *   that keeps a name keeps its entry; a changed or freed name becomes garbage in the pool
+ * - freed records are reused first; compact() packs the live records to the front (keeping their order) and
+ *   copies the live names into a fresh pool, reporting every record it moves so the owner can follow it
+ * - read() decodes a new Student each time: callers get an ordinary short-lived record and the long-lived heap
+ *   only holds the owner's index, not the Student and its two Strings. That makes a get slower than on the heap;
+ *   scans should not pay it per row, so the numeric fields can also be read one at a time by index
+ *   (birthDay(index), ...), which StudentStore.scan exposes as a StudentView without decoding anything
+ * Chunks are ByteBuffer.allocateDirect, so the JVM flag -XX:MaxDirectMemorySize caps the total (it defaults to
+ * the maximum heap size). Memory of dropped chunks is returned when their buffers are garbage collected.
+ * Why not the Foreign Function & Memory API (MemorySegment from an Arena): the build targets JDK 21 (Gradle
+ * toolchain, bench/run.sh), where java.lang.foreign is still a preview API and would need --enable-preview for
+ * every compile and run. It is final from JDK 22; once the toolchain moves there, each chunk becomes a
+ * MemorySegment of Arena.ofShared() with the same layout and offsets, and freeing it no longer waits for GC.
+ * Not thread-safe: StudentStore calls it under its own lock.
+ */
+public final class StudentArena
+{
+    // Record layout (byte offsets)
+    private static final int ID = 0;
+    private static final int FIRST_NAME = 8;
+    private static final int LAST_NAME = 12;
+    private static final int BIRTH_DAY = 16;
+    private static final int PROGRAM = 20;
+    private static final int GPA = 24;
+    private static final int SEMESTER = 32;
+    private static final int COURSES = 36;
+    private static final int GENDER = 40;
+    private static final int LIVE = 41;
+    static final int RECORD_BYTES = 48;
+
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+    // String pool chunks; an entry never spans two, and a reference is chunk * STRING_CHUNK + offset
+    private static final int STRING_CHUNK = 1 << 22;
+    private static final int NO_STRING = -1;
+    private static final Gender[] GENDERS = Gender.values();
+
+    // Told about every record compact() moves
+    public interface Relocation
+    {
+        void moved(long id, int from, int to);
+    }
+
+    // Sizes for the statistics menu and the benchmarks
+    public record Stats(int records, int freeRecords, long stringBytes, long garbageBytes, long reservedBytes)
+    {
+    }
+
+    private ByteBuffer[] records = new ByteBuffer[0];
+    // Records in use or freed, i.e. the next never-used index
+    private int recordCount = 0;
+    private int[] freeRecords = new int[64];
+    private int freeCount = 0;
+    private ByteBuffer[] strings = new ByteBuffer[0];
+    // Next free byte of the pool, as a reference
+    private int stringTop = 0;
+    private long garbageBytes = 0;
+
+    // Store a new record and return its index
+    public int add(long id, Student student)
+    {
+        int index;
+
+        if (freeCount > 0)
+        {
+            freeCount = freeCount - 1;
+            index = freeRecords[freeCount];
+        }
+        else
+        {
+            index = recordCount;
+            ensureRecordChunk(index);
+            recordCount = recordCount + 1;
+        }
+
+        ByteBuffer chunk = chunk(index);
+        int at = offset(index);
+        chunk.putLong(at + ID, id);
+        chunk.putInt(at + FIRST_NAME, addString(student.firstName()));
+        chunk.putInt(at + LAST_NAME, addString(student.lastName()));
+        writeFields(chunk, at, student);
+        return index;
+    }
+
+    // Overwrite a live record in place; unchanged names keep their pool entries
+    public void replace(int index, Student student)
+    {
+        ByteBuffer chunk = chunk(index);
+        int at = offset(index);
+        chunk.putInt(at + FIRST_NAME, keepOrAdd(chunk.getInt(at + FIRST_NAME), student.firstName()));
+        chunk.putInt(at + LAST_NAME, keepOrAdd(chunk.getInt(at + LAST_NAME), student.lastName()));
+        writeFields(chunk, at, student);
+    }
+
+    public Student read(int index)
+    {
+        ByteBuffer chunk = chunk(index);
+        int at = offset(index);
+        return new Student(string(chunk.getInt(at + FIRST_NAME)), string(chunk.getInt(at + LAST_NAME)),
+                chunk.getInt(at + BIRTH_DAY), GENDERS[chunk.get(at + GENDER)], chunk.getDouble(at + GPA),
+                chunk.getInt(at + SEMESTER), chunk.getInt(at + PROGRAM), chunk.getInt(at + COURSES));
+    }
+
+    public long id(int index)
+    {
+        return chunk(index).getLong(offset(index) + ID);
+    }
+
+    // Single fields of a live record, without decoding the rest (for scans)
+    public int birthDay(int index)
+    {
+        return chunk(index).getInt(offset(index) + BIRTH_DAY);
+    }
+
+    public int programId(int index)
+    {
+        return chunk(index).getInt(offset(index) + PROGRAM);
+    }
+
+    public double gpaPrev(int index)
+    {
+        return chunk(index).getDouble(offset(index) + GPA);
+    }
+
+    public int currentSemester(int index)
+    {
+        return chunk(index).getInt(offset(index) + SEMESTER);
+    }
+
+    public int numCourses(int index)
+    {
+        return chunk(index).getInt(offset(index) + COURSES);
+    }
+
+    public Gender gender(int index)
+    {
+        return GENDERS[chunk(index).get(offset(index) + GENDER)];
+    }
+
+    // Release a record; its index may be handed out again by add
+    public void free(int index)
+    {
+        ByteBuffer chunk = chunk(index);
+        int at = offset(index);
+        garbageBytes = garbageBytes + entryBytes(chunk.getInt(at + FIRST_NAME))
+                + entryBytes(chunk.getInt(at + LAST_NAME));
+        chunk.put(at + LIVE, (byte) 0);
+
+        if (freeCount == freeRecords.length)
+        {
+            freeRecords = Arrays.copyOf(freeRecords, freeCount * 2);
+        }
+
+        freeRecords[freeCount] = index;
+        freeCount = freeCount + 1;
+    }
+
+    // True when freed records or dead names take more room than the live ones (and at least a chunk)
+    public boolean needsCompaction()
+    {
+        int live = recordCount - freeCount;
+        return freeCount > Math.max(RECORDS_PER_CHUNK, live)
+                || garbageBytes > Math.max(STRING_CHUNK, (long) stringTop - garbageBytes);
+    }
+
+    // Pack the live records to the front in index order and rebuild the string pool with only their names
+    public void compact(Relocation relocation)
+    {
+        ByteBuffer[] oldStrings = strings;
+        strings = new ByteBuffer[0];
+        stringTop = 0;
+        garbageBytes = 0;
+        int live = 0;
+
+        for (int index = 0; index < recordCount; index++)
+        {
+            ByteBuffer chunk = chunk(index);
+            int at = offset(index);
+
+            if (chunk.get(at + LIVE) == 0)
+            {
+                continue;
+            }
+
+            int first = copyString(oldStrings, chunk.getInt(at + FIRST_NAME));
+            int last = copyString(oldStrings, chunk.getInt(at + LAST_NAME));
+            ByteBuffer target = chunk(live);
+            int to = offset(live);
+
+            if (live != index)
+            {
+                target.put(to, chunk, at, RECORD_BYTES);
+                relocation.moved(target.getLong(to + ID), index, live);
+            }
+
+            target.putInt(to + FIRST_NAME, first);
+            target.putInt(to + LAST_NAME, last);
+            live = live + 1;
+        }
+
+        recordCount = live;
+        freeCount = 0;
+        records = Arrays.copyOf(records, (live + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK);
+    }
+
+    public Stats stats()
+    {
+        long reserved = (long) records.length * RECORDS_PER_CHUNK * RECORD_BYTES + (long) strings.length * STRING_CHUNK;
+        return new Stats(recordCount - freeCount, freeCount, stringTop - garbageBytes, garbageBytes, reserved);
+    }
+
+    private static void writeFields(ByteBuffer chunk, int at, Student student)
+    {
+        chunk.putInt(at + BIRTH_DAY, student.birthDay());
+        chunk.putInt(at + PROGRAM, student.programId());
+        chunk.putDouble(at + GPA, student.gpaPrev());
+        chunk.putInt(at + SEMESTER, student.currentSemester());
+        chunk.putInt(at + COURSES, student.numCourses());
+        chunk.put(at + GENDER, (byte) student.gender().ordinal());
+        chunk.put(at + LIVE, (byte) 1);
+    }
+
+    private ByteBuffer chunk(int index)
+    {
+        return records[index / RECORDS_PER_CHUNK];
+    }
+
+    private static int offset(int index)
+    {
+        return (index % RECORDS_PER_CHUNK) * RECORD_BYTES;
+    }
+
+    private void ensureRecordChunk(int index)
+    {
+        int chunk = index / RECORDS_PER_CHUNK;
+
+        if (chunk == records.length)
+        {
+            records = Arrays.copyOf(records, chunk + 1);
+            records[chunk] = direct(RECORDS_PER_CHUNK * RECORD_BYTES);
+        }
+    }
+
+    private int keepOrAdd(int reference, String value)
+    {
+        if (reference == NO_STRING ? value == null : value != null && value.equals(string(reference)))
+        {
+            return reference;
+        }
+
+        garbageBytes = garbageBytes + entryBytes(reference);
+        return addString(value);
+    }
+
+    private int addString(String value)
+    {
+        return value == null ? NO_STRING : addString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int addString(byte[] bytes)
+    {
+        int size = Integer.BYTES + bytes.length;
+
+        if (size > STRING_CHUNK)
+        {
+            throw new IllegalArgumentException("Name too long to store: " + bytes.length + " bytes");
+        }
+
+        int chunk = stringTop / STRING_CHUNK;
+        int at = stringTop % STRING_CHUNK;
+
+        // Does not fit in the current chunk: the rest of it stays unused (counted as garbage)
+        if (chunk < strings.length && at + size > STRING_CHUNK)
+        {
+            garbageBytes = garbageBytes + STRING_CHUNK - at;
+            chunk = chunk + 1;
+            at = 0;
+        }
+
+        if (chunk == strings.length)
+        {
+            if ((long) chunk * STRING_CHUNK + STRING_CHUNK > Integer.MAX_VALUE)
+            {
+                throw new IllegalStateException("The off-heap string pool is full (2 GB); compact it");
+            }
+
+            strings = Arrays.copyOf(strings, chunk + 1);
+            strings[chunk] = direct(STRING_CHUNK);
+        }
+
+        ByteBuffer buffer = strings[chunk];
+        buffer.putInt(at, bytes.length);
+        buffer.put(at + Integer.BYTES, bytes);
+        int reference = chunk * STRING_CHUNK + at;
+        stringTop = reference + size;
+        return reference;
+    }
+
+    private String string(int reference)
+    {
+        if (reference == NO_STRING)
+        {
+            return null;
+        }
+
+        ByteBuffer buffer = strings[reference / STRING_CHUNK];
+        int at = reference % STRING_CHUNK;
+        byte[] bytes = new byte[buffer.getInt(at)];
+        buffer.get(at + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int entryBytes(int reference)
+    {
+        return reference == NO_STRING ? 0 : Integer.BYTES + strings[reference / STRING_CHUNK].getInt(
+                reference % STRING_CHUNK);
+    }
+
+    // Copy an entry of the old pool to the end of the current one
+    private int copyString(ByteBuffer[] from, int reference)
+    {
+        if (reference == NO_STRING)
+        {
+            return NO_STRING;
+        }
+
+        ByteBuffer buffer = from[reference / STRING_CHUNK];
+        int at = reference % STRING_CHUNK;
+        byte[] bytes = new byte[buffer.getInt(at)];
+        buffer.get(at + Integer.BYTES, bytes);
+        return addString(bytes);
+    }
+
+    private static ByteBuffer direct(int bytes)
+    {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,139 @@
+package store;
+
+import models.Programs;
+import models.Student;
+
+import java.util.*;
+
+/**
+ * Secondary indexes over the student store: program, current semester, last name and name prefix
+ * Registered as a store listener, so every add, field edit (re-save) and remove keeps them current.
+ * String keys are matched case-insensitively. Each ID remembers the keys it was filed under,
+ * which lets a re-save of an edited Student move it even though the old values are gone.
+ * Methods are synchronized so admin sessions can query while the store updates it.
+ */
+public class StudentIndexes implements StoreListener
+{
+    // Keys a single student is currently filed under
+    private record Filing(int programId, int semester, String lastName, String firstLast, String lastFirst)
+    {
+    }
+
+    private final Map<Integer, Set<Long>> byProgram = new HashMap<>();
+    private final Map<Integer, Set<Long>> bySemester = new HashMap<>();
+    private final Map<String, Set<Long>> byLastName = new HashMap<>();
+    // Sorted on "first last" and "last first" so a prefix is a range scan
+    private final NavigableMap<String, Set<Long>> byName = new TreeMap<>();
+    private final LongHashMap<Filing> filings = new LongHashMap<>();
+
+    @Override
+    public synchronized void onPut(long id, Student previous, Student student)
+    {
+        unfile(id);
+
+        String first = normalize(student.firstName());
+        String last = normalize(student.lastName());
+        Filing filing = new Filing(student.programId(), student.currentSemester(), last,
+                first + " " + last, last + " " + first);
+
+        add(byProgram, filing.programId(), id);
+        add(bySemester, filing.semester(), id);
+        add(byLastName, filing.lastName(), id);
+        add(byName, filing.firstLast(), id);
+        add(byName, filing.lastFirst(), id);
+        filings.put(id, filing);
+    }
+
+    @Override
+    public synchronized void onRemove(long id, Student removed)
+    {
+        unfile(id);
+    }
+
+    // IDs of students in the given program
+    public synchronized List<Long> findByProgram(String program)
+    {
+        return findByProgram(Programs.find(program));
+    }
+
+    public synchronized List<Long> findByProgram(int programId)
+    {
+        return copy(byProgram.get(programId));
+    }
+
+    // IDs of students in the given semester
+    public synchronized List<Long> findBySemester(int semester)
+    {
+        return copy(bySemester.get(semester));
+    }
+
+    // IDs of students with the given last name
+    public synchronized List<Long> findByLastName(String lastName)
+    {
+        return copy(byLastName.get(normalize(lastName)));
+    }
+
+    // IDs of students with exactly this "first last" name (the name-to-ID lookup)
+    public synchronized List<Long> findByFullName(String firstLast)
+    {
+        return copy(byName.get(normalize(firstLast).replaceAll("\\s+", " ")));
+    }
+
+    // IDs of students whose "first last" or "last first" name starts with the prefix
+    public synchronized List<Long> findByNamePrefix(String prefix)
+    {
+        String from = normalize(prefix);
+        Set<Long> ids = new LinkedHashSet<>();
+
+        for (Set<Long> matches : byName.subMap(from, true, from + Character.MAX_VALUE, false).values())
+        {
+            ids.addAll(matches);
+        }
+
+        return new ArrayList<>(ids);
+    }
+
+    private void unfile(long id)
+    {
+        Filing old = filings.remove(id);
+
+        if (old != null)
+        {
+            remove(byProgram, old.programId(), id);
+            remove(bySemester, old.semester(), id);
+            remove(byLastName, old.lastName(), id);
+            remove(byName, old.firstLast(), id);
+            remove(byName, old.lastFirst(), id);
+        }
+    }
+
+    private static <K> void add(Map<K, Set<Long>> index, K key, long id)
+    {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+    }
+
+    private static <K> void remove(Map<K, Set<Long>> index, K key, long id)
+    {
+        Set<Long> ids = index.get(key);
+
+        if (ids != null)
+        {
+            ids.remove(id);
+
+            if (ids.isEmpty())
+            {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static List<Long> copy(Set<Long> ids)
+    {
+        return ids == null ? new ArrayList<>() : new ArrayList<>(ids);
+    }
+
+    private static String normalize(String value)
+    {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,1009 @@
+package store;
+
+import metrics.Metrics;
+import models.Gender;
+import models.Student;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+
+/**
+ * Thread-safe student store shared by every admin session
+ * - IDs are numeric (see models.StudentId) and come from a lock-free counter
+ * - records live in a primitive long-keyed open-addressing map; lookups never hash a String
+ * - every record can be locked on its own; an edit session holds the lock so no other session can change
+ *   or remove the record mid-edit (put/remove take it too, so they wait for the session to finish)
+ * - records are immutable, so get() needs no lock and readers never see a half-edited student; an edit
+ *   session commits its new version with replace(), a compare-and-swap against the version it started from
+ * - iteration follows insertion order through an append-only ID list and never throws
+ *   ConcurrentModificationException
+ * - listeners are notified under one commit lock, so they see changes one at a time and in order
+ * - group() applies several changes under one hold of that lock: no other write comes in between, listeners are
+ *   told where the group starts and ends (the log makes it durable as a whole), and if any change or listener
+ *   fails the changes already made are reverted. Single-record reads (get, iteration) are not isolated and can
+ *   see a group half applied; RosterHistory versions and the change feed only ever show whole groups.
+ * - scan() visits every record through a reused StudentView, so a filter over numeric fields does not build a
+ *   Student per row (off-heap, it reads them straight from the arena)
+ * - a bulk load (putLazily) only creates the slots; each record is built from its source the first time it is read
+ * - adds, modifications and removals are timed here (see metrics.Metrics), whichever front end made them
+ * - off-heap mode (-Dsems.store.offHeap=true): records live in a StudentArena and a slot only keeps the record's
+ *   index, so get() decodes a new Student on every call; compare-and-swap then compares records by value
+ */
+public class StudentStore
+{
+    // A stored record; the slot object stays the same when the record is re-saved, so its lock does too
+    private static final class Slot
+    {
+        private volatile Student student;
+        // Bulk-loaded slots build their record on first read from loader.apply(row); both are dropped once built
+        private IntFunction<Student> loader;
+        private int row;
+        // Insertion number, tells a re-added ID apart from its removed earlier entry in the insertion list
+        final long order;
+        // Created on first use, most records are never edited
+        private ReentrantLock lock;
+        // Off-heap mode: index of the record in the arena, -1 if not there (not loaded yet, or removed);
+        // guarded by arenaLock
+        private int record = -1;
+
+        Slot(Student student, long order)
+        {
+            this.student = student;
+            this.order = order;
+        }
+
+        Slot(int record, long order)
+        {
+            this.record = record;
+            this.order = order;
+        }
+
+        Slot(IntFunction<Student> loader, int row, long order)
+        {
+            this.loader = loader;
+            this.row = row;
+            this.order = order;
+        }
+
+        Student student()
+        {
+            Student current = student;
+            return current != null ? current : load();
+        }
+
+        private synchronized Student load()
+        {
+            if (student == null)
+            {
+                student = loader.apply(row);
+                loader = null;
+            }
+
+            return student;
+        }
+
+        synchronized void set(Student student)
+        {
+            this.student = student;
+            loader = null;
+        }
+
+        synchronized ReentrantLock lock()
+        {
+            if (lock == null)
+            {
+                lock = new ReentrantLock();
+            }
+
+            return lock;
+        }
+    }
+
+    // Students keyed by numeric ID
+    private final LongHashMap<Slot> students = new LongHashMap<>();
+    private final ReentrantReadWriteLock mapLock = new ReentrantReadWriteLock();
+    // IDs and their insertion numbers in insertion order; removed entries stay until the list is compacted
+    private long[] insertionIds = new long[1024];
+    private long[] insertionOrders = new long[1024];
+    private int insertionCount = 0;
+    private long nextOrder = 0;
+    // Counter used to make unique IDs when adding students (the next ID to hand out)
+    private final AtomicLong studentCounter = new AtomicLong(1);
+    // Serializes map updates with listener notification; a ReentrantLock rather than a monitor so a virtual thread
+    // (HTTP API) waiting for it or blocked in a listener's I/O while holding it does not pin its carrier thread
+    private final ReentrantLock commitLock = new ReentrantLock();
+    // Reverts the changes of the group being applied, oldest first; null outside group(). Guarded by commitLock
+    private List<Runnable> groupUndo;
+    // Listeners notified after every put/remove
+    private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+    // Off-heap mode only (null otherwise): the records, and the lock for them and for Slot.record
+    // Writes (and compaction) also hold commitLock; compaction takes the map read lock while holding this one
+    private final StudentArena arena;
+    private final ReentrantReadWriteLock arenaLock = new ReentrantReadWriteLock();
+
+    // On the heap, or off it if started with -Dsems.store.offHeap=true
+    public StudentStore()
+    {
+        this(Boolean.getBoolean("sems.store.offHeap") ? new StudentArena() : null);
+    }
+
+    // Records in the given arena, or on the heap if it is null
+    public StudentStore(StudentArena arena)
+    {
+        this.arena = arena;
+    }
+
+    public boolean isOffHeap()
+    {
+        return arena != null;
+    }
+
+    // Sizes of the off-heap arena, or null on the heap
+    public StudentArena.Stats arenaStats()
+    {
+        if (arena == null)
+        {
+            return null;
+        }
+
+        arenaLock.readLock().lock();
+
+        try
+        {
+            return arena.stats();
+        }
+        finally
+        {
+            arenaLock.readLock().unlock();
+        }
+    }
+
+    public void addListener(StoreListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    // Add a listener and bring it up to date first: every stored record is passed to it as a put (previous null),
+    // then onAttached, then it follows changes like any other listener. Writers wait until it has caught up;
+    // readers do not.
+    public void attach(StoreListener listener)
+    {
+        commitLock.lock();
+
+        try
+        {
+            for (Map.Entry<Long, Student> entry : entries())
+            {
+                listener.onPut(entry.getKey(), null, entry.getValue());
+            }
+
+            listener.onAttached();
+            listeners.add(listener);
+        }
+        finally
+        {
+            commitLock.unlock();
+        }
+    }
+
+    public long getStudentCounter()
+    {
+        return studentCounter.get();
+    }
+
+    public void setStudentCounter(long studentCounter)
+    {
+        this.studentCounter.set(studentCounter);
+    }
+
+    // Hand out a new unique ID
+    public long newId()
+    {
+        return studentCounter.getAndIncrement();
+    }
+
+    public boolean containsKey(long id)
+    {
+        return slot(id) != null;
+    }
+
+    public Student get(long id)
+    {
+        Slot slot = slot(id);
+        return slot == null ? null : read(id, slot);
+    }
+
+    // The record's edit lock, or null if there is no such student
+    // Hold it for a whole edit session; after acquiring, re-check that the student still exists
+    public ReentrantLock lockFor(long id)
+    {
+        Slot slot = slot(id);
+        return slot == null ? null : slot.lock();
+    }
+
+    // Add or re-save a student, then notify listeners
+    // Re-saving keeps the original position and waits for any other session editing the record
+    public void put(long id, Student student)
+    {
+        long start = Metrics.start();
+
+        while (true)
+        {
+            Slot slot = slot(id);
+
+            if (slot == null)
+            {
+                if (putIfAbsent(id, student))
+                {
+                    return;
+                }
+
+                // Added by another session in the meantime, re-save under its lock
+                continue;
+            }
+
+            ReentrantLock lock = slot.lock();
+            lock.lock();
+
+            try
+            {
+                commitLock.lock();
+
+                try
+                {
+                    // Removed (and maybe re-added) while we waited for the lock: start over
+                    if (slot(id) != slot)
+                    {
+                        continue;
+                    }
+
+                    Student previous = read(id, slot);
+                    write(id, slot, student);
+                    undoable(() -> restore(id, previous));
+                    notifyPut(id, previous, student);
+                    Metrics.record(Metrics.Operation.MODIFY, start);
+                    return;
+                }
+                finally
+                {
+                    commitLock.unlock();
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Compare-and-swap: save updated only if the stored record is still the expected object (as read with get;
+    // off-heap, a record equal to it); returns false if another session saved or removed the record in the
+    // meantime. Does not wait for the record's edit lock: an edit session holding the lock commits with this,
+    // and a conflicting writer that does not hold the lock is detected rather than blocked.
+    public boolean replace(long id, Student expected, Student updated)
+    {
+        long start = Metrics.start();
+        Slot slot = slot(id);
+
+        if (slot == null)
+        {
+            Metrics.record(Metrics.Operation.MODIFY, start, false);
+            return false;
+        }
+
+        commitLock.lock();
+
+        try
+        {
+            if (slot(id) != slot || !holds(id, slot, expected))
+            {
+                Metrics.record(Metrics.Operation.MODIFY, start, false);
+                return false;
+            }
+
+            write(id, slot, updated);
+            undoable(() -> restore(id, expected));
+            notifyPut(id, expected, updated);
+            Metrics.record(Metrics.Operation.MODIFY, start);
+            return true;
+        }
+        finally
+        {
+            commitLock.unlock();
+        }
+    }
+
+    // Add a new student; returns false (and changes nothing) if the ID is already taken
+    public boolean putIfAbsent(long id, Student student)
+    {
+        long start = Metrics.start();
+        boolean added = insert(id, order -> arena == null ? new Slot(student, order)
+                : new Slot(store(id, student), order));
+        Metrics.record(Metrics.Operation.ADD, start, added);
+        return added;
+    }
+
+    // Bulk load (e.g. rows of a mapped snapshot): add a record that is built with loader.apply(row) the first time
+    // it is read; returns false if the ID is already taken. Listeners already attached build it straight away.
+    public boolean putLazily(long id, IntFunction<Student> loader, int row)
+    {
+        return insert(id, order -> new Slot(loader, row, order));
+    }
+
+    private boolean insert(long id, LongFunction<Slot> newSlot)
+    {
+        commitLock.lock();
+
+        try
+        {
+            // Only commits change the map, so the ID cannot be taken between this check and the put below
+            if (slot(id) != null)
+            {
+                return false;
+            }
+
+            Slot slot = newSlot.apply(nextOrder++);
+            mapLock.writeLock().lock();
+
+            try
+            {
+                students.put(id, slot);
+                appendInsertionOrder(id, slot.order);
+            }
+            finally
+            {
+                mapLock.writeLock().unlock();
+            }
+
+            undoable(() -> restore(id, null));
+
+            if (!listeners.isEmpty())
+            {
+                notifyPut(id, null, read(id, slot));
+            }
+
+            return true;
+        }
+        finally
+        {
+            commitLock.unlock();
+        }
+    }
+
+    // Remove a student, then notify listeners; returns null if the ID was not present
+    public Student remove(long id)
+    {
+        long start = Metrics.start();
+        Slot slot = slot(id);
+
+        if (slot == null)
+        {
+            Metrics.record(Metrics.Operation.REMOVE, start, false);
+            return null;
+        }
+
+        ReentrantLock lock = slot.lock();
+        lock.lock();
+
+        try
+        {
+            commitLock.lock();
+
+            try
+            {
+                if (slot(id) != slot)
+                {
+                    Metrics.record(Metrics.Operation.REMOVE, start, false);
+                    return null;
+                }
+
+                Student removed = unlink(id, slot);
+                undoable(() -> restore(id, removed));
+                Metrics.record(Metrics.Operation.REMOVE, start);
+                return removed;
+            }
+            finally
+            {
+                commitLock.unlock();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Apply every change the callback makes (put, replace, putIfAbsent, remove) as one group; see the class comment.
+    // Other writers wait until it is done. The callback must not wait for a record lock another thread may hold
+    // (take those before calling this). A failure reverts the group and is rethrown.
+    public void group(Runnable changes)
+    {
+        commitLock.lock();
+
+        try
+        {
+            if (groupUndo != null)
+            {
+                throw new IllegalStateException("Groups do not nest");
+            }
+
+            groupUndo = new ArrayList<>();
+
+            try
+            {
+                for (StoreListener listener : listeners)
+                {
+                    listener.onGroupStart();
+                }
+
+                changes.run();
+
+                for (StoreListener listener : listeners)
+                {
+                    listener.onGroupEnd(true);
+                }
+            }
+            catch (RuntimeException | Error e)
+            {
+                revertGroup(e);
+                throw e;
+            }
+            finally
+            {
+                groupUndo = null;
+            }
+        }
+        finally
+        {
+            commitLock.unlock();
+        }
+    }
+
+    // Undo the group's changes newest first (listeners see the undo as ordinary changes), then end it as failed.
+    // Failures on the way are added to the one that made the group fail.
+    private void revertGroup(Throwable cause)
+    {
+        List<Runnable> undo = groupUndo;
+        groupUndo = null;
+
+        for (Runnable step : undo.reversed())
+        {
+            try
+            {
+                step.run();
+            }
+            catch (RuntimeException e)
+            {
+                cause.addSuppressed(e);
+            }
+        }
+
+        for (StoreListener listener : listeners)
+        {
+            try
+            {
+                listener.onGroupEnd(false);
+            }
+            catch (RuntimeException e)
+            {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    // Caller holds commitLock. Undo steps name the record by ID and the value to go back to, never a slot: a later
+    // change in the group may have replaced the slot (remove, then add again), and they run newest first.
+    private void undoable(Runnable undo)
+    {
+        if (groupUndo != null)
+        {
+            groupUndo.add(undo);
+        }
+    }
+
+    // Caller holds commitLock: make the ID hold previous again (null: not be there), in whatever slot it has now.
+    // A removed student comes back as a new entry, at the end of the insertion order.
+    private void restore(long id, Student previous)
+    {
+        Slot slot = slot(id);
+
+        if (slot == null)
+        {
+            if (previous != null)
+            {
+                putIfAbsent(id, previous);
+            }
+        }
+        else if (previous == null)
+        {
+            unlink(id, slot);
+        }
+        else
+        {
+            Student current = read(id, slot);
+            write(id, slot, previous);
+            notifyPut(id, current, previous);
+        }
+    }
+
+    // Caller holds commitLock: take the slot out of the map and tell the listeners; returns the removed record
+    private Student unlink(long id, Slot slot)
+    {
+        mapLock.writeLock().lock();
+
+        try
+        {
+            students.remove(id);
+            compactInsertionOrder();
+        }
+        finally
+        {
+            mapLock.writeLock().unlock();
+        }
+
+        Student removed = read(id, slot);
+        release(slot, removed);
+
+        for (StoreListener listener : listeners)
+        {
+            listener.onRemove(id, removed);
+        }
+
+        return removed;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public int size()
+    {
+        mapLock.readLock().lock();
+
+        try
+        {
+            return students.size();
+        }
+        finally
+        {
+            mapLock.readLock().unlock();
+        }
+    }
+
+    // Weakly consistent view in insertion order: never throws, may or may not show changes made while iterating
+    public Iterable<Map.Entry<Long, Student>> entries()
+    {
+        return () -> cursorAfter(-1);
+    }
+
+    // Visit every record in insertion order through one reused flyweight (see StudentView), weakly consistent like
+    // entries(). Off-heap, numeric fields are read from the arena without building a Student per row, so filters
+    // and column scans over them allocate nothing; call view.student() only for the rows that are kept.
+    // The visitor runs under the arena's read lock and must not change the store or get other records.
+    public void scan(Consumer<StudentView> visitor)
+    {
+        int count;
+        long[] ids;
+        long[] orders;
+        mapLock.readLock().lock();
+
+        try
+        {
+            count = insertionCount;
+            ids = insertionIds;
+            orders = insertionOrders;
+        }
+        finally
+        {
+            mapLock.readLock().unlock();
+        }
+
+        RowView view = new RowView();
+
+        for (int i = 0; i < count; i++)
+        {
+            long id = ids[i];
+            Slot slot = slot(id);
+
+            if (slot == null || slot.order != orders[i])
+            {
+                continue;
+            }
+
+            view.id = id;
+
+            if (arena != null)
+            {
+                arenaLock.readLock().lock();
+
+                try
+                {
+                    if (slot.record >= 0)
+                    {
+                        view.record = slot.record;
+                        view.student = null;
+                        visitor.accept(view);
+                        continue;
+                    }
+                }
+                finally
+                {
+                    arenaLock.readLock().unlock();
+                }
+            }
+
+            // On the heap, or off-heap but not in the arena (bulk-loaded and never read, or just removed)
+            view.student = read(id, slot);
+            visitor.accept(view);
+        }
+    }
+
+    // The flyweight of scan(): either a heap record or an arena index, valid for one callback
+    private final class RowView implements StudentView
+    {
+        private long id;
+        private int record;
+        private Student student;
+
+        @Override
+        public long id()
+        {
+            return id;
+        }
+
+        @Override
+        public int birthDay()
+        {
+            return student != null ? student.birthDay() : arena.birthDay(record);
+        }
+
+        @Override
+        public int programId()
+        {
+            return student != null ? student.programId() : arena.programId(record);
+        }
+
+        @Override
+        public double gpaPrev()
+        {
+            return student != null ? student.gpaPrev() : arena.gpaPrev(record);
+        }
+
+        @Override
+        public int currentSemester()
+        {
+            return student != null ? student.currentSemester() : arena.currentSemester(record);
+        }
+
+        @Override
+        public int numCourses()
+        {
+            return student != null ? student.numCourses() : arena.numCourses(record);
+        }
+
+        @Override
+        public Gender gender()
+        {
+            return student != null ? student.gender() : arena.gender(record);
+        }
+
+        @Override
+        public Student student()
+        {
+            return student != null ? student : arena.read(record);
+        }
+    }
+
+    // Resume insertion-order iteration after a position returned by Cursor.position(), e.g. for the next page
+    // of a listing. Positions stay valid across removals and re-saves; -1 starts at the beginning.
+    public Cursor cursorAfter(long position)
+    {
+        mapLock.readLock().lock();
+
+        try
+        {
+            // Positions below count are never rewritten (compaction copies to new arrays)
+            int count = insertionCount;
+            int start = Arrays.binarySearch(insertionOrders, 0, count, position + 1);
+            return new Cursor(insertionIds, insertionOrders, start < 0 ? -start - 1 : start, count);
+        }
+        finally
+        {
+            mapLock.readLock().unlock();
+        }
+    }
+
+    // Insertion-order iterator that can report where it stopped
+    public final class Cursor implements Iterator<Map.Entry<Long, Student>>
+    {
+        private final long[] ids;
+        private final long[] orders;
+        private final int count;
+        private int index;
+        private long position = -1;
+        private long nextPosition;
+        private Map.Entry<Long, Student> next;
+
+        private Cursor(long[] ids, long[] orders, int index, int count)
+        {
+            this.ids = ids;
+            this.orders = orders;
+            this.index = index;
+            this.count = count;
+            next = advance();
+        }
+
+        private Map.Entry<Long, Student> advance()
+        {
+            while (index < count)
+            {
+                long id = ids[index];
+                long order = orders[index];
+                index++;
+                Slot slot = slot(id);
+
+                if (slot != null && slot.order == order)
+                {
+                    nextPosition = order;
+                    return new AbstractMap.SimpleImmutableEntry<>(id, read(id, slot));
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Long, Student> next()
+        {
+            if (next == null)
+            {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<Long, Student> current = next;
+            position = nextPosition;
+            next = advance();
+            return current;
+        }
+
+        // Position of the entry last returned by next(), or -1 before the first call
+        public long position()
+        {
+            return position;
+        }
+    }
+
+    private Slot slot(long id)
+    {
+        mapLock.readLock().lock();
+
+        try
+        {
+            return students.get(id);
+        }
+        finally
+        {
+            mapLock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the map write lock
+    private void appendInsertionOrder(long id, long order)
+    {
+        if (insertionCount == insertionIds.length)
+        {
+            insertionIds = Arrays.copyOf(insertionIds, insertionCount * 2);
+            insertionOrders = Arrays.copyOf(insertionOrders, insertionCount * 2);
+        }
+
+        insertionIds[insertionCount] = id;
+        insertionOrders[insertionCount] = order;
+        insertionCount = insertionCount + 1;
+    }
+
+    // Caller holds the map write lock; drop removed IDs once they outnumber the live ones
+    private void compactInsertionOrder()
+    {
+        int dead = insertionCount - students.size();
+
+        if (dead < 1024 || dead < students.size())
+        {
+            return;
+        }
+
+        int capacity = Math.max(1024, students.size() * 2);
+        long[] ids = new long[capacity];
+        long[] orders = new long[capacity];
+        int count = 0;
+
+        for (int i = 0; i < insertionCount; i++)
+        {
+            Slot slot = students.get(insertionIds[i]);
+
+            if (slot != null && slot.order == insertionOrders[i])
+            {
+                ids[count] = insertionIds[i];
+                orders[count] = insertionOrders[i];
+                count = count + 1;
+            }
+        }
+
+        insertionIds = ids;
+        insertionOrders = orders;
+        insertionCount = count;
+    }
+
+    // The slot's current record
+    private Student read(long id, Slot slot)
+    {
+        if (arena == null)
+        {
+            return slot.student();
+        }
+
+        arenaLock.readLock().lock();
+
+        try
+        {
+            if (slot.record >= 0)
+            {
+                return arena.read(slot.record);
+            }
+
+            // Removed: release() left the last version on the heap
+            if (slot.loader == null)
+            {
+                return slot.student;
+            }
+        }
+        finally
+        {
+            arenaLock.readLock().unlock();
+        }
+
+        // Bulk-loaded and not read yet: build it once and move it into the arena
+        arenaLock.writeLock().lock();
+
+        try
+        {
+            if (slot.record < 0 && slot.loader != null)
+            {
+                Student student = slot.loader.apply(slot.row);
+                slot.record = arena.add(id, student);
+                slot.loader = null;
+                return student;
+            }
+
+            return slot.record >= 0 ? arena.read(slot.record) : slot.student;
+        }
+        finally
+        {
+            arenaLock.writeLock().unlock();
+        }
+    }
+
+    private boolean holds(long id, Slot slot, Student expected)
+    {
+        return arena == null ? slot.student() == expected : read(id, slot).equals(expected);
+    }
+
+    // Caller holds commitLock
+    private int store(long id, Student student)
+    {
+        arenaLock.writeLock().lock();
+
+        try
+        {
+            return arena.add(id, student);
+        }
+        finally
+        {
+            arenaLock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds commitLock
+    private void write(long id, Slot slot, Student student)
+    {
+        if (arena == null)
+        {
+            slot.set(student);
+            return;
+        }
+
+        arenaLock.writeLock().lock();
+
+        try
+        {
+            if (slot.record >= 0)
+            {
+                arena.replace(slot.record, student);
+            }
+            else
+            {
+                slot.record = arena.add(id, student);
+                slot.loader = null;
+            }
+
+            compactArenaIfNeeded();
+        }
+        finally
+        {
+            arenaLock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds commitLock; the slot is out of the map. Readers still holding it get the removed version.
+    private void release(Slot slot, Student removed)
+    {
+        if (arena == null)
+        {
+            return;
+        }
+
+        arenaLock.writeLock().lock();
+
+        try
+        {
+            if (slot.record >= 0)
+            {
+                arena.free(slot.record);
+            }
+
+            slot.student = removed;
+            slot.record = -1;
+            slot.loader = null;
+            compactArenaIfNeeded();
+        }
+        finally
+        {
+            arenaLock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds commitLock and the arena write lock
+    private void compactArenaIfNeeded()
+    {
+        if (arena.needsCompaction())
+        {
+            arena.compact((id, from, to) ->
+            {
+                Slot moved = slot(id);
+
+                // A record can only be moved for the slot that points at it
+                if (moved != null && moved.record == from)
+                {
+                    moved.record = to;
+                }
+            });
+        }
+    }
+
+    // Caller holds commitLock
+    private void notifyPut(long id, Student previous, Student student)
+    {
+        for (StoreListener listener : listeners)
+        {
+            listener.onPut(id, previous, student);
+        }
+    }
+}
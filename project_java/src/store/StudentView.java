@@ -0,0 +1,30 @@
+package store;
+
+import models.Gender;
+import models.Student;
+
+/**
+ * Flyweight over one stored record, handed out by StudentStore.scan
+ * The numeric fields are read straight from where the record lives (off-heap: the arena's struct) without
+ * building a Student; student() builds one only for the rows a scan keeps. The same view object is reused for
+ * every row and is only valid inside the callback.
+ */
+public interface StudentView
+{
+    long id();
+
+    int birthDay();
+
+    int programId();
+
+    double gpaPrev();
+
+    int currentSemester();
+
+    int numCourses();
+
+    Gender gender();
+
+    // The whole record, names included (a new Student off-heap)
+    Student student();
+}